@@ -0,0 +1,123 @@
+package com.zopa.quote.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import com.zopa.quote.config.AppConfig;
+import com.zopa.quote.domain.Lender;
+import com.zopa.quote.domain.Money;
+import com.zopa.quote.domain.Reservation;
+import com.zopa.quote.repository.LenderPoolRepository;
+import com.zopa.quote.service.FundReservationService;
+
+/**
+ * Many borrowers reserving from the same cheapest lenders at once. Most reservations are released, so borrowers
+ * keep competing for the lowest rates, one in a hundred is committed. The pool is loaded again before every
+ * iteration and checked after it: no funds left reserved and the pool short of exactly what was committed.
+ * Change borrowers with -t.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class FundReservationBenchmark {
+	
+	@Param({ "20000" })
+	private int lenders;
+	
+	private AnnotationConfigApplicationContext context;
+	private LenderPoolRepository lenderPoolRepository;
+	private FundReservationService fundReservationService;
+	private List<Lender> lenderPool;
+	private long initialAvailable;
+	private final AtomicLong committed = new AtomicLong();
+	
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		System.setProperty("lender.repository.type", "concurrent");
+		context = new AnnotationConfigApplicationContext(AppConfig.class);
+		lenderPoolRepository = context.getBean(LenderPoolRepository.class);
+		fundReservationService = context.getBean(FundReservationService.class);
+		
+		Random random = new Random(42);
+		lenderPool = new ArrayList<Lender>(lenders);
+		for(int id = 1; id <= lenders; id++) {
+			lenderPool.add(new Lender(id, "Lender #" + id, 0.05 + random.nextInt(300) / 10000.0, 100 * (1 + random.nextInt(50))));
+		}
+	}
+	
+	
+	@Setup(Level.Iteration)
+	public void loadPool() {
+		lenderPoolRepository.flush();
+		lenderPoolRepository.saveAll(lenderPool);
+		initialAvailable = lenderPoolRepository.totalAvailablePence();
+		committed.set(0);
+	}
+	
+	
+	@TearDown(Level.Iteration)
+	public void checkPool() {
+		if(initialAvailable - lenderPoolRepository.totalAvailablePence() != committed.get()) {
+			throw new IllegalStateException("Pool lent a different amount than committed");
+		}
+		for(Lender lender: lenderPool) {
+			Lender left = lenderPoolRepository.find(lender.getId());
+			if(fundReservationService.reservedFrom(lender.getId()) != 0 
+					|| (left != null && left.getAvailablePence() > lender.getAvailablePence())) {
+				throw new IllegalStateException("Lender over allocated: " + lender.getId());
+			}
+		}
+	}
+	
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+	}
+	
+	
+	@Benchmark
+	public Reservation reserve() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		Reservation reservation;
+		try {
+			reservation = fundReservationService.reserve(1000 + 100 * random.nextInt(141));
+		} catch (IllegalStateException e) {
+			//Pool exhausted
+			return null;
+		}
+		
+		if(random.nextInt(100) == 0 && fundReservationService.commit(reservation.getId())) {
+			committed.addAndGet(Money.toPence(reservation.getAmount()));
+		} else {
+			fundReservationService.release(reservation.getId());
+		}
+		return reservation;
+	}
+
+}
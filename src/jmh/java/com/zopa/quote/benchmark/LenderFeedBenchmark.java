@@ -0,0 +1,105 @@
+package com.zopa.quote.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import com.zopa.quote.config.AppConfig;
+import com.zopa.quote.domain.QuoteResult;
+import com.zopa.quote.feed.LenderEvent;
+import com.zopa.quote.feed.LenderFeed;
+import com.zopa.quote.repository.LenderPoolRepository;
+import com.zopa.quote.service.LenderPoolService;
+
+/**
+ * Lender events applied to a loaded pool. applyEvents applies them alone, the feed group applies them on one
+ * thread while three others quote, so every event pays for the rate ordered view readers need after it.
+ * Events alternate rate and availability updates of random lenders, rates keep the uniform distribution.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class LenderFeedBenchmark {
+	
+	@Param({ "1000", "100000", "1000000" })
+	private int lenders;
+	
+	@Param({ "map", "array", "concurrent", "sharded" })
+	private String repository;
+	
+	@Param({ "1000" })
+	private double amount;
+	
+	private AnnotationConfigApplicationContext context;
+	private LenderFeed lenderFeed;
+	private LenderPoolService lenderPoolService;
+	
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		System.setProperty("lender.repository.type", repository);
+		context = new AnnotationConfigApplicationContext(AppConfig.class);
+		lenderFeed = context.getBean(LenderFeed.class);
+		lenderPoolService = context.getBean(LenderPoolService.class);
+		context.getBean(LenderPoolRepository.class).saveAll(Arrays.asList(LenderPools.generate(lenders, LenderPools.UNIFORM)));
+	}
+	
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+	}
+	
+	
+	@Benchmark
+	public boolean applyEvents() {
+		return lenderFeed.apply(nextEvent());
+	}
+	
+	
+	@Benchmark
+	@Group("feed")
+	@GroupThreads(1)
+	public boolean applyEventsWhileQuoting() {
+		return lenderFeed.apply(nextEvent());
+	}
+	
+	
+	@Benchmark
+	@Group("feed")
+	@GroupThreads(3)
+	public QuoteResult quoteWhileApplyingEvents() {
+		return lenderPoolService.quote(amount);
+	}
+	
+	
+	private LenderEvent nextEvent() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int id = 1 + random.nextInt(lenders);
+		if(random.nextBoolean()) {
+			return LenderEvent.updateRate(id, 0.05 + random.nextInt(300) / 10000.0);
+		}
+		return LenderEvent.updateAvailable(id, 1 + random.nextInt(2000));
+	}
+
+}
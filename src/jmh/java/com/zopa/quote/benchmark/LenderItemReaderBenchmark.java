@@ -0,0 +1,87 @@
+package com.zopa.quote.benchmark;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.file.ResourceAwareItemReaderItemStream;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+
+import com.zopa.quote.config.BatchConfig;
+import com.zopa.quote.domain.Lender;
+
+/**
+ * Readers of loadLendersStep alone: every operation reads the whole lenders file, nothing is written.
+ * Compare FlatFileItemReader and MappedLenderItemReader with -p reader=csvFileItemReader,mappedCsvFileItemReader.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class LenderItemReaderBenchmark {
+	
+	@Param({ "100000", "1000000", "10000000" })
+	private int lenders;
+	
+	@Param({ LenderPools.UNIFORM })
+	private String distribution;
+	
+	@Param({ "csvFileItemReader", "mappedCsvFileItemReader" })
+	private String reader;
+	
+	private File file;
+	private AnnotationConfigApplicationContext context;
+	private ResourceAwareItemReaderItemStream<Lender> itemReader;
+	
+	
+	@Setup(Level.Trial)
+	@SuppressWarnings("unchecked")
+	public void setUp() throws Exception {
+		file = LenderPools.write(lenders, distribution);
+		
+		context = new AnnotationConfigApplicationContext(BatchConfig.class);
+		itemReader = context.getBean(reader, ResourceAwareItemReaderItemStream.class);
+		itemReader.setResource(new FileSystemResource(file));
+	}
+	
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+		file.delete();
+	}
+	
+	
+	//Sum of amounts read, so no row can be skipped
+	@Benchmark
+	public double readLenders() throws Exception {
+		double available = 0;
+		itemReader.open(new ExecutionContext());
+		try {
+			Lender lender;
+			while((lender = itemReader.read()) != null) {
+				available += lender.getAvailable();
+			}
+		} finally {
+			itemReader.close();
+		}
+		return available;
+	}
+
+}
@@ -0,0 +1,63 @@
+package com.zopa.quote.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import com.zopa.quote.domain.Lender;
+
+/**
+ * Generates lender pools for benchmarks, always the same pool for the same size and rate distribution.
+ * Distributions: uniform (300 rates equally likely), clustered (most lenders share 10 rates)
+ * and skewed (cheap rates are rare, so quotes go deeper in rate order).
+ */
+final class LenderPools {
+	
+	static final String UNIFORM = "uniform";
+	static final String CLUSTERED = "clustered";
+	static final String SKEWED = "skewed";
+	
+	private LenderPools() {}
+	
+	
+	static Lender[] generate(int lenders, String distribution) {
+		Random random = new Random(42);
+		Lender[] lenderPool = new Lender[lenders];
+		for(int i = 0; i < lenders; i++) {
+			lenderPool[i] = new Lender(i + 1, "Lender #" + (i + 1), rate(random, distribution), 1 + random.nextInt(2000));
+		}
+		return lenderPool;
+	}
+	
+	
+	//Lenders file as read by loadLendersStep, deleted on exit
+	static File write(int lenders, String distribution) throws IOException {
+		File file = File.createTempFile("lenders", ".csv");
+		file.deleteOnExit();
+		try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+			writer.write("Lender,Rate,Available\n");
+			for(Lender lender: generate(lenders, distribution)) {
+				writer.write(String.format("%s,%.4f,%.0f%n", lender.getName(), lender.getRate(), lender.getAvailable()));
+			}
+		}
+		return file;
+	}
+	
+	
+	private static double rate(Random random, String distribution) {
+		switch (distribution) {
+			case UNIFORM:
+				return 0.05 + random.nextInt(300) / 10000.0;
+			case CLUSTERED:
+				return random.nextInt(10) < 9 ? 0.06 + random.nextInt(10) / 1000.0 : 0.05 + random.nextInt(300) / 10000.0;
+			case SKEWED:
+				return 0.05 + (int) (300 * Math.sqrt(random.nextDouble())) / 10000.0;
+			default:
+				throw new IllegalArgumentException("Unknown rate distribution: " + distribution);
+		}
+	}
+
+}
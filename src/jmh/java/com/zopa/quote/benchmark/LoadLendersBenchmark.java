@@ -0,0 +1,112 @@
+package com.zopa.quote.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.file.ResourceAwareItemReaderItemStream;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+
+import com.zopa.quote.config.BatchConfig;
+import com.zopa.quote.domain.Lender;
+import com.zopa.quote.repository.LenderPoolRepository;
+
+/**
+ * Reader and writer of loadLendersStep: every operation reads the whole lenders file in chunks
+ * of 1000 rows, as the step does, and writes them to an empty repository.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class LoadLendersBenchmark {
+	
+	private static final int CHUNK_SIZE = 1000;
+	
+	@Param({ "1000", "100000", "1000000" })
+	private int lenders;
+	
+	@Param({ LenderPools.UNIFORM })
+	private String distribution;
+	
+	@Param({ "csvFileItemReader", "mappedCsvFileItemReader" })
+	private String reader;
+	
+	@Param({ "map", "array", "concurrent", "sharded" })
+	private String repository;
+	
+	//Shards of sharded repository, compare with -p repository=sharded -p shards=1,2,4,8
+	@Param({ "4" })
+	private int shards;
+	
+	private File file;
+	private AnnotationConfigApplicationContext context;
+	private LenderPoolRepository lenderPoolRepository;
+	private ResourceAwareItemReaderItemStream<Lender> itemReader;
+	private ItemWriter<Lender> itemWriter;
+	
+	
+	@Setup(Level.Trial)
+	@SuppressWarnings("unchecked")
+	public void setUp() throws Exception {
+		file = LenderPools.write(lenders, distribution);
+		
+		System.setProperty("lender.repository.type", repository);
+		System.setProperty("lender.repository.shards", String.valueOf(shards));
+		context = new AnnotationConfigApplicationContext(BatchConfig.class);
+		lenderPoolRepository = context.getBean(LenderPoolRepository.class);
+		itemReader = context.getBean(reader, ResourceAwareItemReaderItemStream.class);
+		itemReader.setResource(new FileSystemResource(file));
+		itemWriter = context.getBean("csvFileItemWriter", ItemWriter.class);
+	}
+	
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+		file.delete();
+	}
+	
+	
+	@Benchmark
+	public int loadLenders() throws Exception {
+		lenderPoolRepository.flush();
+		
+		itemReader.open(new ExecutionContext());
+		try {
+			List<Lender> chunk = new ArrayList<Lender>(CHUNK_SIZE);
+			Lender lender;
+			while((lender = itemReader.read()) != null) {
+				chunk.add(lender);
+				if(chunk.size() == CHUNK_SIZE) {
+					itemWriter.write(chunk);
+					chunk.clear();
+				}
+			}
+			itemWriter.write(chunk);
+		} finally {
+			itemReader.close();
+		}
+		return lenderPoolRepository.total();
+	}
+
+}
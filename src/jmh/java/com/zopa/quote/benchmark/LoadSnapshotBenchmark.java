@@ -0,0 +1,89 @@
+package com.zopa.quote.benchmark;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+
+import com.zopa.quote.config.BatchConfig;
+import com.zopa.quote.domain.Lender;
+import com.zopa.quote.reader.LenderSnapshotStore;
+import com.zopa.quote.repository.LenderPoolRepository;
+
+/**
+ * Loading the lender pool from its binary snapshot, compare with LoadLendersBenchmark for the same pool.
+ * Every operation checks snapshot is current (checksum included) and loads it into an empty repository.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class LoadSnapshotBenchmark {
+	
+	@Param({ "1000", "100000", "1000000" })
+	private int lenders;
+	
+	@Param({ LenderPools.UNIFORM })
+	private String distribution;
+	
+	@Param({ "map", "array", "concurrent" })
+	private String repository;
+	
+	private File file;
+	private AnnotationConfigApplicationContext context;
+	private LenderPoolRepository lenderPoolRepository;
+	private LenderSnapshotStore lenderSnapshotStore;
+	
+	
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		file = LenderPools.write(lenders, distribution);
+		
+		System.setProperty("lender.repository.type", repository);
+		context = new AnnotationConfigApplicationContext(BatchConfig.class);
+		lenderPoolRepository = context.getBean(LenderPoolRepository.class);
+		lenderSnapshotStore = context.getBean(LenderSnapshotStore.class);
+		lenderSnapshotStore.setResource(new FileSystemResource(file));
+		
+		for(Lender lender: LenderPools.generate(lenders, distribution)) {
+			lenderPoolRepository.save(lender);
+		}
+		lenderSnapshotStore.write();
+	}
+	
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		context.close();
+		lenderSnapshotStore.getSnapshotFile().delete();
+		file.delete();
+	}
+	
+	
+	@Benchmark
+	public int loadSnapshot() throws Exception {
+		lenderPoolRepository.flush();
+		if(!lenderSnapshotStore.isCurrent()) {
+			throw new IllegalStateException("Snapshot expected to be current");
+		}
+		lenderSnapshotStore.load();
+		return lenderPoolRepository.total();
+	}
+
+}
@@ -0,0 +1,136 @@
+package com.zopa.quote.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import com.zopa.quote.config.AppConfig;
+import com.zopa.quote.domain.Lender;
+import com.zopa.quote.domain.QuoteResult;
+import com.zopa.quote.repository.LenderPoolRepository;
+import com.zopa.quote.service.LenderPoolService;
+
+/**
+ * Quote hot paths against pools of different sizes, rate distributions and repositories. Throughput, average
+ * time and sampled time (p99 and other percentiles) are reported, allocation rate with -prof gc.
+ * Narrow parameters with -p, e.g. -Djmh.args="QuoteBenchmark -p lenders=1000 -p repository=map -prof gc".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class QuoteBenchmark {
+	
+	@Param({ "1000", "100000", "1000000", "10000000" })
+	private int lenders;
+	
+	@Param({ LenderPools.UNIFORM, LenderPools.CLUSTERED, LenderPools.SKEWED })
+	private String distribution;
+	
+	@Param({ "1000", "7500", "15000" })
+	private double amount;
+	
+	@Param({ "map", "array", "concurrent", "sharded" })
+	private String repository;
+	
+	//Shards of sharded repository, compare with -p repository=sharded -p shards=1,2,4,8
+	@Param({ "4" })
+	private int shards;
+	
+	@Param({ "true", "false" })
+	private String quoteTable;
+	
+	//Compare with -p quoteMetrics=true,false to see cost of quote metrics
+	@Param({ "true" })
+	private String quoteMetrics;
+	
+	private AnnotationConfigApplicationContext context;
+	private LenderPoolRepository lenderPoolRepository;
+	private LenderPoolService lenderPoolService;
+	
+	//Lender saved again before each getLowestRateLendersAfterSave call
+	private Lender changedLender;
+	private long changes;
+	
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		System.setProperty("lender.repository.type", repository);
+		System.setProperty("lender.repository.shards", String.valueOf(shards));
+		System.setProperty("quote.table.enabled", quoteTable);
+		System.setProperty("quote.metrics.enabled", quoteMetrics);
+		context = new AnnotationConfigApplicationContext(AppConfig.class);
+		lenderPoolRepository = context.getBean(LenderPoolRepository.class);
+		lenderPoolService = context.getBean(LenderPoolService.class);
+		
+		Lender[] lenderPool = LenderPools.generate(lenders, distribution);
+		for(Lender lender: lenderPool) {
+			lenderPoolRepository.save(lender);
+		}
+		changedLender = lenderPool[0];
+		lenderPoolService.precomputeQuotes();
+	}
+	
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+	}
+	
+	
+	@Benchmark
+	public String calculateQuote() {
+		return lenderPoolService.calculateQuote(amount);
+	}
+	
+	
+	@Benchmark
+	public QuoteResult quote() {
+		return lenderPoolService.quote(amount);
+	}
+	
+	
+	//Every configured term (loan.terms.allowed) in one pass, compare with quote and quoteTable=false
+	@Benchmark
+	public QuoteResult quoteTerms() {
+		return lenderPoolService.quoteTerms(amount);
+	}
+	
+	
+	@Benchmark
+	public List<Lender> getLowestRateLenders() {
+		return lenderPoolService.getLowestRateLenders(amount);
+	}
+	
+	
+	//Every call follows a change, so repositories rebuilding rate order lazily have no index up to date
+	@Benchmark
+	public List<Lender> getLowestRateLendersAfterSave() {
+		lenderPoolRepository.save(Lender.ofPence(changedLender.getId(), changedLender.getName(), 
+				changedLender.getRateUnits(), changedLender.getAvailablePence() + (++changes & 1)));
+		return lenderPoolService.getLowestRateLenders(amount);
+	}
+	
+	
+	@Benchmark
+	public List<Lender> findAllSorted() {
+		return lenderPoolRepository.findAllSorted();
+	}
+
+}
@@ -0,0 +1,111 @@
+package com.zopa.quote.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import com.zopa.quote.config.AppConfig;
+import com.zopa.quote.domain.Lender;
+import com.zopa.quote.domain.Money;
+import com.zopa.quote.domain.Repayment;
+import com.zopa.quote.repository.LenderPoolArrayRepositoryImpl;
+import com.zopa.quote.repository.RateOrderedLenders;
+import com.zopa.quote.service.QuoteEngine;
+
+/**
+ * Quote engine pricing a rate ordered lender list, with and without annuity factor cache, and pricing over rate
+ * levels of a repository view for a single term and five terms. Lenders lend under a pound each so quotes go
+ * deep in rate order, compare cache with -p factorCacheSize=0,4096.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class QuoteEngineBenchmark {
+	
+	private static final int[] TERMS = { 12, 24, 36, 48, 60 };
+	
+	@Param({ "100000", "1000000" })
+	private int lenders;
+	
+	//Distinct rates of the pool
+	@Param({ "300" })
+	private int rates;
+	
+	@Param({ "15000" })
+	private double amount;
+	
+	@Param({ "0", "4096" })
+	private int factorCacheSize;
+	
+	private AnnotationConfigApplicationContext context;
+	private QuoteEngine quoteEngine;
+	private List<Lender> lenderPool;
+	private RateOrderedLenders rateOrderedPool;
+	private int[] singleTerm;
+	
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		System.setProperty("quote.factor.cache.size", String.valueOf(factorCacheSize));
+		context = new AnnotationConfigApplicationContext(AppConfig.class);
+		quoteEngine = context.getBean(QuoteEngine.class);
+		singleTerm = new int[] { quoteEngine.getTerm() };
+		
+		Random random = new Random(42);
+		lenderPool = new ArrayList<Lender>(lenders);
+		for(int i = 1; i <= lenders; i++) {
+			lenderPool.add(new Lender(i, "Lender #" + i, 0.05 + random.nextInt(rates) / 10000.0, 0.01 + random.nextInt(100) / 100.0));
+		}
+		Collections.sort(lenderPool, Lender.getRateSorter());
+		
+		LenderPoolArrayRepositoryImpl lenderPoolRepository = new LenderPoolArrayRepositoryImpl();
+		lenderPoolRepository.saveAllSorted(lenderPool);
+		rateOrderedPool = lenderPoolRepository.findAllRateOrdered();
+	}
+	
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+	}
+	
+	
+	@Benchmark
+	public Repayment calculateList() {
+		return quoteEngine.calculate(lenderPool, amount);
+	}
+	
+	
+	@Benchmark
+	public Repayment[] calculateRateLevels() {
+		return quoteEngine.calculate(rateOrderedPool, Money.toPence(amount), singleTerm);
+	}
+	
+	
+	//Every term priced in the same pass over rate levels
+	@Benchmark
+	public Repayment[] calculateRateLevelsTerms() {
+		return quoteEngine.calculate(rateOrderedPool, Money.toPence(amount), TERMS);
+	}
+
+}
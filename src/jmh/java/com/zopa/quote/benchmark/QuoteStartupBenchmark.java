@@ -0,0 +1,76 @@
+package com.zopa.quote.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.zopa.quote.ZopaQuote;
+
+/**
+ * Time to quote of one shot mode and fast one shot mode, every operation starts a new JVM running ZopaQuote
+ * and waits for it to print the quote and exit. Lenders file is read from -p file, the
+ * sample data by default, with paths relative to the project directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 10)
+@Fork(1)
+public class QuoteStartupBenchmark {
+	
+	@Param({ "oneShot", "fast" })
+	private String mode;
+	
+	@Param({ "src/test/resources/sample-data.csv" })
+	private String file;
+	
+	@Param({ "1000" })
+	private String amount;
+	
+	private ProcessBuilder processBuilder;
+	
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		processBuilder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), ZopaQuote.class.getName());
+		if("fast".equals(mode)) {
+			processBuilder.command().add("--fast");
+		}
+		processBuilder.command().add(new File(file).getAbsolutePath());
+		processBuilder.command().add(amount);
+		processBuilder.redirectErrorStream(true);
+	}
+	
+	
+	@Benchmark
+	public String firstQuote() throws Exception {
+		Process process = processBuilder.start();
+		try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+			String firstLine = output.readLine();
+			if(firstLine == null || !firstLine.startsWith("Requested amount")) {
+				throw new IllegalStateException("Unexpected output: " + firstLine);
+			}
+			while(output.readLine() != null);
+			process.waitFor();
+			return firstLine;
+		}
+	}
+
+}
@@ -1,99 +1,374 @@
 package com.zopa.quote;
 
+import java.io.BufferedWriter;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 import org.springframework.batch.core.BatchStatus;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.JobExecution;
 import org.springframework.batch.core.JobExecutionListener;
 import org.springframework.batch.core.JobParameters;
 import org.springframework.batch.core.JobParametersBuilder;
-import org.springframework.batch.core.Step;
 import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.job.flow.Flow;
 import org.springframework.batch.core.launch.JobLauncher;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
-import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.ResourceAware;
+import org.springframework.batch.item.file.ResourceAwareItemReaderItemStream;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 import org.springframework.core.io.UrlResource;
 
 import com.zopa.quote.config.BatchConfig;
+import com.zopa.quote.config.FastStartConfig;
 import com.zopa.quote.domain.Lender;
+import com.zopa.quote.feed.LenderFeed;
+import com.zopa.quote.reader.LenderFileLoader;
+import com.zopa.quote.server.QuoteServer;
+import com.zopa.quote.service.BatchQuoteProcessor;
 import com.zopa.quote.service.LenderPoolService;
+import com.zopa.quote.service.QuoteMetrics;
 
 public class ZopaQuote {
 	
-	@SuppressWarnings({ "resource", "unchecked" })
+	private static final String SERVER_MODE = "--server";
+	private static final String BATCH_MODE = "--batch";
+	private static final String FAST_MODE = "--fast";
+	private static final String STANDARD_INPUT = "-";
+	
+	
 	public static void main(String[] args) {
 		try {
 			
 			if (args.length == 2) {
 				
-	        	UrlResource urlResource = new UrlResource("file", args[0]);
-	        	
-	        	if(urlResource.exists()) {
-	        		
-	        		ApplicationContext batchContext = new AnnotationConfigApplicationContext(BatchConfig.class);
-	        		LenderPoolService lenderPoolService = batchContext.getBean(LenderPoolService.class);
-		        	
-					FlatFileItemReader<Lender> flatFileItemReader = batchContext.getBean(FlatFileItemReader.class);        	
-					flatFileItemReader.setResource(urlResource);
-					
-					JobLauncher jobLauncher = batchContext.getBean(JobLauncher.class);
-					JobBuilder jobBuilder = batchContext.getBean(JobBuilder.class);
-					Step step = batchContext.getBean(Step.class);
+				quote(args[0], args[1]);
+			
+			} else if (args.length == 3 && FAST_MODE.equals(args[0])) {
+				
+				fastQuote(args[1], args[2]);
+			
+			} else if ((args.length == 3 || args.length == 4) && SERVER_MODE.equals(args[0])) {
+				
+				serve(args[1], args[2], args.length == 4 ? args[3] : null);
+			
+			} else if ((args.length == 3 || args.length == 4) && BATCH_MODE.equals(args[0])) {
+				
+				batch(args[1], args[2], args.length == 4 ? args[3] : null);
+			
+			} else {
+				
+				System.out.println("Incorrect number of params, please try again!");
+			
+			}
+		
+		} catch (Exception e) {
+			
+			System.out.println("Exception thrown: " + e.getMessage());
+		
+		}
+	
+	}
+	
+	
+	/**
+	 * One shot mode, loads lenders file and prints a single quote.
+	 *
+	 * @param  file full path file to load lenders
+	 * @param  amount amount to borrow
+	 */
+	@SuppressWarnings("resource")
+	private static void quote(String file, String amount) throws Exception {
+		
+		UrlResource urlResource = new UrlResource("file", file);
+		
+		if(urlResource.exists()) {
+			
+			ApplicationContext batchContext = new AnnotationConfigApplicationContext(BatchConfig.class);
+			LenderPoolService lenderPoolService = batchContext.getBean(LenderPoolService.class);
+			
+			loadLenders(batchContext, urlResource, new JobExecutionListener() {
+				
+				@Override
+				public void beforeJob(JobExecution arg0) {}
+				
+				@Override
+				public void afterJob(JobExecution jobExecution) {
 					
-					jobBuilder.incrementer(new RunIdIncrementer());
-					Job loadLendersJob = jobBuilder.start(step).listener(new JobExecutionListener() {
-						
-						@Override
-						public void beforeJob(JobExecution arg0) {}
+					if( jobExecution.getStatus() == BatchStatus.COMPLETED ){
 						
-						@Override
-						public void afterJob(JobExecution jobExecution) {
+						try {
 							
-							if( jobExecution.getStatus() == BatchStatus.COMPLETED ){
-								
-								try {
-									
-									double amountToBorrow = Double.parseDouble(args[1]);
-									System.out.println(lenderPoolService.calculateQuote(amountToBorrow));
-									
-								} catch (Exception e) {
-									
-									System.out.println("Exception thrown: " + e.getMessage());
-									
-								}
-								
-						    } else if(jobExecution.getStatus() == BatchStatus.FAILED){
-						    	
-						    	System.out.println(String.format("Error during file loading process for (%s), please check file consistency and try again!", args[0]));
-						    	
-						    }
+							double amountToBorrow = Double.parseDouble(amount);
+							System.out.println(lenderPoolService.calculateQuote(amountToBorrow));
+						
+						} catch (Exception e) {
 							
-						}
+							System.out.println("Exception thrown: " + e.getMessage());
 						
-					}).build();
-					
-					JobParameters jobParameters = new JobParametersBuilder().addLong("time", System.currentTimeMillis()).toJobParameters();
-					jobLauncher.run(loadLendersJob, jobParameters);
+						}
+				
+				    } else if(jobExecution.getStatus() == BatchStatus.FAILED){
+				
+				    	printLoadingError(file);
+				
+				    }
+				
+				}
+			
+			});
+		
+		} else {
+			
+			System.out.println("File not found, absolute path have to be provided!");
+		
+		}
+	
+	}
+	
+	
+	/**
+	 * Fast one shot mode, same as one shot mode but starting a lean context: lenders file is loaded straight
+	 * into the repository, without Spring Batch job, job repository or component scan.
+	 *
+	 * @param  file full path file to load lenders
+	 * @param  amount amount to borrow
+	 */
+	private static void fastQuote(String file, String amount) throws Exception {
+		
+		UrlResource urlResource = new UrlResource("file", file);
+		
+		if(urlResource.exists()) {
+			
+			try (AnnotationConfigApplicationContext fastContext = new AnnotationConfigApplicationContext(FastStartConfig.class)) {
+				
+				try {
+					fastContext.getBean(LenderFileLoader.class).load(urlResource);
+				} catch (Exception e) {
+					printLoadingError(file);
+					return;
+				}
+				
+				double amountToBorrow = Double.parseDouble(amount);
+				System.out.println(fastContext.getBean(LenderPoolService.class).calculateQuote(amountToBorrow));
+			
+			}
+		
+		} else {
+			
+			System.out.println("File not found, absolute path have to be provided!");
+		
+		}
+	
+	}
+	
+	
+	/**
+	 * Server mode, loads lenders file once and keeps answering quotes over local HTTP port until JVM stops.
+	 * Lender changes can be fed from a delta file, applied before serving, or from a directory watched while serving.
+	 *
+	 * @param  file full path file to load lenders
+	 * @param  port local port to listen on
+	 * @param  deltas full path delta file or directory of delta files, optional
+	 */
+	private static void serve(String file, String port, String deltas) throws Exception {
+		
+		UrlResource urlResource = new UrlResource("file", file);
+		
+		if(urlResource.exists()) {
+			
+			AnnotationConfigApplicationContext batchContext = startServer(urlResource, Integer.parseInt(port), deltas);
+			
+			if( batchContext != null ){
+				
+				QuoteServer quoteServer = batchContext.getBean(QuoteServer.class);
+				System.out.println(String.format("Quote server ready, request quotes on http://localhost:%d/quote?amount=[amount]", quoteServer.getPort()));
+				
+				//Server threads keep JVM alive, stats printed when stopped
+				Runtime.getRuntime().addShutdownHook(new Thread() {
 					
-	        	} else {
-	        		
-	        		System.out.println("File not found, absolute path have to be provided!");
-	        		
-	        	}
-	        	
-	        } else {
-	        	
-	        	System.out.println("Incorrect number of params, please try again!");
-	        	
-	        }
+					@Override
+					public void run() {
+						System.out.println(quoteServer.getStats());
+						System.out.println(batchContext.getBean(QuoteMetrics.class).dump());
+						stopServer(batchContext);
+					}
+				
+				});
+			
+			} else {
+				
+				printLoadingError(file);
 			
+			}
+		
+		} else {
+			
+			System.out.println("File not found, absolute path have to be provided!");
+		
+		}
+	
+	}
+	
+	
+	/**
+	 * Loads lenders, applies delta file or starts watching delta directory, and starts quote server.
+	 *
+	 * @param  urlResource lenders file
+	 * @param  port local port to listen on, 0 for any free port
+	 * @param  deltas full path delta file or directory of delta files, optional
+	 * @return      context of running server, null if lenders could not be loaded.
+	 */
+	static AnnotationConfigApplicationContext startServer(UrlResource urlResource, int port, String deltas) throws Exception {
+		
+		AnnotationConfigApplicationContext batchContext = new AnnotationConfigApplicationContext(BatchConfig.class);
+		try {
+			
+			JobExecution jobExecution = loadLenders(batchContext, urlResource, null);
+			if( jobExecution.getStatus() != BatchStatus.COMPLETED ){
+				batchContext.close();
+				return null;
+			}
+			
+			//Delta file applied before serving, directory tailed while serving
+			if(deltas != null) {
+				Path deltasPath = Paths.get(deltas);
+				LenderFeed lenderFeed = batchContext.getBean(LenderFeed.class);
+				if(Files.isDirectory(deltasPath)) {
+					lenderFeed.watch(deltasPath);
+				} else {
+					try (Reader deltasReader = Files.newBufferedReader(deltasPath, StandardCharsets.UTF_8)) {
+						System.out.println(String.format("Lender events applied: %d", lenderFeed.apply(deltasReader)));
+					}
+				}
+			}
+			
+			batchContext.getBean(LenderPoolService.class).precomputeQuotes();
+			batchContext.getBean(QuoteServer.class).start(port);
+			return batchContext;
+		
 		} catch (Exception e) {
 			
-			System.out.println("Exception thrown: " + e.getMessage());
+			stopServer(batchContext);
+			throw e;
+		
+		}
+	
+	}
+	
+	
+	/**
+	 * Stops delta directory watcher and quote server, then closes their context.
+	 *
+	 * @param  batchContext context returned by startServer
+	 */
+	static void stopServer(AnnotationConfigApplicationContext batchContext) {
+		try {
+			batchContext.getBean(LenderFeed.class).stop();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		batchContext.getBean(QuoteServer.class).stop();
+		batchContext.close();
+	}
+	
+	
+	/**
+	 * Batch mode, loads lenders file once and prices every amount from input, one amount per line.
+	 *
+	 * @param  file full path file to load lenders
+	 * @param  amounts full path file of amounts to borrow, - to read from standard input
+	 * @param  output full path file to write quotes, standard output when not provided
+	 */
+	private static void batch(String file, String amounts, String output) throws Exception {
+		
+		UrlResource urlResource = new UrlResource("file", file);
+		
+		if(urlResource.exists()) {
+			
+			try (AnnotationConfigApplicationContext batchContext = new AnnotationConfigApplicationContext(BatchConfig.class)) {
+				
+				BatchQuoteProcessor batchQuoteProcessor = batchContext.getBean(BatchQuoteProcessor.class);
+				JobExecution jobExecution = loadLenders(batchContext, urlResource, null);
+				
+				if( jobExecution.getStatus() == BatchStatus.COMPLETED ){
+					
+					batchContext.getBean(LenderPoolService.class).precomputeQuotes();
+					Reader amountsReader = STANDARD_INPUT.equals(amounts) 
+							? new InputStreamReader(System.in, StandardCharsets.UTF_8) 
+							: Files.newBufferedReader(Paths.get(amounts), StandardCharsets.UTF_8);
+					Writer quotesWriter = output == null 
+							? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)) 
+							: Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8);
+					
+					try {
+						batchQuoteProcessor.process(amountsReader, quotesWriter);
+					} finally {
+						amountsReader.close();
+						if(output != null) quotesWriter.close();
+					}
+				
+				} else {
+					
+					printLoadingError(file);
+				
+				}
+			
+			}
+		
+		} else {
 			
+			System.out.println("File not found, absolute path have to be provided!");
+		
+		}
+	
+	}
+	
+	
+	/**
+	 * Runs load lenders job over the resource provided, job runs synchronously.
+	 *
+	 * @param  batchContext context built from BatchConfig
+	 * @param  urlResource lenders file
+	 * @param  listener job listener, optional
+	 * @return      finished job execution.
+	 */
+	@SuppressWarnings("unchecked")
+	private static JobExecution loadLenders(ApplicationContext batchContext, UrlResource urlResource, JobExecutionListener listener) throws Exception {
+		
+		//Resource set on every lender reader, partitioner and snapshot store, steps use the ones configured
+		for(ResourceAwareItemReaderItemStream<Lender> lenderItemReader: batchContext.getBeansOfType(ResourceAwareItemReaderItemStream.class).values()) {
+			lenderItemReader.setResource(urlResource);
+		}
+		for(ResourceAware lenderResourceAware: batchContext.getBeansOfType(ResourceAware.class).values()) {
+			lenderResourceAware.setResource(urlResource);
 		}
 		
+		JobLauncher jobLauncher = batchContext.getBean(JobLauncher.class);
+		JobBuilder jobBuilder = batchContext.getBean(JobBuilder.class);
+		Flow loadLendersFlow = batchContext.getBean(Flow.class);
+		
+		jobBuilder.incrementer(new RunIdIncrementer());
+		if(listener != null) {
+			jobBuilder.listener(listener);
+		}
+		Job loadLendersJob = jobBuilder.start(loadLendersFlow).end().build();
+		
+		JobParameters jobParameters = new JobParametersBuilder().addLong("time", System.currentTimeMillis()).toJobParameters();
+		return jobLauncher.run(loadLendersJob, jobParameters);
+	
 	}
 	
+	
+	private static void printLoadingError(String file) {
+		System.out.println(String.format("Error during file loading process for (%s), please check file consistency and try again!", file));
+	}
+
 }
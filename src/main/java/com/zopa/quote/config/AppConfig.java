@@ -2,11 +2,14 @@ package com.zopa.quote.config;
 
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableMBeanExport;
 import org.springframework.context.annotation.PropertySource;
+import org.springframework.jmx.support.RegistrationPolicy;
 
 @Configuration
 @ComponentScan({ "com.zopa.quote.*"})
 @PropertySource({"classpath:application.properties"})
+@EnableMBeanExport(registration = RegistrationPolicy.REPLACE_EXISTING)
 public class AppConfig {
 
 }
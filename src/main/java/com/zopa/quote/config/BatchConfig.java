@@ -1,31 +1,52 @@
 package com.zopa.quote.config;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.JobExecution;
 import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
 import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.job.builder.FlowBuilder;
 import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.job.flow.Flow;
+import org.springframework.batch.core.job.flow.FlowExecutionStatus;
+import org.springframework.batch.core.job.flow.JobExecutionDecider;
 import org.springframework.batch.core.launch.support.SimpleJobLauncher;
+import org.springframework.batch.core.partition.support.TaskExecutorPartitionHandler;
 import org.springframework.batch.core.repository.JobRepository;
 import org.springframework.batch.core.repository.support.MapJobRepositoryFactoryBean;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ItemReader;
+import org.springframework.batch.item.ItemStreamReader;
 import org.springframework.batch.item.ItemWriter;
 import org.springframework.batch.item.file.FlatFileItemReader;
 import org.springframework.batch.item.file.mapping.DefaultLineMapper;
 import org.springframework.batch.item.file.mapping.FieldSetMapper;
 import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
 import org.springframework.batch.item.file.transform.FieldSet;
+import org.springframework.batch.repeat.RepeatStatus;
 import org.springframework.batch.support.transaction.ResourcelessTransactionManager;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
+import org.springframework.core.io.Resource;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.validation.BindException;
 
 import com.zopa.quote.domain.Lender;
+import com.zopa.quote.reader.LenderFilePartitioner;
+import com.zopa.quote.reader.LenderSnapshotStore;
+import com.zopa.quote.reader.MappedLenderItemReader;
 import com.zopa.quote.repository.LenderPoolRepository;
 
 @Configuration
@@ -35,10 +56,22 @@ public class BatchConfig {
 	
 	private static final Logger log = LoggerFactory.getLogger(BatchConfig.class);
 	
+	private static final FlowExecutionStatus SNAPSHOT_CURRENT = new FlowExecutionStatus("SNAPSHOT_CURRENT");
+	private static final FlowExecutionStatus SNAPSHOT_STALE = new FlowExecutionStatus("SNAPSHOT_STALE");
+	
 	@Autowired private LenderPoolRepository poolLenderRepository;
 	@Autowired private JobBuilderFactory jobBuilderFactory;
     @Autowired private StepBuilderFactory stepBuilderFactory;
     
+    @Value( "${lender.reader.type}" )
+    private String readerType;
+    
+    @Value( "${lender.load.partitions}" )
+    private int loadPartitions;
+    
+    @Value( "${lender.snapshot.enabled}" )
+    private boolean snapshotEnabled;
+
     private int rowSequence = 0;
    
 
@@ -61,15 +94,127 @@ public class BatchConfig {
     	return jobBuilderFactory.get("loadLendersJob");
     }
     
+    //Lenders file step, preceded by snapshot check and followed by snapshot write when lender.snapshot.enabled=true
+    @Bean
+    public Flow loadLendersFlow() {
+    	if(!snapshotEnabled) {
+    		return new FlowBuilder<Flow>("loadLendersFlow").start(loadLendersStep()).build();
+    	}
+
+    	JobExecutionDecider snapshotDecider = new JobExecutionDecider() {
+
+    		@Override
+    		public FlowExecutionStatus decide(JobExecution jobExecution, StepExecution stepExecution) {
+    			return lenderSnapshotStore().isCurrent() ? SNAPSHOT_CURRENT : SNAPSHOT_STALE;
+    		}
+
+    	};
+
+    	return new FlowBuilder<Flow>("loadLendersFlow")
+    		.start(snapshotDecider).on(SNAPSHOT_CURRENT.getName()).to(loadSnapshotStep())
+    		.from(snapshotDecider).on("*").to(loadLendersStep()).next(writeSnapshotStep())
+    		.end();
+    }
+
+    private Step loadSnapshotStep() {
+    	return stepBuilderFactory.get("loadSnapshotStep").tasklet(new Tasklet() {
+
+    		@Override
+    		public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+    			contribution.incrementReadCount();
+    			contribution.incrementWriteCount(lenderSnapshotStore().load());
+    			return RepeatStatus.FINISHED;
+    		}
+
+    	}).build();
+    }
+
+    private Step writeSnapshotStep() {
+    	return stepBuilderFactory.get("writeSnapshotStep").tasklet(new Tasklet() {
+
+    		@Override
+    		public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+    			contribution.incrementWriteCount(lenderSnapshotStore().write());
+    			return RepeatStatus.FINISHED;
+    		}
+
+    	}).build();
+    }
+
+    @Bean
+    public LenderSnapshotStore lenderSnapshotStore() {
+    	return new LenderSnapshotStore();
+    }
+
     @Bean
     protected Step loadLendersStep() {
+    	if(loadPartitions != 1) {
+    		return partitionedLoadLendersStep();
+    	}
+    	
         return stepBuilderFactory.get("loadLendersStep")
             .<Lender, Lender> chunk(1000)
-            .reader(csvFileItemReader())
+            .reader(lenderItemReader())
             .writer(csvFileItemWriter())
             .build();
     }
     
+    //File split in byte ranges loaded in parallel, 0 partitions means one per core
+    private Step partitionedLoadLendersStep() {
+    	int partitions = loadPartitions > 0 ? loadPartitions : Runtime.getRuntime().availableProcessors();
+    	
+    	SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor("lender-loader-");
+    	taskExecutor.setConcurrencyLimit(partitions);
+    	
+    	TaskExecutorPartitionHandler partitionHandler = new TaskExecutorPartitionHandler();
+    	partitionHandler.setStep(loadLendersPartitionStep());
+    	partitionHandler.setTaskExecutor(taskExecutor);
+    	partitionHandler.setGridSize(partitions);
+    	
+    	return stepBuilderFactory.get("loadLendersStep")
+    		.partitioner("loadLendersPartitionStep", lenderFilePartitioner())
+    		.partitionHandler(partitionHandler)
+    		.build();
+    }
+    
+    private Step loadLendersPartitionStep() {
+    	return stepBuilderFactory.get("loadLendersPartitionStep")
+    		.<Lender, Lender> chunk(1000)
+    		.reader(partitionItemReader(null, null, null, null))
+    		.writer(csvFileItemWriter())
+    		.build();
+    }
+    
+    //Readers keep their position, one is built per partition step execution with the range found by partitioner.
+    //Exposed as a plain stream reader, so the resource set on lender readers before a job never reaches its proxy
+    @Bean
+    @StepScope
+    public ItemStreamReader<Lender> partitionItemReader(
+    		@Value( "#{@lenderFilePartitioner.resource}" ) Resource resource,
+    		@Value( "#{stepExecutionContext['" + MappedLenderItemReader.START_POSITION_KEY + "']}" ) Long startPosition,
+    		@Value( "#{stepExecutionContext['" + MappedLenderItemReader.END_POSITION_KEY + "']}" ) Long endPosition,
+    		@Value( "#{stepExecutionContext['" + MappedLenderItemReader.FIRST_ROW_KEY + "']}" ) Long firstRow) {
+    	MappedLenderItemReader partitionReader = new MappedLenderItemReader();
+    	partitionReader.setResource(resource);
+    	partitionReader.setPartition(startPosition, endPosition, firstRow);
+    	return partitionReader;
+    }
+
+    @Bean
+    public LenderFilePartitioner lenderFilePartitioner() {
+    	return new LenderFilePartitioner();
+    }
+    
+    //Memory mapped reader when lender.reader.type=mapped, FlatFileItemReader otherwise
+    private ItemReader<Lender> lenderItemReader() {
+    	return "mapped".equals(readerType) ? mappedCsvFileItemReader() : csvFileItemReader();
+    }
+    
+    @Bean
+    public MappedLenderItemReader mappedCsvFileItemReader() {
+    	return new MappedLenderItemReader();
+    }
+    
     @Bean
     public FlatFileItemReader<Lender> csvFileItemReader() {
     	
@@ -125,15 +270,17 @@ public class BatchConfig {
 			@Override
 			public void write(List<? extends Lender> lenderList) throws Exception {
 				
-				//All parsed records to repository
+				//All parsed records to repository, a sharded repository writes each shard on its own thread
+				List<Lender> lenders = new ArrayList<Lender>(lenderList.size());
 				for(Lender lender: lenderList) {
 					
 					//Ignoring parsed records with default values
-					if(lender.getName() != null && lender.getAvailable() > 0) {
-						poolLenderRepository.save(lender);
+					if(lender.getName() != null && lender.getAvailablePence() > 0) {
+						lenders.add(lender);
 					}
 					
 				}
+				poolLenderRepository.saveAll(lenders);
 				
 			}
     		
@@ -0,0 +1,84 @@
+package com.zopa.quote.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.PropertySource;
+
+import com.zopa.quote.format.MessageQuoteFormat;
+import com.zopa.quote.format.QuoteRenderer;
+import com.zopa.quote.reader.LenderFileLoader;
+import com.zopa.quote.repository.LenderPoolArrayRepositoryImpl;
+import com.zopa.quote.repository.LenderPoolConcurrentRepositoryImpl;
+import com.zopa.quote.repository.LenderPoolRepository;
+import com.zopa.quote.repository.LenderPoolRepositoryImpl;
+import com.zopa.quote.repository.LenderPoolShardedRepositoryImpl;
+import com.zopa.quote.service.LenderPoolService;
+import com.zopa.quote.service.LenderPoolServiceImpl;
+import com.zopa.quote.service.QuoteCache;
+import com.zopa.quote.service.QuoteEngine;
+import com.zopa.quote.service.QuoteMetrics;
+
+/**
+ * Lean configuration for one shot quotes, only beans needed to load lenders and price a quote are declared.
+ * No component scan and no batch infrastructure (job repository, launcher, step scoped proxies), lenders
+ * file is loaded straight into the repository by LenderFileLoader. Not annotated with @Configuration on
+ * purpose: beans do not call each other, so no CGLIB subclass is generated at startup, and component
+ * scan of AppConfig does not pick it up.
+ */
+@PropertySource({"classpath:application.properties"})
+public class FastStartConfig {
+	
+	@Value( "${lender.repository.type}" )
+	private String repositoryType;
+	
+	
+	@Bean
+	public LenderPoolRepository lenderPoolRepository() {
+		switch (repositoryType) {
+			case "array":
+				return new LenderPoolArrayRepositoryImpl();
+			case "concurrent":
+				return new LenderPoolConcurrentRepositoryImpl();
+			case "sharded":
+				return new LenderPoolShardedRepositoryImpl();
+			default:
+				return new LenderPoolRepositoryImpl();
+		}
+	}
+	
+	@Bean
+	public QuoteEngine quoteEngine() {
+		return new QuoteEngine();
+	}
+	
+	@Bean
+	public QuoteMetrics quoteMetrics() {
+		return new QuoteMetrics();
+	}
+	
+	@Bean
+	public QuoteCache quoteCache() {
+		return new QuoteCache();
+	}
+	
+	@Bean
+	public MessageQuoteFormat messageQuoteFormat() {
+		return new MessageQuoteFormat();
+	}
+	
+	@Bean
+	public QuoteRenderer quoteRenderer() {
+		return new QuoteRenderer();
+	}
+	
+	@Bean
+	public LenderPoolService lenderPoolService() {
+		return new LenderPoolServiceImpl();
+	}
+	
+	@Bean
+	public LenderFileLoader lenderFileLoader() {
+		return new LenderFileLoader();
+	}
+
+}
@@ -1,22 +1,43 @@
 package com.zopa.quote.domain;
 
+import java.util.Comparator;
+
 public class Lender implements Comparable<Lender>{
 	
 	private int id;
 	private String name;
-	private double rate;
-	private double available;
+	
+	//Fixed point, rate in millionths and available in pence
+	private long rate;
+	private long available;
 	
 	
 	public Lender() {}
 	public Lender(int id, String name, double rate, double available) {
+		this(id, name, Money.toRateUnits(rate), Money.toPence(available));
+	}
+	private Lender(int id, String name, long rateUnits, long availablePence) {
 		super();
 		this.id = id;
 		this.name = name;
-		this.rate = rate;
-		this.available = available;
+		this.rate = rateUnits;
+		this.available = availablePence;
 	}
-
+	
+	
+	/**
+	 * Returns lender with rate and available already in fixed point, no rounding is done.
+	 *
+	 * @param  id lender ID
+	 * @param  name lender name
+	 * @param  rateUnits annual rate in millionths
+	 * @param  availablePence amount available in pence
+	 * @return      new lender.
+	 */
+	public static Lender ofPence(int id, String name, long rateUnits, long availablePence) {
+		return new Lender(id, name, rateUnits, availablePence);
+	}
+	
 	
 	public int getId() {
 		return id;
@@ -31,30 +52,40 @@ public class Lender implements Comparable<Lender>{
 	public String getName() {
 		return name;
 	}
-
-
+	
+	
 	public void setName(String name) {
 		this.name = name;
 	}
-
-
+	
+	
 	public double getRate() {
-		return rate;
+		return Money.toRate(rate);
 	}
-
-
+	
+	
 	public void setRate(double rate) {
-		this.rate = rate;
+		this.rate = Money.toRateUnits(rate);
 	}
-
-
+	
+	
+	public long getRateUnits() {
+		return rate;
+	}
+	
+	
 	public double getAvailable() {
-		return available;
+		return Money.toPounds(available);
 	}
-
-
+	
+	
 	public void setAvailable(double available) {
-		this.available = available;
+		this.available = Money.toPence(available);
+	}
+	
+	
+	public long getAvailablePence() {
+		return available;
 	}
 	
 	
@@ -66,14 +97,14 @@ public class Lender implements Comparable<Lender>{
 		Lender o = (Lender) obj;
 		return (id == o.getId()
 				&& name.equals(o.getName())
-				&& rate == o.getRate()
-				&& available == o.getAvailable());
+				&& rate == o.getRateUnits()
+				&& available == o.getAvailablePence());
 	}
 	
 	
 	@Override
 	public String toString() {
-		return "[ ID: " + id + ", NAME: " + name + ", RATE: " + rate + ", AVAILABLE: " + available + " ]";
+		return "[ ID: " + id + ", NAME: " + name + ", RATE: " + getRate() + ", AVAILABLE: " + getAvailable() + " ]";
 	}
 	
 	
@@ -82,8 +113,28 @@ public class Lender implements Comparable<Lender>{
 		if(other == null)
 			return 1;
 		
-		return this.rate > other.rate ? 1 : this.rate < other.rate ? -1 : 0;
+		return Long.compare(this.rate, other.rate);
 	}
 	
+	
+	private static final Comparator<Lender> RATE_SORTER = new Comparator<Lender>() {
+		
+		@Override
+		public int compare(Lender lender1, Lender lender2) {
+			int result = lender1.compareTo(lender2);
+			return result != 0 ? result : Integer.compare(lender1.getId(), lender2.getId());
+		}
+	
+	};
+	
+	/**
+	 * Returns comparator ordering lenders by rate ascending, ties resolved by ID ascending.  
+	 *
+	 * @return      total ordering comparator suitable for sorted collections.
+	 */
+	public static Comparator<Lender> getRateSorter() {
+		return RATE_SORTER;
+	}
+
 }
 
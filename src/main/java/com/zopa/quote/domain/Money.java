@@ -0,0 +1,86 @@
+package com.zopa.quote.domain;
+
+/**
+ * Fixed-point representation of amounts and rates. Amounts are held as a whole number of pence and rates
+ * as millionths (hundredths of a basis point), so totals, comparisons and increments are exact long arithmetic.
+ * Conversions from double round half up to the nearest unit, conversions back to double are exact for
+ * any amount below 2^53 pence.
+ */
+public final class Money {
+	
+	public static final long PENCE_PER_POUND = 100;
+	
+	//Rate units in a rate of 1 (100%), one unit is a hundredth of a basis point
+	public static final long RATE_UNITS = 1000000;
+	
+	
+	private Money() {}
+	
+	
+	/**
+	 * Returns amount provided as a whole number of pence, rounded half up.
+	 *
+	 * @param  pounds amount in pounds
+	 * @return      amount in pence.
+	 */
+	public static long toPence(double pounds) {
+		return Math.round(pounds * PENCE_PER_POUND);
+	}
+	
+	
+	/**
+	 * Returns amount in pence provided as pounds.
+	 *
+	 * @param  pence amount in pence
+	 * @return      amount in pounds.
+	 */
+	public static double toPounds(long pence) {
+		return (double) pence / PENCE_PER_POUND;
+	}
+	
+	
+	/**
+	 * Returns true if amount provided is a whole number of pence, so it converts to pence with no rounding.
+	 *
+	 * @param  pounds amount in pounds
+	 * @return      TRUE if amount has no fraction of a penny.
+	 */
+	public static boolean isWholePence(double pounds) {
+		return toPounds(toPence(pounds)) == pounds;
+	}
+	
+	
+	/**
+	 * Returns rate provided in rate units, rounded half up.
+	 *
+	 * @param  rate annual rate, 0.07 being 7%
+	 * @return      rate in millionths.
+	 */
+	public static long toRateUnits(double rate) {
+		return Math.round(rate * RATE_UNITS);
+	}
+	
+	
+	/**
+	 * Returns rate units provided as a rate.
+	 *
+	 * @param  rateUnits rate in millionths
+	 * @return      annual rate, 0.07 being 7%.
+	 */
+	public static double toRate(long rateUnits) {
+		return (double) rateUnits / RATE_UNITS;
+	}
+	
+	
+	/**
+	 * Returns amount in fractional pence provided rounded half up to a whole number of pence.
+	 * Repayments are summed per lender in fractional pence and rounded once with this method.
+	 *
+	 * @param  pence amount in fractional pence, not negative
+	 * @return      amount in whole pence.
+	 */
+	public static long roundPence(double pence) {
+		return (long) Math.floor(pence + 0.5);
+	}
+
+}
@@ -0,0 +1,158 @@
+package com.zopa.quote.domain;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Quotes of one amount for several loan terms. Lenders, and so rate and lenders used, are the same for every term,
+ * only monthly and total repayments change with the term. Terms are kept in the order they were requested.
+ */
+public final class MultiTermQuote implements QuoteResult {
+	
+	//Fixed point, amounts in pence, repayments by position of term
+	private final long amount;
+	private final int[] terms;
+	private final long[] monthlyRepayments;
+	private final long[] totalRepayments;
+	private final double rate;
+	private final int lendersUsed;
+	
+	
+	/**
+	 * Quotes of an amount fully covered by lenders, arrays are copied.
+	 *
+	 * @param  amountPence amount requested in pence
+	 * @param  terms loan terms in months
+	 * @param  monthlyRepaymentsPence monthly repayment in pence of each term
+	 * @param  totalRepaymentsPence total repayment in pence of each term
+	 * @param  rate average annual rate of lenders used
+	 * @param  lendersUsed number of lenders used
+	 */
+	public MultiTermQuote(long amountPence, int[] terms, long[] monthlyRepaymentsPence, long[] totalRepaymentsPence, double rate, int lendersUsed) {
+		super();
+		if(monthlyRepaymentsPence.length != terms.length || totalRepaymentsPence.length != terms.length) {
+			throw new IllegalArgumentException("One monthly and total repayment expected per term");
+		}
+		this.amount = amountPence;
+		this.terms = terms.clone();
+		this.monthlyRepayments = monthlyRepaymentsPence.clone();
+		this.totalRepayments = totalRepaymentsPence.clone();
+		this.rate = rate;
+		this.lendersUsed = lendersUsed;
+	}
+	
+	
+	@Override
+	public QuoteOutcome getOutcome() {
+		return QuoteOutcome.SUCCESS;
+	}
+	
+	
+	@Override
+	public long getAmountPence() {
+		return amount;
+	}
+	
+	
+	@Override
+	public double getAmount() {
+		return Money.toPounds(amount);
+	}
+	
+	
+	public int getTermCount() {
+		return terms.length;
+	}
+	
+	
+	public int getTerm(int index) {
+		return terms[index];
+	}
+	
+	
+	public long getMonthlyRepaymentPence(int index) {
+		return monthlyRepayments[index];
+	}
+	
+	
+	public long getTotalRepaymentPence(int index) {
+		return totalRepayments[index];
+	}
+	
+	
+	public double getRate() {
+		return rate;
+	}
+	
+	
+	public int getLendersUsed() {
+		return lendersUsed;
+	}
+	
+	
+	/**
+	 * Returns quote of term at position provided.
+	 *
+	 * @param  index position of term
+	 * @return      quote of the amount for that term.
+	 */
+	public Quote getQuote(int index) {
+		return new Quote(amount, monthlyRepayments[index], totalRepayments[index], rate, lendersUsed, terms[index]);
+	}
+	
+	
+	/**
+	 * Returns quote of every term, in the order terms were requested.
+	 *
+	 * @return      read only list of quotes.
+	 */
+	public List<Quote> getQuotes() {
+		return new AbstractList<Quote>() {
+			
+			@Override
+			public Quote get(int index) {
+				return getQuote(index);
+			}
+			
+			@Override
+			public int size() {
+				return terms.length;
+			}
+		
+		};
+	}
+	
+	
+	@Override
+	public boolean equals(Object obj) {
+		if ( this == obj ) return true;
+		if ( !(obj instanceof MultiTermQuote) ) return false;
+		
+		MultiTermQuote o = (MultiTermQuote) obj;
+		return (amount == o.amount
+				&& Arrays.equals(terms, o.terms)
+				&& Arrays.equals(monthlyRepayments, o.monthlyRepayments)
+				&& Arrays.equals(totalRepayments, o.totalRepayments)
+				&& Double.compare(rate, o.rate) == 0
+				&& lendersUsed == o.lendersUsed);
+	}
+	
+	
+	@Override
+	public int hashCode() {
+		int result = Long.hashCode(amount);
+		result = 31 * result + Arrays.hashCode(terms);
+		result = 31 * result + Arrays.hashCode(monthlyRepayments);
+		result = 31 * result + Arrays.hashCode(totalRepayments);
+		result = 31 * result + Double.hashCode(rate);
+		return 31 * result + lendersUsed;
+	}
+	
+	
+	@Override
+	public String toString() {
+		return "[ AMOUNT: " + getAmount() + ", TERMS: " + Arrays.toString(terms) + ", RATE: " + rate + ", LENDERS USED: " + lendersUsed + " ]";
+	}
+
+}
@@ -0,0 +1,120 @@
+package com.zopa.quote.domain;
+
+public final class Quote implements QuoteResult {
+	
+	//Fixed point, amounts in pence
+	private final long amount;
+	private final long monthlyRepayment;
+	private final long totalRepayment;
+	private final double rate;
+	private final int lendersUsed;
+	private final int term;
+	
+	
+	/**
+	 * Quote of an amount fully covered by lenders.
+	 *
+	 * @param  amountPence amount requested in pence
+	 * @param  monthlyRepaymentPence monthly repayment in pence
+	 * @param  totalRepaymentPence total repayment in pence
+	 * @param  rate average annual rate of lenders used
+	 * @param  lendersUsed number of lenders used
+	 * @param  term loan term in months
+	 */
+	public Quote(long amountPence, long monthlyRepaymentPence, long totalRepaymentPence, double rate, int lendersUsed, int term) {
+		super();
+		this.amount = amountPence;
+		this.monthlyRepayment = monthlyRepaymentPence;
+		this.totalRepayment = totalRepaymentPence;
+		this.rate = rate;
+		this.lendersUsed = lendersUsed;
+		this.term = term;
+	}
+	
+	
+	@Override
+	public QuoteOutcome getOutcome() {
+		return QuoteOutcome.SUCCESS;
+	}
+	
+	
+	@Override
+	public long getAmountPence() {
+		return amount;
+	}
+	
+	
+	@Override
+	public double getAmount() {
+		return Money.toPounds(amount);
+	}
+	
+	
+	public long getMonthlyRepaymentPence() {
+		return monthlyRepayment;
+	}
+	
+	
+	public double getMonthlyRepayment() {
+		return Money.toPounds(monthlyRepayment);
+	}
+	
+	
+	public long getTotalRepaymentPence() {
+		return totalRepayment;
+	}
+	
+	
+	public double getTotalRepayment() {
+		return Money.toPounds(totalRepayment);
+	}
+	
+	
+	public double getRate() {
+		return rate;
+	}
+	
+	
+	public int getLendersUsed() {
+		return lendersUsed;
+	}
+	
+	
+	public int getTerm() {
+		return term;
+	}
+	
+	
+	@Override
+	public boolean equals(Object obj) {
+		if ( this == obj ) return true;
+		if ( !(obj instanceof Quote) ) return false;
+		
+		Quote o = (Quote) obj;
+		return (amount == o.amount
+				&& monthlyRepayment == o.monthlyRepayment
+				&& totalRepayment == o.totalRepayment
+				&& Double.compare(rate, o.rate) == 0
+				&& lendersUsed == o.lendersUsed
+				&& term == o.term);
+	}
+	
+	
+	@Override
+	public int hashCode() {
+		int result = Long.hashCode(amount);
+		result = 31 * result + Long.hashCode(monthlyRepayment);
+		result = 31 * result + Long.hashCode(totalRepayment);
+		result = 31 * result + Double.hashCode(rate);
+		result = 31 * result + lendersUsed;
+		return 31 * result + term;
+	}
+	
+	
+	@Override
+	public String toString() {
+		return "[ AMOUNT: " + getAmount() + ", MONTHLY REPAYMENT: " + getMonthlyRepayment() + ", TOTAL REPAYMENT: " + getTotalRepayment() 
+				+ ", RATE: " + rate + ", LENDERS USED: " + lendersUsed + ", TERM: " + term + " ]";
+	}
+
+}
@@ -0,0 +1,14 @@
+package com.zopa.quote.domain;
+
+/**
+ * Outcome of a quote request, every request ends in exactly one of them.
+ */
+public enum QuoteOutcome {
+	
+	SUCCESS,
+	NOT_ALLOWED,
+	BELOW_MINIMUM,
+	ABOVE_MAXIMUM,
+	NOT_FEASIBLE
+
+}
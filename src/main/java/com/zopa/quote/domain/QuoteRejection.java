@@ -0,0 +1,83 @@
+package com.zopa.quote.domain;
+
+public final class QuoteRejection implements QuoteResult {
+	
+	private final QuoteOutcome outcome;
+	
+	//Fixed point, amounts in pence
+	private final long amount;
+	private final long limit;
+	
+	
+	/**
+	 * Quote request that could not be priced.
+	 *
+	 * @param  outcome reason of rejection, any outcome but SUCCESS
+	 * @param  amountPence amount requested in pence
+	 * @param  limitPence increment, minimum or maximum the amount broke, 0 when amount is not feasible
+	 */
+	public QuoteRejection(QuoteOutcome outcome, long amountPence, long limitPence) {
+		super();
+		if(outcome == QuoteOutcome.SUCCESS) {
+			throw new IllegalArgumentException("Rejection outcome cannot be " + outcome);
+		}
+		this.outcome = outcome;
+		this.amount = amountPence;
+		this.limit = limitPence;
+	}
+	
+	
+	@Override
+	public QuoteOutcome getOutcome() {
+		return outcome;
+	}
+	
+	
+	@Override
+	public long getAmountPence() {
+		return amount;
+	}
+	
+	
+	@Override
+	public double getAmount() {
+		return Money.toPounds(amount);
+	}
+	
+	
+	public long getLimitPence() {
+		return limit;
+	}
+	
+	
+	public double getLimit() {
+		return Money.toPounds(limit);
+	}
+	
+	
+	@Override
+	public boolean equals(Object obj) {
+		if ( this == obj ) return true;
+		if ( !(obj instanceof QuoteRejection) ) return false;
+		
+		QuoteRejection o = (QuoteRejection) obj;
+		return (outcome == o.outcome
+				&& amount == o.amount
+				&& limit == o.limit);
+	}
+	
+	
+	@Override
+	public int hashCode() {
+		int result = outcome.hashCode();
+		result = 31 * result + Long.hashCode(amount);
+		return 31 * result + Long.hashCode(limit);
+	}
+	
+	
+	@Override
+	public String toString() {
+		return "[ REJECTED: " + outcome + ", AMOUNT: " + getAmount() + ", LIMIT: " + getLimit() + " ]";
+	}
+
+}
@@ -0,0 +1,13 @@
+package com.zopa.quote.domain;
+
+/**
+ * Result of a quote request, either a Quote or a QuoteRejection. Results are immutable and hold numbers only,
+ * turning them into text is left to a QuoteFormat.
+ */
+public interface QuoteResult {
+	
+	QuoteOutcome getOutcome();
+	long getAmountPence();
+	double getAmount();
+
+}
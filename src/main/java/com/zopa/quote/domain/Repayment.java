@@ -0,0 +1,78 @@
+package com.zopa.quote.domain;
+
+public class Repayment {
+	
+	//Fixed point, amounts in pence
+	private final long amountCovered;
+	private final long monthlyRepayment;
+	private final long totalRepayment;
+	private final double rate;
+	private final int lendersUsed;
+	
+	
+	/**
+	 * Repayment of an amount covered by lenders, amounts already rounded to pence.
+	 *
+	 * @param  amountCoveredPence amount covered in pence
+	 * @param  monthlyRepaymentPence monthly repayment in pence
+	 * @param  totalRepaymentPence total repayment in pence
+	 * @param  rate average annual rate of lenders used
+	 * @param  lendersUsed number of lenders used
+	 */
+	public Repayment(long amountCoveredPence, long monthlyRepaymentPence, long totalRepaymentPence, double rate, int lendersUsed) {
+		super();
+		this.amountCovered = amountCoveredPence;
+		this.monthlyRepayment = monthlyRepaymentPence;
+		this.totalRepayment = totalRepaymentPence;
+		this.rate = rate;
+		this.lendersUsed = lendersUsed;
+	}
+	
+	
+	public double getAmountCovered() {
+		return Money.toPounds(amountCovered);
+	}
+	
+	
+	public long getAmountCoveredPence() {
+		return amountCovered;
+	}
+	
+	
+	public double getMonthlyRepayment() {
+		return Money.toPounds(monthlyRepayment);
+	}
+	
+	
+	public long getMonthlyRepaymentPence() {
+		return monthlyRepayment;
+	}
+	
+	
+	public double getTotalRepayment() {
+		return Money.toPounds(totalRepayment);
+	}
+	
+	
+	public long getTotalRepaymentPence() {
+		return totalRepayment;
+	}
+	
+	
+	public double getRate() {
+		return rate;
+	}
+	
+	
+	public int getLendersUsed() {
+		return lendersUsed;
+	}
+	
+	
+	@Override
+	public String toString() {
+		return "[ AMOUNT COVERED: " + getAmountCovered() + ", MONTHLY REPAYMENT: " + getMonthlyRepayment() + ", TOTAL REPAYMENT: " + getTotalRepayment() 
+				+ ", RATE: " + rate + ", LENDERS USED: " + lendersUsed + " ]";
+	}
+
+}
@@ -0,0 +1,56 @@
+package com.zopa.quote.domain;
+
+import java.util.Collections;
+import java.util.List;
+
+public class Reservation {
+	
+	private final long id;
+	private final double amount;
+	private final List<Lender> allocations;
+	private final Repayment repayment;
+	
+	
+	/**
+	 * Funds held for a borrower until reservation is committed or released.
+	 *
+	 * @param  id reservation ID
+	 * @param  amount amount reserved
+	 * @param  allocations lenders funds are taken from in rate order, available being the amount taken from each
+	 * @param  repayment repayment of the amount reserved
+	 */
+	public Reservation(long id, double amount, List<Lender> allocations, Repayment repayment) {
+		super();
+		this.id = id;
+		this.amount = amount;
+		this.allocations = Collections.unmodifiableList(allocations);
+		this.repayment = repayment;
+	}
+	
+	
+	public long getId() {
+		return id;
+	}
+	
+	
+	public double getAmount() {
+		return amount;
+	}
+	
+	
+	public List<Lender> getAllocations() {
+		return allocations;
+	}
+	
+	
+	public Repayment getRepayment() {
+		return repayment;
+	}
+	
+	
+	@Override
+	public String toString() {
+		return "[ RESERVATION: " + id + ", AMOUNT: " + amount + ", LENDERS: " + allocations.size() + ", REPAYMENT: " + repayment + " ]";
+	}
+	
+}
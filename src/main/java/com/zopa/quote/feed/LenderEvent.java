@@ -0,0 +1,138 @@
+package com.zopa.quote.feed;
+
+/**
+ * Change to a single lender of the pool. Parsed from delta lines, one event per line:
+ * <pre>
+ * add,[id],[name],[rate],[available]
+ * update-rate,[id],[rate]
+ * update-available,[id],[available]
+ * remove,[id]
+ * </pre>
+ * An update-available of 0 removes the lender, as remove does.
+ */
+public final class LenderEvent {
+	
+	public enum Type {
+		
+		ADD("add", 5), UPDATE_RATE("update-rate", 3), UPDATE_AVAILABLE("update-available", 3), REMOVE("remove", 2);
+		
+		private final String code;
+		private final int fields;
+		
+		private Type(String code, int fields) {
+			this.code = code;
+			this.fields = fields;
+		}
+		
+		public String getCode() {
+			return code;
+		}
+		
+		private static Type of(String code) {
+			for(Type type: values()) {
+				if(type.code.equals(code)) return type;
+			}
+			throw new IllegalArgumentException("Unknown lender event: " + code);
+		}
+		
+	}
+	
+	private final Type type;
+	private final int id;
+	private final String name;
+	private final double rate;
+	private final double available;
+	
+	
+	private LenderEvent(Type type, int id, String name, double rate, double available) {
+		this.type = type;
+		this.id = id;
+		this.name = name;
+		this.rate = rate;
+		this.available = available;
+	}
+	
+	
+	public static LenderEvent add(int id, String name, double rate, double available) {
+		return new LenderEvent(Type.ADD, id, name, rate, available);
+	}
+	
+	
+	public static LenderEvent updateRate(int id, double rate) {
+		return new LenderEvent(Type.UPDATE_RATE, id, null, rate, 0);
+	}
+	
+	
+	public static LenderEvent updateAvailable(int id, double available) {
+		return new LenderEvent(Type.UPDATE_AVAILABLE, id, null, 0, available);
+	}
+	
+	
+	public static LenderEvent remove(int id) {
+		return new LenderEvent(Type.REMOVE, id, null, 0, 0);
+	}
+	
+	
+	/**
+	 * Parses delta line into event.
+	 *
+	 * @param  line delta line, ie: update-rate,42,0.07
+	 * @return      event parsed.
+	 * @throws IllegalArgumentException when line is not a valid event.
+	 */
+	public static LenderEvent parse(String line) {
+		String[] fields = line.split(",");
+		Type type = Type.of(fields[0].trim());
+		if(fields.length != type.fields) {
+			throw new IllegalArgumentException(String.format("Lender event %s expects %d fields: %s", type.code, type.fields, line));
+		}
+		
+		try {
+			int id = Integer.parseInt(fields[1].trim());
+			switch (type) {
+				case ADD:
+					return add(id, fields[2].trim(), Double.parseDouble(fields[3].trim()), Double.parseDouble(fields[4].trim()));
+				case UPDATE_RATE:
+					return updateRate(id, Double.parseDouble(fields[2].trim()));
+				case UPDATE_AVAILABLE:
+					return updateAvailable(id, Double.parseDouble(fields[2].trim()));
+				default:
+					return remove(id);
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid number in lender event: " + line, e);
+		}
+	}
+	
+	
+	public Type getType() {
+		return type;
+	}
+	
+	
+	public int getId() {
+		return id;
+	}
+	
+	
+	public String getName() {
+		return name;
+	}
+	
+	
+	public double getRate() {
+		return rate;
+	}
+	
+	
+	public double getAvailable() {
+		return available;
+	}
+	
+	
+	@Override
+	public String toString() {
+		return "[ EVENT: " + type.code + ", ID: " + id + ", NAME: " + name + ", RATE: " + rate + ", AVAILABLE: " + available + " ]";
+	}
+	
+}
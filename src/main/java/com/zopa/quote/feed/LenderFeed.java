@@ -0,0 +1,299 @@
+package com.zopa.quote.feed;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.zopa.quote.domain.Lender;
+import com.zopa.quote.domain.Money;
+import com.zopa.quote.repository.LenderPoolRepository;
+
+/**
+ * Applies lender events to the pool without reloading it. Events come from a delta file read once or from
+ * every file of a watched directory, tailed as lines are appended. Each event is a single save or remove on
+ * the repository, rate index and availability are updated with it.
+ */
+@Component
+public class LenderFeed {
+	
+	private static final Logger log = LoggerFactory.getLogger(LenderFeed.class);
+	
+	private static final int TAIL_BUFFER_SIZE = 64 * 1024;
+	
+	@Autowired private LenderPoolRepository poolLenderRepository;
+	
+	@Value( "${lender.feed.poll.millis}" )
+	private long pollMillis;
+	
+	private final AtomicLong eventsApplied = new AtomicLong();
+	private final AtomicLong eventsRejected = new AtomicLong();
+	
+	//Bytes of each watched file already applied, only touched by watcher thread
+	private final Map<Path, Long> offsets = new HashMap<Path, Long>();
+	
+	private volatile Thread watcher;
+	
+	
+	/**
+	 * Applies a single event to lender pool. Updates of a lender not in pool are rejected, as are rates not
+	 * above zero and negative amounts. Adds with no funds available are ignored, as loadLendersStep writer does, 
+	 * an update leaving no funds available removes the lender. Updates are atomic against any other change of 
+	 * the same lender.
+	 *
+	 * @param  event lender event
+	 * @return      true if pool changed.
+	 */
+	public boolean apply(final LenderEvent event) {
+		
+		String invalid = validate(event);
+		if(invalid != null) {
+			eventsRejected.incrementAndGet();
+			log.warn(invalid + ", event ignored: " + event);
+			return false;
+		}
+		
+		boolean applied;
+		switch (event.getType()) {
+			case ADD:
+				poolLenderRepository.save(new Lender(event.getId(), event.getName(), event.getRate(), event.getAvailable()));
+				applied = true;
+				break;
+			case UPDATE_RATE:
+				applied = poolLenderRepository.update(event.getId(), new UnaryOperator<Lender>() {
+					
+					@Override
+					public Lender apply(Lender current) {
+						return Lender.ofPence(current.getId(), current.getName(), Money.toRateUnits(event.getRate()), current.getAvailablePence());
+					}
+				
+				});
+				break;
+			case UPDATE_AVAILABLE:
+				applied = poolLenderRepository.update(event.getId(), new UnaryOperator<Lender>() {
+					
+					//Lender who withdrew every fund leaves the pool, so nothing is quoted from it
+					@Override
+					public Lender apply(Lender current) {
+						long available = Money.toPence(event.getAvailable());
+						return available == 0 ? null : Lender.ofPence(current.getId(), current.getName(), current.getRateUnits(), available);
+					}
+				
+				});
+				break;
+			default:
+				applied = poolLenderRepository.remove(event.getId());
+		}
+		
+		if(applied) {
+			eventsApplied.incrementAndGet();
+		} else {
+			eventsRejected.incrementAndGet();
+			log.warn("Lender not found, event ignored: " + event);
+		}
+		return applied;
+	}
+	
+	
+	/**
+	 * Applies every event read, one per line. Blank lines and lines starting with # are skipped,
+	 * invalid lines are logged and rejected.
+	 *
+	 * @param  deltas reader of delta lines
+	 * @return      number of events applied.
+	 */
+	public long apply(Reader deltas) throws IOException {
+		long applied = 0;
+		BufferedReader reader = new BufferedReader(deltas);
+		String line;
+		while((line = reader.readLine()) != null) {
+			if(applyLine(line)) applied++;
+		}
+		return applied;
+	}
+	
+	
+	/**
+	 * Starts tailing every file of directory provided in a background thread. Files already there are
+	 * applied first, in name order, then new lines are applied as they are appended or new files created.
+	 *
+	 * @param  directory directory holding delta files
+	 */
+	public synchronized void watch(final Path directory) throws IOException {
+		if(watcher != null) {
+			throw new IllegalStateException("Lender feed already watching a directory");
+		}
+		
+		final WatchService watchService = directory.getFileSystem().newWatchService();
+		directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		
+		watcher = new Thread("lender-feed") {
+			
+			@Override
+			public void run() {
+				try {
+					while(!isInterrupted()) {
+						tailAll(directory);
+						
+						//Events only wake thread up, every file is checked for new lines anyway
+						WatchKey key = watchService.poll(pollMillis, TimeUnit.MILLISECONDS);
+						while(key != null) {
+							key.pollEvents();
+							key.reset();
+							key = watchService.poll();
+						}
+					}
+				} catch (InterruptedException | ClosedByInterruptException e) {
+					//Stopped
+				} catch (Exception e) {
+					log.error("Lender feed stopped: " + e.getMessage(), e);
+				} finally {
+					try {
+						watchService.close();
+					} catch (IOException e) {
+						log.error("Error closing lender feed watcher: " + e.getMessage());
+					}
+				}
+			}
+		
+		};
+		watcher.setDaemon(true);
+		watcher.start();
+		log.info("Lender feed watching " + directory);
+	}
+	
+	
+	/**
+	 * Stops tailing watched directory, waiting for event being applied.
+	 *
+	 */
+	public synchronized void stop() throws InterruptedException {
+		Thread current = watcher;
+		if(current != null) {
+			current.interrupt();
+			current.join();
+			watcher = null;
+		}
+	}
+	
+	
+	public long getEventsApplied() {
+		return eventsApplied.get();
+	}
+	
+	
+	public long getEventsRejected() {
+		return eventsRejected.get();
+	}
+	
+	
+	//Reason event cannot be applied, null if valid. Negative funds would break cumulative availability
+	private String validate(LenderEvent event) {
+		switch (event.getType()) {
+			case ADD:
+				if(event.getName() == null || event.getName().isEmpty()) return "Lender name missing";
+				if(Money.toRateUnits(event.getRate()) <= 0) return "Rate not above zero";
+				if(Money.toPence(event.getAvailable()) <= 0) return "No funds available";
+				return null;
+			case UPDATE_RATE:
+				return Money.toRateUnits(event.getRate()) <= 0 ? "Rate not above zero" : null;
+			case UPDATE_AVAILABLE:
+				return Money.toPence(event.getAvailable()) < 0 ? "Negative funds available" : null;
+			default:
+				return null;
+		}
+	}
+	
+	
+	private boolean applyLine(String line) {
+		String delta = line.trim();
+		if(delta.isEmpty() || delta.startsWith("#")) return false;
+		
+		try {
+			return apply(LenderEvent.parse(delta));
+		} catch (IllegalArgumentException e) {
+			eventsRejected.incrementAndGet();
+			log.error("Error parsing lender event: " + e.getMessage());
+			return false;
+		}
+	}
+	
+	
+	private void tailAll(Path directory) throws IOException {
+		List<Path> files = new ArrayList<Path>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for(Path file: stream) {
+				if(Files.isRegularFile(file)) files.add(file);
+			}
+		}
+		Collections.sort(files);
+		
+		for(Path file: files) {
+			tail(file);
+		}
+	}
+	
+	
+	//Applies complete lines appended since last call, a partial last line waits for its line break
+	private void tail(Path file) throws IOException {
+		
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			
+			long offset = offsets.containsKey(file) ? offsets.get(file) : 0;
+			long size = channel.size();
+			if(size < offset) {
+				log.warn("Delta file truncated, reading it again: " + file);
+				offset = 0;
+			}
+			
+			ByteBuffer buffer = ByteBuffer.allocate(TAIL_BUFFER_SIZE);
+			byte[] line = new byte[256];
+			int lineLength = 0;
+			long position = offset;
+			while(position < size && channel.read(buffer, position) > 0) {
+				buffer.flip();
+				while(buffer.hasRemaining()) {
+					byte current = buffer.get();
+					position++;
+					if(current == '\n') {
+						applyLine(new String(line, 0, lineLength, StandardCharsets.UTF_8));
+						lineLength = 0;
+						offset = position;
+					} else {
+						if(lineLength == line.length) line = Arrays.copyOf(line, line.length * 2);
+						line[lineLength++] = current;
+					}
+				}
+				buffer.clear();
+			}
+			
+			offsets.put(file, offset);
+		}
+	}
+
+}
@@ -0,0 +1,115 @@
+package com.zopa.quote.format;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Appends amounts and decimals to a buffer without going through NumberFormat or Formatter, nothing is
+ * allocated and nothing is shared. Rounding is half up, only decimals that are nearly a tie once scaled
+ * are rounded through BigDecimal.
+ */
+final class Decimals {
+	
+	//Precision is limited so scaled values still fit a long
+	static final int MAX_PRECISION = 9;
+	
+	private static final double TIE_TOLERANCE = 1e-6;
+	
+	private static final long[] POWERS_OF_TEN = { 1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L };
+	
+	
+	private Decimals() {}
+	
+	
+	/**
+	 * Appends amount in pence as pounds in en_GB currency format, ie: £1,234.50 or -£5.00.
+	 *
+	 * @param  output buffer to append to
+	 * @param  pence amount in pence
+	 */
+	static void appendCurrency(StringBuilder output, long pence) {
+		if(pence < 0) {
+			output.append('-');
+			pence = -pence;
+		}
+		output.append('\u00A3');
+		appendGrouped(output, pence / 100);
+		output.append('.');
+		appendPadded(output, pence % 100, 2);
+	}
+	
+	
+	/**
+	 * Appends amount in pence as pounds with two decimals and no grouping, ie: 1234.50.
+	 *
+	 * @param  output buffer to append to
+	 * @param  pence amount in pence
+	 */
+	static void appendPounds(StringBuilder output, long pence) {
+		if(pence < 0) {
+			output.append('-');
+			pence = -pence;
+		}
+		output.append(pence / 100);
+		output.append('.');
+		appendPadded(output, pence % 100, 2);
+	}
+	
+	
+	/**
+	 * Appends value with the number of decimals provided, rounded half up, as %.[precision]f does.
+	 *
+	 * @param  output buffer to append to
+	 * @param  value value to append
+	 * @param  precision number of decimals, up to MAX_PRECISION
+	 */
+	static void appendFixed(StringBuilder output, double value, int precision) {
+		if(Double.isNaN(value) || Double.isInfinite(value)) {
+			output.append(value);
+			return;
+		}
+		if(value < 0) {
+			output.append('-');
+			value = -value;
+		}
+		
+		double scaledValue = value * POWERS_OF_TEN[precision];
+		long scaled = Math.round(scaledValue);
+		
+		//Products close to a half may have been rounded by the multiplication, decimal digits of value decide then, 
+		//as Formatter does
+		if(Math.abs(scaledValue - Math.floor(scaledValue) - 0.5) < TIE_TOLERANCE) {
+			scaled = new BigDecimal(Double.toString(value)).movePointRight(precision).setScale(0, RoundingMode.HALF_UP).longValue();
+		}
+		output.append(scaled / POWERS_OF_TEN[precision]);
+		if(precision > 0) {
+			output.append('.');
+			appendPadded(output, scaled % POWERS_OF_TEN[precision], precision);
+		}
+	}
+	
+	
+	//Thousands separated by commas
+	private static void appendGrouped(StringBuilder output, long value) {
+		long divisor = 1;
+		int digits = 1;
+		while(divisor <= value / 10) {
+			divisor *= 10;
+			digits++;
+		}
+		for(; divisor > 0; divisor /= 10, digits--) {
+			output.append((char) ('0' + value / divisor % 10));
+			if(digits > 1 && (digits - 1) % 3 == 0) {
+				output.append(',');
+			}
+		}
+	}
+	
+	
+	private static void appendPadded(StringBuilder output, long value, int digits) {
+		for(int digit = digits - 1; digit >= 0; digit--) {
+			output.append((char) ('0' + value / POWERS_OF_TEN[digit] % 10));
+		}
+	}
+
+}
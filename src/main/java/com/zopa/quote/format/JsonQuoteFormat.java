@@ -0,0 +1,74 @@
+package com.zopa.quote.format;
+
+import org.springframework.stereotype.Component;
+
+import com.zopa.quote.domain.MultiTermQuote;
+import com.zopa.quote.domain.Quote;
+import com.zopa.quote.domain.QuoteRejection;
+import com.zopa.quote.domain.QuoteResult;
+
+/**
+ * Quote results as a single line JSON object, amounts in pounds with two decimals and rate as a fraction, ie:
+ * {"outcome":"SUCCESS","amount":1000.00,"term":36,"rate":0.070000,"monthlyRepayment":30.78,"totalRepayment":1108.10,"lendersUsed":2}
+ * or {"outcome":"BELOW_MINIMUM","amount":500.00,"limit":1000.00}. Multi-term quotes hold repayments of each term in "terms":
+ * {"outcome":"SUCCESS","amount":1000.00,"rate":0.070000,"lendersUsed":2,"terms":[{"term":12,"monthlyRepayment":86.53,"totalRepayment":1072.29},...]}.
+ */
+@Component
+public class JsonQuoteFormat implements QuoteFormat {
+	
+	public static final String NAME = "json";
+	
+	private static final int RATE_PRECISION = 6;
+	
+	
+	@Override
+	public String getName() {
+		return NAME;
+	}
+	
+	
+	@Override
+	public String getContentType() {
+		return "application/json; charset=UTF-8";
+	}
+	
+	
+	@Override
+	public void write(QuoteResult result, StringBuilder output) {
+		output.append("{\"outcome\":\"").append(result.getOutcome().name()).append("\",\"amount\":");
+		Decimals.appendPounds(output, result.getAmountPence());
+		
+		if(result instanceof Quote) {
+			Quote quote = (Quote) result;
+			output.append(",\"term\":").append(quote.getTerm());
+			output.append(",\"rate\":");
+			Decimals.appendFixed(output, quote.getRate(), RATE_PRECISION);
+			output.append(",\"monthlyRepayment\":");
+			Decimals.appendPounds(output, quote.getMonthlyRepaymentPence());
+			output.append(",\"totalRepayment\":");
+			Decimals.appendPounds(output, quote.getTotalRepaymentPence());
+			output.append(",\"lendersUsed\":").append(quote.getLendersUsed());
+		} else if(result instanceof MultiTermQuote) {
+			MultiTermQuote quotes = (MultiTermQuote) result;
+			output.append(",\"rate\":");
+			Decimals.appendFixed(output, quotes.getRate(), RATE_PRECISION);
+			output.append(",\"lendersUsed\":").append(quotes.getLendersUsed());
+			output.append(",\"terms\":[");
+			for(int i = 0; i < quotes.getTermCount(); i++) {
+				if(i > 0) output.append(',');
+				output.append("{\"term\":").append(quotes.getTerm(i));
+				output.append(",\"monthlyRepayment\":");
+				Decimals.appendPounds(output, quotes.getMonthlyRepaymentPence(i));
+				output.append(",\"totalRepayment\":");
+				Decimals.appendPounds(output, quotes.getTotalRepaymentPence(i));
+				output.append('}');
+			}
+			output.append(']');
+		} else {
+			output.append(",\"limit\":");
+			Decimals.appendPounds(output, ((QuoteRejection) result).getLimitPence());
+		}
+		output.append('}');
+	}
+
+}
@@ -0,0 +1,150 @@
+package com.zopa.quote.format;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.zopa.quote.domain.MultiTermQuote;
+import com.zopa.quote.domain.Quote;
+import com.zopa.quote.domain.QuoteOutcome;
+import com.zopa.quote.domain.QuoteRejection;
+import com.zopa.quote.domain.QuoteResult;
+
+/**
+ * Quote results as the text of message properties (message.quote and message.error.*). Messages are parsed
+ * once at startup, amounts are written as en_GB currency and rates as percentages, as String.format with a
+ * currency NumberFormat did. Multi-term quotes are written as the quote message of each term, every one
+ * preceded by message.quote.term.
+ */
+@Component
+public class MessageQuoteFormat implements QuoteFormat {
+	
+	public static final String NAME = "text";
+	
+	private static final int TERM_ARGUMENT = 4;
+	
+	@Value( "${message.quote}" )
+	private String messageQuote;
+	
+	@Value( "${message.quote.term}" )
+	private String messageQuoteTerm;
+	
+	@Value( "${message.error.valueNotAllowed}" )
+	private String errorMessageValueNotAllowed;
+	
+	@Value( "${message.error.amountUnfeasible}" )
+	private String errorMessageAmountUnfeasible;
+	
+	@Value( "${message.error.minimumValueAllowed}" )
+	private String errorMessageMinimumValueAllowed;
+	
+	@Value( "${message.error.maximumValueAllowed}" )
+	private String errorMessageMaximumValueAllowed;
+	
+	private final Map<QuoteOutcome, MessageTemplate> templates = new EnumMap<QuoteOutcome, MessageTemplate>(QuoteOutcome.class);
+	
+	private MessageTemplate termTemplate;
+	
+	
+	@PostConstruct
+	void init() {
+		//Quote: amount, rate, monthly and total repayment, then term. Rejections: limit broken then amount, amount only if not feasible
+		templates.put(QuoteOutcome.SUCCESS, parse(messageQuote, 5));
+		templates.put(QuoteOutcome.NOT_ALLOWED, parse(errorMessageValueNotAllowed, 2));
+		templates.put(QuoteOutcome.BELOW_MINIMUM, parse(errorMessageMinimumValueAllowed, 2));
+		templates.put(QuoteOutcome.ABOVE_MAXIMUM, parse(errorMessageMaximumValueAllowed, 2));
+		templates.put(QuoteOutcome.NOT_FEASIBLE, parse(errorMessageAmountUnfeasible, 1));
+		
+		//Term heading only takes the term
+		termTemplate = parse(messageQuoteTerm, 1);
+	}
+	
+	
+	@Override
+	public String getName() {
+		return NAME;
+	}
+	
+	
+	@Override
+	public String getContentType() {
+		return "text/plain; charset=UTF-8";
+	}
+	
+	
+	@Override
+	public void write(QuoteResult result, StringBuilder output) {
+		if(result instanceof MultiTermQuote) {
+			MultiTermQuote quotes = (MultiTermQuote) result;
+			MessageTemplate quoteTemplate = templates.get(QuoteOutcome.SUCCESS);
+			for(int i = 0; i < quotes.getTermCount(); i++) {
+				Quote quote = quotes.getQuote(i);
+				if(i > 0) output.append(System.lineSeparator());
+				termTemplate.write(this, quote, TERM_ARGUMENT, output);
+				quoteTemplate.write(this, quote, output);
+			}
+			return;
+		}
+		templates.get(result.getOutcome()).write(this, result, output);
+	}
+	
+	
+	//Called back by templates for every argument of the message
+	void writeArgument(QuoteResult result, int argument, int precision, StringBuilder output) {
+		
+		if(result instanceof Quote) {
+			Quote quote = (Quote) result;
+			switch (argument) {
+				case 0:
+					writeAmount(quote.getAmountPence(), precision, output);
+					break;
+				case 1:
+					if(precision < 0) {
+						output.append(quote.getRate() * 100);
+					} else {
+						Decimals.appendFixed(output, quote.getRate() * 100, precision);
+					}
+					break;
+				case 2:
+					writeAmount(quote.getMonthlyRepaymentPence(), precision, output);
+					break;
+				case TERM_ARGUMENT:
+					if(precision < 0) {
+						output.append(quote.getTerm());
+					} else {
+						Decimals.appendFixed(output, quote.getTerm(), precision);
+					}
+					break;
+				default:
+					writeAmount(quote.getTotalRepaymentPence(), precision, output);
+			}
+		} else if(result.getOutcome() == QuoteOutcome.NOT_FEASIBLE || argument > 0) {
+			writeAmount(result.getAmountPence(), precision, output);
+		} else {
+			writeAmount(((QuoteRejection) result).getLimitPence(), precision, output);
+		}
+	}
+	
+	
+	private void writeAmount(long pence, int precision, StringBuilder output) {
+		if(precision < 0) {
+			Decimals.appendCurrency(output, pence);
+		} else {
+			Decimals.appendFixed(output, pence / 100.0, precision);
+		}
+	}
+	
+	
+	private MessageTemplate parse(String pattern, int maximumArguments) {
+		MessageTemplate template = MessageTemplate.parse(pattern);
+		if(template.arguments() > maximumArguments) {
+			throw new IllegalArgumentException("Message expects at most " + maximumArguments + " arguments: " + pattern);
+		}
+		return template;
+	}
+
+}
@@ -0,0 +1,119 @@
+package com.zopa.quote.format;
+
+import com.zopa.quote.domain.QuoteResult;
+
+/**
+ * Message pattern parsed once into literal text and arguments, so messages are written without String.format.
+ * Only the specifiers used by message properties are supported: %s, %f with optional precision, %n and %%.
+ */
+final class MessageTemplate {
+	
+	//Text before each argument, last one after the last argument
+	private final String[] literals;
+	
+	//Decimals of each argument, -1 for %s
+	private final int[] precisions;
+	
+	
+	private MessageTemplate(String[] literals, int[] precisions) {
+		this.literals = literals;
+		this.precisions = precisions;
+	}
+	
+	
+	/**
+	 * Parses pattern provided.
+	 *
+	 * @param  pattern message pattern, as used by String.format
+	 * @return      parsed template.
+	 * @throws IllegalArgumentException when pattern holds an unsupported specifier.
+	 */
+	static MessageTemplate parse(String pattern) {
+		
+		String[] literals = new String[pattern.length() + 1];
+		int[] precisions = new int[pattern.length()];
+		int arguments = 0;
+		StringBuilder literal = new StringBuilder();
+		
+		for(int i = 0; i < pattern.length(); i++) {
+			char current = pattern.charAt(i);
+			if(current != '%') {
+				literal.append(current);
+				continue;
+			}
+			
+			if(++i == pattern.length()) {
+				throw new IllegalArgumentException("Incomplete format specifier at end of: " + pattern);
+			}
+			
+			char conversion = pattern.charAt(i);
+			if(conversion == '%') {
+				literal.append('%');
+			} else if(conversion == 'n') {
+				literal.append(System.lineSeparator());
+			} else if(conversion == 's') {
+				literals[arguments] = literal.toString();
+				precisions[arguments++] = -1;
+				literal.setLength(0);
+			} else {
+				
+				//%f or %.[precision]f
+				int precision = 6;
+				if(conversion == '.') {
+					int precisionStart = ++i;
+					while(i < pattern.length() && Character.isDigit(pattern.charAt(i))) i++;
+					precision = i > precisionStart ? Integer.parseInt(pattern.substring(precisionStart, i)) : -1;
+					conversion = i < pattern.length() ? pattern.charAt(i) : ' ';
+				}
+				if(conversion != 'f' || precision < 0 || precision > Decimals.MAX_PRECISION) {
+					throw new IllegalArgumentException("Unsupported format specifier at " + i + " of: " + pattern);
+				}
+				literals[arguments] = literal.toString();
+				precisions[arguments++] = precision;
+				literal.setLength(0);
+			}
+		}
+		literals[arguments] = literal.toString();
+		
+		String[] templateLiterals = new String[arguments + 1];
+		System.arraycopy(literals, 0, templateLiterals, 0, arguments + 1);
+		int[] templatePrecisions = new int[arguments];
+		System.arraycopy(precisions, 0, templatePrecisions, 0, arguments);
+		return new MessageTemplate(templateLiterals, templatePrecisions);
+	}
+	
+	
+	int arguments() {
+		return precisions.length;
+	}
+	
+	
+	/**
+	 * Appends message of result provided, each argument is written by the format.
+	 *
+	 * @param  format format writing arguments
+	 * @param  result quote result
+	 * @param  output buffer to append to
+	 */
+	void write(MessageQuoteFormat format, QuoteResult result, StringBuilder output) {
+		write(format, result, 0, output);
+	}
+	
+	
+	/**
+	 * Appends message of result provided, arguments of the message are arguments of the result from the one provided on.
+	 *
+	 * @param  format format writing arguments
+	 * @param  result quote result
+	 * @param  firstArgument argument of result written for first argument of message
+	 * @param  output buffer to append to
+	 */
+	void write(MessageQuoteFormat format, QuoteResult result, int firstArgument, StringBuilder output) {
+		for(int argument = 0; argument < precisions.length; argument++) {
+			output.append(literals[argument]);
+			format.writeArgument(result, firstArgument + argument, precisions[argument], output);
+		}
+		output.append(literals[precisions.length]);
+	}
+
+}
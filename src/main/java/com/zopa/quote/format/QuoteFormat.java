@@ -0,0 +1,15 @@
+package com.zopa.quote.format;
+
+import com.zopa.quote.domain.QuoteResult;
+
+/**
+ * Turns quote results into text. Formats keep no state between calls and are safe to share across threads,
+ * output is appended to a buffer owned by the caller so it can be reused from one quote to the next.
+ */
+public interface QuoteFormat {
+	
+	String getName();
+	String getContentType();
+	void write(QuoteResult result, StringBuilder output);
+	
+}
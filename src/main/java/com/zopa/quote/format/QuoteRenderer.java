@@ -0,0 +1,79 @@
+package com.zopa.quote.format;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.zopa.quote.domain.QuoteResult;
+
+/**
+ * Renders quote results with any QuoteFormat available, message text by default. Each thread writes into its
+ * own reusable buffer, so rendering only allocates the resulting String.
+ */
+@Component
+public class QuoteRenderer {
+	
+	private static final int BUFFER_SIZE = 256;
+	
+	//Buffers grown past this size by an unusual result are not kept
+	private static final int MAX_RETAINED_BUFFER_SIZE = 16 * 1024;
+	
+	@Autowired private List<QuoteFormat> formats;
+	@Autowired private MessageQuoteFormat messageQuoteFormat;
+	
+	private final ThreadLocal<StringBuilder> buffers = new ThreadLocal<StringBuilder>() {
+		
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(BUFFER_SIZE);
+		}
+	
+	};
+	
+	
+	/**
+	 * Returns format with name provided.
+	 *
+	 * @param  name format name, ie: text or json
+	 * @return      format, null if there is none with that name.
+	 */
+	public QuoteFormat getFormat(String name) {
+		for(QuoteFormat format: formats) {
+			if(format.getName().equals(name)) return format;
+		}
+		return null;
+	}
+	
+	
+	/**
+	 * Renders result provided as message text.
+	 *
+	 * @param  result quote result
+	 * @return      message text.
+	 */
+	public String render(QuoteResult result) {
+		return render(result, messageQuoteFormat);
+	}
+	
+	
+	/**
+	 * Renders result provided with format provided.
+	 *
+	 * @param  result quote result
+	 * @param  format output format
+	 * @return      rendered result.
+	 */
+	public String render(QuoteResult result, QuoteFormat format) {
+		StringBuilder buffer = buffers.get();
+		buffer.setLength(0);
+		format.write(result, buffer);
+		String rendered = buffer.toString();
+		
+		if(buffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+			buffers.remove();
+		}
+		return rendered;
+	}
+
+}
@@ -0,0 +1,60 @@
+package com.zopa.quote.reader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+
+import com.zopa.quote.domain.Lender;
+import com.zopa.quote.repository.LenderPoolRepository;
+
+/**
+ * Loads lenders file straight into the repository with MappedLenderItemReader, without job or step around it.
+ * Rows are filtered and saved in chunks as loadLendersStep writer does.
+ */
+public class LenderFileLoader {
+	
+	//Lenders saved together, as loadLendersStep chunks
+	private static final int CHUNK_SIZE = 1000;
+	
+	@Autowired private LenderPoolRepository poolLenderRepository;
+	
+	
+	/**
+	 * Reads every lender from file provided and saves it to repository.
+	 *
+	 * @param  resource lenders file
+	 * @return      number of lenders saved.
+	 */
+	public int load(Resource resource) throws IOException {
+		MappedLenderItemReader reader = new MappedLenderItemReader();
+		reader.setResource(resource);
+		reader.open(new ExecutionContext());
+		
+		int saved = 0;
+		try {
+			List<Lender> chunk = new ArrayList<Lender>(CHUNK_SIZE);
+			Lender lender;
+			while((lender = reader.read()) != null) {
+				
+				//Ignoring parsed records with default values
+				if(lender.getName() != null && lender.getAvailablePence() > 0) {
+					chunk.add(lender);
+					saved++;
+				}
+				if(chunk.size() == CHUNK_SIZE) {
+					poolLenderRepository.saveAll(chunk);
+					chunk.clear();
+				}
+			}
+			poolLenderRepository.saveAll(chunk);
+		} finally {
+			reader.close();
+		}
+		return saved;
+	}
+
+}
@@ -0,0 +1,156 @@
+package com.zopa.quote.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ResourceAware;
+import org.springframework.core.io.Resource;
+
+/**
+ * Splits lenders file in byte ranges of similar size, each range starting at the beginning of a line. Rows are
+ * counted per range (in parallel) so every partition knows how many lender IDs were taken before it, IDs are then
+ * the same whatever the number of partitions. Ranges are read by MappedLenderItemReader.
+ */
+public class LenderFilePartitioner implements Partitioner, ResourceAware {
+	
+	private static final int SCAN_REGION_SIZE = 64 * 1024 * 1024;
+	private static final int SEEK_BUFFER_SIZE = 8 * 1024;
+	
+	private Resource resource;
+	
+	
+	@Override
+	public void setResource(Resource resource) {
+		this.resource = resource;
+	}
+	
+	
+	public Resource getResource() {
+		return resource;
+	}
+	
+	
+	/**
+	 * Returns one execution context per partition, holding start and end offsets and number of rows before it.
+	 *
+	 * @param  gridSize number of partitions
+	 * @return      execution context by partition name.
+	 */
+	@Override
+	public Map<String, ExecutionContext> partition(int gridSize) {
+		
+		try (FileChannel channel = FileChannel.open(resource.getFile().toPath(), StandardOpenOption.READ)) {
+			
+			long fileSize = channel.size();
+			long[] boundaries = new long[gridSize + 1];
+			for(int i = 1; i < gridSize; i++) {
+				boundaries[i] = Math.max(boundaries[i - 1], nextLineStart(channel, fileSize / gridSize * i));
+			}
+			boundaries[gridSize] = fileSize;
+			
+			long[] rows = countRows(channel, boundaries);
+			
+			Map<String, ExecutionContext> partitions = new HashMap<String, ExecutionContext>();
+			long firstRow = 0;
+			for(int i = 0; i < gridSize; i++) {
+				ExecutionContext executionContext = new ExecutionContext();
+				executionContext.putLong(MappedLenderItemReader.START_POSITION_KEY, boundaries[i]);
+				executionContext.putLong(MappedLenderItemReader.END_POSITION_KEY, boundaries[i + 1]);
+				executionContext.putLong(MappedLenderItemReader.FIRST_ROW_KEY, firstRow);
+				partitions.put("partition" + i, executionContext);
+				firstRow += rows[i];
+			}
+			return partitions;
+		
+		} catch (IOException e) {
+			throw new ItemStreamException("Failed to partition lenders file: " + resource, e);
+		}
+	}
+	
+	
+	//Offset right after first line break found from offset provided, file size if there is none
+	private long nextLineStart(FileChannel channel, long offset) throws IOException {
+		if(offset == 0) return 0;
+		
+		ByteBuffer buffer = ByteBuffer.allocate(SEEK_BUFFER_SIZE);
+		long position = offset - 1;
+		while(channel.read(buffer, position) > 0) {
+			buffer.flip();
+			while(buffer.hasRemaining()) {
+				position++;
+				if(buffer.get() == '\n') return position;
+			}
+			buffer.clear();
+		}
+		return channel.size();
+	}
+	
+	
+	//Rows per range, counted as MappedLenderItemReader does: every line not starting with #
+	private long[] countRows(final FileChannel channel, long[] boundaries) throws IOException {
+		
+		int ranges = boundaries.length - 1;
+		ExecutorService counterPool = Executors.newFixedThreadPool(Math.min(ranges, Runtime.getRuntime().availableProcessors()));
+		try {
+			
+			List<Future<Long>> counts = new ArrayList<Future<Long>>(ranges);
+			for(int i = 0; i < ranges; i++) {
+				final long start = boundaries[i];
+				final long end = boundaries[i + 1];
+				counts.add(counterPool.submit(new Callable<Long>() {
+					
+					@Override
+					public Long call() throws Exception {
+						return countRows(channel, start, end);
+					}
+				
+				}));
+			}
+			
+			long[] rows = new long[ranges];
+			for(int i = 0; i < ranges; i++) {
+				rows[i] = counts.get(i).get();
+			}
+			return rows;
+		
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while counting lenders", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Failed to count lenders", e.getCause());
+		} finally {
+			counterPool.shutdownNow();
+		}
+	}
+	
+	
+	private long countRows(FileChannel channel, long start, long end) throws IOException {
+		long rows = 0;
+		boolean lineStart = true;
+		for(long regionStart = start; regionStart < end; regionStart += SCAN_REGION_SIZE) {
+			MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, Math.min(SCAN_REGION_SIZE, end - regionStart));
+			while(region.hasRemaining()) {
+				byte current = region.get();
+				if(lineStart && current != '#') rows++;
+				lineStart = current == '\n';
+			}
+		}
+		return rows;
+	}
+
+}
@@ -0,0 +1,274 @@
+package com.zopa.quote.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.ResourceAware;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+
+import com.zopa.quote.domain.Lender;
+import com.zopa.quote.repository.LenderPoolRepository;
+
+/**
+ * Binary snapshot of the lender pool, written next to the lenders file it was loaded from ([file].snapshot).
+ * Header holds format version, number of records, name width, last modified time and length of lenders file
+ * and a CRC32 of the records. Records have a fixed width (ID, rate in millionths, available in pence, name
+ * padded to the longest name) and are kept in rate order, so loading is a scan of the mapped file with no tokenizing or sorting.
+ * A snapshot is only used while lenders file keeps the time and length recorded in it.
+ */
+public class LenderSnapshotStore implements ResourceAware {
+	
+	private static final Logger log = LoggerFactory.getLogger(LenderSnapshotStore.class);
+	
+	public static final String SNAPSHOT_SUFFIX = ".snapshot";
+	
+	//"ZQLS", then format version, changed whenever layout changes
+	static final int MAGIC = 0x5A514C53;
+	static final int FORMAT_VERSION = 2;
+	
+	//Magic, format version, records, name width, source modified, source length, records CRC32
+	static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 8 + 8 + 8;
+	
+	//ID, rate, available and name length, name bytes follow
+	private static final int FIXED_RECORD_SIZE = 4 + 8 + 8 + 2;
+	
+	private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+	
+	//Records are mapped in regions of up to 1GB
+	private static final int MAX_REGION_SIZE = 1 << 30;
+	
+	@Autowired private LenderPoolRepository poolLenderRepository;
+	
+	private Resource resource;
+	
+	
+	@Override
+	public void setResource(Resource resource) {
+		this.resource = resource;
+	}
+	
+	
+	public Resource getResource() {
+		return resource;
+	}
+	
+	
+	/**
+	 * Returns snapshot file of current lenders file.
+	 *
+	 * @return      snapshot file, it may not exist.
+	 */
+	public File getSnapshotFile() throws IOException {
+		File source = resource.getFile();
+		return new File(source.getPath() + SNAPSHOT_SUFFIX);
+	}
+	
+	
+	/**
+	 * Returns true if snapshot of current lenders file exists, was built from lenders file as it is now
+	 * and its records match the checksum in its header.
+	 *
+	 * @return      TRUE if snapshot can be loaded instead of lenders file.
+	 */
+	public boolean isCurrent() {
+		try {
+			
+			File source = resource.getFile();
+			File snapshot = getSnapshotFile();
+			if(!snapshot.isFile()) return false;
+			
+			try (FileChannel channel = FileChannel.open(snapshot.toPath(), StandardOpenOption.READ)) {
+				Header header = readHeader(channel);
+				if(header.sourceModified != source.lastModified() || header.sourceLength != source.length()) {
+					log.info("Lenders file changed since snapshot was written, snapshot will be rebuilt: " + snapshot);
+					return false;
+				}
+				if(header.checksum != checksum(channel)) {
+					log.warn("Snapshot checksum does not match, snapshot will be rebuilt: " + snapshot);
+					return false;
+				}
+				return true;
+			}
+		
+		} catch (IOException e) {
+			log.warn("Snapshot cannot be used, snapshot will be rebuilt: " + e.getMessage());
+			return false;
+		}
+	}
+	
+	
+	/**
+	 * Saves every lender of current snapshot to repository at once, in rate order.
+	 *
+	 * @return      number of lenders loaded.
+	 */
+	public int load() throws IOException {
+		File snapshot = getSnapshotFile();
+		try (FileChannel channel = FileChannel.open(snapshot.toPath(), StandardOpenOption.READ)) {
+			
+			Header header = readHeader(channel);
+			int recordSize = FIXED_RECORD_SIZE + header.nameWidth;
+			int recordsPerRegion = MAX_REGION_SIZE / recordSize;
+			byte[] name = new byte[header.nameWidth];
+			List<Lender> lenders = new ArrayList<Lender>(header.records);
+			
+			for(int first = 0; first < header.records; first += recordsPerRegion) {
+				int records = Math.min(recordsPerRegion, header.records - first);
+				MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + (long) first * recordSize, (long) records * recordSize);
+				
+				for(int record = 0; record < records; record++) {
+					int id = region.getInt();
+					long rateUnits = region.getLong();
+					long availablePence = region.getLong();
+					int nameLength = region.getShort();
+					region.get(name);
+					lenders.add(Lender.ofPence(id, new String(name, 0, nameLength, StandardCharsets.UTF_8), rateUnits, availablePence));
+				}
+			}
+			
+			//Records are in rate order, repository builds its rate index from them without sorting
+			poolLenderRepository.saveAllSorted(lenders);
+			
+			log.info(String.format("Loaded %d lenders from snapshot %s", header.records, snapshot));
+			return header.records;
+		}
+	}
+	
+	
+	/**
+	 * Writes every lender in repository to snapshot of current lenders file, replacing any previous snapshot.
+	 * Snapshot is written to a temporary file first, readers never see it half written.
+	 *
+	 * @return      number of lenders written.
+	 */
+	public int write() throws IOException {
+		File source = resource.getFile();
+		File snapshot = getSnapshotFile();
+		Path temporary = new File(snapshot.getPath() + ".tmp").toPath();
+		
+		List<Lender> lenderPool = poolLenderRepository.findAllSorted();
+		int nameWidth = 0;
+		for(Lender lender: lenderPool) {
+			nameWidth = Math.max(nameWidth, lender.getName().getBytes(StandardCharsets.UTF_8).length);
+		}
+		if(nameWidth > Short.MAX_VALUE) {
+			throw new IOException("Lender name too long for snapshot: " + nameWidth + " bytes");
+		}
+		
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			
+			CRC32 crc = new CRC32();
+			byte[] padding = new byte[nameWidth];
+			ByteBuffer buffer = ByteBuffer.allocate(Math.max(WRITE_BUFFER_SIZE, FIXED_RECORD_SIZE + nameWidth));
+			long position = HEADER_SIZE;
+			for(Lender lender: lenderPool) {
+				if(buffer.remaining() < FIXED_RECORD_SIZE + nameWidth) {
+					position += flush(channel, buffer, position, crc);
+				}
+				byte[] name = lender.getName().getBytes(StandardCharsets.UTF_8);
+				buffer.putInt(lender.getId());
+				buffer.putLong(lender.getRateUnits());
+				buffer.putLong(lender.getAvailablePence());
+				buffer.putShort((short) name.length);
+				buffer.put(name);
+				buffer.put(padding, 0, nameWidth - name.length);
+			}
+			flush(channel, buffer, position, crc);
+			
+			//Header last, it carries checksum of records
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC);
+			header.putInt(FORMAT_VERSION);
+			header.putInt(lenderPool.size());
+			header.putInt(nameWidth);
+			header.putLong(source.lastModified());
+			header.putLong(source.length());
+			header.putLong(crc.getValue());
+			header.flip();
+			channel.write(header, 0);
+			channel.force(false);
+		}
+		
+		Files.move(temporary, snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		log.info(String.format("Written %d lenders to snapshot %s", lenderPool.size(), snapshot));
+		return lenderPool.size();
+	}
+	
+	
+	private long flush(FileChannel channel, ByteBuffer buffer, long position, CRC32 crc) throws IOException {
+		buffer.flip();
+		int bytes = buffer.remaining();
+		crc.update(buffer.duplicate());
+		while(buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+		buffer.clear();
+		return bytes;
+	}
+	
+	
+	private Header readHeader(FileChannel channel) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+		while(buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0);
+		buffer.flip();
+		if(buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+			throw new IOException("Not a lender snapshot");
+		}
+		
+		int formatVersion = buffer.getInt();
+		if(formatVersion != FORMAT_VERSION) {
+			throw new IOException("Unsupported snapshot format version: " + formatVersion);
+		}
+		
+		Header header = new Header(buffer.getInt(), buffer.getInt(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+		if(header.records < 0 || header.nameWidth < 0
+				|| channel.size() != HEADER_SIZE + (long) header.records * (FIXED_RECORD_SIZE + header.nameWidth)) {
+			throw new IOException("Snapshot size does not match its header");
+		}
+		return header;
+	}
+	
+	
+	private long checksum(FileChannel channel) throws IOException {
+		CRC32 crc = new CRC32();
+		long end = channel.size();
+		for(long regionStart = HEADER_SIZE; regionStart < end; regionStart += MAX_REGION_SIZE) {
+			crc.update(channel.map(FileChannel.MapMode.READ_ONLY, regionStart, Math.min(MAX_REGION_SIZE, end - regionStart)));
+		}
+		return crc.getValue();
+	}
+	
+	
+	private static final class Header {
+		
+		private final int records;
+		private final int nameWidth;
+		private final long sourceModified;
+		private final long sourceLength;
+		private final long checksum;
+		
+		private Header(int records, int nameWidth, long sourceModified, long sourceLength, long checksum) {
+			this.records = records;
+			this.nameWidth = nameWidth;
+			this.sourceModified = sourceModified;
+			this.sourceLength = sourceLength;
+			this.checksum = checksum;
+		}
+	
+	}
+
+}
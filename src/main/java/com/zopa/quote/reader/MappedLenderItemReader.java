@@ -0,0 +1,363 @@
+package com.zopa.quote.reader;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamSupport;
+import org.springframework.batch.item.file.ResourceAwareItemReaderItemStream;
+import org.springframework.core.io.Resource;
+import org.springframework.util.ClassUtils;
+
+import com.zopa.quote.domain.Lender;
+
+/**
+ * Reads lenders from a CSV file (name,rate,available) memory mapped with NIO. Numeric columns are parsed straight
+ * from the mapped bytes, only the name becomes a String. Behaves as the FlatFileItemReader in BatchConfig: lines
+ * starting with # are skipped, every other line takes the next lender ID and values that cannot be parsed are
+ * defaulted to 0 so the writer can ignore them.
+ * <p>
+ * When step execution context holds a partition (start and end offsets and rows before it, see
+ * LenderFilePartitioner) only lines starting inside the partition are read and IDs follow on from rows before it.
+ */
+public class MappedLenderItemReader extends ItemStreamSupport implements ResourceAwareItemReaderItemStream<Lender> {
+	
+	private static final Logger log = LoggerFactory.getLogger(MappedLenderItemReader.class);
+	
+	private static final int DEFAULT_REGION_SIZE = 256 * 1024 * 1024;
+	
+	public static final String START_POSITION_KEY = "startPosition";
+	public static final String END_POSITION_KEY = "endPosition";
+	public static final String FIRST_ROW_KEY = "firstRow";
+	
+	private static final String POSITION_KEY = "position";
+	private static final String ROW_SEQUENCE_KEY = "rowSequence";
+	
+	//Powers of ten exactly representable as double
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+	
+	//Files bigger than 2GB cannot be mapped at once, they are mapped region by region
+	private final int regionSize;
+	
+	private Resource resource;
+	private FileChannel channel;
+	private long fileSize;
+	
+	private MappedByteBuffer region;
+	private long regionStart;
+	
+	//File offset of next line to read and offset where partition ends
+	private long position;
+	private long endPosition;
+	private int rowSequence;
+	
+	//Partition read when execution context holds none, whole file by default
+	private long partitionStart;
+	private long partitionEnd = Long.MAX_VALUE;
+	private long partitionFirstRow;
+	
+	private byte[] nameBuffer = new byte[64];
+	
+	
+	public MappedLenderItemReader() {
+		this(DEFAULT_REGION_SIZE);
+	}
+	
+	MappedLenderItemReader(int regionSize) {
+		this.regionSize = regionSize;
+		setName(ClassUtils.getShortName(MappedLenderItemReader.class));
+	}
+	
+	
+	@Override
+	public void setResource(Resource resource) {
+		this.resource = resource;
+	}
+	
+	
+	/**
+	 * Sets byte range to read and number of rows before it, as found by LenderFilePartitioner. 
+	 * Values in the execution context given to open take precedence.
+	 *
+	 * @param  startPosition offset of first line
+	 * @param  endPosition offset right after last line
+	 * @param  firstRow rows before start position
+	 */
+	public void setPartition(long startPosition, long endPosition, long firstRow) {
+		this.partitionStart = startPosition;
+		this.partitionEnd = endPosition;
+		this.partitionFirstRow = firstRow;
+	}
+	
+	
+	@Override
+	public void open(ExecutionContext executionContext) throws ItemStreamException {
+		try {
+			
+			channel = FileChannel.open(resource.getFile().toPath(), StandardOpenOption.READ);
+			fileSize = channel.size();
+			region = null;
+			
+			//Whole file unless a partition is given
+			long startPosition = executionContext.getLong(START_POSITION_KEY, partitionStart);
+			endPosition = Math.min(executionContext.getLong(END_POSITION_KEY, partitionEnd), fileSize);
+			long firstRow = executionContext.getLong(FIRST_ROW_KEY, partitionFirstRow);
+			if(firstRow > Integer.MAX_VALUE) {
+				throw new ItemStreamException("Too many rows before partition for lender IDs: " + firstRow);
+			}
+			
+			//Restart from last committed line
+			position = executionContext.getLong(getExecutionContextKey(POSITION_KEY), startPosition);
+			rowSequence = executionContext.getInt(getExecutionContextKey(ROW_SEQUENCE_KEY), (int) firstRow);
+		
+		} catch (IOException e) {
+			throw new ItemStreamException("Failed to open lenders file: " + resource, e);
+		}
+	}
+	
+	
+	@Override
+	public void update(ExecutionContext executionContext) throws ItemStreamException {
+		executionContext.putLong(getExecutionContextKey(POSITION_KEY), position);
+		executionContext.putInt(getExecutionContextKey(ROW_SEQUENCE_KEY), rowSequence);
+	}
+	
+	
+	@Override
+	public void close() throws ItemStreamException {
+		try {
+			region = null;
+			if(channel != null) {
+				channel.close();
+				channel = null;
+			}
+		} catch (IOException e) {
+			throw new ItemStreamException("Failed to close lenders file: " + resource, e);
+		}
+	}
+	
+	
+	/**
+	 * Returns next lender from file, null once file is fully read.
+	 *
+	 * @return      next lender parsed.
+	 */
+	@Override
+	public Lender read() throws IOException {
+		
+		while(position < endPosition) {
+			
+			//Region has to hold the whole line
+			int lineStart = mapLine();
+			int newLine = lineStart;
+			while(newLine < region.limit() && region.get(newLine) != '\n') {
+				newLine++;
+			}
+			position = regionStart + newLine + 1;
+			
+			int lineEnd = newLine;
+			if(lineEnd > lineStart && region.get(lineEnd - 1) == '\r') {
+				lineEnd--;
+			}
+			
+			//Comment lines are skipped as FlatFileItemReader does
+			if(lineEnd > lineStart && region.get(lineStart) == '#') continue;
+			
+			return parseLender(lineStart, lineEnd);
+		}
+		
+		return null;
+	}
+	
+	
+	//Maps region starting at current position unless it already holds the whole line, returns line start in region
+	private int mapLine() throws IOException {
+		if(region != null && position >= regionStart && containsNewLine((int) (position - regionStart))) {
+			return (int) (position - regionStart);
+		}
+		
+		regionStart = position;
+		region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, Math.min(regionSize, fileSize - regionStart));
+		
+		if(!containsNewLine(0) && regionStart + region.limit() < fileSize) {
+			throw new IOException("Line longer than " + regionSize + " bytes at offset " + position);
+		}
+		return 0;
+	}
+	
+	
+	private boolean containsNewLine(int from) {
+		for(int i = from; i < region.limit(); i++) {
+			if(region.get(i) == '\n') return true;
+		}
+		
+		//Last line of file does not need a line break
+		return regionStart + region.limit() == fileSize && from < region.limit();
+	}
+	
+	
+	private Lender parseLender(int lineStart, int lineEnd) {
+		
+		int nameEnd = fieldEnd(lineStart, lineEnd);
+		String name = parseName(lineStart, nameEnd);
+		
+		double rate = 0;
+		int rateEnd = nameEnd;
+		if(nameEnd < lineEnd) {
+			rateEnd = fieldEnd(nameEnd + 1, lineEnd);
+			rate = parseDouble(nameEnd + 1, rateEnd, "RATE");
+		} else {
+			log.error("Error parsing RATE: column not found");
+		}
+		
+		double available = 0;
+		if(rateEnd < lineEnd) {
+			available = parseDouble(rateEnd + 1, fieldEnd(rateEnd + 1, lineEnd), "AVAILABLE");
+		} else {
+			log.error("Error parsing AVAILABLE: column not found");
+		}
+		
+		return new Lender(++rowSequence, name, rate, available);
+	}
+	
+	
+	//Position of delimiter ending the field, commas inside quotes do not count
+	private int fieldEnd(int fieldStart, int lineEnd) {
+		boolean quoted = false;
+		for(int i = fieldStart; i < lineEnd; i++) {
+			byte current = region.get(i);
+			if(current == '"') {
+				quoted = !quoted;
+			} else if(current == ',' && !quoted) {
+				return i;
+			}
+		}
+		return lineEnd;
+	}
+	
+	
+	private String parseName(int start, int end) {
+		
+		//Trimmed and unquoted, doubled quotes inside stand for a single one
+		while(start < end && (region.get(start) & 0xFF) <= ' ') start++;
+		while(end > start && (region.get(end - 1) & 0xFF) <= ' ') end--;
+		boolean quoted = end - start >= 2 && region.get(start) == '"' && region.get(end - 1) == '"';
+		if(quoted) {
+			start++;
+			end--;
+		}
+		
+		if(nameBuffer.length < end - start) {
+			nameBuffer = new byte[Math.max(end - start, nameBuffer.length * 2)];
+		}
+		int length = 0;
+		for(int i = start; i < end; i++) {
+			byte current = region.get(i);
+			nameBuffer[length++] = current;
+			if(quoted && current == '"' && i + 1 < end && region.get(i + 1) == '"') i++;
+		}
+		
+		return new String(nameBuffer, 0, length, StandardCharsets.UTF_8);
+	}
+	
+	
+	/**
+	 * Parses decimal number from mapped bytes, only blanks and quotes may surround it. A field holding
+	 * anything else is logged and read as 0, as FlatFileItemReader does. Mantissas of up to 15 significant
+	 * digits are exact doubles, combined with a power of ten up to 22 by a single division or multiplication
+	 * they round exactly as Double.parseDouble, longer numbers are handed to Double.parseDouble.
+	 */
+	private double parseDouble(int start, int end, String column) {
+		
+		while(start < end && ((region.get(start) & 0xFF) <= ' ' || region.get(start) == '"')) start++;
+		
+		int i = start;
+		boolean negative = false;
+		if(i < end && (region.get(i) == '-' || region.get(i) == '+')) {
+			negative = region.get(i) == '-';
+			i++;
+		}
+		
+		long mantissa = 0;
+		boolean hasDigits = false;
+		int digits = 0;
+		int exponent = 0;
+		boolean fraction = false;
+		for(; i < end; i++) {
+			byte current = region.get(i);
+			if(current >= '0' && current <= '9') {
+				hasDigits = true;
+				if(digits < 18) {
+					mantissa = mantissa * 10 + (current - '0');
+					if(mantissa > 0) digits++;
+					if(fraction) exponent--;
+				} else if(!fraction) {
+					exponent++;
+				}
+			} else if(current == '.' && !fraction) {
+				fraction = true;
+			} else {
+				break;
+			}
+		}
+		
+		if(!hasDigits) {
+			log.error("Error parsing " + column + ": " + text(start, end));
+			return 0;
+		}
+		
+		//Exponent part, if any
+		if(i + 1 < end && (region.get(i) == 'e' || region.get(i) == 'E')) {
+			return parseDoubleFallback(start, end, column);
+		}
+		
+		//Trailing characters, ie: 0.07abc
+		for(int tail = i; tail < end; tail++) {
+			byte current = region.get(tail);
+			if((current & 0xFF) > ' ' && current != '"') {
+				log.error("Error parsing " + column + ": " + text(start, end));
+				return 0;
+			}
+		}
+		
+		double value;
+		if(digits > 15 || exponent < -22 || exponent > 22) {
+			return parseDoubleFallback(start, i, column);
+		} else if(exponent < 0) {
+			value = mantissa / POWERS_OF_TEN[-exponent];
+		} else {
+			value = mantissa * POWERS_OF_TEN[exponent];
+		}
+		
+		return negative ? -value : value;
+	}
+	
+	
+	private double parseDoubleFallback(int start, int end, String column) {
+		String text = text(start, end).replace("\"", "");
+		try {
+			return Double.parseDouble(text);
+		} catch (NumberFormatException e) {
+			log.error("Error parsing " + column + ": " + e.getMessage());
+			return 0;
+		}
+	}
+	
+	
+	private String text(int start, int end) {
+		byte[] bytes = new byte[end - start];
+		for(int i = start; i < end; i++) {
+			bytes[i - start] = region.get(i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8).trim();
+	}
+
+}
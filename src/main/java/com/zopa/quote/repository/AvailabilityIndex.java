@@ -0,0 +1,191 @@
+package com.zopa.quote.repository;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import com.zopa.quote.domain.Lender;
+
+/**
+ * Cumulative availability of lenders in rate order, backed by a Fenwick tree so that
+ * prefix sums and cut-off searches run in O(log n). Rate levels are built with the tree.
+ * An index never changes once built, so readers can use it without locking. A change is
+ * therefore never O(log n): withReplaced copies the whole index, O(n) array copies without
+ * comparisons, and any other change drops the index to be rebuilt in O(n) by the next reader.
+ * Each event of a feed costs O(n) once quotes are read between events, as measured by the
+ * feed group of LenderFeedBenchmark.
+ */
+class AvailabilityIndex implements RateOrderedLenders {
+	
+	//Lenders in rate order, position in array is position in tree
+	private final Lender[] lenders;
+	
+	//Fenwick tree of available pence, 1 based
+	private final long[] tree;
+	
+	private final RateLevels rateLevels;
+	
+	
+	AvailabilityIndex(Collection<Lender> sortedLenders) {
+		lenders = sortedLenders.toArray(new Lender[sortedLenders.size()]);
+		tree = new long[lenders.length + 1];
+		
+		//Linear construction, each node pushes its partial sum to its parent
+		for(int i = 1; i <= lenders.length; i++) {
+			tree[i] += lenders[i - 1].getAvailablePence();
+			int parent = i + (i & -i);
+			if(parent <= lenders.length) {
+				tree[parent] += tree[i];
+			}
+		}
+		rateLevels = RateLevels.of(this);
+	}
+	
+	
+	private AvailabilityIndex(Lender[] lenders, long[] tree, RateLevels rateLevels) {
+		this.lenders = lenders;
+		this.tree = tree;
+		this.rateLevels = rateLevels;
+	}
+	
+	
+	/**
+	 * Returns number of lenders in index.
+	 *
+	 * @return      number of lenders.
+	 */
+	@Override
+	public int size() {
+		return lenders.length;
+	}
+	
+	
+	/**
+	 * Returns lender at rate order position provided.
+	 *
+	 * @param  position zero based position in rate order
+	 * @return      lender at position.
+	 */
+	Lender get(int position) {
+		return lenders[position];
+	}
+	
+	
+	@Override
+	public int getId(int position) {
+		return lenders[position].getId();
+	}
+	
+	
+	@Override
+	public long getRateUnits(int position) {
+		return lenders[position].getRateUnits();
+	}
+	
+	
+	@Override
+	public long getAvailablePence(int position) {
+		return lenders[position].getAvailablePence();
+	}
+	
+	
+	/**
+	 * Returns read only iterator over lenders of index in rate order.
+	 *
+	 * @return      lenders in rate order.
+	 */
+	Iterator<Lender> iterator() {
+		return Collections.unmodifiableList(Arrays.asList(lenders)).iterator();
+	}
+	
+	
+	/**
+	 * Returns available pence summed over the first lenders in rate order.
+	 *
+	 * @param  count number of lenders to sum
+	 * @return      cumulative available pence of first count lenders.
+	 */
+	long prefixAvailable(int count) {
+		long sum = 0;
+		for(int i = count; i > 0; i -= i & -i) {
+			sum += tree[i];
+		}
+		return sum;
+	}
+	
+	
+	/**
+	 * Returns a copy of index where the lender holding the same rate and ID as the one provided is replaced,
+	 * so its position does not change. This index is left untouched for readers still holding it. Lenders, tree
+	 * and rate levels are copied in O(n), then cumulative availability of the copy is updated in O(log n), 
+	 * no sort is needed.
+	 *
+	 * @param  lender new lender data
+	 * @return      updated index, null when no lender with that rate and ID is in index.
+	 */
+	AvailabilityIndex withReplaced(Lender lender) {
+		int position = Arrays.binarySearch(lenders, lender, Lender.getRateSorter());
+		if(position < 0) return null;
+		
+		long delta = lender.getAvailablePence() - lenders[position].getAvailablePence();
+		Lender[] replacedLenders = lenders.clone();
+		replacedLenders[position] = lender;
+		long[] replacedTree = tree.clone();
+		for(int i = position + 1; i < replacedTree.length; i += i & -i) {
+			replacedTree[i] += delta;
+		}
+		return new AvailabilityIndex(replacedLenders, replacedTree, rateLevels.withAvailable(rateLevels.levelOf(position), delta));
+	}
+	
+	
+	/**
+	 * Returns how many lenders, taken in rate order, are needed to cover the amount provided.
+	 * When the amount cannot be covered the whole index size is returned.
+	 *
+	 * @param  amountPence amount to cover in pence
+	 * @return      number of lowest rate lenders covering amount.
+	 */
+	@Override
+	public int coveringCount(long amountPence) {
+		if(amountPence <= 0) return 0;
+		
+		//Descends tree looking for the longest prefix still below amount
+		int position = 0;
+		long sum = 0;
+		for(int step = Integer.highestOneBit(Math.max(lenders.length, 1)); step > 0; step >>= 1) {
+			int next = position + step;
+			if(next <= lenders.length && sum + tree[next] < amountPence) {
+				position = next;
+				sum += tree[next];
+			}
+		}
+		
+		//Lender right after that prefix is the cut-off one
+		return Math.min(position + 1, lenders.length);
+	}
+	
+	
+	/**
+	 * Returns lenders of index aggregated by rate.
+	 *
+	 * @return      rate levels of lenders in index.
+	 */
+	@Override
+	public RateLevels rateLevels() {
+		return rateLevels;
+	}
+	
+	
+	/**
+	 * Returns read only view of the lowest rate lenders covering the amount provided, no copy is made.
+	 *
+	 * @param  amountPence amount to cover in pence
+	 * @return      lowest rate lenders covering amount, all lenders if it cannot be covered.
+	 */
+	List<Lender> covering(long amountPence) {
+		return Collections.unmodifiableList(Arrays.asList(lenders).subList(0, coveringCount(amountPence)));
+	}
+
+}
@@ -0,0 +1,134 @@
+package com.zopa.quote.repository;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map from int keys to non negative int values, no boxing involved.
+ */
+class IntIndexMap {
+	
+	private int[] keys;
+	
+	//Values are stored plus one, zero marks an empty slot
+	private int[] values;
+	
+	private int size;
+	private int mask;
+	
+	
+	IntIndexMap(int capacity) {
+		int length = Integer.highestOneBit(Math.max(capacity, 8) * 2 - 1) << 1;
+		keys = new int[length];
+		values = new int[length];
+		mask = length - 1;
+	}
+	
+	
+	/**
+	 * Returns value mapped to key provided.
+	 *
+	 * @param  key key to look for
+	 * @return      value mapped, -1 if key not found.
+	 */
+	int get(int key) {
+		for(int slot = hash(key) & mask; values[slot] != 0; slot = (slot + 1) & mask) {
+			if(keys[slot] == key) return values[slot] - 1;
+		}
+		return -1;
+	}
+	
+	
+	/**
+	 * Maps key to value provided, replacing previous value if any.
+	 *
+	 * @param  key key to map
+	 * @param  value non negative value
+	 */
+	void put(int key, int value) {
+		int slot = hash(key) & mask;
+		while(values[slot] != 0) {
+			if(keys[slot] == key) {
+				values[slot] = value + 1;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		
+		keys[slot] = key;
+		values[slot] = value + 1;
+		
+		//Load factor kept under a half
+		if(++size * 2 > keys.length) {
+			resize();
+		}
+	}
+	
+	
+	/**
+	 * Removes key provided, entries following it in probe sequence are shifted back so lookups still find them.
+	 *
+	 * @param  key key to remove
+	 * @return      value mapped, -1 if key not found.
+	 */
+	int remove(int key) {
+		int slot = hash(key) & mask;
+		while(values[slot] != 0 && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		if(values[slot] == 0) return -1;
+		
+		int removed = values[slot] - 1;
+		int gap = slot;
+		for(int next = (gap + 1) & mask; values[next] != 0; next = (next + 1) & mask) {
+			
+			//Entry moves to gap unless its home slot lies cyclically between gap and itself
+			int home = hash(keys[next]) & mask;
+			if(((next - home) & mask) >= ((next - gap) & mask)) {
+				keys[gap] = keys[next];
+				values[gap] = values[next];
+				gap = next;
+			}
+		}
+		values[gap] = 0;
+		size--;
+		return removed;
+	}
+	
+	
+	int size() {
+		return size;
+	}
+	
+	
+	void clear() {
+		Arrays.fill(values, 0);
+		size = 0;
+	}
+	
+	
+	private void resize() {
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new int[oldKeys.length * 2];
+		values = new int[oldValues.length * 2];
+		mask = keys.length - 1;
+		
+		for(int i = 0; i < oldKeys.length; i++) {
+			if(oldValues[i] != 0) {
+				int slot = hash(oldKeys[i]) & mask;
+				while(values[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+	
+	
+	private static int hash(int key) {
+		int hash = key * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+	
+}
@@ -0,0 +1,555 @@
+package com.zopa.quote.repository;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.function.UnaryOperator;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import com.zopa.quote.domain.Lender;
+import com.zopa.quote.domain.Money;
+
+/**
+ * Lender repository storing lender fields in parallel primitive arrays instead of Lender objects. 
+ * A rate ordered copy of the numeric columns is rebuilt lazily after changes and scanned when quoting, 
+ * Lender objects are only created when a method has to return them. Rates are kept in millionths and 
+ * amounts in pence, as Lender holds them. Columns are read and written under the repository lock, the 
+ * rate ordered copy is immutable and read without locking.
+ */
+@Repository
+@ConditionalOnProperty(name = "lender.repository.type", havingValue = "array")
+public class LenderPoolArrayRepositoryImpl implements LenderPoolRepository {
+	
+	private static final int INITIAL_CAPACITY = 1024;
+	
+	//Lender columns by slot, a replaced lender keeps its slot and last slot fills the one of a removed lender.
+	//Replaced as a whole when capacity grows, so no reader sees arrays of different generations
+	private volatile SlotColumns slotColumns;
+	private volatile int slots;
+	
+	//Slot of each lender ID
+	private IntIndexMap slotById;
+	
+	//Running total of available pence across all lenders
+	private volatile long totalAvailable;
+	
+	//Rate ordered columns, rebuilt lazily after any change
+	private volatile SortedColumns sortedColumns;
+	
+	//Increased on every change, lets readers detect a stale view of the repository
+	private volatile long version;
+	
+	
+	public LenderPoolArrayRepositoryImpl() {
+		//Initializing persisting repository
+		slotColumns = new SlotColumns(INITIAL_CAPACITY);
+		slotById = new IntIndexMap(INITIAL_CAPACITY);
+	}
+	
+	
+	/**
+	 * Returns total number of lenders.  
+	 *
+	 * @return      total number of lenders in repository.
+	 */
+	@Override
+	public int total() {
+		return slots;
+	}
+	
+	
+	/**
+	 * Returns current version of repository, increased every time lenders are saved or flushed.  
+	 *
+	 * @return      repository version.
+	 */
+	@Override
+	public long version() {
+		return version;
+	}
+	
+	
+	/**
+	 * Returns total amount available summing all lenders.  
+	 *
+	 * @return      total amount available in repository.
+	 */
+	@Override
+	public double totalAvailable() {
+		return Money.toPounds(totalAvailable);
+	}
+	
+	
+	/**
+	 * Returns total amount available summing all lenders, in pence.  
+	 *
+	 * @return      total pence available in repository.
+	 */
+	@Override
+	public long totalAvailablePence() {
+		return totalAvailable;
+	}
+	
+	
+	/**
+	 * Method stores Lender domain object fields in repository columns, a lender already stored 
+	 * with the same ID is replaced in its slot. Lender object itself is not kept.  
+	 * Saves are serialized so lenders can be written from several loading threads.  
+	 *
+	 */
+	@Override
+	public synchronized void save(Lender lender) {
+		int slot = slotById.get(lender.getId());
+		
+		if(slot < 0) {
+			if(slots == slotColumns.ids.length) {
+				slotColumns = slotColumns.grow();
+			}
+			slot = slots++;
+			slotById.put(lender.getId(), slot);
+		} else {
+			totalAvailable -= slotColumns.availables[slot];
+		}
+		
+		SlotColumns columns = slotColumns;
+		columns.ids[slot] = lender.getId();
+		columns.rates[slot] = lender.getRateUnits();
+		columns.availables[slot] = lender.getAvailablePence();
+		columns.names[slot] = lender.getName();
+		totalAvailable += lender.getAvailablePence();
+		
+		sortedColumns = null;
+		version++;
+	}
+	
+	
+	/**
+	 * Method saves every lender provided as save does, holding repository lock once for the whole list.  
+	 *
+	 * @param  lenders lenders to save
+	 */
+	@Override
+	public synchronized void saveAll(List<? extends Lender> lenders) {
+		for(Lender lender: lenders) {
+			save(lender);
+		}
+	}
+	
+	
+	/**
+	 * Method saves lenders already in rate order as saveAll does. Slots of an empty repository are then 
+	 * filled in rate order, so rate ordered columns are rebuilt without sorting.  
+	 *
+	 * @param  lenders lenders to save, in rate order
+	 */
+	@Override
+	public void saveAllSorted(List<? extends Lender> lenders) {
+		saveAll(lenders);
+	}
+	
+	
+	/**
+	 * Method removes lender with ID provided from persistence repository.  
+	 *
+	 * @param  id lender ID
+	 * @return      true if lender was found and removed.
+	 */
+	@Override
+	public synchronized boolean remove(int id) {
+		int slot = slotById.remove(id);
+		if(slot < 0) return false;
+		
+		SlotColumns columns = slotColumns;
+		totalAvailable -= columns.availables[slot];
+		
+		//Last slot moves into the one released so slots stay contiguous
+		int last = --slots;
+		if(slot != last) {
+			columns.ids[slot] = columns.ids[last];
+			columns.rates[slot] = columns.rates[last];
+			columns.availables[slot] = columns.availables[last];
+			columns.names[slot] = columns.names[last];
+			slotById.put(columns.ids[slot], slot);
+		}
+		columns.names[last] = null;
+		
+		sortedColumns = null;
+		version++;
+		return true;
+	}
+	
+	
+	/**
+	 * Method replaces lender with ID provided by the result of change applied to it, holding repository lock 
+	 * so no other save or update of the lender happens in between. A null result removes the lender.  
+	 *
+	 * @param  id lender ID
+	 * @param  change function from current lender to new one, null to remove it
+	 * @return      true if lender was found and changed.
+	 */
+	@Override
+	public synchronized boolean update(int id, UnaryOperator<Lender> change) {
+		Lender current = find(id);
+		if(current == null) return false;
+		
+		Lender changed = change.apply(current);
+		if(changed == null) {
+			remove(id);
+		} else {
+			save(changed);
+		}
+		return true;
+	}
+	
+	
+	/**
+	 * Method returns a Lender domain object from persistence repository based on ID provided, read under 
+	 * repository lock so the slot index and columns are seen as the last save left them.  
+	 *
+	 * @return      lender with ID provided.
+	 */
+	@Override
+	public synchronized Lender find(int id) {
+		int slot = slotById.get(id);
+		return slot < 0 ? null : slotColumns.get(slot);
+	}
+	
+	
+	/**
+	 * Method returns a list of Lender domain objects from persistence repository.  
+	 *
+	 * @return      full lender list found in repository.
+	 */
+	@Override
+	public synchronized List<Lender> findAll() {
+		SlotColumns columns = slotColumns;
+		List<Lender> poolLenderList = new ArrayList<Lender>(slots);
+		for(int slot = 0; slot < slots; slot++) {
+			poolLenderList.add(columns.get(slot));
+		}
+		return poolLenderList;
+	}
+	
+	
+	/**
+	 * Method returns a sorted list of Lender domain objects from persistence repository, order based on rate property.  
+	 *
+	 * @return      full sorted lender list by rate found in repository.
+	 */
+	@Override
+	public List<Lender> findAllSorted() {
+		return new ArrayList<Lender>(sortedColumns().asList(slots));
+	}
+	
+	
+	/**
+	 * Method returns an iterator over Lender domain objects from persistence repository, order based on 
+	 * rate property (ties by ID). Lender objects are created as iteration goes.  
+	 *
+	 * @return      read only iterator of lenders sorted by rate.
+	 */
+	@Override
+	public Iterator<Lender> sortedIterator() {
+		return sortedIterator(sortedColumns());
+	}
+	
+	
+	private Iterator<Lender> sortedIterator(final SortedColumns columns) {
+		return new Iterator<Lender>() {
+			
+			private int position = 0;
+			
+			@Override
+			public boolean hasNext() {
+				return position < columns.size();
+			}
+			
+			@Override
+			public Lender next() {
+				if(!hasNext()) throw new NoSuchElementException();
+				return columns.get(position++);
+			}
+		
+		};
+	}
+	
+	
+	/**
+	 * Method returns a lazy cursor over Lender domain objects in rate order (ties by ID), walking rate ordered 
+	 * columns. Columns are sorted once per version, as for findAllSorted, and shared by every cursor until 
+	 * the next change, so each cursor only pays for the lenders it takes.  
+	 *
+	 * @return      sequential spliterator of lenders sorted by rate.
+	 */
+	@Override
+	public Spliterator<Lender> sortedSpliterator() {
+		SortedColumns columns = sortedColumns();
+		return new RateOrderedSpliterator(sortedIterator(columns), columns.size());
+	}
+	
+	
+	/**
+	 * Method returns the lenders with lowest rate that cover the amount provided, cut-off lender 
+	 * is found by binary search over cumulative availability in rate order.  
+	 *
+	 * @param  amount amount to cover
+	 * @return      read only list of lowest rate lenders covering amount, all lenders if amount cannot be covered.
+	 */
+	@Override
+	public List<Lender> findLowestRateLenders(double amount) {
+		SortedColumns columns = sortedColumns();
+		return columns.asList(columns.coveringCount(Money.toPence(amount)));
+	}
+	
+	
+	/**
+	 * Method returns a read only view of all lenders in rate order, fields readable by position.  
+	 *
+	 * @return      rate ordered view of lenders with cumulative availability.
+	 */
+	@Override
+	public RateOrderedLenders findAllRateOrdered() {
+		return sortedColumns();
+	}
+	
+	
+	/**
+	 * Method removes all objects from persistence repository.  
+	 *
+	 */
+	@Override
+	public synchronized void flush() {
+		Arrays.fill(slotColumns.names, 0, slots, null);
+		slots = 0;
+		slotById.clear();
+		totalAvailable = 0;
+		sortedColumns = null;
+		version++;
+	}
+	
+	
+	private SortedColumns sortedColumns() {
+		SortedColumns columns = sortedColumns;
+		if(columns == null) {
+			synchronized (this) {
+				columns = sortedColumns;
+				if(columns == null) {
+					SlotColumns slotColumns = this.slotColumns;
+					columns = new SortedColumns(slotColumns.ids, slotColumns.rates, slotColumns.availables, slotColumns.names, slots);
+					sortedColumns = columns;
+				}
+			}
+		}
+		return columns;
+	}
+	
+	
+	/**
+	 * Lender columns by slot. Arrays are written in place under repository lock, growing them copies every
+	 * column into a new holder.
+	 */
+	private static final class SlotColumns {
+		
+		private final int[] ids;
+		private final long[] rates;
+		private final long[] availables;
+		
+		//Names are only needed to build Lender objects, kept apart from scanned columns
+		private final String[] names;
+		
+		
+		private SlotColumns(int capacity) {
+			this(new int[capacity], new long[capacity], new long[capacity], new String[capacity]);
+		}
+		
+		
+		private SlotColumns(int[] ids, long[] rates, long[] availables, String[] names) {
+			this.ids = ids;
+			this.rates = rates;
+			this.availables = availables;
+			this.names = names;
+		}
+		
+		
+		private SlotColumns grow() {
+			int capacity = ids.length * 2;
+			return new SlotColumns(Arrays.copyOf(ids, capacity), Arrays.copyOf(rates, capacity), 
+					Arrays.copyOf(availables, capacity), Arrays.copyOf(names, capacity));
+		}
+		
+		
+		private Lender get(int slot) {
+			return Lender.ofPence(ids[slot], names[slot], rates[slot], availables[slot]);
+		}
+	
+	}
+	
+	
+	/**
+	 * Copy of lender columns sorted by rate (ties by ID) plus cumulative availability for cut-off searches
+	 * and rate levels for pricing.
+	 */
+	static final class SortedColumns implements RateOrderedLenders {
+		
+		private final int[] ids;
+		private final long[] rates;
+		private final long[] availables;
+		private final long[] cumulativeAvailables;
+		private final String[] names;
+		private final RateLevels rateLevels;
+		
+		
+		SortedColumns(int[] slotIds, long[] slotRates, long[] slotAvailables, String[] slotNames, int slots) {
+			int[] order = new int[slots];
+			for(int slot = 0; slot < slots; slot++) {
+				order[slot] = slot;
+			}
+			if(!isSorted(order, slotRates, slotIds)) {
+				sort(order, slotRates, slotIds);
+			}
+			
+			ids = new int[slots];
+			rates = new long[slots];
+			availables = new long[slots];
+			cumulativeAvailables = new long[slots];
+			names = new String[slots];
+			
+			long cumulativeAvailable = 0;
+			for(int position = 0; position < slots; position++) {
+				int slot = order[position];
+				ids[position] = slotIds[slot];
+				rates[position] = slotRates[slot];
+				availables[position] = slotAvailables[slot];
+				names[position] = slotNames[slot];
+				cumulativeAvailable += slotAvailables[slot];
+				cumulativeAvailables[position] = cumulativeAvailable;
+			}
+			rateLevels = RateLevels.of(this);
+		}
+		
+		
+		@Override
+		public int size() {
+			return ids.length;
+		}
+		
+		
+		@Override
+		public int getId(int position) {
+			return ids[position];
+		}
+		
+		
+		@Override
+		public long getRateUnits(int position) {
+			return rates[position];
+		}
+		
+		
+		@Override
+		public long getAvailablePence(int position) {
+			return availables[position];
+		}
+		
+		
+		@Override
+		public int coveringCount(long amountPence) {
+			if(amountPence <= 0) return 0;
+			
+			//First position whose cumulative availability reaches amount is the cut-off lender
+			int low = 0;
+			int high = ids.length;
+			while(low < high) {
+				int middle = (low + high) >>> 1;
+				if(cumulativeAvailables[middle] < amountPence) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return Math.min(low + 1, ids.length);
+		}
+		
+		
+		@Override
+		public RateLevels rateLevels() {
+			return rateLevels;
+		}
+		
+		
+		Lender get(int position) {
+			return Lender.ofPence(ids[position], names[position], rates[position], availables[position]);
+		}
+		
+		
+		List<Lender> asList(int count) {
+			return new LenderList(count);
+		}
+		
+		
+		private final class LenderList extends AbstractList<Lender> implements RandomAccess {
+			
+			private final int count;
+			
+			private LenderList(int count) {
+				this.count = count;
+			}
+			
+			@Override
+			public Lender get(int index) {
+				if(index >= count) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+				return SortedColumns.this.get(index);
+			}
+			
+			@Override
+			public int size() {
+				return count;
+			}
+		
+		}
+		
+		
+		//Merge sort of slots by rate then ID, primitive comparisons only
+		//Slots saved in rate order, as loaded from a snapshot, need no sorting
+		private static boolean isSorted(int[] order, long[] rates, int[] ids) {
+			for(int i = 1; i < order.length; i++) {
+				int previous = order[i - 1];
+				int slot = order[i];
+				if(rates[slot] < rates[previous] || (rates[slot] == rates[previous] && ids[slot] < ids[previous])) return false;
+			}
+			return true;
+		}
+		
+		
+		private static void sort(int[] order, long[] rates, int[] ids) {
+			int[] buffer = new int[order.length];
+			for(int width = 1; width < order.length; width *= 2) {
+				for(int low = 0; low < order.length - width; low += width * 2) {
+					int middle = low + width;
+					int high = Math.min(low + width * 2, order.length);
+					
+					int left = low, right = middle, target = low;
+					while(left < middle && right < high) {
+						int leftSlot = order[left];
+						int rightSlot = order[right];
+						boolean takeRight = rates[rightSlot] < rates[leftSlot] 
+								|| (rates[rightSlot] == rates[leftSlot] && ids[rightSlot] < ids[leftSlot]);
+						buffer[target++] = takeRight ? order[right++] : order[left++];
+					}
+					while(left < middle) buffer[target++] = order[left++];
+					while(right < high) buffer[target++] = order[right++];
+					System.arraycopy(buffer, low, order, low, high - low);
+				}
+			}
+		}
+	
+	}
+
+}
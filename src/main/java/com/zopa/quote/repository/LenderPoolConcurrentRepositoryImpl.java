@@ -0,0 +1,438 @@
+package com.zopa.quote.repository;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import com.zopa.quote.domain.Lender;
+import com.zopa.quote.domain.Money;
+
+/**
+ * Lender repository safe for concurrent writers and readers. Writers update a concurrent map and a concurrent
+ * rate index, serialized only per lender ID through striped locks. Readers never wait for writers: rate ordered
+ * reads are served from an immutable snapshot, rebuilt by one reader when repository changed and no write is in
+ * flight, while other readers keep the last snapshot published. Readers only wait while no lender has been
+ * published yet, saveAll publishes its lenders when the snapshot is empty so loading is enough to avoid it.
+ * Under sustained writes the rebuilding reader waits for writes in flight after a few skipped rebuilds, so
+ * snapshots never fall behind for long.
+ */
+@Repository
+@ConditionalOnProperty(name = "lender.repository.type", havingValue = "concurrent")
+public class LenderPoolConcurrentRepositoryImpl implements LenderPoolRepository {
+	
+	private static final int STRIPES = 64;
+	
+	//Rebuilds skipped for writes in flight before a rebuild waits for them
+	private static final int MAX_SKIPPED_BUILDS = 8;
+	
+	private final ConcurrentMap<Integer, Lender> poolLenderRepo = new ConcurrentHashMap<Integer, Lender>();
+	
+	//Index of lenders ordered by rate (ties by ID), only replaced while no write is in flight
+	private volatile ConcurrentSkipListSet<Lender> rateIndex = new ConcurrentSkipListSet<Lender>(Lender.getRateSorter());
+	
+	//Saves of the same ID are serialized, map and rate index have to change together
+	private final Object[] stripes = new Object[STRIPES];
+	
+	//Shared by writers, exclusive for flush and snapshot builds
+	private final ReadWriteLock writesInFlight = new ReentrantReadWriteLock();
+	
+	//Held by the reader rebuilding the snapshot
+	private final Lock snapshotBuild = new ReentrantLock();
+	
+	//Rebuilds skipped in a row since last snapshot published, guarded by snapshotBuild
+	private int skippedBuilds;
+	
+	//Increased once every change is complete
+	private final AtomicLong version = new AtomicLong();
+	
+	private volatile Snapshot snapshot = new Snapshot(0, new AvailabilityIndex(new ArrayList<Lender>()), 0);
+	
+	
+	public LenderPoolConcurrentRepositoryImpl() {
+		for(int i = 0; i < STRIPES; i++) {
+			stripes[i] = new Object();
+		}
+	}
+	
+	
+	/**
+	 * Returns total number of lenders.
+	 *
+	 * @return      total number of lenders in repository.
+	 */
+	@Override
+	public int total() {
+		return poolLenderRepo.size();
+	}
+	
+	
+	/**
+	 * Returns version of lenders seen by readers, increased every time lenders are saved or flushed.
+	 * Version of current snapshot is returned, so views read afterwards are never older.
+	 *
+	 * @return      repository version.
+	 */
+	@Override
+	public long version() {
+		return snapshot().version;
+	}
+	
+	
+	/**
+	 * Returns total amount available summing all lenders of current snapshot.
+	 *
+	 * @return      total amount available in repository.
+	 */
+	@Override
+	public double totalAvailable() {
+		return Money.toPounds(snapshot().totalAvailable);
+	}
+	
+	
+	/**
+	 * Returns total amount available summing all lenders of current snapshot, in pence.
+	 *
+	 * @return      total pence available in repository.
+	 */
+	@Override
+	public long totalAvailablePence() {
+		return snapshot().totalAvailable;
+	}
+	
+	
+	/**
+	 * Method inserts a new Lender domain object to persistence repository, a lender
+	 * already stored with the same ID is replaced. Lenders must not be modified once saved,
+	 * changes have to be saved as a new Lender object so rate index remains consistent.
+	 * Lenders with different IDs are saved concurrently.
+	 *
+	 */
+	@Override
+	public void save(Lender lender) {
+		Lock lock = writesInFlight.readLock();
+		lock.lock();
+		try {
+			synchronized (stripes[(lender.getId() & 0x7fffffff) % STRIPES]) {
+				Lender previous = poolLenderRepo.put(lender.getId(), lender);
+				
+				//Replaced lender has to leave rate index before new one gets in
+				if(previous != null) {
+					rateIndex.remove(previous);
+				}
+				rateIndex.add(lender);
+			}
+			version.incrementAndGet();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	
+	/**
+	 * Method saves every lender provided as save does. When no lender has been published to readers yet,
+	 * a snapshot is published once lenders are saved, so first readers find them without waiting.
+	 *
+	 * @param  lenders lenders to save
+	 */
+	@Override
+	public void saveAll(List<? extends Lender> lenders) {
+		for(Lender lender: lenders) {
+			save(lender);
+		}
+		
+		if(snapshot.index.size() == 0 && !lenders.isEmpty()) {
+			snapshotBuild.lock();
+			try {
+				if(snapshot.index.size() == 0) {
+					publish(true);
+				}
+			} finally {
+				snapshotBuild.unlock();
+			}
+		}
+	}
+	
+	
+	/**
+	 * Method saves lenders already in rate order (ties by ID). Into an empty repository the rate index is 
+	 * built from them in O(n), waiting for writes in flight, otherwise, or when lenders are not in rate order, 
+	 * they are saved as saveAll does. Lenders loaded are published to readers as saveAll does.
+	 *
+	 * @param  lenders lenders to save, in rate order
+	 */
+	@Override
+	public void saveAllSorted(List<? extends Lender> lenders) {
+		if(!RateOrderedSet.isRateOrdered(lenders) || !loadSorted(lenders)) {
+			saveAll(lenders);
+			return;
+		}
+		
+		snapshotBuild.lock();
+		try {
+			if(snapshot.index.size() == 0) {
+				publish(true);
+			}
+		} finally {
+			snapshotBuild.unlock();
+		}
+	}
+	
+	
+	//Fills an empty repository from lenders in rate order, false if repository holds lenders or an ID repeats
+	private boolean loadSorted(List<? extends Lender> lenders) {
+		Lock lock = writesInFlight.writeLock();
+		lock.lock();
+		try {
+			if(!poolLenderRepo.isEmpty()) return false;
+			
+			for(Lender lender: lenders) {
+				poolLenderRepo.put(lender.getId(), lender);
+			}
+			if(poolLenderRepo.size() != lenders.size()) {
+				poolLenderRepo.clear();
+				return false;
+			}
+			
+			rateIndex = new ConcurrentSkipListSet<Lender>(new RateOrderedSet(lenders));
+			version.incrementAndGet();
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	
+	/**
+	 * Method removes lender with ID provided from persistence repository.
+	 *
+	 * @param  id lender ID
+	 * @return      true if lender was found and removed.
+	 */
+	@Override
+	public boolean remove(int id) {
+		Lock lock = writesInFlight.readLock();
+		lock.lock();
+		try {
+			synchronized (stripes[(id & 0x7fffffff) % STRIPES]) {
+				Lender previous = poolLenderRepo.remove(id);
+				if(previous == null) return false;
+				rateIndex.remove(previous);
+			}
+			version.incrementAndGet();
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	
+	/**
+	 * Method replaces lender with ID provided by the result of change applied to it, holding the lender's
+	 * stripe so no other save or update of the lender happens in between. A null result removes the lender.
+	 *
+	 * @param  id lender ID
+	 * @param  change function from current lender to new one, null to remove it
+	 * @return      true if lender was found and changed.
+	 */
+	@Override
+	public boolean update(int id, UnaryOperator<Lender> change) {
+		Lock lock = writesInFlight.readLock();
+		lock.lock();
+		try {
+			synchronized (stripes[(id & 0x7fffffff) % STRIPES]) {
+				Lender current = poolLenderRepo.get(id);
+				if(current == null) return false;
+				
+				Lender changed = change.apply(current);
+				rateIndex.remove(current);
+				if(changed == null) {
+					poolLenderRepo.remove(id);
+				} else {
+					poolLenderRepo.put(id, changed);
+					rateIndex.add(changed);
+				}
+			}
+			version.incrementAndGet();
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	
+	/**
+	 * Method returns a Lender domain object from persistence repository based on ID provided.
+	 *
+	 * @return      lender with ID provided.
+	 */
+	@Override
+	public Lender find(int id) {
+		return poolLenderRepo.get(id);
+	}
+	
+	
+	/**
+	 * Method returns a list of Lender domain objects from persistence repository.
+	 *
+	 * @return      full lender list found in repository.
+	 */
+	@Override
+	public List<Lender> findAll() {
+		return new ArrayList<Lender>(poolLenderRepo.values());
+	}
+	
+	
+	/**
+	 * Method returns a sorted list of Lender domain objects from persistence repository, order based on rate property.
+	 *
+	 * @return      full sorted lender list by rate found in repository.
+	 */
+	@Override
+	public List<Lender> findAllSorted() {
+		AvailabilityIndex index = snapshot().index;
+		return new ArrayList<Lender>(index.covering(Long.MAX_VALUE));
+	}
+	
+	
+	/**
+	 * Method returns an iterator over Lender domain objects from persistence repository, order based on
+	 * rate property (ties by ID). Lenders are read from current snapshot, later saves are not seen.
+	 *
+	 * @return      read only iterator of lenders sorted by rate.
+	 */
+	@Override
+	public Iterator<Lender> sortedIterator() {
+		return snapshot().index.covering(Long.MAX_VALUE).iterator();
+	}
+	
+	
+	/**
+	 * Method returns a lazy cursor over Lender domain objects of current snapshot in rate order (ties by ID).
+	 *
+	 * @return      sequential spliterator of lenders sorted by rate.
+	 */
+	@Override
+	public Spliterator<Lender> sortedSpliterator() {
+		AvailabilityIndex index = snapshot().index;
+		return new RateOrderedSpliterator(index.covering(Long.MAX_VALUE).iterator(), index.size());
+	}
+	
+	
+	/**
+	 * Method returns the lenders with lowest rate that cover the amount provided, cut-off lender
+	 * is found by binary search over cumulative availability in rate order.
+	 *
+	 * @param  amount amount to cover
+	 * @return      read only list of lowest rate lenders covering amount, all lenders if amount cannot be covered.
+	 */
+	@Override
+	public List<Lender> findLowestRateLenders(double amount) {
+		return snapshot().index.covering(Money.toPence(amount));
+	}
+	
+	
+	/**
+	 * Method returns a read only view of all lenders in rate order, fields readable by position.
+	 *
+	 * @return      rate ordered view of lenders with cumulative availability.
+	 */
+	@Override
+	public RateOrderedLenders findAllRateOrdered() {
+		return snapshot().index;
+	}
+	
+	
+	/**
+	 * Method removes all objects from persistence repository, waits for saves in flight.
+	 *
+	 */
+	@Override
+	public void flush() {
+		Lock lock = writesInFlight.writeLock();
+		lock.lock();
+		try {
+			poolLenderRepo.clear();
+			rateIndex.clear();
+			version.incrementAndGet();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	
+	//Latest snapshot, rebuilt by one reader when stale unless writes are in flight. Other readers return the last
+	//snapshot published and only wait for the build while it is empty, so lenders saved are never missing
+	private Snapshot snapshot() {
+		Snapshot current = snapshot;
+		if(current.version == version.get()) {
+			return current;
+		}
+		
+		if(current.index.size() == 0) {
+			snapshotBuild.lock();
+		} else if(!snapshotBuild.tryLock()) {
+			return current;
+		}
+		try {
+			current = snapshot;
+			if(current.version == version.get()) {
+				return current;
+			}
+			return publish(current.index.size() == 0 || skippedBuilds >= MAX_SKIPPED_BUILDS);
+		} finally {
+			snapshotBuild.unlock();
+		}
+	}
+	
+	
+	//Builds snapshot of rate index and publishes it, caller holds snapshotBuild. Unless told to wait
+	//for writes in flight, the last snapshot published is returned when there are any
+	private Snapshot publish(boolean waitForWrites) {
+		Lock lock = writesInFlight.writeLock();
+		if(waitForWrites) {
+			lock.lock();
+		} else if(!lock.tryLock()) {
+			skippedBuilds++;
+			return snapshot;
+		}
+		try {
+			long currentVersion = version.get();
+			AvailabilityIndex index = new AvailabilityIndex(rateIndex);
+			Snapshot current = new Snapshot(currentVersion, index, index.prefixAvailable(index.size()));
+			snapshot = current;
+			skippedBuilds = 0;
+			return current;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	
+	private static final class Snapshot {
+		
+		private final long version;
+		private final AvailabilityIndex index;
+		private final long totalAvailable;
+		
+		private Snapshot(long version, AvailabilityIndex index, long totalAvailable) {
+			this.version = version;
+			this.index = index;
+			this.totalAvailable = totalAvailable;
+		}
+	
+	}
+
+}
@@ -1,16 +1,30 @@
 package com.zopa.quote.repository;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.function.UnaryOperator;
 
 import com.zopa.quote.domain.Lender;
 
 public interface LenderPoolRepository {
 	
 	int total();
+	long version();
+	double totalAvailable();
+	long totalAvailablePence();
 	void save(Lender lender);
+	void saveAll(List<? extends Lender> lenders);
+	void saveAllSorted(List<? extends Lender> lenders);
+	boolean remove(int id);
+	boolean update(int id, UnaryOperator<Lender> change);
 	Lender find(int id);
 	List<Lender> findAll();
 	List<Lender> findAllSorted();
+	Iterator<Lender> sortedIterator();
+	Spliterator<Lender> sortedSpliterator();
+	List<Lender> findLowestRateLenders(double amount);
+	RateOrderedLenders findAllRateOrdered();
 	void flush();
 
 }
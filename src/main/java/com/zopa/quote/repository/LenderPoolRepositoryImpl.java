@@ -1,25 +1,45 @@
 package com.zopa.quote.repository;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
 import com.zopa.quote.domain.Lender;
+import com.zopa.quote.domain.Money;
 
 @Repository
+@ConditionalOnProperty(name = "lender.repository.type", havingValue = "map", matchIfMissing = true)
 public class LenderPoolRepositoryImpl implements LenderPoolRepository {
 	
-	//Mocking a persisting repository
+	//Mocking a persisting repository, read without repository lock by find and findAll
 	private Map<Integer, Lender> poolLenderRepo;
 	
+	//Index of lenders ordered by rate (ties by ID), maintained on every save and flush
+	private NavigableSet<Lender> rateIndex;
+	
+	//Running total of available pence across all lenders
+	private volatile long totalAvailable;
+	
+	//Cumulative availability in rate order, rebuilt lazily after any change
+	private volatile AvailabilityIndex availabilityIndex;
+	
+	//Increased on every change, lets readers detect a stale view of the repository
+	private volatile long version;
+	
 	
 	public LenderPoolRepositoryImpl() {
 		//Initializing persisting repository
-		poolLenderRepo = new HashMap<Integer, Lender>();
+		poolLenderRepo = new ConcurrentHashMap<Integer, Lender>();
+		rateIndex = new TreeSet<Lender>(Lender.getRateSorter());
 	}
 	
 	
@@ -35,12 +55,155 @@ public class LenderPoolRepositoryImpl implements LenderPoolRepository {
 	
 	
 	/**
-	 * Method inserts a new Lender domain object to persistence repository.  
+	 * Returns current version of repository, increased every time lenders are saved or flushed.  
+	 *
+	 * @return      repository version.
+	 */
+	@Override
+	public long version() {
+		return version;
+	}
+	
+	
+	/**
+	 * Returns total amount available summing all lenders.  
+	 *
+	 * @return      total amount available in repository.
+	 */
+	@Override
+	public double totalAvailable() {
+		return Money.toPounds(totalAvailable);
+	}
+	
+	
+	/**
+	 * Returns total amount available summing all lenders, in pence.  
+	 *
+	 * @return      total pence available in repository.
+	 */
+	@Override
+	public long totalAvailablePence() {
+		return totalAvailable;
+	}
+	
+	
+	/**
+	 * Method inserts a new Lender domain object to persistence repository, a lender 
+	 * already stored with the same ID is replaced. Lenders must not be modified once saved, 
+	 * changes have to be saved as a new Lender object so rate index remains consistent.  
+	 * Saves are serialized so lenders can be written from several loading threads.  
+	 *
+	 */
+	@Override
+	public synchronized void save(Lender lender) {
+		Lender previous = poolLenderRepo.put(lender.getId(), lender);
+		
+		//Replaced lender has to leave rate index before new one gets in
+		if(previous != null) {
+			rateIndex.remove(previous);
+			totalAvailable -= previous.getAvailablePence();
+		}
+		rateIndex.add(lender);
+		totalAvailable += lender.getAvailablePence();
+		
+		//Same rate keeps rate order position, an updated copy of the index is published, readers keep the old one.
+		//Copy is O(n), as a rebuild is, but skips walking the rate index
+		AvailabilityIndex index = availabilityIndex;
+		if(previous != null && previous.getRateUnits() == lender.getRateUnits() && index != null) {
+			availabilityIndex = index.withReplaced(lender);
+		} else {
+			availabilityIndex = null;
+		}
+		version++;
+	}
+	
+	
+	/**
+	 * Method saves every lender provided as save does, holding repository lock once for the whole list.  
+	 *
+	 * @param  lenders lenders to save
+	 */
+	@Override
+	public synchronized void saveAll(List<? extends Lender> lenders) {
+		for(Lender lender: lenders) {
+			save(lender);
+		}
+	}
+	
+	
+	/**
+	 * Method saves lenders already in rate order (ties by ID). Into an empty repository the rate index is 
+	 * built from them in O(n) instead of inserting each one, otherwise, or when lenders are not in rate 
+	 * order, they are saved as saveAll does.  
+	 *
+	 * @param  lenders lenders to save, in rate order
+	 */
+	@Override
+	public synchronized void saveAllSorted(List<? extends Lender> lenders) {
+		if(!poolLenderRepo.isEmpty() || !RateOrderedSet.isRateOrdered(lenders)) {
+			saveAll(lenders);
+			return;
+		}
+		
+		long available = 0;
+		for(Lender lender: lenders) {
+			poolLenderRepo.put(lender.getId(), lender);
+			available += lender.getAvailablePence();
+		}
+		
+		//Same ID at different rates, lenders have to replace each other one by one
+		if(poolLenderRepo.size() != lenders.size()) {
+			poolLenderRepo.clear();
+			saveAll(lenders);
+			return;
+		}
+		
+		rateIndex = new TreeSet<Lender>(new RateOrderedSet(lenders));
+		totalAvailable = available;
+		availabilityIndex = null;
+		version++;
+	}
+	
+	
+	/**
+	 * Method removes lender with ID provided from persistence repository.  
 	 *
+	 * @param  id lender ID
+	 * @return      true if lender was found and removed.
 	 */
 	@Override
-	public void save(Lender lender) {
-		poolLenderRepo.put(lender.getId(), lender);
+	public synchronized boolean remove(int id) {
+		Lender previous = poolLenderRepo.remove(id);
+		if(previous == null) return false;
+		
+		rateIndex.remove(previous);
+		totalAvailable -= previous.getAvailablePence();
+		availabilityIndex = null;
+		version++;
+		return true;
+	}
+	
+	
+	/**
+	 * Method replaces lender with ID provided by the result of change applied to it, holding repository lock 
+	 * so no other save or update of the lender happens in between. A null result removes the lender.  
+	 *
+	 * @param  id lender ID
+	 * @param  change function from current lender to new one, null to remove it
+	 * @return      true if lender was found and changed.
+	 */
+	@Override
+	public synchronized boolean update(int id, UnaryOperator<Lender> change) {
+		Lender current = find(id);
+		if(current == null) return false;
+		
+		Lender changed = change.apply(current);
+		if(changed == null) {
+			remove(id);
+		} else {
+			save(changed);
+		}
+		return true;
 	}
 	
 	
@@ -53,7 +216,7 @@ public class LenderPoolRepositoryImpl implements LenderPoolRepository {
 	public Lender find(int id) {
 		return poolLenderRepo.get(id);
 	}
-
+	
 	
 	/**
 	 * Method returns a list of Lender domain objects from persistence repository.  
@@ -68,14 +231,80 @@ public class LenderPoolRepositoryImpl implements LenderPoolRepository {
 	
 	/**
 	 * Method returns a sorted list of Lender domain objects from persistence repository, order based on rate property.  
+	 * Rate index is copied under repository lock, so saves never break the copy.  
 	 *
 	 * @return      full sorted lender list by rate found in repository.
 	 */
 	@Override
-	public List<Lender> findAllSorted() {
-		List<Lender> poolLenderList = new ArrayList<Lender>(poolLenderRepo.values());
-		Collections.sort(poolLenderList);
-		return poolLenderList;
+	public synchronized List<Lender> findAllSorted() {
+		return new ArrayList<Lender>(rateIndex);
+	}
+	
+	
+	/**
+	 * Method returns an iterator over Lender domain objects from persistence repository, order based on 
+	 * rate property (ties by ID). Lenders are read from the availability index of current version, which 
+	 * never changes, so saves made while iterating are not seen and do not break the iteration.  
+	 *
+	 * @return      read only iterator of lenders sorted by rate.
+	 */
+	@Override
+	public Iterator<Lender> sortedIterator() {
+		return availabilityIndex().iterator();
+	}
+	
+	
+	/**
+	 * Method returns a lazy cursor over Lender domain objects in rate order (ties by ID), walking the 
+	 * availability index of current version as lenders are taken. Index is built once per version, 
+	 * so reading the k cheapest lenders costs O(k) until the next change.  
+	 *
+	 * @return      sequential spliterator of lenders sorted by rate.
+	 */
+	@Override
+	public Spliterator<Lender> sortedSpliterator() {
+		AvailabilityIndex index = availabilityIndex();
+		return new RateOrderedSpliterator(index.iterator(), index.size());
+	}
+	
+	
+	/**
+	 * Method returns the lenders with lowest rate that cover the amount provided, cut-off lender 
+	 * is found by binary search over cumulative availability in rate order.  
+	 *
+	 * @param  amount amount to cover
+	 * @return      read only list of lowest rate lenders covering amount, all lenders if amount cannot be covered.
+	 */
+	@Override
+	public List<Lender> findLowestRateLenders(double amount) {
+		return availabilityIndex().covering(Money.toPence(amount));
+	}
+	
+	
+	/**
+	 * Method returns a read only view of all lenders in rate order, fields readable by position.  
+	 *
+	 * @return      rate ordered view of lenders with cumulative availability.
+	 */
+	@Override
+	public RateOrderedLenders findAllRateOrdered() {
+		return availabilityIndex();
+	}
+	
+	
+	//Rate ordered view, also read by sharded repository to merge its shards
+	AvailabilityIndex availabilityIndex() {
+		AvailabilityIndex index = availabilityIndex;
+		if(index == null) {
+			synchronized (this) {
+				index = availabilityIndex;
+				if(index == null) {
+					index = new AvailabilityIndex(rateIndex);
+					availabilityIndex = index;
+				}
+			}
+		}
+		return index;
 	}
 	
 	
@@ -84,8 +313,12 @@ public class LenderPoolRepositoryImpl implements LenderPoolRepository {
 	 *
 	 */
 	@Override
-	public void flush() {
+	public synchronized void flush() {
 		poolLenderRepo.clear();
+		rateIndex.clear();
+		totalAvailable = 0;
+		availabilityIndex = null;
+		version++;
 	}
-	
+
 }
@@ -0,0 +1,453 @@
+package com.zopa.quote.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.UnaryOperator;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import com.zopa.quote.domain.Lender;
+import com.zopa.quote.domain.Money;
+
+/**
+ * Lender repository split in shards, each a map repository with its own lock and rate index. Lenders are
+ * assigned to a shard by hash of their ID, so writers of different shards never wait for each other and
+ * saveAll hands every shard its part of the list on a writer thread of its own. Rate ordered reads merge the
+ * rate indexes of all shards: lowest rate lenders are taken from a k-way merge that stops once the amount is
+ * covered, full views are merged once per version.
+ */
+@Repository
+@ConditionalOnProperty(name = "lender.repository.type", havingValue = "sharded")
+public class LenderPoolShardedRepositoryImpl implements LenderPoolRepository {
+	
+	//Number of shards, 0 means one per core
+	@Value( "${lender.repository.shards}" )
+	private int shardCount;
+	
+	private LenderPoolRepositoryImpl[] shards;
+	
+	//Single thread per shard, so saves of a shard keep their order, null with one shard
+	private ExecutorService[] writers;
+	
+	//Merge of every shard in rate order, rebuilt when version changed
+	private volatile MergedView mergedView;
+	
+	
+	public LenderPoolShardedRepositoryImpl() {}
+	LenderPoolShardedRepositoryImpl(int shardCount) {
+		this.shardCount = shardCount;
+		init();
+	}
+	
+	
+	@PostConstruct
+	void init() {
+		int count = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+		shards = new LenderPoolRepositoryImpl[count];
+		for(int i = 0; i < count; i++) {
+			shards[i] = new LenderPoolRepositoryImpl();
+		}
+		
+		if(count > 1) {
+			writers = new ExecutorService[count];
+			for(int i = 0; i < count; i++) {
+				final String threadName = "lender-shard-writer-" + i;
+				writers[i] = Executors.newSingleThreadExecutor(new ThreadFactory() {
+					
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, threadName);
+						thread.setDaemon(true);
+						return thread;
+					}
+				
+				});
+			}
+		}
+	}
+	
+	
+	@PreDestroy
+	void shutdown() {
+		if(writers == null) return;
+		for(ExecutorService writer: writers) {
+			writer.shutdownNow();
+		}
+	}
+	
+	
+	/**
+	 * Returns number of shards lenders are split in.
+	 *
+	 * @return      number of shards.
+	 */
+	public int getShardCount() {
+		return shards.length;
+	}
+	
+	
+	/**
+	 * Returns number of lenders held by shard provided.
+	 *
+	 * @param  shard shard number
+	 * @return      number of lenders in shard.
+	 */
+	public int total(int shard) {
+		return shards[shard].total();
+	}
+	
+	
+	/**
+	 * Returns total number of lenders.
+	 *
+	 * @return      total number of lenders in repository.
+	 */
+	@Override
+	public int total() {
+		int total = 0;
+		for(LenderPoolRepositoryImpl shard: shards) {
+			total += shard.total();
+		}
+		return total;
+	}
+	
+	
+	/**
+	 * Returns current version of repository, sum of shard versions, so it increases every time
+	 * lenders of any shard are saved or flushed.
+	 *
+	 * @return      repository version.
+	 */
+	@Override
+	public long version() {
+		long version = 0;
+		for(LenderPoolRepositoryImpl shard: shards) {
+			version += shard.version();
+		}
+		return version;
+	}
+	
+	
+	/**
+	 * Returns total amount available summing all lenders.
+	 *
+	 * @return      total amount available in repository.
+	 */
+	@Override
+	public double totalAvailable() {
+		return Money.toPounds(totalAvailablePence());
+	}
+	
+	
+	/**
+	 * Returns total amount available summing all lenders, in pence.
+	 *
+	 * @return      total pence available in repository.
+	 */
+	@Override
+	public long totalAvailablePence() {
+		long totalAvailable = 0;
+		for(LenderPoolRepositoryImpl shard: shards) {
+			totalAvailable += shard.totalAvailablePence();
+		}
+		return totalAvailable;
+	}
+	
+	
+	/**
+	 * Method saves lender to the shard of its ID, a lender already stored with the same ID is replaced.
+	 * Only that shard is locked.
+	 *
+	 */
+	@Override
+	public void save(Lender lender) {
+		shardOf(lender.getId()).save(lender);
+	}
+	
+	
+	/**
+	 * Method splits lenders provided by shard and saves every part on the writer thread of its shard,
+	 * shards are written in parallel. Returns once every lender is saved.
+	 *
+	 * @param  lenders lenders to save
+	 * @throws IllegalStateException when a shard failed to save its lenders or the caller was interrupted.
+	 */
+	@Override
+	public void saveAll(List<? extends Lender> lenders) {
+		if(writers == null || lenders.size() < 2) {
+			for(Lender lender: lenders) {
+				save(lender);
+			}
+			return;
+		}
+		write(lenders, false);
+	}
+	
+	
+	/**
+	 * Method saves lenders already in rate order. Every shard gets its lenders in the same order, so its
+	 * rate index is built as saveAllSorted of a map repository does, shards are written in parallel.
+	 *
+	 * @param  lenders lenders to save, in rate order
+	 * @throws IllegalStateException when a shard failed to save its lenders or the caller was interrupted.
+	 */
+	@Override
+	public void saveAllSorted(List<? extends Lender> lenders) {
+		if(writers == null) {
+			shards[0].saveAllSorted(lenders);
+			return;
+		}
+		write(lenders, true);
+	}
+	
+	
+	//Splits lenders by shard keeping their order and saves each part on the writer thread of its shard
+	private void write(List<? extends Lender> lenders, final boolean sorted) {
+		
+		List<List<Lender>> parts = new ArrayList<List<Lender>>(shards.length);
+		for(int i = 0; i < shards.length; i++) {
+			parts.add(new ArrayList<Lender>(lenders.size() / shards.length + 1));
+		}
+		for(Lender lender: lenders) {
+			parts.get(shardIndex(lender.getId())).add(lender);
+		}
+		
+		List<Future<?>> writes = new ArrayList<Future<?>>(shards.length);
+		for(int i = 0; i < shards.length; i++) {
+			final LenderPoolRepositoryImpl shard = shards[i];
+			final List<Lender> part = parts.get(i);
+			if(part.isEmpty()) continue;
+			
+			writes.add(writers[i].submit(new Runnable() {
+				
+				@Override
+				public void run() {
+					if(sorted) {
+						shard.saveAllSorted(part);
+					} else {
+						shard.saveAll(part);
+					}
+				}
+			
+			}));
+		}
+		
+		for(Future<?> write: writes) {
+			try {
+				write.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while saving lenders to shards", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Error saving lenders to shard: " + e.getCause().getMessage(), e.getCause());
+			}
+		}
+	}
+	
+	
+	/**
+	 * Method removes lender with ID provided from its shard.
+	 *
+	 * @param  id lender ID
+	 * @return      true if lender was found and removed.
+	 */
+	@Override
+	public boolean remove(int id) {
+		return shardOf(id).remove(id);
+	}
+	
+	
+	/**
+	 * Method changes lender with ID provided atomically, only its shard is locked.
+	 *
+	 * @param  id lender ID
+	 * @param  change function from current lender to new one, null to remove it
+	 * @return      true if lender was found and changed.
+	 */
+	@Override
+	public boolean update(int id, UnaryOperator<Lender> change) {
+		return shardOf(id).update(id, change);
+	}
+	
+	
+	/**
+	 * Method returns lender with ID provided, only its shard is read.
+	 *
+	 * @return      lender with ID provided.
+	 */
+	@Override
+	public Lender find(int id) {
+		return shardOf(id).find(id);
+	}
+	
+	
+	/**
+	 * Method returns a list of Lender domain objects from every shard.
+	 *
+	 * @return      full lender list found in repository.
+	 */
+	@Override
+	public List<Lender> findAll() {
+		List<Lender> lenders = new ArrayList<Lender>(total());
+		for(LenderPoolRepositoryImpl shard: shards) {
+			lenders.addAll(shard.findAll());
+		}
+		return lenders;
+	}
+	
+	
+	/**
+	 * Method returns a sorted list of Lender domain objects from every shard, order based on rate property.
+	 *
+	 * @return      full sorted lender list by rate found in repository.
+	 */
+	@Override
+	public List<Lender> findAllSorted() {
+		AvailabilityIndex index = mergedView().index;
+		List<Lender> lenders = new ArrayList<Lender>(index.size());
+		for(int position = 0; position < index.size(); position++) {
+			lenders.add(index.get(position));
+		}
+		return lenders;
+	}
+	
+	
+	/**
+	 * Method returns an iterator merging rate indexes of every shard, order based on rate property
+	 * (ties by ID). Lenders are merged as they are read, nothing is copied.
+	 *
+	 * @return      read only iterator of lenders sorted by rate.
+	 */
+	@Override
+	public Iterator<Lender> sortedIterator() {
+		return new RateOrderedMerge(shardViews());
+	}
+	
+	
+	/**
+	 * Method returns a lazy cursor over Lender domain objects of every shard in rate order (ties by ID),
+	 * shards are merged as lenders are taken.
+	 *
+	 * @return      sequential spliterator of lenders sorted by rate.
+	 */
+	@Override
+	public Spliterator<Lender> sortedSpliterator() {
+		return new RateOrderedSpliterator(sortedIterator(), total());
+	}
+	
+	
+	/**
+	 * Method returns the lenders with lowest rate that cover the amount provided, merging shards
+	 * in rate order and stopping at the lender that covers the amount.
+	 *
+	 * @param  amount amount to cover
+	 * @return      read only list of lowest rate lenders covering amount, all lenders if amount cannot be covered.
+	 */
+	@Override
+	public List<Lender> findLowestRateLenders(double amount) {
+		long amountLeft = Money.toPence(amount);
+		List<Lender> lenders = new ArrayList<Lender>();
+		for(Iterator<Lender> merge = sortedIterator(); merge.hasNext() && amountLeft > 0; ) {
+			Lender lender = merge.next();
+			lenders.add(lender);
+			amountLeft -= lender.getAvailablePence();
+		}
+		return Collections.unmodifiableList(lenders);
+	}
+	
+	
+	/**
+	 * Method returns a read only view of all lenders in rate order, fields readable by position.
+	 * Shards are merged once per version.
+	 *
+	 * @return      rate ordered view of lenders with cumulative availability.
+	 */
+	@Override
+	public RateOrderedLenders findAllRateOrdered() {
+		return mergedView().index;
+	}
+	
+	
+	/**
+	 * Method removes all objects from every shard.
+	 *
+	 */
+	@Override
+	public void flush() {
+		for(LenderPoolRepositoryImpl shard: shards) {
+			shard.flush();
+		}
+	}
+	
+	
+	private MergedView mergedView() {
+		MergedView view = mergedView;
+		long version = version();
+		if(view == null || view.version != version) {
+			synchronized (this) {
+				view = mergedView;
+				version = version();
+				if(view == null || view.version != version) {
+					
+					//Version is read before merging, a save made meanwhile leaves a view older than repository
+					List<Lender> lenders = new ArrayList<Lender>(total());
+					for(Iterator<Lender> merge = sortedIterator(); merge.hasNext(); ) {
+						lenders.add(merge.next());
+					}
+					view = new MergedView(version, lenders);
+					mergedView = view;
+				}
+			}
+		}
+		return view;
+	}
+	
+	
+	private AvailabilityIndex[] shardViews() {
+		AvailabilityIndex[] views = new AvailabilityIndex[shards.length];
+		for(int i = 0; i < shards.length; i++) {
+			views[i] = shards[i].availabilityIndex();
+		}
+		return views;
+	}
+	
+	
+	private LenderPoolRepositoryImpl shardOf(int id) {
+		return shards[shardIndex(id)];
+	}
+	
+	
+	//Spreads bits of ID so consecutive and patterned IDs land evenly across shards
+	private int shardIndex(int id) {
+		int hash = id * 0x9E3779B9;
+		hash ^= hash >>> 16;
+		return (hash & 0x7fffffff) % shards.length;
+	}
+	
+	
+	private static final class MergedView {
+		
+		private final long version;
+		private final AvailabilityIndex index;
+		
+		private MergedView(long version, List<Lender> lenders) {
+			this.version = version;
+			this.index = new AvailabilityIndex(lenders);
+		}
+	
+	}
+
+}
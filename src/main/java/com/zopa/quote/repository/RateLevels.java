@@ -0,0 +1,122 @@
+package com.zopa.quote.repository;
+
+/**
+ * Lenders of a rate ordered view aggregated by distinct rate. Each level holds the rate, the available pence summed
+ * over its lenders and the positions of its lenders in the view, which are contiguous since the view is sorted by rate.
+ * Repayments only depend on rate and amount lent, so quotes are priced once per level instead of once per lender.
+ */
+public final class RateLevels {
+	
+	//Rate and summed availability of each level, in rate order
+	private final long[] rateUnits;
+	private final long[] availables;
+	
+	//Position of first lender of each level, one more entry holding the view size
+	private final int[] firstPositions;
+	
+	
+	private RateLevels(long[] rateUnits, long[] availables, int[] firstPositions) {
+		this.rateUnits = rateUnits;
+		this.availables = availables;
+		this.firstPositions = firstPositions;
+	}
+	
+	
+	/**
+	 * Aggregates lenders of the view provided in a single pass.
+	 *
+	 * @param  lenders lenders in rate order
+	 * @return      rate levels of lenders.
+	 */
+	public static RateLevels of(RateOrderedLenders lenders) {
+		int size = lenders.size();
+		int levels = 0;
+		for(int position = 0; position < size; position++) {
+			if(position == 0 || lenders.getRateUnits(position) != lenders.getRateUnits(position - 1)) levels++;
+		}
+		
+		long[] rateUnits = new long[levels];
+		long[] availables = new long[levels];
+		int[] firstPositions = new int[levels + 1];
+		int level = -1;
+		for(int position = 0; position < size; position++) {
+			long rate = lenders.getRateUnits(position);
+			if(level < 0 || rate != rateUnits[level]) {
+				level++;
+				rateUnits[level] = rate;
+				firstPositions[level] = position;
+			}
+			availables[level] += lenders.getAvailablePence(position);
+		}
+		firstPositions[levels] = size;
+		
+		return new RateLevels(rateUnits, availables, firstPositions);
+	}
+	
+	
+	/**
+	 * Returns number of distinct rates.
+	 *
+	 * @return      number of levels.
+	 */
+	public int size() {
+		return rateUnits.length;
+	}
+	
+	
+	public long getRateUnits(int level) {
+		return rateUnits[level];
+	}
+	
+	
+	public long getAvailablePence(int level) {
+		return availables[level];
+	}
+	
+	
+	/**
+	 * Returns position in rate ordered view of the first lender of level provided, lenders of the level
+	 * follow it up to getFirstPosition(level) + getLenderCount(level).
+	 *
+	 * @param  level level in rate order
+	 * @return      position of first lender.
+	 */
+	public int getFirstPosition(int level) {
+		return firstPositions[level];
+	}
+	
+	
+	public int getLenderCount(int level) {
+		return firstPositions[level + 1] - firstPositions[level];
+	}
+	
+	
+	/**
+	 * Returns level holding lender at position provided.
+	 *
+	 * @param  position position in rate ordered view
+	 * @return      level of lender.
+	 */
+	public int levelOf(int position) {
+		int low = 0;
+		int high = rateUnits.length - 1;
+		while(low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if(firstPositions[middle] <= position) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+	
+	
+	//Copy with availability of level changed, rates and positions are shared since they do not change
+	RateLevels withAvailable(int level, long delta) {
+		long[] replacedAvailables = availables.clone();
+		replacedAvailables[level] += delta;
+		return new RateLevels(rateUnits, replacedAvailables, firstPositions);
+	}
+
+}
@@ -0,0 +1,17 @@
+package com.zopa.quote.repository;
+
+/**
+ * Read only view of lenders sorted by rate (ties by ID), fields are read by position so lenders 
+ * can be scanned without creating Lender objects. Rates are in millionths and amounts in pence.
+ * Lenders sharing a rate are also available aggregated as rate levels.
+ */
+public interface RateOrderedLenders {
+	
+	int size();
+	int getId(int position);
+	long getRateUnits(int position);
+	long getAvailablePence(int position);
+	int coveringCount(long amountPence);
+	RateLevels rateLevels();
+
+}
@@ -0,0 +1,95 @@
+package com.zopa.quote.repository;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.zopa.quote.domain.Lender;
+
+/**
+ * K-way merge of rate ordered views, lenders come out by rate (ties by ID) as if all views were one.
+ * Every view keeps a cursor and the cursors are held in a binary heap keyed by the lender they point to,
+ * so each lender costs O(log k) for k views and a merge stopped early only pays for the lenders taken.
+ */
+class RateOrderedMerge implements Iterator<Lender> {
+	
+	private final AvailabilityIndex[] views;
+	
+	//Next position of every view
+	private final int[] positions;
+	
+	//Views not exhausted, heap ordered by rate and ID of the lender at their position
+	private final int[] heap;
+	private int heapSize;
+	
+	
+	RateOrderedMerge(AvailabilityIndex[] views) {
+		this.views = views;
+		this.positions = new int[views.length];
+		this.heap = new int[views.length];
+		for(int view = 0; view < views.length; view++) {
+			if(views[view].size() > 0) {
+				heap[heapSize++] = view;
+			}
+		}
+		for(int i = heapSize / 2 - 1; i >= 0; i--) {
+			siftDown(i);
+		}
+	}
+	
+	
+	@Override
+	public boolean hasNext() {
+		return heapSize > 0;
+	}
+	
+	
+	/**
+	 * Returns lender with lowest rate not returned yet and advances its view.
+	 *
+	 * @return      next lender in rate order.
+	 */
+	@Override
+	public Lender next() {
+		if(heapSize == 0) throw new NoSuchElementException();
+		
+		int view = heap[0];
+		Lender lender = views[view].get(positions[view]++);
+		if(positions[view] == views[view].size()) {
+			heap[0] = heap[--heapSize];
+		}
+		siftDown(0);
+		return lender;
+	}
+	
+	
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("Rate ordered merge is read only");
+	}
+	
+	
+	private void siftDown(int i) {
+		int view = heap[i];
+		while(true) {
+			int child = 2 * i + 1;
+			if(child >= heapSize) break;
+			if(child + 1 < heapSize && before(heap[child + 1], heap[child])) child++;
+			if(!before(heap[child], view)) break;
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = view;
+	}
+	
+	
+	//True if lender at cursor of view1 comes before the one at cursor of view2
+	private boolean before(int view1, int view2) {
+		AvailabilityIndex index1 = views[view1];
+		AvailabilityIndex index2 = views[view2];
+		long rate1 = index1.getRateUnits(positions[view1]);
+		long rate2 = index2.getRateUnits(positions[view2]);
+		if(rate1 != rate2) return rate1 < rate2;
+		return index1.getId(positions[view1]) < index2.getId(positions[view2]);
+	}
+
+}
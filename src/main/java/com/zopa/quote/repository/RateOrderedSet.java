@@ -0,0 +1,92 @@
+package com.zopa.quote.repository;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+
+import com.zopa.quote.domain.Lender;
+
+/**
+ * Read only sorted set view of a list of lenders already in rate order (ties by ID). Sorted collections
+ * built from a sorted set with the same comparator take its elements in order without comparing them, so
+ * a rate index is filled from this view in O(n). Only size, iteration, first and last are supported.
+ */
+final class RateOrderedSet extends AbstractSet<Lender> implements SortedSet<Lender> {
+	
+	private final List<? extends Lender> lenders;
+	
+	
+	RateOrderedSet(List<? extends Lender> lenders) {
+		this.lenders = lenders;
+	}
+	
+	
+	/**
+	 * Returns true if every lender comes strictly after the previous one by rate and ID, which also
+	 * means no ID is repeated within a rate.
+	 *
+	 * @param  lenders lenders to check
+	 * @return      TRUE if lenders are in rate order.
+	 */
+	static boolean isRateOrdered(List<? extends Lender> lenders) {
+		Comparator<Lender> rateSorter = Lender.getRateSorter();
+		Lender previous = null;
+		for(Lender lender: lenders) {
+			if(previous != null && rateSorter.compare(previous, lender) >= 0) return false;
+			previous = lender;
+		}
+		return true;
+	}
+	
+	
+	@Override
+	public int size() {
+		return lenders.size();
+	}
+	
+	
+	@Override
+	public Iterator<Lender> iterator() {
+		return Collections.<Lender>unmodifiableList(lenders).iterator();
+	}
+	
+	
+	@Override
+	public Comparator<? super Lender> comparator() {
+		return Lender.getRateSorter();
+	}
+	
+	
+	@Override
+	public Lender first() {
+		return lenders.get(0);
+	}
+	
+	
+	@Override
+	public Lender last() {
+		return lenders.get(lenders.size() - 1);
+	}
+	
+	
+	@Override
+	public SortedSet<Lender> subSet(Lender fromElement, Lender toElement) {
+		throw new UnsupportedOperationException("Rate ordered set is only read in full");
+	}
+	
+	
+	@Override
+	public SortedSet<Lender> headSet(Lender toElement) {
+		throw new UnsupportedOperationException("Rate ordered set is only read in full");
+	}
+	
+	
+	@Override
+	public SortedSet<Lender> tailSet(Lender fromElement) {
+		throw new UnsupportedOperationException("Rate ordered set is only read in full");
+	}
+
+}
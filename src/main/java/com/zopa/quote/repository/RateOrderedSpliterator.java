@@ -0,0 +1,41 @@
+package com.zopa.quote.repository;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+import com.zopa.quote.domain.Lender;
+
+/**
+ * Sequential spliterator of lenders in rate order (ties by ID), reporting the order as SORTED by
+ * Lender.getRateSorter(). Lenders are pulled from the cursor one at a time, so a caller stopping early
+ * only pays for the lenders it took.
+ */
+final class RateOrderedSpliterator extends Spliterators.AbstractSpliterator<Lender> {
+	
+	private final Iterator<Lender> cursor;
+	
+	
+	RateOrderedSpliterator(Iterator<Lender> cursor, long estimatedSize) {
+		super(estimatedSize, Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL);
+		this.cursor = cursor;
+	}
+	
+	
+	@Override
+	public boolean tryAdvance(Consumer<? super Lender> action) {
+		if(!cursor.hasNext()) return false;
+		
+		action.accept(cursor.next());
+		return true;
+	}
+	
+	
+	@Override
+	public Comparator<? super Lender> getComparator() {
+		return Lender.getRateSorter();
+	}
+
+}
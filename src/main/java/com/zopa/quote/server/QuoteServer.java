@@ -0,0 +1,253 @@
+package com.zopa.quote.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.zopa.quote.domain.QuoteResult;
+import com.zopa.quote.format.MessageQuoteFormat;
+import com.zopa.quote.format.QuoteFormat;
+import com.zopa.quote.format.QuoteRenderer;
+import com.zopa.quote.service.LenderPoolService;
+import com.zopa.quote.service.QuoteEngine;
+import com.zopa.quote.service.QuoteMetrics;
+
+@Component
+public class QuoteServer {
+	
+	private static final Logger log = LoggerFactory.getLogger(QuoteServer.class);
+	
+	@Autowired private LenderPoolService lenderPoolService;
+	@Autowired private QuoteMetrics quoteMetrics;
+	@Autowired private QuoteRenderer quoteRenderer;
+	
+	@Value( "${quote.server.threads}" )
+	private int threads;
+	
+	@Value( "${quote.server.queue.size}" )
+	private int queueSize;
+	
+	@Value( "${quote.server.stats.interval.seconds}" )
+	private int statsIntervalSeconds;
+	
+	private HttpServer httpServer;
+	private ThreadPoolExecutor workerPool;
+	private ScheduledExecutorService statsReporter;
+	
+	private final AtomicLong quotesServed = new AtomicLong();
+	private long startTime;
+	
+	
+	/**
+	 * Starts HTTP server answering quotes on local port provided. Quotes are requested with
+	 * GET /quote?amount=[amount]&format=[text|json] (text by default), adding &terms=all quotes every configured
+	 * loan term and &terms=12,24 the terms listed. Throughput is reported on GET /stats 
+	 * and quote latency by outcome on GET /metrics.
+	 *
+	 * @param  port local port to listen on, 0 picks any free port
+	 */
+	public synchronized void start(int port) throws IOException {
+		
+		//Bounded worker pool, when queue is full dispatcher thread runs the request slowing down new connections
+		workerPool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueSize), new ThreadPoolExecutor.CallerRunsPolicy());
+		
+		httpServer = HttpServer.create(new InetSocketAddress("localhost", port), queueSize);
+		httpServer.createContext("/quote", new HttpHandler() {
+			
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				handleQuote(exchange);
+			}
+		
+		});
+		httpServer.createContext("/stats", new HttpHandler() {
+			
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, 200, getStats());
+			}
+		
+		});
+		httpServer.createContext("/metrics", new HttpHandler() {
+			
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, 200, quoteMetrics.dump());
+			}
+		
+		});
+		httpServer.setExecutor(workerPool);
+		
+		quotesServed.set(0);
+		startTime = System.nanoTime();
+		httpServer.start();
+		
+		//Periodic throughput report
+		if(statsIntervalSeconds > 0) {
+			statsReporter = Executors.newSingleThreadScheduledExecutor();
+			statsReporter.scheduleAtFixedRate(new Runnable() {
+				
+				private long lastQuotesServed = 0;
+				
+				@Override
+				public void run() {
+					long served = quotesServed.get();
+					log.info(String.format("Quotes served: %d (%.1f quotes/s)", served, (double) (served - lastQuotesServed) / statsIntervalSeconds));
+					lastQuotesServed = served;
+				}
+			
+			}, statsIntervalSeconds, statsIntervalSeconds, TimeUnit.SECONDS);
+		}
+		
+		log.info("Quote server listening on port " + getPort() + " with " + threads + " workers");
+	}
+	
+	
+	/**
+	 * Stops HTTP server, waiting briefly for in flight quotes.
+	 *
+	 */
+	public synchronized void stop() {
+		if(httpServer != null) {
+			httpServer.stop(1);
+			workerPool.shutdown();
+			httpServer = null;
+		}
+		if(statsReporter != null) {
+			statsReporter.shutdownNow();
+			statsReporter = null;
+		}
+	}
+	
+	
+	/**
+	 * Returns local port server is listening on.
+	 *
+	 * @return      port number.
+	 */
+	public int getPort() {
+		return httpServer.getAddress().getPort();
+	}
+	
+	
+	/**
+	 * Returns number of quotes served since server started.
+	 *
+	 * @return      quotes served.
+	 */
+	public long getQuotesServed() {
+		return quotesServed.get();
+	}
+	
+	
+	/**
+	 * Returns average throughput since server started.
+	 *
+	 * @return      quotes served per second.
+	 */
+	public double getThroughput() {
+		double elapsedSeconds = (System.nanoTime() - startTime) / 1e9;
+		return elapsedSeconds > 0 ? quotesServed.get() / elapsedSeconds : 0;
+	}
+	
+	
+	/**
+	 * Returns server statistics as text.
+	 *
+	 * @return      quotes served and average throughput.
+	 */
+	public String getStats() {
+		return String.format("Quotes served: %d %nThroughput: %.1f quotes/s %nWorkers: %d %nQueued: %d",
+				getQuotesServed(), getThroughput(), threads, workerPool.getQueue().size());
+	}
+	
+	
+	private void handleQuote(HttpExchange exchange) throws IOException {
+		
+		//Amount, format and terms are taken from query string, ie: /quote?amount=1000&format=json&terms=12,36
+		String amount = null;
+		String formatName = MessageQuoteFormat.NAME;
+		String termList = null;
+		String query = exchange.getRequestURI().getRawQuery();
+		if(query != null) {
+			for(String parameter: query.split("&")) {
+				if(parameter.startsWith("amount=")) {
+					amount = URLDecoder.decode(parameter.substring("amount=".length()), "UTF-8");
+				} else if(parameter.startsWith("format=")) {
+					formatName = URLDecoder.decode(parameter.substring("format=".length()), "UTF-8");
+				} else if(parameter.startsWith("terms=")) {
+					termList = URLDecoder.decode(parameter.substring("terms=".length()), "UTF-8");
+				}
+			}
+		}
+		
+		QuoteFormat format = quoteRenderer.getFormat(formatName);
+		if(format == null) {
+			respond(exchange, 400, "Unknown format: " + formatName);
+			return;
+		}
+		
+		double amountToBorrow;
+		try {
+			amountToBorrow = Double.parseDouble(amount);
+		} catch (Exception e) {
+			respond(exchange, 400, "Amount to borrow have to be provided, ie: /quote?amount=1000");
+			return;
+		}
+		
+		int[] terms = null;
+		if(termList != null && !"all".equals(termList)) {
+			try {
+				terms = QuoteEngine.parseTerms(termList);
+			} catch (IllegalArgumentException e) {
+				respond(exchange, 400, e.getMessage());
+				return;
+			}
+		}
+		
+		try {
+			QuoteResult result = termList == null ? lenderPoolService.quote(amountToBorrow)
+					: terms == null ? lenderPoolService.quoteTerms(amountToBorrow) : lenderPoolService.quoteTerms(amountToBorrow, terms);
+			String quote = quoteRenderer.render(result, format);
+			quotesServed.incrementAndGet();
+			respond(exchange, 200, format.getContentType(), quote);
+		} catch (Exception e) {
+			log.error("Error calculating quote: " + e.getMessage());
+			respond(exchange, 500, "Exception thrown: " + e.getMessage());
+		}
+	}
+	
+	
+	private void respond(HttpExchange exchange, int status, String body) throws IOException {
+		respond(exchange, status, "text/plain; charset=UTF-8", body);
+	}
+	
+	
+	private void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream responseBody = exchange.getResponseBody()) {
+			responseBody.write(bytes);
+		}
+	}
+
+}
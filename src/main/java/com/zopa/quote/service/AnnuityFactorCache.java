@@ -0,0 +1,94 @@
+package com.zopa.quote.service;
+
+/**
+ * Bounded cache of annuity factors keyed by rate and term, so repayments need no Math.pow once a rate is known.
+ * Reads take no lock: entries are immutable and published to a plain array, a racing thread may miss an entry
+ * just stored and compute it again, but never sees it half built. Once full, new rates are not cached.
+ */
+class AnnuityFactorCache {
+	
+	//Slots probed before giving up on a key
+	private static final int MAX_PROBES = 8;
+	
+	private final AnnuityFactors[] table;
+	private final int mask;
+	
+	
+	AnnuityFactorCache(int capacity) {
+		int size = Integer.highestOneBit(Math.max(capacity, 1));
+		if(size < capacity) size <<= 1;
+		table = new AnnuityFactors[size];
+		mask = size - 1;
+	}
+	
+	
+	/**
+	 * Returns annuity factors for rate and term provided, computing and caching them on first use.
+	 *
+	 * @param  rate lender's annual rate
+	 * @param  term number of monthly repayments
+	 * @return      annuity factors, null when cache is full and factors have to be computed by caller.
+	 */
+	AnnuityFactors get(double rate, double term) {
+		long rateBits = Double.doubleToLongBits(rate);
+		long termBits = Double.doubleToLongBits(term);
+		
+		long hash = rateBits * 31 + termBits;
+		int index = (int) (hash ^ (hash >>> 32));
+		index ^= index >>> 16;
+		
+		for(int probe = 0; probe < MAX_PROBES; probe++) {
+			int slot = (index + probe) & mask;
+			AnnuityFactors factors = table[slot];
+			
+			if(factors == null) {
+				factors = new AnnuityFactors(rate, term);
+				table[slot] = factors;
+				return factors;
+			}
+			
+			if(factors.rateBits == rateBits && factors.termBits == termBits) {
+				return factors;
+			}
+		}
+		
+		return null;
+	}
+	
+	
+	/**
+	 * Returns number of factors cached.
+	 *
+	 * @return      cached entries.
+	 */
+	int size() {
+		int size = 0;
+		for(AnnuityFactors factors: table) {
+			if(factors != null) size++;
+		}
+		return size;
+	}
+	
+	
+	static final class AnnuityFactors {
+		
+		private final long rateBits;
+		private final long termBits;
+		
+		//(1 + month_interest) ^ -(total_months) subtracted from 1, divides monthly repayment
+		final double monthlyRepaymentDivisor;
+		
+		//(1 + month_interest) ^ total_months, multiplies total repayment
+		final double totalRepaymentFactor;
+		
+		
+		AnnuityFactors(double rate, double term) {
+			this.rateBits = Double.doubleToLongBits(rate);
+			this.termBits = Double.doubleToLongBits(term);
+			this.monthlyRepaymentDivisor = 1 - Math.pow( ( 1 + ( rate/12 ) ), -term );
+			this.totalRepaymentFactor = Math.pow( ( 1 + ( rate/12 ) ), term );
+		}
+	
+	}
+
+}
@@ -0,0 +1,16 @@
+package com.zopa.quote.service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.zopa.quote.domain.QuoteResult;
+
+public interface AsyncQuoteService {
+	
+	CompletableFuture<QuoteResult> quote(double amountToBorrow);
+	CompletableFuture<QuoteResult> quoteTerms(double amountToBorrow);
+	CompletableFuture<List<QuoteResult>> quoteAll(List<Double> amountsToBorrow);
+	int getPending();
+	long getRejected();
+
+}
@@ -0,0 +1,243 @@
+package com.zopa.quote.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.zopa.quote.domain.QuoteResult;
+
+/**
+ * Quotes priced on an executor of their own so callers never block, results are delivered as CompletableFuture.
+ * Executor is chosen with quote.async.executor: a fixed thread pool (pool), a ForkJoinPool (forkjoin) or one virtual
+ * thread per quote (virtual), which falls back to a ForkJoinPool on JDKs without virtual threads. Quotes accepted and
+ * not completed yet are bounded by quote.async.queue.size whatever the executor, once the bound is reached new
+ * quotes are rejected straight away with a future failed by RejectedExecutionException instead of being queued.
+ */
+@Service
+public class AsyncQuoteServiceImpl implements AsyncQuoteService {
+	
+	private static final Logger log = LoggerFactory.getLogger(AsyncQuoteServiceImpl.class);
+	
+	public static final String POOL = "pool";
+	public static final String FORK_JOIN = "forkjoin";
+	public static final String VIRTUAL = "virtual";
+	
+	@Autowired private LenderPoolService lenderPoolService;
+	
+	@Value( "${quote.async.executor}" )
+	private String executorType;
+	
+	//Worker threads of pool and forkjoin executors, 0 for one per core
+	@Value( "${quote.async.threads}" )
+	private int threads;
+	
+	@Value( "${quote.async.queue.size}" )
+	private int queueSize;
+	
+	private ExecutorService executor;
+	
+	//One permit per quote accepted and not completed, taken without waiting
+	private Semaphore pending;
+	
+	private final AtomicLong rejected = new AtomicLong();
+	
+	
+	public AsyncQuoteServiceImpl() {}
+	AsyncQuoteServiceImpl(LenderPoolService lenderPoolService, String executorType, int threads, int queueSize) {
+		this.lenderPoolService = lenderPoolService;
+		this.executorType = executorType;
+		this.threads = threads;
+		this.queueSize = queueSize;
+		init();
+	}
+	
+	
+	@PostConstruct
+	void init() {
+		int workers = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		pending = new Semaphore(queueSize);
+		
+		if(POOL.equals(executorType)) {
+			//Queue holds every quote the semaphore lets in, abort only guards against misuse
+			executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<Runnable>(Math.max(queueSize, 1)), new ThreadPoolExecutor.AbortPolicy());
+		} else if(FORK_JOIN.equals(executorType)) {
+			executor = new ForkJoinPool(workers);
+		} else if(VIRTUAL.equals(executorType)) {
+			executor = virtualThreadExecutor();
+			if(executor == null) {
+				log.info("Virtual threads not available on this JDK, quotes run on a ForkJoinPool of " + workers + " threads");
+				executor = new ForkJoinPool(workers);
+			}
+		} else {
+			throw new IllegalArgumentException("Unknown quote.async.executor: " + executorType + ", expected pool, forkjoin or virtual");
+		}
+	}
+	
+	
+	@PreDestroy
+	void shutdown() {
+		executor.shutdownNow();
+	}
+	
+	
+	/**
+	 * Process quote request without blocking the caller.  
+	 *
+	 * @param  amountToBorrow amount requested by the user
+	 * @return      future of the Quote or QuoteRejection, failed by RejectedExecutionException when too many quotes are pending.
+	 */
+	@Override
+	public CompletableFuture<QuoteResult> quote(final double amountToBorrow) {
+		return submit(new Supplier<QuoteResult>() {
+			
+			@Override
+			public QuoteResult get() {
+				return lenderPoolService.quote(amountToBorrow);
+			}
+		
+		});
+	}
+	
+	
+	/**
+	 * Process quote request for every loan term configured without blocking the caller.  
+	 *
+	 * @param  amountToBorrow amount requested by the user
+	 * @return      future of the MultiTermQuote or QuoteRejection, failed by RejectedExecutionException when too many quotes are pending.
+	 */
+	@Override
+	public CompletableFuture<QuoteResult> quoteTerms(final double amountToBorrow) {
+		return submit(new Supplier<QuoteResult>() {
+			
+			@Override
+			public QuoteResult get() {
+				return lenderPoolService.quoteTerms(amountToBorrow);
+			}
+		
+		});
+	}
+	
+	
+	/**
+	 * Process quote requests of every amount provided without blocking the caller. A batch takes a single place 
+	 * among pending quotes and is priced by one worker, quotes are kept in input order.  
+	 *
+	 * @param  amountsToBorrow amounts requested by the user
+	 * @return      future of the results in input order, failed by RejectedExecutionException when too many quotes are pending.
+	 */
+	@Override
+	public CompletableFuture<List<QuoteResult>> quoteAll(List<Double> amountsToBorrow) {
+		final List<Double> amounts = new ArrayList<Double>(amountsToBorrow);
+		return submit(new Supplier<List<QuoteResult>>() {
+			
+			@Override
+			public List<QuoteResult> get() {
+				List<QuoteResult> results = new ArrayList<QuoteResult>(amounts.size());
+				for(double amountToBorrow: amounts) {
+					results.add(lenderPoolService.quote(amountToBorrow));
+				}
+				return results;
+			}
+		
+		});
+	}
+	
+	
+	/**
+	 * Returns number of quotes accepted and not completed yet.
+	 *
+	 * @return      quotes pending.
+	 */
+	@Override
+	public int getPending() {
+		return queueSize - pending.availablePermits();
+	}
+	
+	
+	/**
+	 * Returns number of quotes rejected because too many were pending.
+	 *
+	 * @return      quotes rejected since startup.
+	 */
+	@Override
+	public long getRejected() {
+		return rejected.get();
+	}
+	
+	
+	//Runs task on executor if a pending place is free, otherwise fails the future at once
+	<T> CompletableFuture<T> submit(final Supplier<T> task) {
+		final CompletableFuture<T> result = new CompletableFuture<T>();
+		if(!pending.tryAcquire()) {
+			return rejected(result);
+		}
+		
+		try {
+			executor.execute(new Runnable() {
+				
+				@Override
+				public void run() {
+					T value = null;
+					Throwable failure = null;
+					try {
+						value = task.get();
+					} catch (Throwable e) {
+						failure = e;
+					} finally {
+						pending.release();
+					}
+					
+					//Place is freed before completing, so callers chaining on the future can submit again
+					if(failure != null) {
+						result.completeExceptionally(failure);
+					} else {
+						result.complete(value);
+					}
+				}
+			
+			});
+		} catch (RejectedExecutionException e) {
+			pending.release();
+			return rejected(result);
+		}
+		return result;
+	}
+	
+	
+	private <T> CompletableFuture<T> rejected(CompletableFuture<T> result) {
+		rejected.incrementAndGet();
+		result.completeExceptionally(new RejectedExecutionException("Too many quotes pending: " + queueSize));
+		return result;
+	}
+	
+	
+	//Executors.newVirtualThreadPerTaskExecutor() when running on a JDK that has it
+	private ExecutorService virtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+}
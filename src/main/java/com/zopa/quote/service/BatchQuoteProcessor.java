@@ -0,0 +1,101 @@
+package com.zopa.quote.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class BatchQuoteProcessor {
+	
+	@Autowired private LenderPoolService lenderPoolService;
+	
+	@Value( "${quote.batch.window.size}" )
+	private int windowSize;
+	
+	
+	/**
+	 * Prices every amount read, one amount per line, and writes quotes in input order. Amounts are
+	 * quoted in parallel across available cores, only a bounded window of pending quotes is kept
+	 * in memory so input of any size can be streamed.
+	 *
+	 * @param  amounts reader of amounts to borrow, blank lines are ignored
+	 * @param  output writer where quotes are written, each followed by a blank line
+	 * @return      number of amounts processed.
+	 */
+	public long process(Reader amounts, Writer output) throws IOException, InterruptedException {
+		
+		ExecutorService workerPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		Deque<Future<String>> pendingQuotes = new ArrayDeque<Future<String>>(windowSize);
+		long processed = 0;
+		
+		try {
+			
+			BufferedReader reader = new BufferedReader(amounts);
+			String line;
+			while((line = reader.readLine()) != null) {
+				
+				final String amount = line.trim();
+				if(amount.isEmpty()) continue;
+				
+				//Window full, oldest quote has to be written before reading more amounts
+				if(pendingQuotes.size() >= windowSize) {
+					write(pendingQuotes.poll(), output);
+				}
+				
+				pendingQuotes.add(workerPool.submit(new Callable<String>() {
+					
+					@Override
+					public String call() throws Exception {
+						return quote(amount);
+					}
+				
+				}));
+				processed++;
+			}
+			
+			//Drain remaining quotes
+			while(!pendingQuotes.isEmpty()) {
+				write(pendingQuotes.poll(), output);
+			}
+			output.flush();
+		
+		} finally {
+			workerPool.shutdownNow();
+		}
+		
+		return processed;
+	}
+	
+	
+	private String quote(String amount) {
+		try {
+			return lenderPoolService.calculateQuote(Double.parseDouble(amount));
+		} catch (Exception e) {
+			return "Exception thrown: " + e.getMessage();
+		}
+	}
+	
+	
+	private void write(Future<String> quote, Writer output) throws IOException, InterruptedException {
+		try {
+			output.write(quote.get());
+		} catch (ExecutionException e) {
+			output.write("Exception thrown: " + e.getCause().getMessage());
+		}
+		output.write(System.lineSeparator());
+		output.write(System.lineSeparator());
+	}
+
+}
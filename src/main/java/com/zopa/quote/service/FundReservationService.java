@@ -0,0 +1,12 @@
+package com.zopa.quote.service;
+
+import com.zopa.quote.domain.Reservation;
+
+public interface FundReservationService {
+	
+	Reservation reserve(double amountToBorrow);
+	boolean commit(long reservationId);
+	boolean release(long reservationId);
+	double reservedFrom(int lenderId);
+
+}
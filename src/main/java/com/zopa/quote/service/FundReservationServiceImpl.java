@@ -0,0 +1,226 @@
+package com.zopa.quote.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.zopa.quote.domain.Lender;
+import com.zopa.quote.domain.Money;
+import com.zopa.quote.domain.QuoteOutcome;
+import com.zopa.quote.domain.QuoteRejection;
+import com.zopa.quote.domain.Repayment;
+import com.zopa.quote.domain.Reservation;
+import com.zopa.quote.format.QuoteRenderer;
+import com.zopa.quote.repository.LenderPoolRepository;
+import com.zopa.quote.repository.RateOrderedLenders;
+
+/**
+ * Reserves funds from the lowest rate lenders so the same funds are never promised twice. Every lender's
+ * reserved amount is guarded by one of a fixed set of locks chosen by lender ID, borrowers only wait for
+ * each other when they take from the same lenders (or lenders sharing a lock). Committing a reservation
+ * takes the funds out of the lender pool, releasing it gives them back. Funds are counted in pence.
+ * Commit updates each lender in the repository, so stripes only keep commits apart with a repository
+ * that is not locked as a whole on update, lender.repository.type=concurrent (or sharded, per shard).
+ */
+@Service
+public class FundReservationServiceImpl implements FundReservationService {
+	
+	private static final int STRIPES = 256;
+	
+	@Autowired private LenderPoolService lenderPoolService;
+	@Autowired private LenderPoolRepository poolLenderRepository;
+	@Autowired private QuoteEngine quoteEngine;
+	@Autowired private QuoteRenderer quoteRenderer;
+	
+	//Amount reserved by lender, changed only holding the lender's stripe
+	private final ConcurrentMap<Integer, Funds> reservedByLender = new ConcurrentHashMap<Integer, Funds>();
+	private final Object[] stripes = new Object[STRIPES];
+	
+	private final ConcurrentMap<Long, Reservation> pendingReservations = new ConcurrentHashMap<Long, Reservation>();
+	private final AtomicLong reservationSequence = new AtomicLong();
+	
+	
+	public FundReservationServiceImpl() {
+		for(int i = 0; i < STRIPES; i++) {
+			stripes[i] = new Object();
+		}
+	}
+	
+	
+	/**
+	 * Reserves amount requested taking funds from lenders in rate order, only funds not reserved yet are taken.
+	 *
+	 * @param  amountToBorrow amount requested by the user
+	 * @return      reservation holding the funds taken.
+	 * @throws IllegalArgumentException when amount is not allowed.
+	 * @throws IllegalStateException when lender pool cannot cover the amount, nothing is reserved then.
+	 */
+	@Override
+	public Reservation reserve(double amountToBorrow) {
+		
+		validate(amountToBorrow);
+		
+		//Rate order comes from current view, funds left are read from each lender when taken
+		RateOrderedLenders lenderPool = poolLenderRepository.findAllRateOrdered();
+		List<Lender> allocations = new ArrayList<Lender>();
+		long amountLeft = Money.toPence(amountToBorrow);
+		for(int position = 0; position < lenderPool.size() && amountLeft > 0; position++) {
+			Lender allocation = take(lenderPool.getId(position), amountLeft);
+			if(allocation != null) {
+				allocations.add(allocation);
+				amountLeft -= allocation.getAvailablePence();
+			}
+		}
+		
+		if(amountLeft > 0) {
+			giveBack(allocations);
+			throw new IllegalStateException(quoteRenderer.render(new QuoteRejection(QuoteOutcome.NOT_FEASIBLE, Money.toPence(amountToBorrow), 0)));
+		}
+		
+		Repayment repayment = quoteEngine.calculate(allocations, amountToBorrow);
+		Reservation reservation = new Reservation(reservationSequence.incrementAndGet(), amountToBorrow, allocations, repayment);
+		pendingReservations.put(reservation.getId(), reservation);
+		return reservation;
+	}
+	
+	
+	/**
+	 * Commits reservation, funds reserved are taken out of lenders in pool. Lenders left without funds are removed.
+	 *
+	 * @param  reservationId reservation ID
+	 * @return      true if reservation was pending.
+	 */
+	@Override
+	public boolean commit(long reservationId) {
+		Reservation reservation = pendingReservations.remove(reservationId);
+		if(reservation == null) return false;
+		
+		for(final Lender allocation: reservation.getAllocations()) {
+			synchronized (stripe(allocation.getId())) {
+				
+				//Taken out atomically, lender feed may change the same lender meanwhile
+				poolLenderRepository.update(allocation.getId(), new UnaryOperator<Lender>() {
+					
+					@Override
+					public Lender apply(Lender lender) {
+						long available = lender.getAvailablePence() - allocation.getAvailablePence();
+						return available > 0 ? Lender.ofPence(lender.getId(), lender.getName(), lender.getRateUnits(), available) : null;
+					}
+				
+				});
+				unreserve(allocation);
+			}
+		}
+		return true;
+	}
+	
+	
+	/**
+	 * Releases reservation, funds reserved can be taken again.
+	 *
+	 * @param  reservationId reservation ID
+	 * @return      true if reservation was pending.
+	 */
+	@Override
+	public boolean release(long reservationId) {
+		Reservation reservation = pendingReservations.remove(reservationId);
+		if(reservation == null) return false;
+		
+		giveBack(reservation.getAllocations());
+		return true;
+	}
+	
+	
+	/**
+	 * Returns amount currently reserved from lender provided.
+	 *
+	 * @param  lenderId lender ID
+	 * @return      amount reserved and not committed or released yet.
+	 */
+	@Override
+	public double reservedFrom(int lenderId) {
+		synchronized (stripe(lenderId)) {
+			Funds funds = reservedByLender.get(lenderId);
+			return funds == null ? 0 : Money.toPounds(funds.reserved);
+		}
+	}
+	
+	
+	//Takes up to pence provided from lender funds not reserved yet, null if there are none
+	private Lender take(int lenderId, long amountPence) {
+		
+		//Lenders already fully reserved are skipped without locking
+		Lender lender = poolLenderRepository.find(lenderId);
+		Funds funds = reservedByLender.get(lenderId);
+		if(lender == null || (funds != null && funds.reserved >= lender.getAvailablePence())) return null;
+		
+		synchronized (stripe(lenderId)) {
+			funds = reservedByLender.get(lenderId);
+			lender = poolLenderRepository.find(lenderId);
+			if(lender == null) {
+				if(funds != null && funds.reserved == 0) reservedByLender.remove(lenderId);
+				return null;
+			}
+			
+			if(funds == null) {
+				funds = new Funds();
+				reservedByLender.put(lenderId, funds);
+			}
+			
+			long taken = Math.min(lender.getAvailablePence() - funds.reserved, amountPence);
+			if(taken <= 0) return null;
+			
+			funds.reserved += taken;
+			return Lender.ofPence(lenderId, lender.getName(), lender.getRateUnits(), taken);
+		}
+	}
+	
+	
+	private void giveBack(List<Lender> allocations) {
+		for(Lender allocation: allocations) {
+			synchronized (stripe(allocation.getId())) {
+				unreserve(allocation);
+			}
+		}
+	}
+	
+	
+	//Gives back funds of allocation, caller holds lender's stripe. Funds of lenders gone from pool are 
+	//dropped once nothing is reserved from them, so removed lenders do not pile up
+	private void unreserve(Lender allocation) {
+		Funds funds = reservedByLender.get(allocation.getId());
+		funds.reserved -= allocation.getAvailablePence();
+		if(funds.reserved == 0 && poolLenderRepository.find(allocation.getId()) == null) {
+			reservedByLender.remove(allocation.getId());
+		}
+	}
+	
+	
+	private Object stripe(int lenderId) {
+		return stripes[(lenderId & 0x7fffffff) % STRIPES];
+	}
+	
+	
+	//Amount not allowed is rejected with the message a quote of it gets
+	private void validate(double amountToBorrow) {
+		QuoteRejection rejection = lenderPoolService.checkAmount(amountToBorrow);
+		if(rejection != null) {
+			throw new IllegalArgumentException(quoteRenderer.render(rejection));
+		}
+	}
+	
+	
+	private static final class Funds {
+		
+		//Pence, written holding lender's stripe, read without it to skip exhausted lenders
+		private volatile long reserved;
+	
+	}
+
+}
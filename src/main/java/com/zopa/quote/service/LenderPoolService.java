@@ -3,10 +3,17 @@ package com.zopa.quote.service;
 import java.util.List;
 
 import com.zopa.quote.domain.Lender;
+import com.zopa.quote.domain.QuoteRejection;
+import com.zopa.quote.domain.QuoteResult;
 
 public interface LenderPoolService {
 	
 	String calculateQuote(double amountToBorrow);
+	QuoteResult quote(double amountToBorrow);
+	QuoteResult quoteTerms(double amountToBorrow);
+	QuoteResult quoteTerms(double amountToBorrow, int[] terms);
+	void precomputeQuotes();
+	QuoteRejection checkAmount(double amountToBorrow);
 	boolean isAmountFeasible(double amountToBorrow);
 	boolean isAmountAllowed(double amountToBorrow);
 	boolean isAmountGreaterOrEqualsThanMinimum(double amountToBorrow);
@@ -15,5 +22,5 @@ public interface LenderPoolService {
 	double calculateMonthlyRepayment(List<Lender> lendersPool, double amountToBorrow);
 	double calculateTotalRepayment(List<Lender> lendersPool, double amountToBorrow);
 	double calculateAverageRate(List<Lender> lendersPool);
-	
+
 }
@@ -1,36 +1,43 @@
 package com.zopa.quote.service;
 
-import java.text.NumberFormat;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.zopa.quote.domain.Lender;
+import com.zopa.quote.domain.Money;
+import com.zopa.quote.domain.MultiTermQuote;
+import com.zopa.quote.domain.Quote;
+import com.zopa.quote.domain.QuoteOutcome;
+import com.zopa.quote.domain.QuoteRejection;
+import com.zopa.quote.domain.QuoteResult;
+import com.zopa.quote.domain.Repayment;
+import com.zopa.quote.format.QuoteRenderer;
 import com.zopa.quote.repository.LenderPoolRepository;
+import com.zopa.quote.repository.RateLevels;
+import com.zopa.quote.repository.RateOrderedLenders;
 
 @Service
 public class LenderPoolServiceImpl implements LenderPoolService {
 	
 	@Autowired private LenderPoolRepository poolLenderRepository;
-	
-	@Value( "${message.error.valueNotAllowed}" )
-	private String errorMessageValueNotAllowed;
-	
-	@Value( "${message.error.amountUnfeasible}" )
-	private String errorMessageAmountUnfeasible;
-	
-	@Value( "${message.error.minimumValueAllowed}" )
-	private String errorMessageMinimumValueAllowed;
-	
-	@Value( "${message.error.maximumValueAllowed}" )
-	private String errorMessageMaximumValueAllowed;
-	
-	@Value( "${message.quote}" )
-	private String messageQuote;
+	@Autowired private QuoteEngine quoteEngine;
+	@Autowired private QuoteMetrics quoteMetrics;
+	@Autowired private QuoteCache quoteCache;
+	@Autowired private QuoteRenderer quoteRenderer;
 	
 	@Value( "${loan.amount.increment.value.allowed}" )
 	private double incrementValueAllowed;
@@ -41,60 +48,329 @@ public class LenderPoolServiceImpl implements LenderPoolService {
 	@Value( "${loan.amount.maximum.value.allowed}" )
 	private double maximumValueAllowed;
 	
-	@Value( "${loan.time.value.allowed}" )
-	private double timeValueAllowed;
+	@Value( "${quote.table.enabled}" )
+	private boolean quoteTableEnabled;
 	
-	private NumberFormat currencyFormatter;
+	@Value( "${quote.metrics.enabled}" )
+	private boolean quoteMetricsEnabled;
 	
-
-	public LenderPoolServiceImpl() {
-		currencyFormatter = NumberFormat.getCurrencyInstance(new Locale("en", "GB"));
+	//Most lenders priced from rate ordered cursor before falling back to the full rate ordered view, 0 always uses the view
+	@Value( "${quote.cursor.lenders.limit}" )
+	private int cursorLendersLimit;
+	
+	//Term of single term quotes, as priced by multi-term calculations
+	private int[] singleTerm;
+	
+	//Quotes for every allowed amount, replaced when repository version changes
+	private volatile QuoteTable quoteTable;
+	
+	//Stale quote tables are rebuilt on this thread, quotes are priced by quote engine meanwhile
+	private ExecutorService quoteTableBuilder;
+	private final AtomicBoolean quoteTableBuildScheduled = new AtomicBoolean();
+	
+	
+	@PostConstruct
+	void init() {
+		singleTerm = new int[] { quoteEngine.getTerm() };
+		quoteTableBuilder = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "quote-table-builder");
+				thread.setDaemon(true);
+				return thread;
+			}
+		
+		});
+	}
+	
+	
+	@PreDestroy
+	void shutdown() {
+		quoteTableBuilder.shutdownNow();
 	}
 	
 	
 	/**
-	 * Process quote request.  
+	 * Process quote request, result is rendered as message text.  
 	 *
 	 * @param  amountToBorrow amount requested by the user
 	 * @return      String with the result of calculation.
 	 */
 	@Override
 	public String calculateQuote(double amountToBorrow) {
+		return quoteRenderer.render(quote(amountToBorrow));
+	}
+	
+	
+	/**
+	 * Process quote request, result holds the numbers of the quote or the reason it was rejected.  
+	 *
+	 * @param  amountToBorrow amount requested by the user
+	 * @return      Quote, or QuoteRejection when amount is not valid or cannot be covered.
+	 */
+	@Override
+	public QuoteResult quote(double amountToBorrow) {
+		
+		long start = quoteMetricsEnabled ? System.nanoTime() : 0;
+		long amountToBorrowPence = Money.toPence(amountToBorrow);
+		
+		QuoteRejection rejection = validate(amountToBorrow, amountToBorrowPence);
+		if(rejection != null) {
+			return recorded(start, rejection);
+		}
+		
+		//Answers from precomputed quotes when amount is part of the table and table is up to date
+		QuoteTable table = quoteTableEnabled ? currentQuoteTable() : null;
+		if(table != null) {
+			int step = table.stepOf(amountToBorrowPence);
+			if(step >= 0) {
+				
+				if(!table.isFeasible(step)) {
+					return recorded(start, new QuoteRejection(QuoteOutcome.NOT_FEASIBLE, amountToBorrowPence, 0)); 
+				}
+				
+				return recorded(start, new Quote(amountToBorrowPence, table.getMonthlyRepayment(step), table.getTotalRepayment(step), 
+						table.getRate(step), table.getLendersUsed(step), quoteEngine.getTerm()));
+			}
+		}
+		
+		//Answers repeated quotes priced against the same lenders from cache, version is read before pricing 
+		//so a result is never cached under a version newer than the lenders it was priced from
+		long version = 0;
+		if(quoteCache.isEnabled()) {
+			version = poolLenderRepository.version();
+			QuoteResult cached = quoteCache.get(amountToBorrowPence, quoteEngine.getTerm(), version);
+			if(cached != null) {
+				return recorded(start, cached, 0);
+			}
+		}
+		
+		QuoteResult result = price(amountToBorrow, amountToBorrowPence);
+		if(quoteCache.isEnabled()) {
+			quoteCache.put(amountToBorrowPence, quoteEngine.getTerm(), version, result);
+		}
+		return recorded(start, result);
+	}
+	
+	
+	private QuoteResult price(double amountToBorrow, long amountToBorrowPence) {
+		
+		//Validates if amount to borrow could be covered by lender pool
+		if(!isAmountFeasible(amountToBorrow)) {
+			return new QuoteRejection(QuoteOutcome.NOT_FEASIBLE, amountToBorrowPence, 0); 
+		}
+		
+		//Return monthly repayment, total repayment and rate average (this was assumed, no requirement found) in a single pass 
+		//over lenders sorted by rate, scan stops once amount to borrow is covered
+		Repayment repayment = calculate(amountToBorrowPence, singleTerm)[0];
+		
+		return new Quote(amountToBorrowPence, repayment.getMonthlyRepaymentPence(), repayment.getTotalRepaymentPence(), 
+				repayment.getRate(), repayment.getLendersUsed(), quoteEngine.getTerm());
+	}
+	
+	
+	/**
+	 * Process quote request for every loan term configured by loan.terms.allowed.  
+	 *
+	 * @param  amountToBorrow amount requested by the user
+	 * @return      MultiTermQuote, or QuoteRejection when amount is not valid or cannot be covered.
+	 */
+	@Override
+	public QuoteResult quoteTerms(double amountToBorrow) {
+		return quoteTerms(amountToBorrow, quoteEngine.getTerms());
+	}
+	
+	
+	/**
+	 * Process quote request for every loan term provided. Lenders are selected once and repayments of all 
+	 * terms are calculated in the same pass over them, each term matches a single term quote to the penny.  
+	 *
+	 * @param  amountToBorrow amount requested by the user
+	 * @param  terms loan terms in months
+	 * @return      MultiTermQuote, or QuoteRejection when amount is not valid or cannot be covered.
+	 * @throws IllegalArgumentException when no terms are provided or a term is not positive.
+	 */
+	@Override
+	public QuoteResult quoteTerms(double amountToBorrow, int[] terms) {
+		
+		if(terms.length == 0) {
+			throw new IllegalArgumentException("At least one loan term has to be provided");
+		}
+		for(int term: terms) {
+			if(term <= 0) throw new IllegalArgumentException("Loan term has to be positive: " + term);
+		}
+		
+		long start = quoteMetricsEnabled ? System.nanoTime() : 0;
+		long amountToBorrowPence = Money.toPence(amountToBorrow);
+		
+		QuoteRejection rejection = validate(amountToBorrow, amountToBorrowPence);
+		if(rejection != null) {
+			return recorded(start, rejection);
+		}
+		
+		if(!isAmountFeasible(amountToBorrow)) {
+			return recorded(start, new QuoteRejection(QuoteOutcome.NOT_FEASIBLE, amountToBorrowPence, 0)); 
+		}
+		
+		Repayment[] repayments = calculate(amountToBorrowPence, terms);
+		long[] monthlyRepayments = new long[terms.length];
+		long[] totalRepayments = new long[terms.length];
+		for(int i = 0; i < terms.length; i++) {
+			monthlyRepayments[i] = repayments[i].getMonthlyRepaymentPence();
+			totalRepayments[i] = repayments[i].getTotalRepaymentPence();
+		}
+		
+		return recorded(start, new MultiTermQuote(amountToBorrowPence, terms, monthlyRepayments, totalRepayments, 
+				repayments[0].getRate(), repayments[0].getLendersUsed()));
+	}
+	
+	
+	//Amounts covered by a few lenders are priced from the lazy rate ordered cursor, so the repository never builds a 
+	//full rate ordered view for them (no re-sort of array columns, no merge of every shard). Larger ones are priced 
+	//by rate level over the full view
+	private Repayment[] calculate(long amountToBorrowPence, int[] terms) {
+		if(cursorLendersLimit > 0) {
+			Repayment[] repayments = quoteEngine.calculate(poolLenderRepository.sortedSpliterator(), amountToBorrowPence, terms, cursorLendersLimit);
+			if(repayments != null) {
+				return repayments;
+			}
+		}
+		return quoteEngine.calculate(poolLenderRepository.findAllRateOrdered(), amountToBorrowPence, terms);
+	}
+	
+	
+	//Rejection of amount not allowed, below minimum or above maximum, null if amount is valid
+	private QuoteRejection validate(double amountToBorrow, long amountToBorrowPence) {
 		
 		//Validates if amount to borrow is a valid value
 		if(!isAmountAllowed(amountToBorrow)) {
-			return String.format(errorMessageValueNotAllowed, currencyFormatter.format(incrementValueAllowed), currencyFormatter.format(amountToBorrow)); 
+			return new QuoteRejection(QuoteOutcome.NOT_ALLOWED, amountToBorrowPence, Money.toPence(incrementValueAllowed)); 
 		}
 		
 		//Validates if amount to borrow is over minimum value allowed
 		if(!isAmountGreaterOrEqualsThanMinimum(amountToBorrow)) {
-			return String.format(errorMessageMinimumValueAllowed, currencyFormatter.format(minimumValueAllowed), currencyFormatter.format(amountToBorrow));
+			return new QuoteRejection(QuoteOutcome.BELOW_MINIMUM, amountToBorrowPence, Money.toPence(minimumValueAllowed));
 		}
 		
 		//Validates if amount to borrow is under maximum value allowed
 		if(!isAmountLowerOrEqualsThanMaximum(amountToBorrow)) {
-			return String.format(errorMessageMaximumValueAllowed, currencyFormatter.format(maximumValueAllowed), currencyFormatter.format(amountToBorrow));
+			return new QuoteRejection(QuoteOutcome.ABOVE_MAXIMUM, amountToBorrowPence, Money.toPence(maximumValueAllowed));
 		}
 		
-		//Validates if amount to borrow could be covered by lender pool
-		if(!isAmountFeasible(amountToBorrow)) {
-			return String.format(errorMessageAmountUnfeasible, currencyFormatter.format(amountToBorrow)); 
+		return null;
+	}
+	
+	
+	//Result already built, latency measured from start provided
+	private QuoteResult recorded(long start, QuoteResult result) {
+		return recorded(start, result, lendersUsed(result));
+	}
+	
+	
+	private QuoteResult recorded(long start, QuoteResult result, int lendersTouched) {
+		if(quoteMetricsEnabled) {
+			quoteMetrics.record(result.getOutcome(), System.nanoTime() - start, lendersTouched);
+		}
+		return result;
+	}
+	
+	
+	private int lendersUsed(QuoteResult result) {
+		if(result instanceof Quote) return ((Quote) result).getLendersUsed();
+		if(result instanceof MultiTermQuote) return ((MultiTermQuote) result).getLendersUsed();
+		return 0;
+	}
+	
+	
+	/**
+	 * Precomputes quotes for every allowed amount in a single pass over rate levels of lenders, 
+	 * quotes are kept until repository changes and then rebuilt in background. Nothing is done
+	 * unless quote.table.enabled is set.  
+	 *
+	 */
+	@Override
+	public void precomputeQuotes() {
+		if(quoteTableEnabled) {
+			quoteTable = buildQuoteTable();
+		}
+	}
+	
+	
+	//Quote table of current repository version, null while it is stale. A rebuild is scheduled then,
+	//so the request path never waits for a table to be built
+	private QuoteTable currentQuoteTable() {
+		QuoteTable table = quoteTable;
+		if(table != null && table.getVersion() == poolLenderRepository.version()) {
+			return table;
 		}
-
-		//Return lender list with the lowest rate available that covers the amount to borrow
-		List<Lender> lenderPool = getLowestRateLenders(amountToBorrow);
 		
-		//Return monthly repayment based on lender pool list
-		double monthlyRepayment = calculateMonthlyRepayment(new LinkedList<>(lenderPool), amountToBorrow);
+		if(quoteTableBuildScheduled.compareAndSet(false, true)) {
+			quoteTableBuilder.execute(new Runnable() {
+				
+				@Override
+				public void run() {
+					try {
+						quoteTable = buildQuoteTable();
+					} finally {
+						quoteTableBuildScheduled.set(false);
+					}
+				}
+			
+			});
+		}
+		return null;
+	}
+	
+	
+	private QuoteTable buildQuoteTable() {
+		
+		QuoteTable table = new QuoteTable(poolLenderRepository.version(), Money.toPence(minimumValueAllowed), 
+				Money.toPence(maximumValueAllowed), Money.toPence(incrementValueAllowed));
+		RateOrderedLenders lenderPool = poolLenderRepository.findAllRateOrdered();
+		RateLevels levels = lenderPool.rateLevels();
+		int cutOffLevel = 0;
 		
-		//Return total repayment based on lender pool list
-		double totalRepayment = calculateTotalRepayment(new LinkedList<>(lenderPool), amountToBorrow);
+		//Totals of rate levels fully lent for current amount, repayments in fractional pence summed in rate order 
+		//as QuoteEngine does, so rounding gives the same pence
+		long amountCovered = 0;
+		double monthlyRepaymentCovered = 0;
+		double totalRepaymentCovered = 0;
+		long ratesCovered = 0;
+		int lendersCovered = 0;
 		
-		//Return rate average based on lender pool list (this was assumed, no requirement found)
-		double rate = calculateAverageRate(new LinkedList<>(lenderPool));
-		rate *= 100;
+		//Amounts ascending, levels fully lent for one amount remain fully lent for the next ones
+		for(int step = 0; step < table.size(); step++) {
+			
+			long amountToBorrow = table.amountAt(step);
+			while(cutOffLevel < levels.size() && (amountCovered + levels.getAvailablePence(cutOffLevel)) < amountToBorrow) {
+				long rateUnits = levels.getRateUnits(cutOffLevel);
+				double rate = Money.toRate(rateUnits);
+				long available = levels.getAvailablePence(cutOffLevel);
+				amountCovered += available;
+				monthlyRepaymentCovered += quoteEngine.calculateMonthlyRepayment(rate, available);
+				totalRepaymentCovered += quoteEngine.calculateTotalRepayment(rate, available);
+				ratesCovered += rateUnits * levels.getLenderCount(cutOffLevel);
+				lendersCovered += levels.getLenderCount(cutOffLevel);
+				cutOffLevel++;
+			}
+			
+			//No levels left, this and greater amounts cannot be covered
+			if(cutOffLevel == levels.size()) break;
+			
+			//Last level only lends what is left to cover, up to its cut-off lender
+			long rateUnits = levels.getRateUnits(cutOffLevel);
+			double rate = Money.toRate(rateUnits);
+			long amountLeft = amountToBorrow - amountCovered;
+			int levelLenders = QuoteEngine.lendersUsed(lenderPool, levels, cutOffLevel, true, amountToBorrow);
+			table.set(step, 
+					Money.roundPence(monthlyRepaymentCovered + quoteEngine.calculateMonthlyRepayment(rate, amountLeft)), 
+					Money.roundPence(totalRepaymentCovered + quoteEngine.calculateTotalRepayment(rate, amountLeft)), 
+					Money.toRate(ratesCovered + rateUnits * levelLenders) / (lendersCovered + levelLenders), 
+					lendersCovered + levelLenders);
+		}
 		
-		return String.format(messageQuote, currencyFormatter.format(amountToBorrow), rate, currencyFormatter.format(monthlyRepayment), currencyFormatter.format(totalRepayment));
+		return table;
 	}
 	
 	
@@ -108,38 +384,37 @@ public class LenderPoolServiceImpl implements LenderPoolService {
 	@Override
 	public boolean isAmountFeasible(double amountToBorrow) {
 		
-		//Get all lenders
-		List<Lender> lenderPool = poolLenderRepository.findAll();
-		double amountCovered = 0.0;
-		
-		//Loop lender list
-		for(Lender lender: lenderPool) {
-			
-			//Totalize lender's available
-			amountCovered += lender.getAvailable();
-			
-			//Validates if amount to borrow is covered, if covered interrupt loop
-			if(amountCovered >= amountToBorrow) break;
-		}
-		
-		//Validates if amount to borrow has been covered
-		return (amountCovered >= amountToBorrow);
+		//Validates if amount to borrow is covered by total available in lender pool
+		return poolLenderRepository.totalAvailablePence() >= Money.toPence(amountToBorrow);
+	}
+	
+	
+	/**
+	 * Returns rejection of amount to borrow not allowed, below minimum or above maximum, checked as quotes do  
+	 *
+	 * @param  amountToBorrow amount requested by the user
+	 * @return      rejection of amount, null if amount can be quoted
+	 */
+	@Override
+	public QuoteRejection checkAmount(double amountToBorrow) {
+		return validate(amountToBorrow, Money.toPence(amountToBorrow));
 	}
-
+	
 	
 	/**
-	 * Returns true only if amount to borrow respects the 100 step increment  
+	 * Returns true only if amount to borrow respects the 100 step increment, checked in whole pence  
 	 *
 	 * @param  amountToBorrow amount requested by the user
 	 * @return      TRUE if amount requested respects 100 step increment, FALSE if it does not
 	 */
 	@Override
 	public boolean isAmountAllowed(double amountToBorrow) {
-		//Validates if amount to borrow is a valid step of 100
-		return (amountToBorrow % incrementValueAllowed) == 0;
+		//Validates if amount to borrow is a valid step of 100, fractions of a penny are never allowed
+		return Money.isWholePence(amountToBorrow) 
+				&& (Money.toPence(amountToBorrow) % Money.toPence(incrementValueAllowed)) == 0;
 	}
 	
-
+	
 	/**
 	 * Returns true only if amount to borrow is EQUALS or GREATER than minimum allowed  
 	 *
@@ -149,10 +424,10 @@ public class LenderPoolServiceImpl implements LenderPoolService {
 	@Override
 	public boolean isAmountGreaterOrEqualsThanMinimum(double amountToBorrow) {
 		//Validates if amount to borrow is greater or equals than minimum allowed
-		return amountToBorrow >= minimumValueAllowed;
+		return Money.toPence(amountToBorrow) >= Money.toPence(minimumValueAllowed);
 	}
 	
-
+	
 	/**
 	 * Returns true only if amount to borrow is EQUALS or LOWER than maximum allowed  
 	 *
@@ -162,9 +437,9 @@ public class LenderPoolServiceImpl implements LenderPoolService {
 	@Override
 	public boolean isAmountLowerOrEqualsThanMaximum(double amountToBorrow) {
 		//Validates if amount to borrow is lower or equals than maximum allowed
-		return amountToBorrow <= maximumValueAllowed;
+		return Money.toPence(amountToBorrow) <= Money.toPence(maximumValueAllowed);
 	}
-
+	
 	
 	/**
 	 * Returns the list of lenders with lowest rate available that covers the amount to borrow.  
@@ -175,25 +450,11 @@ public class LenderPoolServiceImpl implements LenderPoolService {
 	@Override
 	public List<Lender> getLowestRateLenders(double amountToBorrow) {
 		
-		//Instantiate lender list with lowest rates
-		List<Lender> competitiveLenderPool = new LinkedList<>();
-		//Get all lenders from repository sorted by rate ascending
-		List<Lender> lenderPool = poolLenderRepository.findAllSorted();
-		double amountCovered = 0.0;
-		
-		//Loop lender list
-		for(Lender lender: lenderPool) {
-			//Validates if amount to borrow is covered, if covered interrupt loop
-			if(amountCovered >= amountToBorrow) break;
-			
-			//Add as competitive lender 
-			competitiveLenderPool.add(lender);
-			
-			//Add amount covered
-			amountCovered += lender.getAvailable();
-		}
-		
-		return competitiveLenderPool;
+		//Lenders taken lazily in rate order up to the one that covers the amount to borrow
+		Spliterator<Lender> lenderPool = poolLenderRepository.sortedSpliterator();
+		LowestRateLenders lowestRateLenders = new LowestRateLenders(Money.toPence(amountToBorrow));
+		while(lowestRateLenders.amountLeft > 0 && lenderPool.tryAdvance(lowestRateLenders)) {}
+		return lowestRateLenders.lenders;
 	}
 	
 	
@@ -207,45 +468,10 @@ public class LenderPoolServiceImpl implements LenderPoolService {
 	@Override
 	public double calculateMonthlyRepayment(List<Lender> lenderPool, double amountToBorrow) {
 		
-		return calculateMonthlyRepayment(lenderPool, amountToBorrow, 0);
-		
-	}
-
-	private double calculateMonthlyRepayment(List<Lender> lenderPool, double amountToBorrow, double loanAmountCovered) {
-		
-		//Validates if amount to borrow is covered and lenders still to evaluate
-		if(loanAmountCovered < amountToBorrow && lenderPool.size() > 0) {
-			
-			//Get next lender from list
-			Lender lender = lenderPool.remove(0);
-			
-			//Validates if lender has available to cover total amount to borrow
-			if((loanAmountCovered + lender.getAvailable()) >= amountToBorrow) {
-				
-				//Lender has enough to borrow, process lender and return
-				return calculateMonthlyRepaymentByLender(lender, amountToBorrow - loanAmountCovered);
-				
-			} else {
-				
-				//Not enough to covered all, process lender and pass the lender pool to process
-				loanAmountCovered += lender.getAvailable();
-				double monthlyRepayment = calculateMonthlyRepaymentByLender(lender, lender.getAvailable());
-				return monthlyRepayment += calculateMonthlyRepayment(lenderPool, amountToBorrow, loanAmountCovered);
-				
-			}
-		}
-		
-		return 0;
-	}
-	
+		return quoteEngine.calculate(asRandomAccess(lenderPool), amountToBorrow).getMonthlyRepayment();
 	
-	private double calculateMonthlyRepaymentByLender(Lender lender, double amountToBorrow) {
-		
-		// Formula used -> Monthly repayment with monthly APR = (month_interest * requested_amount) / (1 - (1 + month_interest) ^ -(total_months))
-		return ( ( lender.getRate()/12 ) * amountToBorrow ) / ( 1 - Math.pow( ( 1 + ( lender.getRate()/12 ) ), -timeValueAllowed ) );
-		
 	}
-
+	
 	
 	/**
 	 * Method calculates total repayment based on lender list provided.  
@@ -256,45 +482,16 @@ public class LenderPoolServiceImpl implements LenderPoolService {
 	 */
 	@Override
 	public double calculateTotalRepayment(List<Lender> lenderPool, double amountToBorrow) {
-	
-		return calculateTotalRepayment(lenderPool, amountToBorrow, 0);
-		
-	}
-
-	private double calculateTotalRepayment(List<Lender> lenderPool, double amountToBorrow, double loanAmountCovered) {
 		
-		//Validates if amount to borrow is covered and lenders still to evaluate
-		if(loanAmountCovered < amountToBorrow && lenderPool.size() > 0) {
-			
-			//Get next lender from list
-			Lender lender = lenderPool.remove(0);
-			
-			//Validates if lender has available to cover total amount to borrow
-			if((loanAmountCovered + lender.getAvailable()) >= amountToBorrow) {
-				
-				//Lender has enough to borrow, process lender and return
-				return calculateTotalRepaymentByLender(lender, amountToBorrow - loanAmountCovered);
-				
-			} else {
-
-				//Not enough to covered all, process lender and pass the lender pool to process
-				loanAmountCovered += lender.getAvailable();
-				double monthlyRepayment = calculateTotalRepaymentByLender(lender, lender.getAvailable());
-				return monthlyRepayment += calculateTotalRepayment(lenderPool, amountToBorrow, loanAmountCovered);
-				
-			}
-		}
-		
-		return 0;
+		return quoteEngine.calculate(asRandomAccess(lenderPool), amountToBorrow).getTotalRepayment();
+	
 	}
 	
-	private double calculateTotalRepaymentByLender(Lender lender, double amountToBorrow) {
-		
-		// Formula used -> Total repayment with monthly APR = requested_amount * (1 + month_interest) ^ total_months
-		return ( amountToBorrow * Math.pow( ( 1 + ( lender.getRate()/12 ) ), timeValueAllowed ) );
-		
+	
+	private List<Lender> asRandomAccess(List<Lender> lenderPool) {
+		return lenderPool instanceof RandomAccess ? lenderPool : new ArrayList<>(lenderPool);
 	}
-
+	
 	
 	/**
 	 * Method calculates rate average based on lender list provided.  
@@ -305,15 +502,32 @@ public class LenderPoolServiceImpl implements LenderPoolService {
 	@Override
 	public double calculateAverageRate(List<Lender> lendersPool) {
 		
-		double totalRates = 0;
+		long totalRates = 0;
 		for(Lender lender: lendersPool) {
-			totalRates += lender.getRate();
+			totalRates += lender.getRateUnits();
 		}
 		
-		return (totalRates / lendersPool.size());
-		
+		return (Money.toRate(totalRates) / lendersPool.size());
+	
 	}
 	
 	
+	//Collects lenders taken from a rate ordered cursor and the pence still to cover
+	private static final class LowestRateLenders implements Consumer<Lender> {
+		
+		private final List<Lender> lenders = new ArrayList<Lender>();
+		private long amountLeft;
+		
+		private LowestRateLenders(long amountPence) {
+			this.amountLeft = amountPence;
+		}
+		
+		@Override
+		public void accept(Lender lender) {
+			lenders.add(lender);
+			amountLeft -= lender.getAvailablePence();
+		}
 	
+	}
+
 }
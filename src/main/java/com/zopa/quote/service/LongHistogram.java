@@ -0,0 +1,129 @@
+package com.zopa.quote.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of non-negative values, recorded without locks. Values under 32 get a bucket each,
+ * above that every power of two is split in 16 linear buckets, so percentiles are within 1/16 of the value
+ * recorded, as in HdrHistogram with one significant digit. Counts are read bucket by bucket, percentiles
+ * read while values are recorded may be off by the values recorded meanwhile.
+ */
+class LongHistogram {
+	
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+	
+	private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BUCKET_BITS) * SUB_BUCKETS);
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+	
+	
+	/**
+	 * Records value provided, negative values are recorded as 0.
+	 *
+	 * @param  value value to record
+	 */
+	void record(long value) {
+		if(value < 0) value = 0;
+		counts.incrementAndGet(indexOf(value));
+		total.addAndGet(value);
+		
+		long currentMax = max.get();
+		while(value > currentMax && !max.compareAndSet(currentMax, value)) {
+			currentMax = max.get();
+		}
+	}
+	
+	
+	/**
+	 * Returns number of values recorded.
+	 *
+	 * @return      values recorded.
+	 */
+	long count() {
+		long count = 0;
+		for(int i = 0; i < counts.length(); i++) {
+			count += counts.get(i);
+		}
+		return count;
+	}
+	
+	
+	/**
+	 * Returns mean of values recorded, 0 if there are none.
+	 *
+	 * @return      mean value.
+	 */
+	double mean() {
+		long count = count();
+		return count > 0 ? (double) total.get() / count : 0;
+	}
+	
+	
+	/**
+	 * Returns greatest value recorded.
+	 *
+	 * @return      maximum value, 0 if there are none.
+	 */
+	long max() {
+		return max.get();
+	}
+	
+	
+	/**
+	 * Returns value at percentile provided: highest value of the bucket where percentile falls,
+	 * never greater than maximum recorded.
+	 *
+	 * @param  percentile percentile from 0 to 100
+	 * @return      value at percentile, 0 if there are none.
+	 */
+	long percentile(double percentile) {
+		long count = count();
+		if(count == 0) return 0;
+		
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for(int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if(seen >= rank) {
+				return Math.min(highestValueOf(i), max.get());
+			}
+		}
+		return max.get();
+	}
+	
+	
+	/**
+	 * Removes every value recorded.
+	 *
+	 */
+	void reset() {
+		for(int i = 0; i < counts.length(); i++) {
+			counts.set(i, 0);
+		}
+		total.set(0);
+		max.set(0);
+	}
+	
+	
+	//Bucket exponent from position of highest bit, bucket mantissa from the next SUB_BUCKET_BITS bits
+	static int indexOf(long value) {
+		if(value < LINEAR_LIMIT) return (int) value;
+		
+		int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		int mantissa = (int) (value >>> exponent);
+		return exponent * SUB_BUCKETS + mantissa;
+	}
+	
+	
+	static long highestValueOf(int index) {
+		if(index < LINEAR_LIMIT) return index;
+		
+		int exponent = index / SUB_BUCKETS - 1;
+		long mantissa = index % SUB_BUCKETS + SUB_BUCKETS;
+		return ((mantissa + 1) << exponent) - 1;
+	}
+
+}
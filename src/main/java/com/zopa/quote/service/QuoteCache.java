@@ -0,0 +1,221 @@
+package com.zopa.quote.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.zopa.quote.domain.QuoteResult;
+
+/**
+ * Bounded LRU cache of quote results keyed by amount, term and repository version, so a repeated quote is a hash
+ * lookup until lenders change. Entries are spread over a fixed set of segments, each an access ordered map guarded
+ * by its own lock, so threads only wait for each other when they hit the same segment. Entries of older versions
+ * are never returned, they are dropped lazily as they become the eldest of their segment. Hits, misses, evictions
+ * and expired entries are counted and exposed through JMX as com.zopa.quote:type=QuoteCache.
+ */
+@Component
+@ManagedResource(objectName = "com.zopa.quote:type=QuoteCache", description = "Quote results by amount, term and lenders version")
+public class QuoteCache {
+	
+	private static final int SEGMENTS = 16;
+	
+	//Maximum number of quote results, 0 disables cache
+	@Value( "${quote.cache.size}" )
+	private int size;
+	
+	private Segment[] segments;
+	
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong expired = new AtomicLong();
+	
+	
+	public QuoteCache() {}
+	QuoteCache(int size) {
+		this.size = size;
+		init();
+	}
+	
+	
+	@PostConstruct
+	void init() {
+		segments = new Segment[SEGMENTS];
+		int segmentCapacity = (size + SEGMENTS - 1) / SEGMENTS;
+		for(int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new Segment(segmentCapacity);
+		}
+	}
+	
+	
+	public boolean isEnabled() {
+		return size > 0;
+	}
+	
+	
+	/**
+	 * Returns quote result cached for amount, term and repository version provided.
+	 *
+	 * @param  amountPence amount requested in pence
+	 * @param  term loan term in months
+	 * @param  version repository version the quote has to be priced against
+	 * @return      cached result, null if there is none.
+	 */
+	public QuoteResult get(long amountPence, int term, long version) {
+		Key key = new Key(amountPence, term, version);
+		Segment segment = segment(key);
+		QuoteResult result;
+		synchronized (segment) {
+			result = segment.get(key);
+		}
+		(result != null ? hits : misses).incrementAndGet();
+		return result;
+	}
+	
+	
+	/**
+	 * Caches quote result for amount, term and repository version provided. Least recently used result of
+	 * the segment is evicted when it is full, a result of an older version is dropped first.
+	 *
+	 * @param  amountPence amount requested in pence
+	 * @param  term loan term in months
+	 * @param  version repository version read before pricing the quote
+	 * @param  result quote result, immutable
+	 */
+	public void put(long amountPence, int term, long version, QuoteResult result) {
+		Key key = new Key(amountPence, term, version);
+		Segment segment = segment(key);
+		synchronized (segment) {
+			segment.latestVersion = Math.max(segment.latestVersion, version);
+			segment.put(key, result);
+		}
+	}
+	
+	
+	@ManagedOperation(description = "Removes every cached quote")
+	public void clear() {
+		for(Segment segment: segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+	
+	
+	@ManagedAttribute(description = "Quotes answered from cache")
+	public long getHits() {
+		return hits.get();
+	}
+	
+	
+	@ManagedAttribute(description = "Quotes not found in cache")
+	public long getMisses() {
+		return misses.get();
+	}
+	
+	
+	@ManagedAttribute(description = "Quotes evicted as least recently used")
+	public long getEvictions() {
+		return evictions.get();
+	}
+	
+	
+	@ManagedAttribute(description = "Quotes of older lender versions dropped")
+	public long getExpired() {
+		return expired.get();
+	}
+	
+	
+	@ManagedAttribute(description = "Quotes cached")
+	public int getSize() {
+		int entries = 0;
+		for(Segment segment: segments) {
+			synchronized (segment) {
+				entries += segment.size();
+			}
+		}
+		return entries;
+	}
+	
+	
+	@ManagedAttribute(description = "Maximum number of quotes cached")
+	public int getCapacity() {
+		return size;
+	}
+	
+	
+	private Segment segment(Key key) {
+		return segments[(key.hashCode() & 0x7fffffff) % SEGMENTS];
+	}
+	
+	
+	private final class Segment extends LinkedHashMap<Key, QuoteResult> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final int capacity;
+		
+		//Newest version cached in segment, entries of older versions are dropped once eldest
+		private long latestVersion;
+		
+		private Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, QuoteResult> eldest) {
+			if(eldest.getKey().version < latestVersion) {
+				expired.incrementAndGet();
+				return true;
+			}
+			if(size() > capacity) {
+				evictions.incrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	
+	}
+	
+	
+	private static final class Key {
+		
+		private final long amount;
+		private final int term;
+		private final long version;
+		
+		private Key(long amount, int term, long version) {
+			this.amount = amount;
+			this.term = term;
+			this.version = version;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if ( this == obj ) return true;
+			if ( !(obj instanceof Key) ) return false;
+			
+			Key o = (Key) obj;
+			return amount == o.amount && term == o.term && version == o.version;
+		}
+		
+		@Override
+		public int hashCode() {
+			int result = Long.hashCode(amount);
+			result = 31 * result + term;
+			result = 31 * result + Long.hashCode(version);
+			return result ^ (result >>> 16);
+		}
+	
+	}
+
+}
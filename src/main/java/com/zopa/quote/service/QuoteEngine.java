@@ -0,0 +1,419 @@
+package com.zopa.quote.service;
+
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.zopa.quote.domain.Lender;
+import com.zopa.quote.domain.Money;
+import com.zopa.quote.domain.Repayment;
+import com.zopa.quote.repository.RateLevels;
+import com.zopa.quote.repository.RateOrderedLenders;
+import com.zopa.quote.service.AnnuityFactorCache.AnnuityFactors;
+
+@Component
+public class QuoteEngine {
+	
+	@Value( "${loan.time.value.allowed}" )
+	private double timeValueAllowed;
+	
+	//Terms quoted together by multi-term quotes, comma separated months
+	@Value( "${loan.terms.allowed}" )
+	private String termsAllowed;
+	
+	@Value( "${quote.factor.cache.size}" )
+	private int factorCacheSize;
+	
+	//Annuity factors per rate and term, avoids Math.pow on every lender
+	private AnnuityFactorCache factorCache;
+	
+	private int[] terms;
+	
+	
+	public QuoteEngine() {}
+	QuoteEngine(double timeValueAllowed, int factorCacheSize) {
+		this.timeValueAllowed = timeValueAllowed;
+		this.termsAllowed = Integer.toString((int) timeValueAllowed);
+		this.factorCacheSize = factorCacheSize;
+		init();
+	}
+	
+	
+	@PostConstruct
+	void init() {
+		factorCache = factorCacheSize > 0 ? new AnnuityFactorCache(factorCacheSize) : null;
+		terms = parseTerms(termsAllowed);
+	}
+	
+	
+	/**
+	 * Returns loan term of single term quotes.
+	 *
+	 * @return      term in months.
+	 */
+	public int getTerm() {
+		return (int) timeValueAllowed;
+	}
+	
+	
+	/**
+	 * Returns loan terms of multi-term quotes, as configured by loan.terms.allowed.
+	 *
+	 * @return      copy of terms in months.
+	 */
+	public int[] getTerms() {
+		return terms.clone();
+	}
+	
+	
+	/**
+	 * Parses a comma separated list of loan terms, ie: 12,24,36.
+	 *
+	 * @param  termList terms in months
+	 * @return      terms in the order provided.
+	 * @throws IllegalArgumentException when list is empty or a term is not a positive whole number of months.
+	 */
+	public static int[] parseTerms(String termList) {
+		String[] values = termList.split(",");
+		int[] terms = new int[values.length];
+		for(int i = 0; i < values.length; i++) {
+			try {
+				terms[i] = Integer.parseInt(values[i].trim());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Loan term is not a number of months: " + values[i]);
+			}
+			if(terms[i] <= 0) {
+				throw new IllegalArgumentException("Loan term has to be positive: " + terms[i]);
+			}
+		}
+		return terms;
+	}
+	
+	
+	
+	/**
+	 * Calculates monthly repayment, total repayment and rate in a single pass over the lenders provided. 
+	 * Lenders are taken in list order until amount to borrow is covered, last lender only lends what is left. 
+	 * Consecutive lenders sharing a rate are priced together, as rate levels are, so a rate ordered list gives 
+	 * the same repayment as its repository view. Lender list is not modified and nothing is allocated per lender, 
+	 * list is expected to be random access.  
+	 *
+	 * @param  lenderPool lenders to borrow from, usually sorted by rate
+	 * @param  amountToBorrow amount requested by the user
+	 * @return      repayment of the amount covered by lenders.
+	 */
+	public Repayment calculate(List<Lender> lenderPool, double amountToBorrow) {
+		
+		long amountToBorrowPence = Money.toPence(amountToBorrow);
+		long amountCovered = 0;
+		double monthlyRepayment = 0;
+		double totalRepayment = 0;
+		long totalRates = 0;
+		int lendersUsed = 0;
+		
+		//Amount lent by the run of lenders sharing current rate, priced once the rate changes
+		long runRateUnits = -1;
+		long runLent = 0;
+		
+		for(int i = 0, size = lenderPool.size(); i < size && amountCovered < amountToBorrowPence; i++) {
+			
+			Lender lender = lenderPool.get(i);
+			
+			//Validates if lender has available to cover what is left of amount to borrow
+			long amountLent = Math.min(lender.getAvailablePence(), amountToBorrowPence - amountCovered);
+			
+			long rateUnits = lender.getRateUnits();
+			if(rateUnits != runRateUnits) {
+				if(runLent > 0) {
+					double rate = Money.toRate(runRateUnits);
+					monthlyRepayment += calculateMonthlyRepayment(rate, runLent);
+					totalRepayment += calculateTotalRepayment(rate, runLent);
+				}
+				runRateUnits = rateUnits;
+				runLent = 0;
+			}
+			
+			runLent += amountLent;
+			totalRates += rateUnits;
+			amountCovered += amountLent;
+			lendersUsed++;
+		}
+		if(runLent > 0) {
+			double rate = Money.toRate(runRateUnits);
+			monthlyRepayment += calculateMonthlyRepayment(rate, runLent);
+			totalRepayment += calculateTotalRepayment(rate, runLent);
+		}
+		
+		return new Repayment(amountCovered, Money.roundPence(monthlyRepayment), Money.roundPence(totalRepayment), 
+				lendersUsed > 0 ? Money.toRate(totalRates) / lendersUsed : Double.NaN, lendersUsed);
+	}
+	
+	
+	/**
+	 * Calculates monthly repayment, total repayment and rate over the rate levels of the lenders provided, 
+	 * repayment only depends on rate and amount lent so each distinct rate is priced once whatever the number 
+	 * of lenders sharing it. Levels are taken in rate order until amount to borrow is covered, last level only 
+	 * lends what is left and its lenders used are found by cut-off search. Amounts lent are exact pence, 
+	 * repayments are summed per level in fractional pence, always in rate order, and rounded half up to 
+	 * pence once at the end, so the same lenders and amount always give the same repayment.  
+	 *
+	 * @param  lenderPool lenders to borrow from, in rate order
+	 * @param  amountToBorrowPence amount requested by the user, in pence
+	 * @return      repayment of the amount covered by lenders.
+	 */
+	public Repayment calculate(RateOrderedLenders lenderPool, long amountToBorrowPence) {
+		
+		RateLevels levels = lenderPool.rateLevels();
+		long amountCovered = 0;
+		double monthlyRepayment = 0;
+		double totalRepayment = 0;
+		long totalRates = 0;
+		int lendersUsed = 0;
+		
+		for(int level = 0, size = levels.size(); level < size && amountCovered < amountToBorrowPence; level++) {
+			
+			long amountLent = Math.min(levels.getAvailablePence(level), amountToBorrowPence - amountCovered);
+			long rateUnits = levels.getRateUnits(level);
+			double rate = Money.toRate(rateUnits);
+			monthlyRepayment += calculateMonthlyRepayment(rate, amountLent);
+			totalRepayment += calculateTotalRepayment(rate, amountLent);
+			amountCovered += amountLent;
+			
+			int levelLenders = lendersUsed(lenderPool, levels, level, amountCovered >= amountToBorrowPence, amountToBorrowPence);
+			totalRates += rateUnits * levelLenders;
+			lendersUsed += levelLenders;
+		}
+		
+		return new Repayment(amountCovered, Money.roundPence(monthlyRepayment), Money.roundPence(totalRepayment), 
+				lendersUsed > 0 ? Money.toRate(totalRates) / lendersUsed : Double.NaN, lendersUsed);
+	}
+	
+	
+	/**
+	 * Calculates monthly repayment, total repayment and rate for every term provided in a single pass over the 
+	 * rate levels of the lenders. Levels are selected once, as for a single term, so each term costs two annuity 
+	 * factor lookups per level. Repayments of each term are summed in rate order and rounded as single term 
+	 * quotes are, so they match a single term quote of the same term to the penny.  
+	 *
+	 * @param  lenderPool lenders to borrow from, in rate order
+	 * @param  amountToBorrowPence amount requested by the user, in pence
+	 * @param  terms loan terms in months
+	 * @return      repayment of the amount covered by lenders for each term, in the order of terms.
+	 */
+	public Repayment[] calculate(RateOrderedLenders lenderPool, long amountToBorrowPence, int[] terms) {
+		
+		RateLevels levels = lenderPool.rateLevels();
+		int termCount = terms.length;
+		double[] monthlyRepayments = new double[termCount];
+		double[] totalRepayments = new double[termCount];
+		long amountCovered = 0;
+		long totalRates = 0;
+		int lendersUsed = 0;
+		
+		for(int level = 0, size = levels.size(); level < size && amountCovered < amountToBorrowPence; level++) {
+			
+			long amountLent = Math.min(levels.getAvailablePence(level), amountToBorrowPence - amountCovered);
+			long rateUnits = levels.getRateUnits(level);
+			double rate = Money.toRate(rateUnits);
+			for(int term = 0; term < termCount; term++) {
+				monthlyRepayments[term] += calculateMonthlyRepayment(rate, amountLent, terms[term]);
+				totalRepayments[term] += calculateTotalRepayment(rate, amountLent, terms[term]);
+			}
+			amountCovered += amountLent;
+			
+			int levelLenders = lendersUsed(lenderPool, levels, level, amountCovered >= amountToBorrowPence, amountToBorrowPence);
+			totalRates += rateUnits * levelLenders;
+			lendersUsed += levelLenders;
+		}
+		
+		double averageRate = lendersUsed > 0 ? Money.toRate(totalRates) / lendersUsed : Double.NaN;
+		Repayment[] repayments = new Repayment[termCount];
+		for(int term = 0; term < termCount; term++) {
+			repayments[term] = new Repayment(amountCovered, Money.roundPence(monthlyRepayments[term]), 
+					Money.roundPence(totalRepayments[term]), averageRate, lendersUsed);
+		}
+		return repayments;
+	}
+	
+	
+	/**
+	 * Calculates monthly repayment, total repayment and rate for every term provided over lenders taken from a 
+	 * rate ordered cursor, taking no more lenders than needed to cover amount to borrow. Consecutive lenders sharing 
+	 * a rate are priced together and summed in rate order, as rate levels are, so repayments match those of the 
+	 * repository view to the penny. Reading k lenders costs what the cursor charges for them, no full view is built.  
+	 *
+	 * @param  lenderPool lenders to borrow from, in rate order
+	 * @param  amountToBorrowPence amount requested by the user, in pence
+	 * @param  terms loan terms in months
+	 * @param  lenderLimit most lenders taken from cursor
+	 * @return      repayment of the amount covered by lenders for each term, in the order of terms, 
+	 *              null when amount is not covered by lenderLimit lenders.
+	 */
+	public Repayment[] calculate(Spliterator<Lender> lenderPool, long amountToBorrowPence, int[] terms, int lenderLimit) {
+		
+		CursorPricing pricing = new CursorPricing(amountToBorrowPence, terms);
+		while(pricing.amountCovered < amountToBorrowPence && pricing.lendersUsed < lenderLimit && lenderPool.tryAdvance(pricing)) {}
+		
+		if(pricing.amountCovered < amountToBorrowPence && pricing.lendersUsed >= lenderLimit) {
+			return null;
+		}
+		return pricing.repayments();
+	}
+	
+	
+	/**
+	 * Returns number of lenders of level provided that lend, all of them unless the level is the last one needed, 
+	 * then only those up to the cut-off lender of amount to borrow, as a scan of lenders would stop there.  
+	 *
+	 * @param  lenderPool lenders in rate order
+	 * @param  levels rate levels of lenders
+	 * @param  level level lending
+	 * @param  lastLevel true when amount to borrow is covered once level lends
+	 * @param  amountToBorrowPence amount requested by the user, in pence
+	 * @return      lenders of level used.
+	 */
+	static int lendersUsed(RateOrderedLenders lenderPool, RateLevels levels, int level, boolean lastLevel, long amountToBorrowPence) {
+		if(!lastLevel) {
+			return levels.getLenderCount(level);
+		}
+		return lenderPool.coveringCount(amountToBorrowPence) - levels.getFirstPosition(level);
+	}
+	
+	
+	/**
+	 * Calculates monthly repayment for an amount lent at rate provided, in the unit of the amount lent.  
+	 *
+	 * @param  rate lender's annual rate
+	 * @param  amountLent amount lent
+	 * @return      monthly repayment, not rounded
+	 */
+	public double calculateMonthlyRepayment(double rate, double amountLent) {
+		return calculateMonthlyRepayment(rate, amountLent, timeValueAllowed);
+	}
+	
+	
+	/**
+	 * Calculates monthly repayment for an amount lent at rate provided over term provided, in the unit of the amount lent.  
+	 *
+	 * @param  rate lender's annual rate
+	 * @param  amountLent amount lent
+	 * @param  term loan term in months
+	 * @return      monthly repayment, not rounded
+	 */
+	public double calculateMonthlyRepayment(double rate, double amountLent, double term) {
+		
+		AnnuityFactors factors = factors(rate, term);
+		if(factors != null) {
+			return ( ( rate/12 ) * amountLent ) / factors.monthlyRepaymentDivisor;
+		}
+		
+		// Formula used -> Monthly repayment with monthly APR = (month_interest * requested_amount) / (1 - (1 + month_interest) ^ -(total_months))
+		return ( ( rate/12 ) * amountLent ) / ( 1 - Math.pow( ( 1 + ( rate/12 ) ), -term ) );
+	
+	}
+	
+	
+	/**
+	 * Calculates total repayment for an amount lent at rate provided, in the unit of the amount lent.  
+	 *
+	 * @param  rate lender's annual rate
+	 * @param  amountLent amount lent
+	 * @return      total repayment, not rounded
+	 */
+	public double calculateTotalRepayment(double rate, double amountLent) {
+		return calculateTotalRepayment(rate, amountLent, timeValueAllowed);
+	}
+	
+	
+	/**
+	 * Calculates total repayment for an amount lent at rate provided over term provided, in the unit of the amount lent.  
+	 *
+	 * @param  rate lender's annual rate
+	 * @param  amountLent amount lent
+	 * @param  term loan term in months
+	 * @return      total repayment, not rounded
+	 */
+	public double calculateTotalRepayment(double rate, double amountLent, double term) {
+		
+		AnnuityFactors factors = factors(rate, term);
+		if(factors != null) {
+			return ( amountLent * factors.totalRepaymentFactor );
+		}
+		
+		// Formula used -> Total repayment with monthly APR = requested_amount * (1 + month_interest) ^ total_months
+		return ( amountLent * Math.pow( ( 1 + ( rate/12 ) ), term ) );
+	
+	}
+	
+	
+	private AnnuityFactors factors(double rate, double term) {
+		return factorCache != null ? factorCache.get(rate, term) : null;
+	}
+
+	
+	
+	//Repayments of lenders taken one at a time, a run of lenders sharing a rate is priced once the rate changes
+	private final class CursorPricing implements Consumer<Lender> {
+		
+		private final long amountToBorrowPence;
+		private final int[] terms;
+		private final double[] monthlyRepayments;
+		private final double[] totalRepayments;
+		private long amountCovered;
+		private long totalRates;
+		private int lendersUsed;
+		private long runRateUnits = -1;
+		private long runLent;
+		
+		private CursorPricing(long amountToBorrowPence, int[] terms) {
+			this.amountToBorrowPence = amountToBorrowPence;
+			this.terms = terms;
+			this.monthlyRepayments = new double[terms.length];
+			this.totalRepayments = new double[terms.length];
+		}
+		
+		@Override
+		public void accept(Lender lender) {
+			long amountLent = Math.min(lender.getAvailablePence(), amountToBorrowPence - amountCovered);
+			long rateUnits = lender.getRateUnits();
+			if(rateUnits != runRateUnits) {
+				priceRun();
+				runRateUnits = rateUnits;
+			}
+			
+			runLent += amountLent;
+			totalRates += rateUnits;
+			amountCovered += amountLent;
+			lendersUsed++;
+		}
+		
+		private void priceRun() {
+			if(runLent > 0) {
+				double rate = Money.toRate(runRateUnits);
+				for(int term = 0; term < terms.length; term++) {
+					monthlyRepayments[term] += calculateMonthlyRepayment(rate, runLent, terms[term]);
+					totalRepayments[term] += calculateTotalRepayment(rate, runLent, terms[term]);
+				}
+			}
+			runLent = 0;
+		}
+		
+		private Repayment[] repayments() {
+			priceRun();
+			double averageRate = lendersUsed > 0 ? Money.toRate(totalRates) / lendersUsed : Double.NaN;
+			Repayment[] repayments = new Repayment[terms.length];
+			for(int term = 0; term < terms.length; term++) {
+				repayments[term] = new Repayment(amountCovered, Money.roundPence(monthlyRepayments[term]), 
+						Money.roundPence(totalRepayments[term]), averageRate, lendersUsed);
+			}
+			return repayments;
+		}
+	
+	}
+
+}
@@ -0,0 +1,174 @@
+package com.zopa.quote.service;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.zopa.quote.domain.QuoteOutcome;
+
+/**
+ * Quote latency by outcome, counters by outcome (rejection reasons included) and lenders touched per quote.
+ * Recording takes no lock, a few atomic increments per quote. Exposed through JMX as
+ * com.zopa.quote:type=QuoteMetrics and dumped as text by the quote server.
+ */
+@Component
+@ManagedResource(objectName = "com.zopa.quote:type=QuoteMetrics", description = "Quote latency and outcomes")
+public class QuoteMetrics {
+	
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+	
+	private final Map<QuoteOutcome, LongHistogram> latencyByOutcome = new EnumMap<QuoteOutcome, LongHistogram>(QuoteOutcome.class);
+	private final LongHistogram lendersTouched = new LongHistogram();
+	
+	
+	public QuoteMetrics() {
+		for(QuoteOutcome outcome: QuoteOutcome.values()) {
+			latencyByOutcome.put(outcome, new LongHistogram());
+		}
+	}
+	
+	
+	/**
+	 * Records a quote answered.
+	 *
+	 * @param  outcome outcome of quote
+	 * @param  latencyNanos time taken to answer quote in nanoseconds
+	 * @param  lenders number of lenders read to price quote, 0 when rejected before pricing
+	 */
+	public void record(QuoteOutcome outcome, long latencyNanos, int lenders) {
+		latencyByOutcome.get(outcome).record(latencyNanos);
+		lendersTouched.record(lenders);
+	}
+	
+	
+	/**
+	 * Returns number of quotes with outcome provided.
+	 *
+	 * @param  outcome quote outcome
+	 * @return      quotes recorded.
+	 */
+	public long getCount(QuoteOutcome outcome) {
+		return latencyByOutcome.get(outcome).count();
+	}
+	
+	
+	/**
+	 * Returns latency at percentile provided for quotes with outcome provided.
+	 *
+	 * @param  outcome quote outcome
+	 * @param  percentile percentile from 0 to 100
+	 * @return      latency in nanoseconds.
+	 */
+	public long getLatencyNanos(QuoteOutcome outcome, double percentile) {
+		return latencyByOutcome.get(outcome).percentile(percentile);
+	}
+	
+	
+	@ManagedAttribute(description = "Quotes answered")
+	public long getQuotes() {
+		long quotes = 0;
+		for(LongHistogram latency: latencyByOutcome.values()) {
+			quotes += latency.count();
+		}
+		return quotes;
+	}
+	
+	
+	@ManagedAttribute(description = "Quotes answered with a repayment")
+	public long getSuccessCount() {
+		return getCount(QuoteOutcome.SUCCESS);
+	}
+	
+	
+	@ManagedAttribute(description = "Quotes rejected, amount not a valid increment")
+	public long getNotAllowedCount() {
+		return getCount(QuoteOutcome.NOT_ALLOWED);
+	}
+	
+	
+	@ManagedAttribute(description = "Quotes rejected, amount below minimum")
+	public long getBelowMinimumCount() {
+		return getCount(QuoteOutcome.BELOW_MINIMUM);
+	}
+	
+	
+	@ManagedAttribute(description = "Quotes rejected, amount above maximum")
+	public long getAboveMaximumCount() {
+		return getCount(QuoteOutcome.ABOVE_MAXIMUM);
+	}
+	
+	
+	@ManagedAttribute(description = "Quotes rejected, amount not covered by lenders")
+	public long getNotFeasibleCount() {
+		return getCount(QuoteOutcome.NOT_FEASIBLE);
+	}
+	
+	
+	@ManagedAttribute(description = "Median latency of quotes answered with a repayment, in microseconds")
+	public double getSuccessLatencyP50Micros() {
+		return getLatencyNanos(QuoteOutcome.SUCCESS, 50) / 1e3;
+	}
+	
+	
+	@ManagedAttribute(description = "99th percentile latency of quotes answered with a repayment, in microseconds")
+	public double getSuccessLatencyP99Micros() {
+		return getLatencyNanos(QuoteOutcome.SUCCESS, 99) / 1e3;
+	}
+	
+	
+	@ManagedAttribute(description = "Mean number of lenders touched per quote")
+	public double getLendersTouchedMean() {
+		return lendersTouched.mean();
+	}
+	
+	
+	@ManagedAttribute(description = "99th percentile of lenders touched per quote")
+	public long getLendersTouchedP99() {
+		return lendersTouched.percentile(99);
+	}
+	
+	
+	/**
+	 * Returns every metric as text, one line per outcome and one for lenders touched.
+	 *
+	 * @return      metrics dump.
+	 */
+	@ManagedOperation(description = "Every quote metric as text")
+	public String dump() {
+		StringBuilder dump = new StringBuilder();
+		for(QuoteOutcome outcome: QuoteOutcome.values()) {
+			LongHistogram latency = latencyByOutcome.get(outcome);
+			dump.append(String.format("%-14s count=%d mean=%.1fus", outcome, latency.count(), latency.mean() / 1e3));
+			for(double percentile: PERCENTILES) {
+				dump.append(String.format(" p%s=%.1fus", format(percentile), latency.percentile(percentile) / 1e3));
+			}
+			dump.append(String.format(" max=%.1fus%n", latency.max() / 1e3));
+		}
+		dump.append(String.format("%-14s mean=%.1f p50=%d p99=%d max=%d", "LENDERS", lendersTouched.mean(), 
+				lendersTouched.percentile(50), lendersTouched.percentile(99), lendersTouched.max()));
+		return dump.toString();
+	}
+	
+	
+	/**
+	 * Removes every value recorded.
+	 *
+	 */
+	@ManagedOperation(description = "Removes every value recorded")
+	public void reset() {
+		for(LongHistogram latency: latencyByOutcome.values()) {
+			latency.reset();
+		}
+		lendersTouched.reset();
+	}
+	
+	
+	private String format(double percentile) {
+		return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+	}
+
+}
@@ -0,0 +1,112 @@
+package com.zopa.quote.service;
+
+import java.util.Arrays;
+
+/**
+ * Precomputed quotes for every allowed amount, indexed by amount step from the minimum allowed.
+ * Built for a single repository version, amounts that cannot be covered are kept with a NaN rate.
+ * Amounts and repayments are in pence.
+ */
+class QuoteTable {
+	
+	private final long version;
+	private final long minimumValue;
+	private final long incrementValue;
+	
+	private final long[] monthlyRepayments;
+	private final long[] totalRepayments;
+	private final double[] rates;
+	private final int[] lendersUsed;
+	
+	
+	QuoteTable(long version, long minimumPence, long maximumPence, long incrementPence) {
+		this.version = version;
+		this.minimumValue = minimumPence;
+		this.incrementValue = incrementPence;
+		
+		int steps = (int) ((maximumPence - minimumPence) / incrementPence) + 1;
+		monthlyRepayments = new long[steps];
+		totalRepayments = new long[steps];
+		rates = new double[steps];
+		lendersUsed = new int[steps];
+		Arrays.fill(rates, Double.NaN);
+	}
+	
+	
+	/**
+	 * Returns repository version table was built from.
+	 *
+	 * @return      repository version.
+	 */
+	long getVersion() {
+		return version;
+	}
+	
+	
+	/**
+	 * Returns number of amount steps in table.
+	 *
+	 * @return      number of steps.
+	 */
+	int size() {
+		return rates.length;
+	}
+	
+	
+	/**
+	 * Returns amount to borrow at step provided.
+	 *
+	 * @param  step zero based amount step
+	 * @return      amount to borrow in pence.
+	 */
+	long amountAt(int step) {
+		return minimumValue + step * incrementValue;
+	}
+	
+	
+	/**
+	 * Returns step of amount provided, or -1 when amount is not part of the table.
+	 *
+	 * @param  amountToBorrowPence amount requested by the user in pence
+	 * @return      zero based amount step, -1 if not found.
+	 */
+	int stepOf(long amountToBorrowPence) {
+		long offset = amountToBorrowPence - minimumValue;
+		if(offset < 0 || offset % incrementValue != 0 || offset / incrementValue >= rates.length) return -1;
+		return (int) (offset / incrementValue);
+	}
+	
+	
+	void set(int step, long monthlyRepayment, long totalRepayment, double rate, int lenders) {
+		monthlyRepayments[step] = monthlyRepayment;
+		totalRepayments[step] = totalRepayment;
+		rates[step] = rate;
+		lendersUsed[step] = lenders;
+	}
+	
+	
+	boolean isFeasible(int step) {
+		return !Double.isNaN(rates[step]);
+	}
+	
+	
+	long getMonthlyRepayment(int step) {
+		return monthlyRepayments[step];
+	}
+	
+	
+	long getTotalRepayment(int step) {
+		return totalRepayments[step];
+	}
+	
+	
+	double getRate(int step) {
+		return rates[step];
+	}
+	
+	
+	int getLendersUsed(int step) {
+		return lendersUsed[step];
+	}
+
+}
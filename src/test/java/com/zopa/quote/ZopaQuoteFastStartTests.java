@@ -0,0 +1,54 @@
+package com.zopa.quote;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.zopa.quote.config.FastStartConfig;
+import com.zopa.quote.domain.Lender;
+import com.zopa.quote.reader.LenderFileLoader;
+import com.zopa.quote.repository.LenderPoolRepository;
+import com.zopa.quote.service.LenderPoolService;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = { FastStartConfig.class })
+public class ZopaQuoteFastStartTests {
+	
+	@Autowired private LenderPoolRepository lenderPoolRepository;
+	@Autowired private LenderPoolService lenderPoolService;
+	@Autowired private LenderFileLoader lenderFileLoader;
+	
+	private int lendersLoaded;
+	
+	
+	@Before
+	public void setUp() throws Exception {
+		lenderPoolRepository.flush();
+		lendersLoaded = lenderFileLoader.load(new ClassPathResource("sample-data.csv"));
+	}
+	
+	@Test
+	public void testLendersFastLoad() {
+		
+		assertEquals(7, lendersLoaded);
+		assertEquals(7, lenderPoolRepository.total());
+		
+		List<Lender> lenderPool = lenderPoolRepository.findAllSorted();
+		assertTrue(lenderPool.get(0).getRate() == 0.069);
+		assertTrue(lenderPool.get(6).getRate() == 0.104);
+		
+		String quote = lenderPoolService.calculateQuote(1000);
+		assertTrue(quote, quote.contains("Rate: 7.0%"));
+		assertTrue(quote, quote.contains("1,233.08"));
+	}
+
+}
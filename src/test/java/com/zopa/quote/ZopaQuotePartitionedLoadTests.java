@@ -0,0 +1,73 @@
+package com.zopa.quote;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.zopa.quote.config.BatchConfig;
+import com.zopa.quote.domain.Lender;
+import com.zopa.quote.reader.LenderFilePartitioner;
+import com.zopa.quote.repository.LenderPoolRepository;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = { BatchConfig.class })
+@TestPropertySource(properties = { "lender.load.partitions=3" })
+public class ZopaQuotePartitionedLoadTests {
+	
+	@Autowired private LenderPoolRepository lenderPoolRepository;
+	@Autowired private LenderFilePartitioner lenderFilePartitioner;
+	@Autowired private JobLauncher jobLauncher;
+	@Autowired private JobBuilder jobBuilder;
+	@Autowired private Step step;
+	
+	private JobExecution jobExecution;
+	
+	
+	@Before
+	public void setUp() throws Exception {
+		
+		lenderPoolRepository.flush();
+		lenderFilePartitioner.setResource(new ClassPathResource("sample-data.csv"));
+		jobBuilder.incrementer(new RunIdIncrementer());
+		Job loadLendersJob = jobBuilder.start(step).build();
+		
+		JobParameters jobParameters = new JobParametersBuilder().addLong("time", System.currentTimeMillis()).toJobParameters();
+		jobExecution = jobLauncher.run(loadLendersJob, jobParameters);
+	}
+	
+	@Test
+	public void testLendersPartitionedLoad() {
+		
+		assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+		assertTrue(7 == lenderPoolRepository.total());
+		
+		//Same IDs as a sequential load, header line takes ID 1
+		assertEquals("Jane", lenderPoolRepository.find(2).getName());
+		assertEquals("Mary", lenderPoolRepository.find(8).getName());
+		
+		List<Lender> lenderPool = lenderPoolRepository.findAllSorted();
+		assertTrue(lenderPool.get(0).getRate() == 0.069);
+		assertTrue(lenderPool.get(6).getRate() == 0.104);
+	
+	}
+
+}
@@ -0,0 +1,61 @@
+package com.zopa.quote;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.UrlResource;
+
+import com.zopa.quote.domain.Lender;
+import com.zopa.quote.feed.LenderFeed;
+import com.zopa.quote.repository.LenderPoolRepository;
+import com.zopa.quote.server.QuoteServer;
+
+public class ZopaQuoteServerTests {
+	
+	private Path deltas;
+	private AnnotationConfigApplicationContext serverContext;
+	
+	//Batch reader numbers header row too, Jane is lender 2 and Mary lender 8
+	@Before
+	public void setUp() throws Exception {
+		deltas = Files.createTempFile("deltas", ".csv");
+		Files.write(deltas, Arrays.asList("add,100,Zoe,0.05,1000", "update-available,2,100", "remove,8"), StandardCharsets.UTF_8);
+	}
+	
+	@After
+	public void tearDown() throws Exception {
+		if(serverContext != null) {
+			ZopaQuote.stopServer(serverContext);
+		}
+		Files.deleteIfExists(deltas);
+	}
+	
+	@Test
+	public void testServerAppliesDeltaFile() throws Exception {
+		File lenders = new ClassPathResource("sample-data.csv").getFile();
+		serverContext = ZopaQuote.startServer(new UrlResource("file", lenders.getAbsolutePath()), 0, deltas.toString());
+		assertNotNull(serverContext);
+		
+		LenderPoolRepository lenderPoolRepository = serverContext.getBean(LenderPoolRepository.class);
+		assertEquals(7, lenderPoolRepository.total());
+		assertEquals(3, serverContext.getBean(LenderFeed.class).getEventsApplied());
+		
+		Lender added = lenderPoolRepository.findAllSorted().get(0);
+		assertEquals("Zoe", added.getName());
+		assertEquals("Jane", lenderPoolRepository.find(2).getName());
+		assertEquals(100.0, lenderPoolRepository.find(2).getAvailable(), 0);
+		assertNull(lenderPoolRepository.find(8));
+		assertTrue(serverContext.getBean(QuoteServer.class).getPort() > 0);
+	}
+
+}
@@ -0,0 +1,113 @@
+package com.zopa.quote;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.job.flow.Flow;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.zopa.quote.config.BatchConfig;
+import com.zopa.quote.domain.Lender;
+import com.zopa.quote.reader.LenderSnapshotStore;
+import com.zopa.quote.repository.LenderPoolRepository;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = { BatchConfig.class })
+@TestPropertySource(properties = { "lender.snapshot.enabled=true" })
+public class ZopaQuoteSnapshotLoadTests {
+	
+	@Autowired private LenderPoolRepository lenderPoolRepository;
+	@Autowired private FlatFileItemReader<Lender> flatFileItemReader;
+	@Autowired private LenderSnapshotStore lenderSnapshotStore;
+	@Autowired private JobLauncher jobLauncher;
+	@Autowired private JobBuilder jobBuilder;
+	@Autowired private Flow loadLendersFlow;
+	
+	private File file;
+	
+	
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("lenders", ".csv");
+		Files.copy(new ClassPathResource("sample-data.csv").getFile().toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		
+		flatFileItemReader.setResource(new FileSystemResource(file));
+		lenderSnapshotStore.setResource(new FileSystemResource(file));
+	}
+	
+	@After
+	public void tearDown() throws Exception {
+		lenderSnapshotStore.getSnapshotFile().delete();
+		file.delete();
+	}
+	
+	@Test
+	public void testSnapshotWrittenThenLoaded() throws Exception {
+		
+		//First load reads lenders file and writes snapshot
+		assertEquals("[loadLendersStep, writeSnapshotStep]", stepsRun(loadLenders()));
+		assertTrue(lenderSnapshotStore.getSnapshotFile().isFile());
+		List<Lender> expected = lenderPoolRepository.findAllSorted();
+		
+		//Second load only reads snapshot
+		JobExecution jobExecution = loadLenders();
+		assertEquals("[loadSnapshotStep]", stepsRun(jobExecution));
+		assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+		assertEquals(7, lenderPoolRepository.total());
+		
+		List<Lender> lenderPool = lenderPoolRepository.findAllSorted();
+		for(int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getId(), lenderPool.get(i).getId());
+			assertEquals(expected.get(i).getName(), lenderPool.get(i).getName());
+			assertTrue(expected.get(i).getRate() == lenderPool.get(i).getRate());
+		}
+		
+		//Newer lenders file, snapshot rebuilt
+		assertTrue(file.setLastModified(file.lastModified() + 2000));
+		assertEquals("[loadLendersStep, writeSnapshotStep]", stepsRun(loadLenders()));
+	}
+	
+	
+	private JobExecution loadLenders() throws Exception {
+		lenderPoolRepository.flush();
+		jobBuilder.incrementer(new RunIdIncrementer());
+		Job loadLendersJob = jobBuilder.start(loadLendersFlow).end().build();
+		
+		JobParameters jobParameters = new JobParametersBuilder().addLong("time", System.nanoTime()).toJobParameters();
+		return jobLauncher.run(loadLendersJob, jobParameters);
+	}
+	
+	private String stepsRun(JobExecution jobExecution) {
+		List<String> steps = new ArrayList<String>();
+		for(StepExecution stepExecution: jobExecution.getStepExecutions()) {
+			steps.add(stepExecution.getStepName());
+		}
+		return steps.toString();
+	}
+
+}
@@ -22,4 +22,16 @@ public class LenderTest {
 		assertEquals(-1, lender1.compareTo(lender2));
 	}
 
+	@Test
+	public void testRateSorter() {
+		Lender lender1 = new Lender(1, "Lender #1", 100.0, 1000.0);
+		Lender lender2 = new Lender(2, "Lender #2", 100.0, 2000.0);
+		Lender lender3 = new Lender(3, "Lender #3", 50.0, 3000.0);
+		
+		assertTrue(Lender.getRateSorter().compare(lender1, lender2) < 0);
+		assertTrue(Lender.getRateSorter().compare(lender2, lender1) > 0);
+		assertTrue(Lender.getRateSorter().compare(lender3, lender1) < 0);
+		assertEquals(0, Lender.getRateSorter().compare(lender1, lender1));
+	}
+
 }
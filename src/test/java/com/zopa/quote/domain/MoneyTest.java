@@ -0,0 +1,49 @@
+package com.zopa.quote.domain;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class MoneyTest {
+	
+	@Test
+	public void testPence() {
+		assertEquals(100000, Money.toPence(1000));
+		assertEquals(52050, Money.toPence(520.5));
+		assertEquals(1500000, Money.toPence(15000));
+		assertEquals(2, Money.toPence(0.015));
+		assertTrue(520.5 == Money.toPounds(52050));
+		
+		//Every amount allowed converts back exactly
+		for(long pence = 100000; pence <= 1500000; pence++) {
+			assertEquals(pence, Money.toPence(Money.toPounds(pence)));
+			assertTrue(Money.isWholePence(Money.toPounds(pence)));
+		}
+		assertFalse(Money.isWholePence(1000.001));
+	}
+	
+	@Test
+	public void testRateUnits() {
+		assertEquals(69000, Money.toRateUnits(0.069));
+		assertEquals(70000, Money.toRateUnits(0.0700));
+		assertTrue(0.069 == Money.toRate(69000));
+		assertTrue(0.104 == Money.toRate(Money.toRateUnits(0.104)));
+	}
+	
+	@Test
+	public void testRoundPence() {
+		assertEquals(3069, Money.roundPence(3069.4539));
+		assertEquals(3070, Money.roundPence(3069.5));
+		assertEquals(3069, Money.roundPence(3069.4999999));
+		assertEquals(0, Money.roundPence(0));
+	}
+	
+	@Test
+	public void testLenderFixedPoint() {
+		Lender lender = new Lender(1, "Lender #1", 0.071, 520.5);
+		assertEquals(71000, lender.getRateUnits());
+		assertEquals(52050, lender.getAvailablePence());
+		assertEquals(lender, Lender.ofPence(1, "Lender #1", 71000, 52050));
+	}
+
+}
@@ -0,0 +1,172 @@
+package com.zopa.quote.feed;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.zopa.quote.config.AppConfig;
+import com.zopa.quote.domain.Lender;
+import com.zopa.quote.repository.LenderPoolRepository;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = { AppConfig.class })
+public class LenderFeedTest {
+	
+	@Autowired private LenderPoolRepository lenderPoolRepository;
+	@Autowired private LenderFeed lenderFeed;
+	
+	@Before
+	public void setUp() throws Exception {
+		lenderPoolRepository.flush();
+		lenderPoolRepository.save(new Lender(1, "Jane", 0.069, 480));
+		lenderPoolRepository.save(new Lender(2, "Fred", 0.071, 520));
+	}
+	
+	@After
+	public void tearDown() throws Exception {
+		lenderFeed.stop();
+		lenderPoolRepository.flush();
+	}
+
+	@Test
+	public void testApplyEvents() {
+		assertTrue(lenderFeed.apply(LenderEvent.add(3, "Angela", 0.068, 60)));
+		assertTrue(lenderFeed.apply(LenderEvent.updateRate(1, 0.075)));
+		assertTrue(lenderFeed.apply(LenderEvent.updateAvailable(2, 100)));
+		assertTrue(lenderFeed.apply(LenderEvent.remove(3)));
+		assertFalse(lenderFeed.apply(LenderEvent.updateRate(3, 0.07)));
+		
+		assertEquals(2, lenderPoolRepository.total());
+		assertEquals(new Lender(1, "Jane", 0.075, 480), lenderPoolRepository.find(1));
+		assertEquals(new Lender(2, "Fred", 0.071, 100), lenderPoolRepository.find(2));
+		assertEquals(580.0, lenderPoolRepository.totalAvailable(), 0);
+		assertEquals(2, lenderPoolRepository.findAllSorted().get(0).getId());
+	}
+
+	@Test
+	public void testRejectInvalidEvents() {
+		long rejected = lenderFeed.getEventsRejected();
+		
+		assertFalse(lenderFeed.apply(LenderEvent.add(3, "Angela", 0, 60)));
+		assertFalse(lenderFeed.apply(LenderEvent.add(4, "Bob", 0.07, -60)));
+		assertFalse(lenderFeed.apply(LenderEvent.add(5, "Dave", 0.07, 0)));
+		assertFalse(lenderFeed.apply(LenderEvent.updateRate(1, -0.01)));
+		assertFalse(lenderFeed.apply(LenderEvent.updateAvailable(2, -100)));
+		
+		assertEquals(rejected + 5, lenderFeed.getEventsRejected());
+		assertEquals(2, lenderPoolRepository.total());
+		assertEquals(new Lender(1, "Jane", 0.069, 480), lenderPoolRepository.find(1));
+		assertEquals(new Lender(2, "Fred", 0.071, 520), lenderPoolRepository.find(2));
+		assertEquals(1000.0, lenderPoolRepository.totalAvailable(), 0);
+	}
+
+	@Test
+	public void testUpdateAvailableToZeroRemovesLender() {
+		assertTrue(lenderFeed.apply(LenderEvent.updateAvailable(2, 0)));
+		
+		assertNull(lenderPoolRepository.find(2));
+		assertEquals(1, lenderPoolRepository.total());
+		assertEquals(480.0, lenderPoolRepository.totalAvailable(), 0);
+	}
+
+	@Test
+	public void testApplyDeltaLines() throws Exception {
+		String deltas = "# morning changes\n"
+				+ "add,3,Angela,0.068,60\n"
+				+ "\n"
+				+ "update-available,1,200\n"
+				+ "update-rate,9,0.07\n"
+				+ "unknown,1\n"
+				+ "remove,2\n";
+		long rejected = lenderFeed.getEventsRejected();
+		
+		assertEquals(3, lenderFeed.apply(new StringReader(deltas)));
+		assertEquals(rejected + 2, lenderFeed.getEventsRejected());
+		assertEquals(2, lenderPoolRepository.total());
+		assertEquals(200.0, lenderPoolRepository.find(1).getAvailable(), 0);
+		assertNull(lenderPoolRepository.find(2));
+	}
+
+	@Test
+	public void testParseEvent() {
+		LenderEvent event = LenderEvent.parse("add, 7, Bob, 0.075, 640");
+		assertEquals(LenderEvent.Type.ADD, event.getType());
+		assertEquals(7, event.getId());
+		assertEquals("Bob", event.getName());
+		assertTrue(event.getRate() == 0.075);
+		assertTrue(event.getAvailable() == 640);
+		
+		try {
+			LenderEvent.parse("update-rate,7");
+			fail("Missing field accepted");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("expects 3 fields"));
+		}
+	}
+
+	@Test
+	public void testWatchDirectory() throws Exception {
+		Path directory = Files.createTempDirectory("deltas");
+		Path deltas = directory.resolve("deltas-001.csv");
+		try {
+			long applied = lenderFeed.getEventsApplied();
+			Files.write(deltas, "add,3,Angela,0.068,60\nupdate-rate,1,0.07".getBytes(StandardCharsets.UTF_8));
+			lenderFeed.watch(directory);
+			waitFor(applied + 1);
+			assertEquals(3, lenderPoolRepository.total());
+			
+			//Last line is only applied once its line break is written
+			assertEquals(0.069, lenderPoolRepository.find(1).getRate(), 0);
+			
+			Files.write(deltas, "0\nremove,2\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+			waitFor(applied + 3);
+			assertEquals(0.0700, lenderPoolRepository.find(1).getRate(), 0);
+			assertNull(lenderPoolRepository.find(2));
+		} finally {
+			lenderFeed.stop();
+			Files.deleteIfExists(deltas);
+			Files.deleteIfExists(directory);
+		}
+	}
+
+	@Test
+	public void testApplyManyEvents() throws Exception {
+		Random random = new Random(42);
+		StringBuilder deltas = new StringBuilder();
+		for(int id = 10; id < 10010; id++) {
+			deltas.append("add,").append(id).append(",Lender,0.0").append(50 + random.nextInt(40)).append(",").append(1 + random.nextInt(1000)).append("\n");
+		}
+		for(int i = 0; i < 100000; i++) {
+			int id = 10 + random.nextInt(10000);
+			if(random.nextBoolean()) {
+				deltas.append("update-available,").append(id).append(",").append(1 + random.nextInt(1000)).append("\n");
+			} else {
+				deltas.append("update-rate,").append(id).append(",0.0").append(50 + random.nextInt(40)).append("\n");
+			}
+		}
+		
+		assertEquals(110000, lenderFeed.apply(new StringReader(deltas.toString())));
+		assertEquals(10002, lenderPoolRepository.total());
+	}
+	
+	
+	private void waitFor(long eventsApplied) throws InterruptedException {
+		for(int i = 0; i < 100 && lenderFeed.getEventsApplied() < eventsApplied; i++) {
+			Thread.sleep(50);
+		}
+	}
+
+}
@@ -0,0 +1,120 @@
+package com.zopa.quote.format;
+
+import static org.junit.Assert.*;
+
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.zopa.quote.config.AppConfig;
+import com.zopa.quote.domain.Money;
+import com.zopa.quote.domain.MultiTermQuote;
+import com.zopa.quote.domain.Quote;
+import com.zopa.quote.domain.QuoteOutcome;
+import com.zopa.quote.domain.QuoteRejection;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = { AppConfig.class })
+public class QuoteRendererTest {
+	
+	@Autowired private QuoteRenderer quoteRenderer;
+	
+	@Value( "${message.quote}" )
+	private String messageQuote;
+	
+	@Value( "${message.error.minimumValueAllowed}" )
+	private String errorMessageMinimumValueAllowed;
+	
+	@Value( "${message.error.amountUnfeasible}" )
+	private String errorMessageAmountUnfeasible;
+	
+	
+	@Test
+	public void testMessageMatchesStringFormat() {
+		NumberFormat currencyFormatter = NumberFormat.getCurrencyInstance(new Locale("en", "GB"));
+		Random random = new Random(42);
+		for(int i = 0; i < 10000; i++) {
+			long amount = random.nextInt(1500000);
+			long monthly = random.nextInt(100000);
+			long total = i < 10 ? (long) Math.pow(10, i) : random.nextInt(Integer.MAX_VALUE);
+			double rate = random.nextInt(300000) / 1000000.0;
+			
+			String expected = String.format(messageQuote, currencyFormatter.format(Money.toPounds(amount)), rate * 100, 
+					currencyFormatter.format(Money.toPounds(monthly)), currencyFormatter.format(Money.toPounds(total)));
+			assertEquals(expected, quoteRenderer.render(new Quote(amount, monthly, total, rate, 1, 36)));
+		}
+		
+		assertEquals(String.format(errorMessageMinimumValueAllowed, currencyFormatter.format(1000), currencyFormatter.format(999.99)), 
+				quoteRenderer.render(new QuoteRejection(QuoteOutcome.BELOW_MINIMUM, 99999, 100000)));
+		assertEquals(String.format(errorMessageAmountUnfeasible, currencyFormatter.format(15000)), 
+				quoteRenderer.render(new QuoteRejection(QuoteOutcome.NOT_FEASIBLE, 1500000, 0)));
+	}
+	
+	@Test
+	public void testJson() {
+		QuoteFormat json = quoteRenderer.getFormat(JsonQuoteFormat.NAME);
+		assertEquals("{\"outcome\":\"SUCCESS\",\"amount\":1000.00,\"term\":36,\"rate\":0.070000,\"monthlyRepayment\":30.78,\"totalRepayment\":1108.10,\"lendersUsed\":2}", 
+				quoteRenderer.render(new Quote(100000, 3078, 110810, 0.07, 2, 36), json));
+		assertEquals("{\"outcome\":\"NOT_ALLOWED\",\"amount\":1050.00,\"limit\":100.00}", 
+				quoteRenderer.render(new QuoteRejection(QuoteOutcome.NOT_ALLOWED, 105000, 10000), json));
+		assertNull(quoteRenderer.getFormat("xml"));
+	}
+	
+	@Test
+	public void testMultiTerm() {
+		MultiTermQuote quotes = new MultiTermQuote(100000, new int[] { 12, 36 }, new long[] { 8653, 3088 }, new long[] { 107229, 123300 }, 0.07, 2);
+		assertEquals("Term: 12 months" + System.lineSeparator() + quoteRenderer.render(quotes.getQuote(0)) + System.lineSeparator() 
+				+ "Term: 36 months" + System.lineSeparator() + quoteRenderer.render(quotes.getQuote(1)), quoteRenderer.render(quotes));
+		assertEquals("{\"outcome\":\"SUCCESS\",\"amount\":1000.00,\"rate\":0.070000,\"lendersUsed\":2,\"terms\":["
+				+ "{\"term\":12,\"monthlyRepayment\":86.53,\"totalRepayment\":1072.29},{\"term\":36,\"monthlyRepayment\":30.88,\"totalRepayment\":1233.00}]}", 
+				quoteRenderer.render(quotes, quoteRenderer.getFormat(JsonQuoteFormat.NAME)));
+	}
+	
+	@Test
+	public void testConcurrentRendering() throws Exception {
+		ExecutorService renderers = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+			for(int thread = 0; thread < 8; thread++) {
+				final long amount = 100000 + thread * 10000;
+				results.add(renderers.submit(new Callable<Boolean>() {
+					
+					@Override
+					public Boolean call() throws Exception {
+						Quote quote = new Quote(amount, amount / 30, amount * 12 / 10, 0.07, 1, 36);
+						String expected = quoteRenderer.render(quote);
+						for(int i = 0; i < 10000; i++) {
+							if(!expected.equals(quoteRenderer.render(quote))) return false;
+						}
+						return true;
+					}
+				
+				}));
+			}
+			for(Future<Boolean> result: results) {
+				assertTrue(result.get());
+			}
+		} finally {
+			renderers.shutdownNow();
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnsupportedSpecifier() {
+		MessageTemplate.parse("Requested amount: %d");
+	}
+
+}
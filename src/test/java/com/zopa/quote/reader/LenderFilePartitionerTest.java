@@ -0,0 +1,107 @@
+package com.zopa.quote.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.io.FileSystemResource;
+
+import com.zopa.quote.domain.Lender;
+
+public class LenderFilePartitionerTest {
+	
+	private File file;
+	
+	
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("lenders", ".csv");
+		
+		StringBuilder lenders = new StringBuilder("Lender,Rate,Available\n");
+		for(int i = 1; i <= 1000; i++) {
+			if(i % 100 == 0) lenders.append("# comment ").append(i).append("\n");
+			lenders.append("Lender #").append(i).append(",0.0").append(50 + i % 30).append(",").append(i).append("\n");
+		}
+		Files.write(file.toPath(), lenders.toString().getBytes(StandardCharsets.UTF_8));
+	}
+	
+	
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+	
+	
+	@Test
+	public void testPartitionsReadAsWholeFile() throws Exception {
+		
+		List<Lender> expected = read(new ExecutionContext());
+		assertEquals(1001, expected.size());
+		
+		for(int gridSize: new int[] { 1, 2, 7, 16 }) {
+			
+			LenderFilePartitioner partitioner = new LenderFilePartitioner();
+			partitioner.setResource(new FileSystemResource(file));
+			Map<String, ExecutionContext> partitions = partitioner.partition(gridSize);
+			assertEquals(gridSize, partitions.size());
+			
+			List<Lender> lenders = new ArrayList<Lender>();
+			for(int i = 0; i < gridSize; i++) {
+				lenders.addAll(read(partitions.get("partition" + i)));
+			}
+			
+			assertEquals(expected.size(), lenders.size());
+			for(int i = 0; i < expected.size(); i++) {
+				assertEquals(expected.get(i).getId(), lenders.get(i).getId());
+				assertEquals(expected.get(i).getName(), lenders.get(i).getName());
+			}
+		}
+	}
+	
+	
+	@Test
+	public void testMorePartitionsThanLines() throws Exception {
+		
+		Files.write(file.toPath(), "Jane,0.069,480\nFred,0.071,520\n".getBytes(StandardCharsets.UTF_8));
+		
+		LenderFilePartitioner partitioner = new LenderFilePartitioner();
+		partitioner.setResource(new FileSystemResource(file));
+		Map<String, ExecutionContext> partitions = partitioner.partition(8);
+		
+		List<Lender> lenders = new ArrayList<Lender>();
+		for(int i = 0; i < 8; i++) {
+			lenders.addAll(read(partitions.get("partition" + i)));
+		}
+		assertEquals(2, lenders.size());
+		assertEquals(1, lenders.get(0).getId());
+		assertEquals("Fred", lenders.get(1).getName());
+		assertEquals(2, lenders.get(1).getId());
+	}
+	
+	
+	private List<Lender> read(ExecutionContext executionContext) throws Exception {
+		MappedLenderItemReader mappedReader = new MappedLenderItemReader();
+		mappedReader.setResource(new FileSystemResource(file));
+		mappedReader.open(executionContext);
+		
+		List<Lender> lenders = new ArrayList<Lender>();
+		Lender lender;
+		while((lender = mappedReader.read()) != null) {
+			lenders.add(lender);
+		}
+		assertNull(mappedReader.read());
+		mappedReader.close();
+		return lenders;
+	}
+
+}
@@ -0,0 +1,115 @@
+package com.zopa.quote.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.zopa.quote.domain.Lender;
+import com.zopa.quote.repository.LenderPoolRepository;
+import com.zopa.quote.repository.LenderPoolRepositoryImpl;
+
+public class LenderSnapshotStoreTest {
+	
+	private File file;
+	private LenderPoolRepository lenderPoolRepository;
+	
+	
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("lenders", ".csv");
+		Files.write(file.toPath(), "Lender,Rate,Available\nBob,0.075,640\n".getBytes(StandardCharsets.UTF_8));
+		
+		lenderPoolRepository = new LenderPoolRepositoryImpl();
+		lenderPoolRepository.save(new Lender(1, "Bob", 0.075, 640));
+		lenderPoolRepository.save(new Lender(2, "Jane", 0.069, 480));
+		lenderPoolRepository.save(new Lender(3, "Fred Longer Name", 0.071, 520));
+		lenderPoolRepository.save(new Lender(4, "Zoë", 0.071, 60.5));
+	}
+	
+	
+	@After
+	public void tearDown() throws Exception {
+		new File(file.getPath() + LenderSnapshotStore.SNAPSHOT_SUFFIX).delete();
+		file.delete();
+	}
+	
+	
+	@Test
+	public void testWriteAndLoad() throws Exception {
+		
+		LenderSnapshotStore snapshotStore = snapshotStore(lenderPoolRepository);
+		assertFalse(snapshotStore.isCurrent());
+		assertEquals(4, snapshotStore.write());
+		assertTrue(snapshotStore.isCurrent());
+		
+		LenderPoolRepository loadedRepository = new LenderPoolRepositoryImpl();
+		assertEquals(4, snapshotStore(loadedRepository).load());
+		
+		List<Lender> expected = lenderPoolRepository.findAllSorted();
+		List<Lender> loaded = loadedRepository.findAllSorted();
+		assertEquals(expected.size(), loaded.size());
+		for(int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getId(), loaded.get(i).getId());
+			assertEquals(expected.get(i).getName(), loaded.get(i).getName());
+			assertTrue(expected.get(i).getRate() == loaded.get(i).getRate());
+			assertTrue(expected.get(i).getAvailable() == loaded.get(i).getAvailable());
+		}
+	}
+	
+	
+	@Test
+	public void testSnapshotStaleWhenLendersFileChanges() throws Exception {
+		
+		LenderSnapshotStore snapshotStore = snapshotStore(lenderPoolRepository);
+		snapshotStore.write();
+		assertTrue(snapshotStore.isCurrent());
+		
+		assertTrue(file.setLastModified(file.lastModified() + 2000));
+		assertFalse(snapshotStore.isCurrent());
+		
+		snapshotStore.write();
+		assertTrue(snapshotStore.isCurrent());
+	}
+	
+	
+	@Test
+	public void testCorruptSnapshotNotCurrent() throws Exception {
+		
+		LenderSnapshotStore snapshotStore = snapshotStore(lenderPoolRepository);
+		snapshotStore.write();
+		
+		try (RandomAccessFile snapshot = new RandomAccessFile(snapshotStore.getSnapshotFile(), "rw")) {
+			snapshot.seek(LenderSnapshotStore.HEADER_SIZE + 5);
+			int value = snapshot.read();
+			snapshot.seek(LenderSnapshotStore.HEADER_SIZE + 5);
+			snapshot.write(value ^ 0xFF);
+		}
+		assertFalse(snapshotStore.isCurrent());
+		
+		try (RandomAccessFile snapshot = new RandomAccessFile(snapshotStore.getSnapshotFile(), "rw")) {
+			snapshot.setLength(snapshot.length() - 1);
+		}
+		assertFalse(snapshotStore.isCurrent());
+	}
+	
+	
+	private LenderSnapshotStore snapshotStore(LenderPoolRepository repository) {
+		LenderSnapshotStore snapshotStore = new LenderSnapshotStore();
+		ReflectionTestUtils.setField(snapshotStore, "poolLenderRepository", repository);
+		snapshotStore.setResource(new FileSystemResource(file));
+		return snapshotStore;
+	}
+
+}
@@ -0,0 +1,165 @@
+package com.zopa.quote.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+
+import com.zopa.quote.config.BatchConfig;
+import com.zopa.quote.domain.Lender;
+
+public class MappedLenderItemReaderTest {
+
+	private File file;
+
+
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("lenders", ".csv");
+	}
+
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+
+	@Test
+	public void testReadAsFlatFileItemReader() throws Exception {
+
+		FlatFileItemReader<Lender> flatFileItemReader = new BatchConfig().csvFileItemReader();
+		flatFileItemReader.setResource(new ClassPathResource("sample-data.csv"));
+		flatFileItemReader.open(new ExecutionContext());
+
+		MappedLenderItemReader mappedReader = new MappedLenderItemReader();
+		mappedReader.setResource(new ClassPathResource("sample-data.csv"));
+		mappedReader.open(new ExecutionContext());
+
+		Lender expected;
+		int lenders = 0;
+		while((expected = flatFileItemReader.read()) != null) {
+			Lender lender = mappedReader.read();
+			assertEquals(expected.getId(), lender.getId());
+			assertEquals(expected.getName(), lender.getName());
+			assertTrue(expected.getRate() == lender.getRate());
+			assertTrue(expected.getAvailable() == lender.getAvailable());
+			lenders++;
+		}
+		assertNull(mappedReader.read());
+		assertEquals(8, lenders);
+
+		flatFileItemReader.close();
+		mappedReader.close();
+	}
+
+
+	@Test
+	public void testReadAcrossRegions() throws Exception {
+
+		Files.write(file.toPath(), ("# comment\r\n"
+				+ "Jane,0.069,480\r\n"
+				+ "\"Smith, Fred\",0.071,520.5\r\n"
+				+ "Angela,abc,60\n"
+				+ "Dave,1.5e-2,140").getBytes(StandardCharsets.UTF_8));
+
+		//Region smaller than file forces remapping between lines
+		MappedLenderItemReader mappedReader = new MappedLenderItemReader(32);
+		mappedReader.setResource(new FileSystemResource(file));
+		mappedReader.open(new ExecutionContext());
+
+		Lender lender = mappedReader.read();
+		assertEquals(1, lender.getId());
+		assertEquals("Jane", lender.getName());
+		assertTrue(lender.getRate() == 0.069);
+		assertTrue(lender.getAvailable() == 480);
+
+		lender = mappedReader.read();
+		assertEquals(2, lender.getId());
+		assertEquals("Smith, Fred", lender.getName());
+		assertTrue(lender.getRate() == 0.071);
+		assertTrue(lender.getAvailable() == 520.5);
+
+		lender = mappedReader.read();
+		assertEquals("Angela", lender.getName());
+		assertTrue(lender.getRate() == 0);
+
+		lender = mappedReader.read();
+		assertEquals(4, lender.getId());
+		assertTrue(lender.getRate() == 0.015);
+		assertTrue(lender.getAvailable() == 140);
+
+		assertNull(mappedReader.read());
+		mappedReader.close();
+	}
+
+
+	@Test
+	public void testParseNumbers() throws Exception {
+
+		String[] availables = { "480.12345678901234", "480.004999999999999999", "1234567890123.455", "90071992547409.935", 
+				"0.000000000000000000000001", "480 ", "\"480.5\"" };
+		StringBuilder lines = new StringBuilder();
+		for(String available: availables) {
+			lines.append("Jane,0.07,").append(available).append("\n");
+		}
+		lines.append("Fred,0.07abc,520\n");
+		lines.append("Angela,0.071,60.5.1\n");
+		Files.write(file.toPath(), lines.toString().getBytes(StandardCharsets.UTF_8));
+
+		MappedLenderItemReader mappedReader = new MappedLenderItemReader();
+		mappedReader.setResource(new FileSystemResource(file));
+		mappedReader.open(new ExecutionContext());
+
+		//Rounded as Double.parseDouble, whatever the number of digits
+		for(String available: availables) {
+			Lender lender = mappedReader.read();
+			assertEquals(new Lender(lender.getId(), "Jane", 0.07, Double.parseDouble(available.replace("\"", "").trim())), lender);
+		}
+
+		//Trailing characters make field 0
+		Lender lender = mappedReader.read();
+		assertEquals("Fred", lender.getName());
+		assertTrue(lender.getRate() == 0);
+		assertTrue(lender.getAvailable() == 520);
+		lender = mappedReader.read();
+		assertTrue(lender.getRate() == 0.071);
+		assertTrue(lender.getAvailable() == 0);
+
+		assertNull(mappedReader.read());
+		mappedReader.close();
+	}
+
+
+	@Test
+	public void testRestartFromExecutionContext() throws Exception {
+
+		Files.write(file.toPath(), "Jane,0.069,480\nFred,0.071,520\nAngela,0.071,60\n".getBytes(StandardCharsets.UTF_8));
+
+		MappedLenderItemReader mappedReader = new MappedLenderItemReader();
+		mappedReader.setResource(new FileSystemResource(file));
+		ExecutionContext executionContext = new ExecutionContext();
+		mappedReader.open(executionContext);
+		mappedReader.read();
+		mappedReader.update(executionContext);
+		mappedReader.close();
+
+		mappedReader.open(executionContext);
+		Lender lender = mappedReader.read();
+		assertEquals(2, lender.getId());
+		assertEquals("Fred", lender.getName());
+		mappedReader.close();
+	}
+
+}
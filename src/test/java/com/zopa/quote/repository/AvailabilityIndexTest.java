@@ -0,0 +1,79 @@
+package com.zopa.quote.repository;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.zopa.quote.domain.Lender;
+import com.zopa.quote.domain.Money;
+
+public class AvailabilityIndexTest {
+	
+	@Test
+	public void testCoveringCount() {
+		List<Lender> lenders = new ArrayList<Lender>();
+		lenders.add(new Lender(1, "Lender #1", 0.069, 480.0));
+		lenders.add(new Lender(2, "Lender #2", 0.071, 520.0));
+		lenders.add(new Lender(3, "Lender #3", 0.071, 60.0));
+		AvailabilityIndex index = new AvailabilityIndex(lenders);
+		
+		assertEquals(0, index.coveringCount(Money.toPence(0)));
+		assertEquals(1, index.coveringCount(Money.toPence(100)));
+		assertEquals(1, index.coveringCount(Money.toPence(480)));
+		assertEquals(2, index.coveringCount(Money.toPence(481)));
+		assertEquals(2, index.coveringCount(Money.toPence(1000)));
+		assertEquals(3, index.coveringCount(Money.toPence(1060)));
+		assertEquals(3, index.coveringCount(Money.toPence(5000)));
+		assertEquals(106000, index.prefixAvailable(3));
+	}
+	
+	@Test
+	public void testCoveringCountMatchesLinearScan() {
+		Random random = new Random(42);
+		List<Lender> lenders = new ArrayList<Lender>();
+		for(int i = 1; i <= 1000; i++) {
+			lenders.add(new Lender(i, "Lender #" + i, random.nextInt(500) / 10000.0, 10 + random.nextInt(1000)));
+		}
+		Collections.sort(lenders, Lender.getRateSorter());
+		AvailabilityIndex index = new AvailabilityIndex(lenders);
+		
+		for(int amount = 0; amount < 600000; amount += 997) {
+			int expected = 0;
+			long amountCovered = 0;
+			for(Lender lender: lenders) {
+				if(amountCovered >= Money.toPence(amount)) break;
+				expected++;
+				amountCovered += lender.getAvailablePence();
+			}
+			assertEquals(expected, index.coveringCount(Money.toPence(amount)));
+			assertEquals(expected, index.covering(Money.toPence(amount)).size());
+		}
+	}
+	
+	@Test
+	public void testWithReplaced() {
+		List<Lender> lenders = new ArrayList<Lender>();
+		lenders.add(new Lender(1, "Lender #1", 0.069, 480.0));
+		lenders.add(new Lender(2, "Lender #2", 0.071, 520.0));
+		AvailabilityIndex index = new AvailabilityIndex(lenders);
+		
+		AvailabilityIndex replaced = index.withReplaced(new Lender(1, "Lender #1", 0.069, 400.0));
+		assertEquals(40000, replaced.prefixAvailable(1));
+		assertEquals(92000, replaced.prefixAvailable(2));
+		assertEquals(2, replaced.coveringCount(Money.toPence(401)));
+		assertEquals(40000, replaced.rateLevels().getAvailablePence(0));
+		
+		//Index already published is left as it was
+		assertEquals(48000, index.prefixAvailable(1));
+		assertEquals(1, index.coveringCount(Money.toPence(401)));
+		assertEquals(48000, index.rateLevels().getAvailablePence(0));
+		
+		assertNull(index.withReplaced(new Lender(1, "Lender #1", 0.070, 400.0)));
+	}
+
+}
@@ -0,0 +1,253 @@
+package com.zopa.quote.repository;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.zopa.quote.config.AppConfig;
+import com.zopa.quote.domain.Lender;
+import com.zopa.quote.domain.Quote;
+import com.zopa.quote.domain.QuoteOutcome;
+import com.zopa.quote.domain.QuoteResult;
+import com.zopa.quote.service.LenderPoolService;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = { AppConfig.class })
+@TestPropertySource(properties = { "lender.repository.type=array" })
+public class LenderPoolArrayRepositoryImplTest {
+	
+	@Autowired private LenderPoolRepository lenderPoolRepository;
+	@Autowired private LenderPoolService lenderPoolService;
+	private Lender lender1;
+	private Lender lender2;
+	private Lender lender3;
+	
+	@Before
+	public void setUp() throws Exception {
+		lender1 = new Lender(1, "Lender #1", 0.069, 1400.0);
+		lenderPoolRepository.save(lender1);
+		
+		lender2 = new Lender(2, "Lender #2", 0.071, 1500.0);
+		lenderPoolRepository.save(lender2);
+		
+		lender3 = new Lender(3, "Lender #3", 0.070, 1200.0);
+		lenderPoolRepository.save(lender3);
+	}
+	
+	@After
+	public void tearDown() throws Exception {
+		lenderPoolRepository.flush();
+	}
+	
+	@Test
+	public void testSelectedByConfiguration() {
+		assertTrue(lenderPoolRepository instanceof LenderPoolArrayRepositoryImpl);
+	}
+	
+	@Test
+	public void testSaveAndFind() {
+		lenderPoolRepository.save(new Lender(4, "Lender #4", 0.072, 1000.0));
+		assertEquals(4, lenderPoolRepository.total());
+		assertEquals(lender1, lenderPoolRepository.find(lender1.getId()));
+		assertNull(lenderPoolRepository.find(5));
+		assertEquals(4, lenderPoolRepository.findAll().size());
+		assertEquals(5100.0, lenderPoolRepository.totalAvailable(), 0);
+	}
+	
+	@Test
+	public void testSaveReplaces() {
+		Lender lender1Updated = new Lender(lender1.getId(), lender1.getName(), 0.080, 100.0);
+		lenderPoolRepository.save(lender1Updated);
+		
+		assertEquals(3, lenderPoolRepository.total());
+		assertEquals(lender1Updated, lenderPoolRepository.find(lender1.getId()));
+		assertEquals(2800.0, lenderPoolRepository.totalAvailable(), 0);
+		
+		List<Lender> lendersFound = lenderPoolRepository.findAllSorted();
+		assertEquals(lender3, lendersFound.get(0));
+		assertEquals(lender2, lendersFound.get(1));
+		assertEquals(lender1Updated, lendersFound.get(2));
+	}
+	
+	@Test
+	public void testSortedIterator() {
+		Lender lender4 = new Lender(4, "Lender #4", 0.070, 1000.0);
+		lenderPoolRepository.save(lender4);
+		
+		Iterator<Lender> lendersFound = lenderPoolRepository.sortedIterator();
+		assertEquals(lender1, lendersFound.next());
+		assertEquals(lender3, lendersFound.next());
+		assertEquals(lender4, lendersFound.next());
+		assertEquals(lender2, lendersFound.next());
+		assertFalse(lendersFound.hasNext());
+	}
+	
+	@Test
+	public void testSortedSpliteratorMatchesMapRepository() {
+		LenderPoolRepository mapRepository = new LenderPoolRepositoryImpl();
+		Random random = new Random(11);
+		for(int i = 0; i < 20000; i++) {
+			Lender lender = new Lender(random.nextInt(5000), "Lender #" + i, random.nextInt(300) / 10000.0, 1 + random.nextInt(1000));
+			lenderPoolRepository.save(lender);
+			mapRepository.save(lender);
+		}
+		List<Lender> expected = mapRepository.findAllSorted();
+		
+		List<Lender> fromCursor = new ArrayList<Lender>();
+		Spliterator<Lender> lendersFound = lenderPoolRepository.sortedSpliterator();
+		for(int i = 0; i < 10; i++) {
+			assertTrue(lendersFound.tryAdvance(new Consumer<Lender>() {
+				
+				@Override
+				public void accept(Lender lender) {
+					fromCursor.add(lender);
+				}
+			
+			}));
+		}
+		assertEquals(expected.subList(0, 10), fromCursor);
+		lendersFound.forEachRemaining(new Consumer<Lender>() {
+			
+			@Override
+			public void accept(Lender lender) {
+				fromCursor.add(lender);
+			}
+		
+		});
+		assertEquals(expected, fromCursor);
+		
+		assertEquals(expected, StreamSupport.stream(lenderPoolRepository.sortedSpliterator(), false).collect(Collectors.toList()));
+		assertEquals(mapRepository.findLowestRateLenders(12345), lenderPoolService.getLowestRateLenders(12345));
+	}
+	
+	@Test
+	public void testFindLowestRateLenders() {
+		List<Lender> lendersFound = lenderPoolRepository.findLowestRateLenders(2000);
+		assertEquals(2, lendersFound.size());
+		assertEquals(lender1, lendersFound.get(0));
+		assertEquals(lender3, lendersFound.get(1));
+		
+		assertEquals(1, lenderPoolRepository.findLowestRateLenders(1400).size());
+		assertEquals(3, lenderPoolRepository.findLowestRateLenders(10000).size());
+		assertEquals(0, lenderPoolRepository.findLowestRateLenders(0).size());
+	}
+	
+	@Test
+	public void testFindAllRateOrderedMatchesMapRepository() {
+		LenderPoolRepository mapRepository = new LenderPoolRepositoryImpl();
+		Random random = new Random(42);
+		for(int i = 0; i < 20000; i++) {
+			Lender lender = new Lender(random.nextInt(5000), "Lender #" + i, random.nextInt(300) / 10000.0, 1 + random.nextInt(1000));
+			lenderPoolRepository.save(lender);
+			mapRepository.save(lender);
+		}
+		
+		RateOrderedLenders expected = mapRepository.findAllRateOrdered();
+		RateOrderedLenders found = lenderPoolRepository.findAllRateOrdered();
+		assertEquals(mapRepository.total(), lenderPoolRepository.total());
+		assertEquals(expected.size(), found.size());
+		for(int position = 0; position < expected.size(); position++) {
+			assertEquals(expected.getId(position), found.getId(position));
+			assertEquals(expected.getRateUnits(position), found.getRateUnits(position));
+			assertEquals(expected.getAvailablePence(position), found.getAvailablePence(position));
+		}
+		for(long amountPence = 0; amountPence < 300000000; amountPence += 997300) {
+			assertEquals(expected.coveringCount(amountPence), found.coveringCount(amountPence));
+		}
+	}
+	
+	@Test
+	public void testRemoveMatchesMapRepository() {
+		lenderPoolRepository.flush();
+		LenderPoolRepository mapRepository = new LenderPoolRepositoryImpl();
+		Random random = new Random(7);
+		for(int i = 0; i < 20000; i++) {
+			int id = random.nextInt(2000);
+			if(random.nextInt(3) == 0) {
+				assertEquals(mapRepository.remove(id), lenderPoolRepository.remove(id));
+			} else {
+				Lender lender = new Lender(id, "Lender #" + i, random.nextInt(300) / 10000.0, 1 + random.nextInt(1000));
+				lenderPoolRepository.save(lender);
+				mapRepository.save(lender);
+			}
+		}
+		
+		assertEquals(mapRepository.total(), lenderPoolRepository.total());
+		assertEquals(mapRepository.findAllSorted(), lenderPoolRepository.findAllSorted());
+		for(int id = 0; id < 2000; id++) {
+			assertEquals(mapRepository.find(id), lenderPoolRepository.find(id));
+		}
+	}
+	
+	@Test
+	public void testFindWhileGrowing() throws Exception {
+		Thread writer = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				for(int id = 4; id < 10000; id++) {
+					lenderPoolRepository.save(new Lender(id, "Lender #" + id, 0.05 + id % 50 / 1000.0, 100.0));
+				}
+			}
+		
+		});
+		writer.start();
+		
+		//Columns are replaced while growing, lenders already saved are still found whole
+		while(writer.isAlive()) {
+			assertEquals(lender1, lenderPoolRepository.find(lender1.getId()));
+			assertEquals(lender3, lenderPoolRepository.findAll().get(2));
+		}
+		writer.join();
+		assertEquals(9999, lenderPoolRepository.total());
+	}
+	
+	@Test
+	public void testCalculateQuote() {
+		assertTrue(lenderPoolService.calculateQuote(2000).startsWith("Requested amount: £2,000.00"));
+		assertTrue(lenderPoolService.calculateQuote(5000).contains("Is not possible"));
+	}
+	
+	@Test
+	public void testQuotesAfterSaveSortOnce() {
+		lenderPoolRepository.findAllRateOrdered();
+		lenderPoolRepository.save(new Lender(4, "Lender #4", 0.060, 1000.0));
+		
+		//First quote after a change sorts columns, later ones walk the same columns until next change
+		QuoteResult result = lenderPoolService.quote(2000);
+		assertEquals(QuoteOutcome.SUCCESS, result.getOutcome());
+		assertEquals(2, ((Quote) result).getLendersUsed());
+		Object sortedColumns = ReflectionTestUtils.getField(lenderPoolRepository, "sortedColumns");
+		assertNotNull(sortedColumns);
+		
+		assertEquals(QuoteOutcome.SUCCESS, lenderPoolService.quoteTerms(3000).getOutcome());
+		lenderPoolRepository.sortedSpliterator();
+		assertSame(sortedColumns, ReflectionTestUtils.getField(lenderPoolRepository, "sortedColumns"));
+	}
+	
+	@Test
+	public void testFlush() {
+		lenderPoolRepository.flush();
+		assertEquals(0, lenderPoolRepository.total());
+		assertEquals(0, lenderPoolRepository.findAllRateOrdered().size());
+		assertNull(lenderPoolRepository.find(lender1.getId()));
+	}
+
+}
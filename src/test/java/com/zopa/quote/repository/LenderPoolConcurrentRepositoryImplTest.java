@@ -0,0 +1,296 @@
+package com.zopa.quote.repository;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.UnaryOperator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.zopa.quote.config.AppConfig;
+import com.zopa.quote.domain.Lender;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = { AppConfig.class })
+@TestPropertySource(properties = { "lender.repository.type=concurrent" })
+public class LenderPoolConcurrentRepositoryImplTest {
+	
+	private static final int WRITERS = 4;
+	private static final int READERS = 4;
+	private static final int SAVES_PER_WRITER = 50000;
+	private static final int LENDER_IDS = 5000;
+	
+	@Autowired private LenderPoolRepository lenderPoolRepository;
+	private Lender lender1;
+	private Lender lender2;
+	private Lender lender3;
+	
+	@Before
+	public void setUp() throws Exception {
+		lender1 = new Lender(1, "Lender #1", 0.069, 1400.0);
+		lenderPoolRepository.save(lender1);
+		
+		lender2 = new Lender(2, "Lender #2", 0.071, 1500.0);
+		lenderPoolRepository.save(lender2);
+		
+		lender3 = new Lender(3, "Lender #3", 0.070, 1200.0);
+		lenderPoolRepository.save(lender3);
+	}
+	
+	@After
+	public void tearDown() throws Exception {
+		lenderPoolRepository.flush();
+	}
+	
+	@Test
+	public void testSelectedByConfiguration() {
+		assertTrue(lenderPoolRepository instanceof LenderPoolConcurrentRepositoryImpl);
+	}
+	
+	@Test
+	public void testSaveReplaces() {
+		long version = lenderPoolRepository.version();
+		Lender lender1Updated = new Lender(lender1.getId(), lender1.getName(), 0.080, 100.0);
+		lenderPoolRepository.save(lender1Updated);
+		
+		assertTrue(lenderPoolRepository.version() > version);
+		assertEquals(3, lenderPoolRepository.total());
+		assertEquals(lender1Updated, lenderPoolRepository.find(lender1.getId()));
+		assertEquals(2800.0, lenderPoolRepository.totalAvailable(), 0);
+		
+		List<Lender> lendersFound = lenderPoolRepository.findAllSorted();
+		assertEquals(3, lendersFound.size());
+		assertEquals(lender3, lendersFound.get(0));
+		assertEquals(lender2, lendersFound.get(1));
+		assertEquals(lender1Updated, lendersFound.get(2));
+		
+		assertEquals(2, lenderPoolRepository.findLowestRateLenders(2000).size());
+		assertEquals(lender3, lenderPoolRepository.sortedIterator().next());
+	}
+	
+	@Test
+	public void testRemove() {
+		assertTrue(lenderPoolRepository.remove(lender3.getId()));
+		assertFalse(lenderPoolRepository.remove(lender3.getId()));
+		
+		assertEquals(2, lenderPoolRepository.total());
+		assertEquals(2900.0, lenderPoolRepository.totalAvailable(), 0);
+		assertEquals(2, lenderPoolRepository.findAllRateOrdered().size());
+	}
+	
+	@Test
+	public void testUpdate() {
+		assertTrue(lenderPoolRepository.update(lender1.getId(), new UnaryOperator<Lender>() {
+			
+			@Override
+			public Lender apply(Lender lender) {
+				return Lender.ofPence(lender.getId(), lender.getName(), lender.getRateUnits(), lender.getAvailablePence() - 40000);
+			}
+		
+		}));
+		assertEquals(1000.0, lenderPoolRepository.find(lender1.getId()).getAvailable(), 0);
+		assertEquals(3700.0, lenderPoolRepository.totalAvailable(), 0);
+		
+		UnaryOperator<Lender> removal = new UnaryOperator<Lender>() {
+			
+			@Override
+			public Lender apply(Lender lender) {
+				return null;
+			}
+		
+		};
+		assertTrue(lenderPoolRepository.update(lender3.getId(), removal));
+		assertFalse(lenderPoolRepository.update(lender3.getId(), removal));
+		assertEquals(2, lenderPoolRepository.total());
+		assertEquals(2, lenderPoolRepository.findAllRateOrdered().size());
+	}
+	
+	@Test
+	public void testSaveAllSorted() {
+		lenderPoolRepository.flush();
+		lenderPoolRepository.saveAllSorted(Arrays.asList(lender1, lender3, lender2));
+		assertEquals(3, lenderPoolRepository.total());
+		assertEquals(4100.0, lenderPoolRepository.totalAvailable(), 0);
+		assertEquals(Arrays.asList(lender1, lender3, lender2), lenderPoolRepository.findAllSorted());
+		
+		//Repository holding lenders saves them one by one
+		Lender lender4 = new Lender(4, "Lender #4", 0.060, 1000.0);
+		lenderPoolRepository.saveAllSorted(Arrays.asList(lender4));
+		assertEquals(lender4, lenderPoolRepository.findAllSorted().get(0));
+		assertTrue(lenderPoolRepository.remove(lender4.getId()));
+		assertEquals(3, lenderPoolRepository.findAllRateOrdered().size());
+	}
+	
+	@Test
+	public void testFlush() {
+		lenderPoolRepository.flush();
+		assertEquals(0, lenderPoolRepository.total());
+		assertEquals(0, lenderPoolRepository.findAllRateOrdered().size());
+		assertEquals(0, lenderPoolRepository.totalAvailable(), 0);
+	}
+	
+	@Test
+	public void testStaleSnapshotWaitsForWritesAfterSkippedBuilds() throws Exception {
+		assertEquals(3, lenderPoolRepository.findAllRateOrdered().size());
+		lenderPoolRepository.save(new Lender(4, "Lender #4", 0.072, 1000.0));
+		
+		//A write kept in flight by another thread, as under sustained writes
+		final ReadWriteLock writesInFlight = (ReadWriteLock) ReflectionTestUtils.getField(lenderPoolRepository, "writesInFlight");
+		final CountDownLatch writing = new CountDownLatch(1);
+		final CountDownLatch written = new CountDownLatch(1);
+		Thread writer = new Thread() {
+			
+			@Override
+			public void run() {
+				writesInFlight.readLock().lock();
+				try {
+					writing.countDown();
+					written.await();
+				} catch (InterruptedException e) {
+					//Stopped
+				} finally {
+					writesInFlight.readLock().unlock();
+				}
+			}
+		
+		};
+		writer.start();
+		writing.await();
+		
+		ExecutorService reader = Executors.newSingleThreadExecutor();
+		try {
+			for(int i = 0; i < 8; i++) {
+				assertEquals(3, lenderPoolRepository.findAllRateOrdered().size());
+			}
+			
+			//Next rebuild waits for the write instead of returning the stale snapshot again
+			Future<Integer> read = reader.submit(new Callable<Integer>() {
+				
+				@Override
+				public Integer call() throws Exception {
+					return lenderPoolRepository.findAllRateOrdered().size();
+				}
+			
+			});
+			try {
+				read.get(200, TimeUnit.MILLISECONDS);
+				fail("Stale snapshot returned");
+			} catch (TimeoutException e) {
+				//Waiting for write in flight
+			}
+			written.countDown();
+			assertEquals(4, read.get().intValue());
+		} finally {
+			written.countDown();
+			writer.join();
+			reader.shutdown();
+		}
+	}
+	
+	@Test
+	public void testConcurrentReadersAndWriters() throws Exception {
+		
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicBoolean writing = new AtomicBoolean(true);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		
+		List<Thread> writers = new ArrayList<Thread>();
+		for(int w = 0; w < WRITERS; w++) {
+			final Random random = new Random(w);
+			writers.add(new Thread() {
+				
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for(int i = 0; i < SAVES_PER_WRITER; i++) {
+							lenderPoolRepository.save(new Lender(random.nextInt(LENDER_IDS), "Lender", 
+									random.nextInt(300) / 10000.0, 1 + random.nextInt(1000)));
+						}
+					} catch (Throwable e) {
+						failure.compareAndSet(null, e);
+					}
+				}
+			
+			});
+		}
+		
+		List<Thread> readers = new ArrayList<Thread>();
+		for(int r = 0; r < READERS; r++) {
+			readers.add(new Thread() {
+				
+				@Override
+				public void run() {
+					try {
+						start.await();
+						while(writing.get()) {
+							checkRateOrdered(lenderPoolRepository.findAllRateOrdered());
+						}
+					} catch (Throwable e) {
+						failure.compareAndSet(null, e);
+					}
+				}
+			
+			});
+		}
+		
+		for(Thread thread: writers) thread.start();
+		for(Thread thread: readers) thread.start();
+		start.countDown();
+		for(Thread thread: writers) thread.join();
+		writing.set(false);
+		for(Thread thread: readers) thread.join();
+		
+		assertNull(failure.get());
+		
+		//Once writers are done every lender saved last is in rate order view
+		RateOrderedLenders lenderPool = checkRateOrdered(lenderPoolRepository.findAllRateOrdered());
+		assertEquals(lenderPoolRepository.total(), lenderPool.size());
+		for(int position = 0; position < lenderPool.size(); position++) {
+			Lender lender = lenderPoolRepository.find(lenderPool.getId(position));
+			assertEquals(lender.getRateUnits(), lenderPool.getRateUnits(position));
+			assertEquals(lender.getAvailablePence(), lenderPool.getAvailablePence(position));
+		}
+	}
+	
+	
+	//Ordered by rate then ID, every ID once, cut-off consistent with availability
+	private RateOrderedLenders checkRateOrdered(RateOrderedLenders lenderPool) {
+		Set<Integer> ids = new HashSet<Integer>();
+		long totalAvailable = 0;
+		for(int position = 0; position < lenderPool.size(); position++) {
+			assertTrue(ids.add(lenderPool.getId(position)));
+			if(position > 0) {
+				int compare = Long.compare(lenderPool.getRateUnits(position - 1), lenderPool.getRateUnits(position));
+				assertTrue(compare < 0 || (compare == 0 && lenderPool.getId(position - 1) < lenderPool.getId(position)));
+			}
+			totalAvailable += lenderPool.getAvailablePence(position);
+		}
+		assertEquals(lenderPool.size(), lenderPool.coveringCount(totalAvailable));
+		return lenderPool;
+	}
+
+}
@@ -2,8 +2,14 @@ package com.zopa.quote.repository;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -35,6 +41,11 @@ public class LenderPoolRepositoryImplTest {
 		lenderPoolRepository.save(lender3);
 	}
 
+	@After
+	public void tearDown() throws Exception {
+		lenderPoolRepository.flush();
+	}
+
 	@Test
 	public void testSave() {
 		Lender lender4 = new Lender(4, "Lender #4", 0.072, 1000.0);
@@ -65,6 +76,175 @@ public class LenderPoolRepositoryImplTest {
 		}
 	}
 
+	@Test
+	public void testFindAllSortedAfterReplace() {
+		Lender lender1Updated = new Lender(lender1.getId(), lender1.getName(), 0.080, lender1.getAvailable());
+		lenderPoolRepository.save(lender1Updated);
+		
+		List<Lender> lendersFound = lenderPoolRepository.findAllSorted();
+		assertEquals(3, lendersFound.size());
+		assertEquals(lender3, lendersFound.get(0));
+		assertEquals(lender2, lendersFound.get(1));
+		assertEquals(lender1Updated, lendersFound.get(2));
+	}
+
+	@Test
+	public void testSaveAllSorted() {
+		Lender lender4 = new Lender(4, "Lender #4", 0.072, 1000.0);
+		lenderPoolRepository.flush();
+		lenderPoolRepository.saveAllSorted(Arrays.asList(lender1, lender3, lender2, lender4));
+		assertEquals(4, lenderPoolRepository.total());
+		assertEquals(5100.0, lenderPoolRepository.totalAvailable(), 0);
+		assertEquals(Arrays.asList(lender1, lender3, lender2, lender4), lenderPoolRepository.findAllSorted());
+		assertEquals(Arrays.asList(lender1, lender3), lenderPoolRepository.findLowestRateLenders(2000));
+		
+		//Lenders out of rate order or with a repeated ID are saved one by one
+		lenderPoolRepository.flush();
+		Lender lender1Updated = new Lender(lender1.getId(), lender1.getName(), 0.080, 100.0);
+		lenderPoolRepository.saveAllSorted(Arrays.asList(lender1, lender3, lender1Updated));
+		assertEquals(2, lenderPoolRepository.total());
+		assertEquals(Arrays.asList(lender3, lender1Updated), lenderPoolRepository.findAllSorted());
+		
+		lenderPoolRepository.saveAllSorted(Arrays.asList(lender4, lender2));
+		assertEquals(Arrays.asList(lender3, lender2, lender4, lender1Updated), lenderPoolRepository.findAllSorted());
+	}
+
+	@Test
+	public void testSortedIterator() {
+		Lender lender4 = new Lender(4, "Lender #4", 0.070, 1000.0);
+		lenderPoolRepository.save(lender4);
+		
+		Iterator<Lender> lendersFound = lenderPoolRepository.sortedIterator();
+		assertEquals(lender1, lendersFound.next());
+		assertEquals(lender3, lendersFound.next());
+		assertEquals(lender4, lendersFound.next());
+		assertEquals(lender2, lendersFound.next());
+		assertFalse(lendersFound.hasNext());
+	}
+
+	@Test
+	public void testSortedSpliterator() {
+		Lender lender4 = new Lender(4, "Lender #4", 0.070, 1000.0);
+		lenderPoolRepository.save(lender4);
+		
+		Spliterator<Lender> lendersFound = lenderPoolRepository.sortedSpliterator();
+		assertTrue(lendersFound.hasCharacteristics(Spliterator.SORTED | Spliterator.ORDERED));
+		assertSame(Lender.getRateSorter(), lendersFound.getComparator());
+		
+		List<Lender> lenders = StreamSupport.stream(lendersFound, false).collect(Collectors.toList());
+		assertEquals(Arrays.asList(lender1, lender3, lender4, lender2), lenders);
+	}
+
+	@Test
+	public void testSortedSpliteratorWhileSaving() throws Exception {
+		Thread writer = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				for(int i = 0; i < 20000; i++) {
+					lenderPoolRepository.save(new Lender(4 + i % 100, "Lender #" + i, 0.05 + i % 37 / 1000.0, 100.0));
+				}
+			}
+		
+		});
+		writer.start();
+		
+		//Every cursor reads one version in rate order while lenders change
+		while(writer.isAlive()) {
+			List<Lender> lenders = StreamSupport.stream(lenderPoolRepository.sortedSpliterator(), false).collect(Collectors.toList());
+			for(int i = 1; i < lenders.size(); i++) {
+				assertTrue(Lender.getRateSorter().compare(lenders.get(i - 1), lenders.get(i)) < 0);
+			}
+		}
+		writer.join();
+		assertEquals(103, lenderPoolRepository.total());
+	}
+
+	@Test
+	public void testFindWhileSaving() throws Exception {
+		Thread writer = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				for(int i = 0; i < 20000; i++) {
+					lenderPoolRepository.save(new Lender(4 + i, "Lender #" + i, 0.05 + i % 37 / 1000.0, 100.0));
+				}
+			}
+		
+		});
+		writer.start();
+		
+		//Lookups and copies run without failing while lender map and rate index grow
+		while(writer.isAlive()) {
+			assertEquals(lender1, lenderPoolRepository.find(lender1.getId()));
+			assertTrue(lenderPoolRepository.findAll().contains(lender2));
+			assertTrue(lenderPoolRepository.findAllSorted().contains(lender3));
+		}
+		writer.join();
+		assertEquals(20003, lenderPoolRepository.total());
+	}
+
+	@Test
+	public void testTotalAvailable() {
+		assertEquals(4100.0, lenderPoolRepository.totalAvailable(), 0);
+		
+		lenderPoolRepository.save(new Lender(lender2.getId(), lender2.getName(), lender2.getRate(), 500.0));
+		assertEquals(3100.0, lenderPoolRepository.totalAvailable(), 0);
+	}
+
+	@Test
+	public void testFindLowestRateLenders() {
+		List<Lender> lendersFound = lenderPoolRepository.findLowestRateLenders(2000);
+		assertEquals(2, lendersFound.size());
+		assertEquals(lender1, lendersFound.get(0));
+		assertEquals(lender3, lendersFound.get(1));
+		
+		lenderPoolRepository.save(new Lender(4, "Lender #4", 0.060, 2000.0));
+		lendersFound = lenderPoolRepository.findLowestRateLenders(2000);
+		assertEquals(1, lendersFound.size());
+		assertEquals(4, lendersFound.get(0).getId());
+		
+		assertEquals(4, lenderPoolRepository.findLowestRateLenders(10000).size());
+	}
+
+	@Test
+	public void testVersion() {
+		long version = lenderPoolRepository.version();
+		lenderPoolRepository.save(new Lender(4, "Lender #4", 0.072, 1000.0));
+		assertTrue(lenderPoolRepository.version() > version);
+		
+		version = lenderPoolRepository.version();
+		lenderPoolRepository.flush();
+		assertTrue(lenderPoolRepository.version() > version);
+	}
+
+	@Test
+	public void testRemove() {
+		assertTrue(lenderPoolRepository.remove(lender3.getId()));
+		assertFalse(lenderPoolRepository.remove(lender3.getId()));
+		
+		assertEquals(2, lenderPoolRepository.total());
+		assertNull(lenderPoolRepository.find(lender3.getId()));
+		assertEquals(2900.0, lenderPoolRepository.totalAvailable(), 0);
+		assertEquals(lender2, lenderPoolRepository.findAllSorted().get(1));
+		assertEquals(2, lenderPoolRepository.findLowestRateLenders(2000).size());
+	}
+
+	@Test
+	public void testUpdateAvailableKeepsRateOrder() {
+		assertEquals(2, lenderPoolRepository.findLowestRateLenders(2000).size());
+		
+		//Same rate, lender stays in place and cumulative availability follows
+		Lender lender1Updated = new Lender(lender1.getId(), lender1.getName(), lender1.getRate(), 2500.0);
+		lenderPoolRepository.save(lender1Updated);
+		
+		List<Lender> lendersFound = lenderPoolRepository.findLowestRateLenders(2000);
+		assertEquals(1, lendersFound.size());
+		assertEquals(lender1Updated, lendersFound.get(0));
+		assertEquals(3, lenderPoolRepository.findLowestRateLenders(3800).size());
+		assertEquals(5200.0, lenderPoolRepository.totalAvailable(), 0);
+	}
+
 	/*@Test
 	public void testFindAllSortedBy() {
 		List<Lender> lendersFound = poolLenderRepository.findAllSortedBy(Lender.getAvailabilitySorter());
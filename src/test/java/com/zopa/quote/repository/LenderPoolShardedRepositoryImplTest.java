@@ -0,0 +1,222 @@
+package com.zopa.quote.repository;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.zopa.quote.config.AppConfig;
+import com.zopa.quote.domain.Lender;
+import com.zopa.quote.domain.QuoteOutcome;
+import com.zopa.quote.service.LenderPoolService;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = { AppConfig.class })
+@TestPropertySource(properties = { "lender.repository.type=sharded", "lender.repository.shards=4" })
+public class LenderPoolShardedRepositoryImplTest {
+	
+	@Autowired private LenderPoolRepository lenderPoolRepository;
+	@Autowired private LenderPoolService lenderPoolService;
+	private Lender lender1;
+	private Lender lender2;
+	private Lender lender3;
+	
+	@Before
+	public void setUp() throws Exception {
+		lender1 = new Lender(1, "Lender #1", 0.069, 1400.0);
+		lenderPoolRepository.save(lender1);
+		
+		lender2 = new Lender(2, "Lender #2", 0.071, 1500.0);
+		lenderPoolRepository.save(lender2);
+		
+		lender3 = new Lender(3, "Lender #3", 0.070, 1200.0);
+		lenderPoolRepository.save(lender3);
+	}
+	
+	@After
+	public void tearDown() throws Exception {
+		lenderPoolRepository.flush();
+	}
+	
+	@Test
+	public void testSelectedByConfiguration() {
+		assertTrue(lenderPoolRepository instanceof LenderPoolShardedRepositoryImpl);
+		assertEquals(4, ((LenderPoolShardedRepositoryImpl) lenderPoolRepository).getShardCount());
+	}
+	
+	@Test
+	public void testSaveReplaces() {
+		long version = lenderPoolRepository.version();
+		Lender lender1Updated = new Lender(lender1.getId(), lender1.getName(), 0.080, 100.0);
+		lenderPoolRepository.save(lender1Updated);
+		
+		assertTrue(lenderPoolRepository.version() > version);
+		assertEquals(3, lenderPoolRepository.total());
+		assertEquals(lender1Updated, lenderPoolRepository.find(lender1.getId()));
+		assertEquals(2800.0, lenderPoolRepository.totalAvailable(), 0);
+		
+		List<Lender> lendersFound = lenderPoolRepository.findAllSorted();
+		assertEquals(lender3, lendersFound.get(0));
+		assertEquals(lender2, lendersFound.get(1));
+		assertEquals(lender1Updated, lendersFound.get(2));
+	}
+	
+	@Test
+	public void testSortedIterator() {
+		Lender lender4 = new Lender(4, "Lender #4", 0.070, 1000.0);
+		lenderPoolRepository.save(lender4);
+		
+		Iterator<Lender> lendersFound = lenderPoolRepository.sortedIterator();
+		assertEquals(lender1, lendersFound.next());
+		assertEquals(lender3, lendersFound.next());
+		assertEquals(lender4, lendersFound.next());
+		assertEquals(lender2, lendersFound.next());
+		assertFalse(lendersFound.hasNext());
+	}
+	
+	@Test
+	public void testSortedIteratorWhileSaving() throws Exception {
+		Thread writer = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				for(int i = 0; i < 20000; i++) {
+					lenderPoolRepository.save(new Lender(4 + i % 100, "Lender #" + i, 0.05 + i % 37 / 1000.0, 100.0));
+				}
+			}
+		
+		});
+		writer.start();
+		
+		//Shards are merged from their published views, saves never break a merge in progress
+		while(writer.isAlive()) {
+			Lender previous = null;
+			for(Iterator<Lender> lendersFound = lenderPoolRepository.sortedIterator(); lendersFound.hasNext(); ) {
+				Lender lender = lendersFound.next();
+				assertTrue(previous == null || Lender.getRateSorter().compare(previous, lender) < 0);
+				previous = lender;
+			}
+		}
+		writer.join();
+		assertEquals(103, lenderPoolRepository.total());
+	}
+	
+	@Test
+	public void testFindLowestRateLenders() {
+		List<Lender> lendersFound = lenderPoolRepository.findLowestRateLenders(2000);
+		assertEquals(2, lendersFound.size());
+		assertEquals(lender1, lendersFound.get(0));
+		assertEquals(lender3, lendersFound.get(1));
+		
+		assertEquals(1, lenderPoolRepository.findLowestRateLenders(1400).size());
+		assertEquals(3, lenderPoolRepository.findLowestRateLenders(10000).size());
+		assertEquals(0, lenderPoolRepository.findLowestRateLenders(0).size());
+	}
+	
+	@Test
+	public void testSaveAllSpreadsLendersOverShards() {
+		lenderPoolRepository.flush();
+		List<Lender> lenders = new ArrayList<Lender>();
+		for(int id = 1; id <= 10000; id++) {
+			lenders.add(new Lender(id, "Lender #" + id, 0.05 + id % 300 / 10000.0, 1000.0));
+		}
+		lenderPoolRepository.saveAll(lenders);
+		
+		LenderPoolShardedRepositoryImpl shardedRepository = (LenderPoolShardedRepositoryImpl) lenderPoolRepository;
+		assertEquals(10000, lenderPoolRepository.total());
+		for(int shard = 0; shard < shardedRepository.getShardCount(); shard++) {
+			assertTrue(shardedRepository.total(shard) > 2000);
+		}
+		for(Lender lender: lenders) {
+			assertEquals(lender, lenderPoolRepository.find(lender.getId()));
+		}
+	}
+	
+	@Test
+	public void testMatchesMapRepository() {
+		lenderPoolRepository.flush();
+		LenderPoolRepository mapRepository = new LenderPoolRepositoryImpl();
+		Random random = new Random(42);
+		List<Lender> chunk = new ArrayList<Lender>();
+		for(int i = 0; i < 20000; i++) {
+			int id = random.nextInt(5000);
+			if(random.nextInt(5) == 0) {
+				lenderPoolRepository.saveAll(chunk);
+				chunk.clear();
+				assertEquals(mapRepository.remove(id), lenderPoolRepository.remove(id));
+			} else {
+				Lender lender = new Lender(id, "Lender #" + i, random.nextInt(300) / 10000.0, 1 + random.nextInt(1000));
+				chunk.add(lender);
+				mapRepository.save(lender);
+			}
+		}
+		lenderPoolRepository.saveAll(chunk);
+		
+		assertEquals(mapRepository.total(), lenderPoolRepository.total());
+		assertEquals(mapRepository.totalAvailablePence(), lenderPoolRepository.totalAvailablePence());
+		assertEquals(mapRepository.findAllSorted(), lenderPoolRepository.findAllSorted());
+		
+		RateOrderedLenders expected = mapRepository.findAllRateOrdered();
+		RateOrderedLenders found = lenderPoolRepository.findAllRateOrdered();
+		assertEquals(expected.size(), found.size());
+		for(int position = 0; position < expected.size(); position++) {
+			assertEquals(expected.getId(position), found.getId(position));
+			assertEquals(expected.getAvailablePence(position), found.getAvailablePence(position));
+		}
+		for(double amount = 0; amount < 3000000; amount += 9973) {
+			assertEquals(mapRepository.findLowestRateLenders(amount), lenderPoolRepository.findLowestRateLenders(amount));
+		}
+	}
+	
+	@Test
+	public void testRateOrderedViewFollowsVersion() {
+		RateOrderedLenders lenderPool = lenderPoolRepository.findAllRateOrdered();
+		assertSame(lenderPool, lenderPoolRepository.findAllRateOrdered());
+		
+		lenderPoolRepository.save(new Lender(4, "Lender #4", 0.060, 1000.0));
+		RateOrderedLenders updated = lenderPoolRepository.findAllRateOrdered();
+		assertEquals(4, updated.size());
+		assertEquals(4, updated.getId(0));
+	}
+	
+	@Test
+	public void testCalculateQuote() {
+		assertTrue(lenderPoolService.calculateQuote(2000).startsWith("Requested amount: £2,000.00"));
+		assertTrue(lenderPoolService.calculateQuote(5000).contains("Is not possible"));
+	}
+	
+	@Test
+	public void testQuoteDoesNotMergeEveryShard() {
+		lenderPoolRepository.findAllRateOrdered();
+		lenderPoolRepository.save(new Lender(4, "Lender #4", 0.060, 1000.0));
+		
+		//Quotes are priced from the lazy merge, merged view of the new version is never built
+		assertEquals(QuoteOutcome.SUCCESS, lenderPoolService.quote(2000).getOutcome());
+		assertEquals(QuoteOutcome.SUCCESS, lenderPoolService.quoteTerms(3000).getOutcome());
+		Object mergedView = ReflectionTestUtils.getField(lenderPoolRepository, "mergedView");
+		assertNotEquals(lenderPoolRepository.version(), ReflectionTestUtils.getField(mergedView, "version"));
+	}
+	
+	@Test
+	public void testFlush() {
+		long version = lenderPoolRepository.version();
+		lenderPoolRepository.flush();
+		assertTrue(lenderPoolRepository.version() > version);
+		assertEquals(0, lenderPoolRepository.total());
+		assertEquals(0, lenderPoolRepository.findAllRateOrdered().size());
+		assertNull(lenderPoolRepository.find(lender1.getId()));
+	}
+
+}
@@ -0,0 +1,72 @@
+package com.zopa.quote.repository;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.zopa.quote.domain.Lender;
+
+public class RateLevelsTest {
+	
+	@Test
+	public void testLevels() {
+		List<Lender> lenders = new ArrayList<Lender>();
+		lenders.add(new Lender(1, "Lender #1", 0.069, 480.0));
+		lenders.add(new Lender(2, "Lender #2", 0.071, 520.0));
+		lenders.add(new Lender(3, "Lender #3", 0.071, 60.0));
+		lenders.add(new Lender(4, "Lender #4", 0.075, 100.0));
+		RateLevels levels = new AvailabilityIndex(lenders).rateLevels();
+		
+		assertEquals(3, levels.size());
+		assertEquals(69000, levels.getRateUnits(0));
+		assertEquals(71000, levels.getRateUnits(1));
+		assertEquals(58000, levels.getAvailablePence(1));
+		assertEquals(1, levels.getFirstPosition(1));
+		assertEquals(2, levels.getLenderCount(1));
+		assertEquals(3, levels.getFirstPosition(2));
+		assertEquals(1, levels.getLenderCount(2));
+		
+		assertEquals(0, levels.levelOf(0));
+		assertEquals(1, levels.levelOf(1));
+		assertEquals(1, levels.levelOf(2));
+		assertEquals(2, levels.levelOf(3));
+		
+		assertEquals(0, new AvailabilityIndex(new ArrayList<Lender>()).rateLevels().size());
+	}
+	
+	@Test
+	public void testLevelsFollowRepositoryChanges() {
+		for(LenderPoolRepository repository: new LenderPoolRepository[] { new LenderPoolRepositoryImpl(), 
+				new LenderPoolArrayRepositoryImpl(), new LenderPoolConcurrentRepositoryImpl() }) {
+			
+			for(int i = 1; i <= 100; i++) {
+				repository.save(new Lender(i, "Lender #" + i, 0.06 + (i % 4) / 100.0, i));
+			}
+			RateLevels levels = repository.findAllRateOrdered().rateLevels();
+			assertEquals(4, levels.size());
+			assertEquals(25, levels.getLenderCount(0));
+			
+			//Availability changed in place and rate changes are both seen
+			repository.save(new Lender(4, "Lender #4", 0.06, 1000));
+			repository.save(new Lender(5, "Lender #5", 0.09, 5));
+			levels = repository.findAllRateOrdered().rateLevels();
+			long expected = 0;
+			for(int i = 1; i <= 100; i++) {
+				if(i % 4 == 0) expected += i == 4 ? 100000 : i * 100;
+			}
+			assertEquals(expected, levels.getAvailablePence(0));
+			assertEquals(26, levels.getLenderCount(3));
+			assertEquals(24, levels.getLenderCount(1));
+			
+			long total = 0;
+			for(int level = 0; level < levels.size(); level++) {
+				total += levels.getAvailablePence(level);
+			}
+			assertEquals(repository.totalAvailablePence(), total);
+		}
+	}
+
+}
@@ -0,0 +1,121 @@
+package com.zopa.quote.server;
+
+import static org.junit.Assert.*;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.zopa.quote.config.AppConfig;
+import com.zopa.quote.domain.Lender;
+import com.zopa.quote.format.JsonQuoteFormat;
+import com.zopa.quote.format.QuoteRenderer;
+import com.zopa.quote.repository.LenderPoolRepository;
+import com.zopa.quote.service.LenderPoolService;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = { AppConfig.class })
+public class QuoteServerTest {
+	
+	@Autowired private LenderPoolRepository lenderPoolRepository;
+	@Autowired private LenderPoolService lenderPoolService;
+	@Autowired private QuoteServer quoteServer;
+	@Autowired private QuoteRenderer quoteRenderer;
+	
+	@Before
+	public void setUp() throws Exception {
+		lenderPoolRepository.flush();
+		lenderPoolRepository.save(new Lender(1, "Lender #1", 0.066, 1000.0));
+		lenderPoolRepository.save(new Lender(2, "Lender #2", 0.075, 2000.0));
+		lenderPoolRepository.save(new Lender(3, "Lender #3", 0.070, 10000.0));
+		quoteServer.start(0);
+	}
+	
+	@After
+	public void tearDown() throws Exception {
+		quoteServer.stop();
+		lenderPoolRepository.flush();
+	}
+	
+	@Test
+	public void testQuote() throws Exception {
+		assertEquals(lenderPoolService.calculateQuote(5000), get("/quote?amount=5000"));
+		assertEquals(lenderPoolService.calculateQuote(1050), get("/quote?amount=1050"));
+		assertEquals(2, quoteServer.getQuotesServed());
+	}
+	
+	@Test
+	public void testQuoteAsJson() throws Exception {
+		assertEquals("{\"outcome\":\"SUCCESS\",\"amount\":5000.00,\"term\":36,\"rate\":0.068000,\"monthlyRepayment\":154.20,\"totalRepayment\":6150.00,\"lendersUsed\":2}", 
+				get("/quote?amount=5000&format=json"));
+		assertEquals("{\"outcome\":\"BELOW_MINIMUM\",\"amount\":500.00,\"limit\":1000.00}", get("/quote?amount=500&format=json"));
+		
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + quoteServer.getPort() + "/quote?amount=5000&format=xml").openConnection();
+		assertEquals(400, connection.getResponseCode());
+	}
+	
+	@Test
+	public void testQuoteTerms() throws Exception {
+		assertEquals(quoteRenderer.render(lenderPoolService.quoteTerms(5000)), get("/quote?amount=5000&terms=all"));
+		assertEquals(quoteRenderer.render(lenderPoolService.quoteTerms(5000, new int[] { 12, 60 }), quoteRenderer.getFormat(JsonQuoteFormat.NAME)), 
+				get("/quote?amount=5000&terms=12,60&format=json"));
+		
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + quoteServer.getPort() + "/quote?amount=5000&terms=12,x").openConnection();
+		assertEquals(400, connection.getResponseCode());
+	}
+	
+	@Test
+	public void testQuoteWithoutAmount() throws Exception {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + quoteServer.getPort() + "/quote").openConnection();
+		assertEquals(400, connection.getResponseCode());
+		assertEquals(0, quoteServer.getQuotesServed());
+	}
+	
+	@Test
+	public void testConcurrentQuotes() throws Exception {
+		ExecutorService clients = Executors.newFixedThreadPool(16);
+		List<Future<String>> quotes = new ArrayList<Future<String>>();
+		for(int i = 0; i < 200; i++) {
+			final int amount = 1000 + (i % 100) * 100;
+			quotes.add(clients.submit(new Callable<String>() {
+				
+				@Override
+				public String call() throws Exception {
+					return get("/quote?amount=" + amount);
+				}
+			
+			}));
+		}
+		
+		for(int i = 0; i < quotes.size(); i++) {
+			assertEquals(lenderPoolService.calculateQuote(1000 + (i % 100) * 100), quotes.get(i).get());
+		}
+		clients.shutdown();
+		
+		assertEquals(200, quoteServer.getQuotesServed());
+		assertTrue(get("/stats").startsWith("Quotes served: 200"));
+	}
+	
+	private String get(String path) throws Exception {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + quoteServer.getPort() + path).openConnection();
+		try (InputStream inputStream = connection.getInputStream(); Scanner scanner = new Scanner(inputStream, "UTF-8")) {
+			return scanner.useDelimiter("\\A").hasNext() ? scanner.next() : "";
+		}
+	}
+
+}
@@ -0,0 +1,46 @@
+package com.zopa.quote.service;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.zopa.quote.service.AnnuityFactorCache.AnnuityFactors;
+
+public class AnnuityFactorCacheTest {
+	
+	@Test
+	public void testGet() {
+		AnnuityFactorCache factorCache = new AnnuityFactorCache(16);
+		AnnuityFactors factors = factorCache.get(0.07, 36);
+		
+		assertSame(factors, factorCache.get(0.07, 36));
+		assertNotSame(factors, factorCache.get(0.07, 24));
+		assertTrue(( 1 - Math.pow( ( 1 + ( 0.07/12 ) ), -36 ) ) == factors.monthlyRepaymentDivisor);
+		assertTrue(Math.pow( ( 1 + ( 0.07/12 ) ), 36 ) == factors.totalRepaymentFactor);
+		assertEquals(2, factorCache.size());
+	}
+	
+	@Test
+	public void testGetIsBounded() {
+		AnnuityFactorCache factorCache = new AnnuityFactorCache(16);
+		int cached = 0;
+		for(int i = 0; i < 1000; i++) {
+			if(factorCache.get(i / 10000.0, 36) != null) cached++;
+		}
+		
+		assertEquals(16, factorCache.size());
+		assertEquals(16, cached);
+	}
+	
+	@Test
+	public void testCachedRepaymentsMatchFormula() {
+		QuoteEngine cachedEngine = new QuoteEngine(36, 4096);
+		QuoteEngine uncachedEngine = new QuoteEngine(36, 0);
+		for(int i = 1; i < 500; i++) {
+			double rate = i / 5000.0;
+			assertTrue(uncachedEngine.calculateMonthlyRepayment(rate, 1234.56) == cachedEngine.calculateMonthlyRepayment(rate, 1234.56));
+			assertTrue(uncachedEngine.calculateTotalRepayment(rate, 1234.56) == cachedEngine.calculateTotalRepayment(rate, 1234.56));
+		}
+	}
+
+}
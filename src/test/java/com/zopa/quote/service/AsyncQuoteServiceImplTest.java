@@ -0,0 +1,115 @@
+package com.zopa.quote.service;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.zopa.quote.config.AppConfig;
+import com.zopa.quote.domain.Lender;
+import com.zopa.quote.domain.QuoteResult;
+import com.zopa.quote.repository.LenderPoolRepository;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = { AppConfig.class })
+public class AsyncQuoteServiceImplTest {
+	
+	@Autowired private LenderPoolRepository lenderPoolRepository;
+	@Autowired private LenderPoolService lenderPoolService;
+	@Autowired private AsyncQuoteService asyncQuoteService;
+	
+	@Before
+	public void setUp() throws Exception {
+		lenderPoolRepository.flush();
+		lenderPoolRepository.save(new Lender(1, "Lender #1", 0.066, 1000.0));
+		lenderPoolRepository.save(new Lender(2, "Lender #2", 0.075, 2000.0));
+		lenderPoolRepository.save(new Lender(3, "Lender #3", 0.070, 10000.0));
+	}
+	
+	@Test
+	public void testQuote() throws Exception {
+		assertEquals(lenderPoolService.quote(5000), asyncQuoteService.quote(5000).get(5, TimeUnit.SECONDS));
+		assertEquals(lenderPoolService.quote(1050), asyncQuoteService.quote(1050).get(5, TimeUnit.SECONDS));
+		assertEquals(lenderPoolService.quoteTerms(5000), asyncQuoteService.quoteTerms(5000).get(5, TimeUnit.SECONDS));
+		
+		//Every executor gives the same results, virtual falls back to a ForkJoinPool on older JDKs
+		List<Double> amounts = Arrays.asList(1000.0, 5000.0, 500.0, 15000.0, 7300.0);
+		for(String executor: Arrays.asList(AsyncQuoteServiceImpl.POOL, AsyncQuoteServiceImpl.FORK_JOIN, AsyncQuoteServiceImpl.VIRTUAL)) {
+			AsyncQuoteServiceImpl service = new AsyncQuoteServiceImpl(lenderPoolService, executor, 2, 16);
+			try {
+				List<QuoteResult> results = service.quoteAll(amounts).get(5, TimeUnit.SECONDS);
+				assertEquals(amounts.size(), results.size());
+				for(int i = 0; i < amounts.size(); i++) {
+					assertEquals(lenderPoolService.quote(amounts.get(i)), results.get(i));
+				}
+			} finally {
+				service.shutdown();
+			}
+		}
+	}
+	
+	@Test
+	public void testRejectsWhenQueueFull() throws Exception {
+		AsyncQuoteServiceImpl service = new AsyncQuoteServiceImpl(lenderPoolService, AsyncQuoteServiceImpl.POOL, 1, 2);
+		final CountDownLatch release = new CountDownLatch(1);
+		try {
+			
+			//Both pending places taken by quotes that wait
+			Supplier<QuoteResult> blocked = new Supplier<QuoteResult>() {
+				
+				@Override
+				public QuoteResult get() {
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return lenderPoolService.quote(1000);
+				}
+			
+			};
+			CompletableFuture<QuoteResult> first = service.submit(blocked);
+			CompletableFuture<QuoteResult> second = service.submit(blocked);
+			assertEquals(2, service.getPending());
+			
+			//Rejected at once, nothing is queued
+			CompletableFuture<QuoteResult> rejected = service.quote(1000);
+			assertTrue(rejected.isCompletedExceptionally());
+			try {
+				rejected.get();
+				fail("Quote accepted over queue size");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof RejectedExecutionException);
+			}
+			assertEquals(1, service.getRejected());
+			
+			release.countDown();
+			assertEquals(lenderPoolService.quote(1000), first.get(5, TimeUnit.SECONDS));
+			assertEquals(lenderPoolService.quote(1000), second.get(5, TimeUnit.SECONDS));
+			assertEquals(lenderPoolService.quote(1000), service.quote(1000).get(5, TimeUnit.SECONDS));
+			assertEquals(0, service.getPending());
+		} finally {
+			release.countDown();
+			service.shutdown();
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownExecutor() {
+		new AsyncQuoteServiceImpl(lenderPoolService, "threads", 1, 1);
+	}
+
+}
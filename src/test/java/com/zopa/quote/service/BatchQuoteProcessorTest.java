@@ -0,0 +1,66 @@
+package com.zopa.quote.service;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.zopa.quote.config.AppConfig;
+import com.zopa.quote.domain.Lender;
+import com.zopa.quote.repository.LenderPoolRepository;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = { AppConfig.class })
+public class BatchQuoteProcessorTest {
+	
+	@Autowired private LenderPoolRepository lenderPoolRepository;
+	@Autowired private LenderPoolService lenderPoolService;
+	@Autowired private BatchQuoteProcessor batchQuoteProcessor;
+	
+	@Before
+	public void setUp() throws Exception {
+		lenderPoolRepository.flush();
+		lenderPoolRepository.save(new Lender(1, "Lender #1", 0.066, 1000.0));
+		lenderPoolRepository.save(new Lender(2, "Lender #2", 0.075, 2000.0));
+		lenderPoolRepository.save(new Lender(3, "Lender #3", 0.070, 10000.0));
+	}
+	
+	@After
+	public void tearDown() throws Exception {
+		lenderPoolRepository.flush();
+	}
+	
+	@Test
+	public void testProcessKeepsInputOrder() throws Exception {
+		StringBuilder amounts = new StringBuilder();
+		StringBuilder expected = new StringBuilder();
+		for(int i = 0; i < 5000; i++) {
+			double amount = 900 + (i % 150) * 100;
+			amounts.append(amount).append(System.lineSeparator());
+			expected.append(lenderPoolService.calculateQuote(amount)).append(System.lineSeparator()).append(System.lineSeparator());
+		}
+		
+		StringWriter output = new StringWriter();
+		assertEquals(5000, batchQuoteProcessor.process(new StringReader(amounts.toString()), output));
+		assertEquals(expected.toString(), output.toString());
+	}
+	
+	@Test
+	public void testProcessInvalidAmounts() throws Exception {
+		StringWriter output = new StringWriter();
+		assertEquals(2, batchQuoteProcessor.process(new StringReader("\nabc\n\n1000\n"), output));
+		
+		String[] quotes = output.toString().split(System.lineSeparator() + System.lineSeparator());
+		assertTrue(quotes[0].startsWith("Exception thrown: "));
+		assertEquals(lenderPoolService.calculateQuote(1000), quotes[1]);
+	}
+
+}
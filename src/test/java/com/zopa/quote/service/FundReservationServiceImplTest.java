@@ -0,0 +1,216 @@
+package com.zopa.quote.service;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.zopa.quote.config.AppConfig;
+import com.zopa.quote.domain.Lender;
+import com.zopa.quote.domain.Reservation;
+import com.zopa.quote.repository.LenderPoolRepository;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = { AppConfig.class })
+@TestPropertySource(properties = { "lender.repository.type=concurrent" })
+public class FundReservationServiceImplTest {
+	
+	@Autowired private LenderPoolRepository lenderPoolRepository;
+	@Autowired private LenderPoolService lenderPoolService;
+	@Autowired private FundReservationService fundReservationService;
+	private List<Reservation> reservations = new ArrayList<Reservation>();
+	
+	@Before
+	public void setUp() throws Exception {
+		lenderPoolRepository.save(new Lender(1, "Jane", 0.069, 480));
+		lenderPoolRepository.save(new Lender(2, "Fred", 0.071, 520));
+		lenderPoolRepository.save(new Lender(3, "Angela", 0.071, 60));
+		lenderPoolRepository.save(new Lender(4, "Dave", 0.074, 140));
+		lenderPoolRepository.save(new Lender(5, "Bob", 0.075, 640));
+		lenderPoolRepository.save(new Lender(6, "John", 0.081, 320));
+		lenderPoolRepository.save(new Lender(7, "Mary", 0.104, 170));
+	}
+	
+	@After
+	public void tearDown() throws Exception {
+		for(Reservation reservation: reservations) {
+			fundReservationService.release(reservation.getId());
+		}
+		lenderPoolRepository.flush();
+	}
+	
+	private Reservation reserve(double amountToBorrow) {
+		Reservation reservation = fundReservationService.reserve(amountToBorrow);
+		reservations.add(reservation);
+		return reservation;
+	}
+	
+	@Test
+	public void testReserveTakesLowestRates() {
+		Reservation reservation = reserve(1000);
+		
+		assertEquals(2, reservation.getAllocations().size());
+		assertEquals(480.0, fundReservationService.reservedFrom(1), 0);
+		assertEquals(520.0, fundReservationService.reservedFrom(2), 0);
+		assertEquals(lenderPoolService.calculateMonthlyRepayment(lenderPoolService.getLowestRateLenders(1000), 1000), 
+				reservation.getRepayment().getMonthlyRepayment(), 0);
+		
+		//Funds reserved are not offered again
+		Reservation next = reserve(1000);
+		assertEquals(3, next.getAllocations().get(0).getId());
+		assertEquals(60.0, fundReservationService.reservedFrom(3), 0);
+		assertEquals(160.0, fundReservationService.reservedFrom(6), 0);
+		assertEquals(0.0, fundReservationService.reservedFrom(7), 0);
+	}
+	
+	@Test
+	public void testRelease() {
+		Reservation reservation = reserve(1000);
+		assertTrue(fundReservationService.release(reservation.getId()));
+		assertFalse(fundReservationService.release(reservation.getId()));
+		assertFalse(fundReservationService.commit(reservation.getId()));
+		
+		assertEquals(0.0, fundReservationService.reservedFrom(1), 0);
+		assertEquals(1, reserve(1000).getAllocations().get(0).getId());
+	}
+	
+	@Test
+	public void testCommitTakesFundsFromPool() {
+		Reservation reservation = reserve(1100);
+		assertTrue(fundReservationService.commit(reservation.getId()));
+		
+		assertNull(lenderPoolRepository.find(1));
+		assertNull(lenderPoolRepository.find(2));
+		assertEquals(0.0, fundReservationService.reservedFrom(3), 0);
+		assertEquals(new Lender(4, "Dave", 0.074, 100), lenderPoolRepository.find(4));
+		assertEquals(1230.0, lenderPoolRepository.totalAvailable(), 0);
+	}
+	
+	@Test
+	public void testCommitDropsFundsOfLendersGone() {
+		Reservation reservation = reserve(1100);
+		assertTrue(fundReservationService.commit(reservation.getId()));
+		
+		Map<?, ?> reservedByLender = (Map<?, ?>) ReflectionTestUtils.getField(fundReservationService, "reservedByLender");
+		assertFalse(reservedByLender.containsKey(1));
+		assertFalse(reservedByLender.containsKey(2));
+		assertTrue(reservedByLender.containsKey(4));
+	}
+	
+	@Test
+	public void testReserveUnfeasible() {
+		reserve(1500);
+		try {
+			reserve(1000);
+			fail("Reserved more than available");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage().startsWith("Is not possible"));
+		}
+		
+		//Nothing kept from failed reservation
+		assertEquals(300.0, fundReservationService.reservedFrom(5), 0);
+		assertEquals(0.0, fundReservationService.reservedFrom(6), 0);
+		assertEquals(0.0, fundReservationService.reservedFrom(7), 0);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testReserveNotAllowed() {
+		reserve(1050);
+	}
+	
+	@Test
+	public void testReserveRejectedAsQuote() {
+		for(double amountToBorrow: new double[] { 1050, 500, 20000 }) {
+			try {
+				reserve(amountToBorrow);
+				fail("Reserved amount not allowed");
+			} catch (IllegalArgumentException e) {
+				assertEquals(lenderPoolService.calculateQuote(amountToBorrow), e.getMessage());
+			}
+		}
+	}
+	
+	@Test
+	public void testConcurrentReservationsNeverOverAllocate() throws Exception {
+		
+		lenderPoolRepository.flush();
+		final Map<Integer, Double> initialAvailable = new HashMap<Integer, Double>();
+		Random random = new Random(42);
+		for(int id = 1; id <= 500; id++) {
+			double available = 100 * (1 + random.nextInt(20));
+			lenderPoolRepository.save(new Lender(id, "Lender #" + id, 0.05 + random.nextInt(10) / 1000.0, available));
+			initialAvailable.put(id, available);
+		}
+		
+		ExecutorService borrowers = Executors.newFixedThreadPool(8);
+		List<Future<List<Reservation>>> results = new ArrayList<Future<List<Reservation>>>();
+		for(int b = 0; b < 8; b++) {
+			final Random borrowerRandom = new Random(b);
+			results.add(borrowers.submit(new Callable<List<Reservation>>() {
+				
+				@Override
+				public List<Reservation> call() throws Exception {
+					List<Reservation> committed = new ArrayList<Reservation>();
+					for(int i = 0; i < 2000; i++) {
+						try {
+							Reservation reservation = fundReservationService.reserve(1000 + 100 * borrowerRandom.nextInt(20));
+							if(borrowerRandom.nextBoolean()) {
+								fundReservationService.commit(reservation.getId());
+								committed.add(reservation);
+							} else {
+								fundReservationService.release(reservation.getId());
+							}
+						} catch (IllegalStateException e) {
+							//Pool exhausted
+						}
+					}
+					return committed;
+				}
+			
+			}));
+		}
+		
+		Map<Integer, Double> committedByLender = new HashMap<Integer, Double>();
+		for(Future<List<Reservation>> result: results) {
+			for(Reservation reservation: result.get()) {
+				double allocated = 0;
+				for(Lender allocation: reservation.getAllocations()) {
+					allocated += allocation.getAvailable();
+					Double committed = committedByLender.get(allocation.getId());
+					committedByLender.put(allocation.getId(), (committed == null ? 0 : committed) + allocation.getAvailable());
+				}
+				assertEquals(reservation.getAmount(), allocated, 0);
+			}
+		}
+		borrowers.shutdown();
+		
+		//Every lender lent at most what it had, and pool holds exactly what was not lent
+		for(Map.Entry<Integer, Double> lender: initialAvailable.entrySet()) {
+			Double committed = committedByLender.get(lender.getKey());
+			double lent = committed == null ? 0 : committed;
+			assertTrue(lent <= lender.getValue());
+			
+			Lender left = lenderPoolRepository.find(lender.getKey());
+			assertEquals(lender.getValue() - lent, left == null ? 0 : left.getAvailable(), 0);
+			assertEquals(0.0, fundReservationService.reservedFrom(lender.getKey()), 0);
+		}
+	}
+
+}
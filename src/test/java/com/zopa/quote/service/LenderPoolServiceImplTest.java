@@ -3,6 +3,7 @@ package com.zopa.quote.service;
 import static org.junit.Assert.*;
 
 import java.text.NumberFormat;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
@@ -13,9 +14,17 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import com.zopa.quote.config.AppConfig;
 import com.zopa.quote.domain.Lender;
+import com.zopa.quote.domain.Money;
+import com.zopa.quote.domain.MultiTermQuote;
+import com.zopa.quote.domain.Quote;
+import com.zopa.quote.domain.QuoteOutcome;
+import com.zopa.quote.domain.QuoteRejection;
+import com.zopa.quote.domain.QuoteResult;
+import com.zopa.quote.domain.Repayment;
 import com.zopa.quote.repository.LenderPoolRepository;
 
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -24,6 +33,8 @@ public class LenderPoolServiceImplTest {
 	
 	@Autowired private LenderPoolRepository lenderPoolRepository;
 	@Autowired private LenderPoolService lenderPoolService;
+	@Autowired private QuoteMetrics quoteMetrics;
+	@Autowired private QuoteCache quoteCache;
 	
 	@Value( "${message.error.valueNotAllowed}" )
 	private String errorMessageValueNotAllowed;
@@ -95,6 +106,155 @@ public class LenderPoolServiceImplTest {
 		assertTrue(String.format(errorMessageAmountUnfeasible, currencyFormatter.format(amountToBorrow)).equals(stringResult));
 	}
 
+	@Test
+	public void testCalculateQuoteFromPrecomputedQuotes() throws Exception {
+		try {
+			
+			ReflectionTestUtils.setField(lenderPoolService, "quoteTableEnabled", false);
+			List<String> expectedQuotes = new ArrayList<>();
+			for(double amountToBorrow = minimumValueAllowed; amountToBorrow <= maximumValueAllowed; amountToBorrow += incrementValueAllowed) {
+				expectedQuotes.add(lenderPoolService.calculateQuote(amountToBorrow));
+			}
+			
+			ReflectionTestUtils.setField(lenderPoolService, "quoteTableEnabled", true);
+			lenderPoolService.precomputeQuotes();
+			for(double amountToBorrow = minimumValueAllowed; amountToBorrow <= maximumValueAllowed; amountToBorrow += incrementValueAllowed) {
+				assertEquals(expectedQuotes.remove(0), lenderPoolService.calculateQuote(amountToBorrow));
+			}
+			
+			//Precomputed quotes are replaced once repository changes, quote engine prices them until then
+			String quote = lenderPoolService.calculateQuote(5000);
+			lenderPoolRepository.save(new Lender(lender4.getId(), lender4.getName(), 0.050, lender4.getAvailable()));
+			assertFalse(quote.equals(lenderPoolService.calculateQuote(5000)));
+			ReflectionTestUtils.setField(lenderPoolService, "quoteTableEnabled", false);
+			String expectedQuote = lenderPoolService.calculateQuote(5000);
+			ReflectionTestUtils.setField(lenderPoolService, "quoteTableEnabled", true);
+			assertEquals(expectedQuote, lenderPoolService.calculateQuote(5000));
+			
+			//Stale table is rebuilt in background
+			long deadline = System.currentTimeMillis() + 5000;
+			while(!isQuoteTableCurrent() && System.currentTimeMillis() < deadline) {
+				lenderPoolService.calculateQuote(5000);
+				Thread.sleep(10);
+			}
+			assertTrue(isQuoteTableCurrent());
+			assertEquals(expectedQuote, lenderPoolService.calculateQuote(5000));
+		
+		} finally {
+			ReflectionTestUtils.setField(lenderPoolService, "quoteTableEnabled", false);
+		}
+	}
+
+	@Test
+	public void testCalculateQuoteRecordsMetrics() {
+		quoteMetrics.reset();
+		
+		lenderPoolService.calculateQuote(1050);
+		lenderPoolService.calculateQuote(900);
+		lenderPoolService.calculateQuote(15100);
+		lenderPoolService.calculateQuote(15000);
+		lenderPoolService.calculateQuote(2000);
+		try {
+			ReflectionTestUtils.setField(lenderPoolService, "quoteTableEnabled", true);
+			lenderPoolService.precomputeQuotes();
+			lenderPoolService.calculateQuote(2000);
+		} finally {
+			ReflectionTestUtils.setField(lenderPoolService, "quoteTableEnabled", false);
+		}
+		
+		assertEquals(6, quoteMetrics.getQuotes());
+		assertEquals(1, quoteMetrics.getNotAllowedCount());
+		assertEquals(1, quoteMetrics.getBelowMinimumCount());
+		assertEquals(1, quoteMetrics.getAboveMaximumCount());
+		assertEquals(1, quoteMetrics.getNotFeasibleCount());
+		assertEquals(2, quoteMetrics.getSuccessCount());
+		assertTrue(quoteMetrics.getLatencyNanos(QuoteOutcome.SUCCESS, 99) > 0);
+		
+		//Lender #1 and Lender #3 cover 2000, from quote engine and from quote table
+		assertEquals(2, quoteMetrics.getLendersTouchedP99());
+		assertEquals(4.0 / 6, quoteMetrics.getLendersTouchedMean(), 0.0001);
+		assertTrue(quoteMetrics.dump().contains("SUCCESS        count=2"));
+	}
+
+	@Test
+	public void testQuote() {
+		QuoteResult result = lenderPoolService.quote(1000);
+		assertEquals(QuoteOutcome.SUCCESS, result.getOutcome());
+		Quote quote = (Quote) result;
+		assertEquals(100000, quote.getAmountPence());
+		assertEquals(3069, quote.getMonthlyRepaymentPence());
+		assertEquals(121830, quote.getTotalRepaymentPence());
+		assertEquals(lenderPoolService.calculateQuote(1000), String.format(messageQuote, currencyFormatter.format(1000), quote.getRate() * 100, 
+				currencyFormatter.format(quote.getMonthlyRepayment()), currencyFormatter.format(quote.getTotalRepayment())));
+		
+		assertEquals(new QuoteRejection(QuoteOutcome.NOT_ALLOWED, 105000, 10000), lenderPoolService.quote(1050));
+		assertEquals(new QuoteRejection(QuoteOutcome.BELOW_MINIMUM, 50000, 100000), lenderPoolService.quote(500));
+		assertEquals(new QuoteRejection(QuoteOutcome.ABOVE_MAXIMUM, 1600000, 1500000), lenderPoolService.quote(16000));
+	}
+
+	@Test
+	public void testQuoteFromCache() {
+		try {
+			
+			//Amounts off the precomputed table are priced once per lenders version
+			ReflectionTestUtils.setField(lenderPoolService, "quoteTableEnabled", false);
+			long hits = quoteCache.getHits();
+			QuoteResult result = lenderPoolService.quote(5000);
+			assertSame(result, lenderPoolService.quote(5000));
+			assertEquals(hits + 1, quoteCache.getHits());
+			
+			//Saving a lender changes version, quote is priced again against new lenders
+			lenderPoolRepository.save(new Lender(5, "Lender #5", 0.05, 1000.0));
+			QuoteResult repriced = lenderPoolService.quote(5000);
+			assertNotSame(result, repriced);
+			assertTrue(((Quote) repriced).getRate() < ((Quote) result).getRate());
+			assertEquals(hits + 1, quoteCache.getHits());
+			assertSame(repriced, lenderPoolService.quote(5000));
+		} finally {
+			ReflectionTestUtils.setField(lenderPoolService, "quoteTableEnabled", false);
+			lenderPoolRepository.remove(5);
+		}
+	}
+
+	@Test
+	public void testQuoteTerms() {
+		int[] terms = { 12, 24, 36, 48, 60 };
+		for(double amountToBorrow = minimumValueAllowed; amountToBorrow <= 14000; amountToBorrow += incrementValueAllowed) {
+			QuoteResult result = lenderPoolService.quoteTerms(amountToBorrow);
+			assertEquals(QuoteOutcome.SUCCESS, result.getOutcome());
+			MultiTermQuote quotes = (MultiTermQuote) result;
+			assertEquals(terms.length, quotes.getTermCount());
+			for(int i = 0; i < terms.length; i++) {
+				assertEquals(terms[i], quotes.getTerm(i));
+				Repayment expected = new QuoteEngine(terms[i], 0).calculate(lenderPoolRepository.findAllRateOrdered(), Money.toPence(amountToBorrow));
+				Quote quote = quotes.getQuote(i);
+				assertEquals(expected.getMonthlyRepaymentPence(), quote.getMonthlyRepaymentPence());
+				assertEquals(expected.getTotalRepaymentPence(), quote.getTotalRepaymentPence());
+				assertTrue(expected.getRate() == quote.getRate());
+				assertEquals(expected.getLendersUsed(), quote.getLendersUsed());
+				assertEquals(terms[i], quote.getTerm());
+			}
+			
+			//Configured term matches a single term quote
+			assertEquals(lenderPoolService.quote(amountToBorrow), quotes.getQuote(2));
+		}
+		
+		MultiTermQuote quotes = (MultiTermQuote) lenderPoolService.quoteTerms(1000, new int[] { 60, 12 });
+		assertEquals(60, quotes.getQuotes().get(0).getTerm());
+		assertEquals(12, quotes.getQuotes().get(1).getTerm());
+		
+		assertEquals(new QuoteRejection(QuoteOutcome.NOT_ALLOWED, 105000, 10000), lenderPoolService.quoteTerms(1050));
+		assertEquals(new QuoteRejection(QuoteOutcome.ABOVE_MAXIMUM, 1600000, 1500000), lenderPoolService.quoteTerms(16000));
+		assertEquals(new QuoteRejection(QuoteOutcome.NOT_FEASIBLE, 1500000, 0), lenderPoolService.quoteTerms(15000));
+		
+		try {
+			lenderPoolService.quoteTerms(1000, new int[0]);
+			fail("No terms accepted");
+		} catch (IllegalArgumentException e) {
+			//Expected
+		}
+	}
+
 	@Test
 	public void testIsAmountFeasible() {
 		assertTrue(lenderPoolService.isAmountFeasible(2000));
@@ -110,6 +270,8 @@ public class LenderPoolServiceImplTest {
 		assertFalse(lenderPoolService.isAmountAllowed(1150));
 		assertFalse(lenderPoolService.isAmountAllowed(1105));
 		assertFalse(lenderPoolService.isAmountAllowed(1001));
+		assertFalse(lenderPoolService.isAmountAllowed(1000.01));
+		assertFalse(lenderPoolService.isAmountAllowed(1000.001));
 	}
 
 	@Test
@@ -140,21 +302,26 @@ public class LenderPoolServiceImplTest {
 	@Test
 	public void TestCalculateMonthlyRepayment() {
 		double monthlyRepayment = lenderPoolService.calculateMonthlyRepayment(lenderPoolService.getLowestRateLenders(1000), 1000);
-		assertTrue(30.694539428781287 == monthlyRepayment);
+		assertTrue(30.69 == monthlyRepayment);
 		
 		monthlyRepayment = lenderPoolService.calculateMonthlyRepayment(lenderPoolService.getLowestRateLenders(5000), 5000);
-		assertTrue(154.20292689026866 == monthlyRepayment);
+		assertTrue(154.20 == monthlyRepayment);
 	}
 	
 	@Test
 	public void TestCalculateTotalRepayment() {
 		double totalRepayment = lenderPoolService.calculateTotalRepayment(lenderPoolService.getLowestRateLenders(1000), 1000);
 		System.out.println(totalRepayment);
-		assertTrue(1218.301271811185 == totalRepayment);
+		assertTrue(1218.30 == totalRepayment);
 		
 		totalRepayment = lenderPoolService.calculateTotalRepayment(lenderPoolService.getLowestRateLenders(5000), 5000);
 		System.out.println(totalRepayment);
-		assertTrue(6150.003621718897 == totalRepayment);
+		assertTrue(6150.00 == totalRepayment);
+	}
+
+	private boolean isQuoteTableCurrent() {
+		QuoteTable table = (QuoteTable) ReflectionTestUtils.getField(lenderPoolService, "quoteTable");
+		return table != null && table.getVersion() == lenderPoolRepository.version();
 	}
 
 }
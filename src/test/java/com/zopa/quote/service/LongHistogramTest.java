@@ -0,0 +1,55 @@
+package com.zopa.quote.service;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LongHistogramTest {
+	
+	@Test
+	public void testBucketsAreContiguous() {
+		for(long value = 0; value < 100000; value++) {
+			int index = LongHistogram.indexOf(value);
+			assertTrue(value <= LongHistogram.highestValueOf(index));
+			assertTrue(index == 0 || value > LongHistogram.highestValueOf(index - 1));
+		}
+		assertTrue(LongHistogram.highestValueOf(LongHistogram.indexOf(Long.MAX_VALUE)) >= Long.MAX_VALUE);
+	}
+	
+	
+	@Test
+	public void testPercentilesWithinBucketPrecision() {
+		LongHistogram histogram = new LongHistogram();
+		for(long value = 1; value <= 100000; value++) {
+			histogram.record(value * 1000);
+		}
+		
+		assertEquals(100000, histogram.count());
+		assertEquals(50000500.0, histogram.mean(), 0.001);
+		assertEquals(100000000, histogram.max());
+		assertEquals(50000000, histogram.percentile(50), 50000000 / 16.0);
+		assertEquals(99000000, histogram.percentile(99), 99000000 / 16.0);
+		assertEquals(100000000, histogram.percentile(100));
+		assertTrue(histogram.percentile(50) >= 50000000);
+	}
+	
+	
+	@Test
+	public void testSmallValuesAreExact() {
+		LongHistogram histogram = new LongHistogram();
+		histogram.record(3);
+		histogram.record(7);
+		histogram.record(7);
+		histogram.record(-1);
+		
+		assertEquals(4, histogram.count());
+		assertEquals(0, histogram.percentile(25));
+		assertEquals(3, histogram.percentile(50));
+		assertEquals(7, histogram.percentile(99));
+		
+		histogram.reset();
+		assertEquals(0, histogram.count());
+		assertEquals(0, histogram.percentile(99));
+	}
+
+}
@@ -0,0 +1,107 @@
+package com.zopa.quote.service;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.zopa.quote.domain.Quote;
+import com.zopa.quote.domain.QuoteOutcome;
+import com.zopa.quote.domain.QuoteRejection;
+import com.zopa.quote.domain.QuoteResult;
+
+public class QuoteCacheTest {
+	
+	@Test
+	public void testGet() {
+		QuoteCache quoteCache = new QuoteCache(64);
+		Quote quote = new Quote(100000, 3069, 121830, 0.07, 1, 36);
+		quoteCache.put(100000, 36, 7, quote);
+		
+		assertSame(quote, quoteCache.get(100000, 36, 7));
+		assertNull(quoteCache.get(100000, 24, 7));
+		assertNull(quoteCache.get(100000, 36, 8));
+		assertNull(quoteCache.get(110000, 36, 7));
+		assertEquals(1, quoteCache.getHits());
+		assertEquals(3, quoteCache.getMisses());
+		assertEquals(1, quoteCache.getSize());
+	}
+	
+	@Test
+	public void testLeastRecentlyUsedIsEvicted() {
+		
+		//Capacity is spread over 16 segments, one result per segment
+		QuoteCache quoteCache = new QuoteCache(16);
+		QuoteResult result = new QuoteRejection(QuoteOutcome.NOT_FEASIBLE, 100000, 0);
+		for(long amount = 0; amount < 1000; amount++) {
+			quoteCache.put(amount, 36, 1, result);
+		}
+		assertTrue(quoteCache.getSize() <= 16);
+		assertEquals(1000 - quoteCache.getSize(), quoteCache.getEvictions());
+		assertEquals(0, quoteCache.getExpired());
+		
+		//Most recent result of every segment is kept
+		assertSame(result, quoteCache.get(999, 36, 1));
+	}
+	
+	@Test
+	public void testOlderVersionsAreDropped() {
+		QuoteCache quoteCache = new QuoteCache(1600);
+		QuoteResult result = new QuoteRejection(QuoteOutcome.NOT_FEASIBLE, 100000, 0);
+		for(long amount = 0; amount < 100; amount++) {
+			quoteCache.put(amount, 36, 1, result);
+		}
+		for(long amount = 0; amount < 100; amount++) {
+			quoteCache.put(amount, 36, 2, result);
+		}
+		
+		//Puts of the newer version drop eldest entries of the older one, cache is never full
+		assertTrue(quoteCache.getExpired() > 0);
+		assertEquals(200, quoteCache.getSize() + quoteCache.getExpired());
+		assertEquals(0, quoteCache.getEvictions());
+		assertNull(quoteCache.get(5, 36, 1));
+		assertSame(result, quoteCache.get(5, 36, 2));
+	}
+	
+	@Test
+	public void testConcurrentAccess() throws Exception {
+		final QuoteCache quoteCache = new QuoteCache(256);
+		ExecutorService workers = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+			for(int thread = 0; thread < 8; thread++) {
+				results.add(workers.submit(new Callable<Boolean>() {
+					
+					@Override
+					public Boolean call() throws Exception {
+						for(int i = 0; i < 100000; i++) {
+							long amount = i % 500;
+							QuoteResult cached = quoteCache.get(amount, 36, 1);
+							if(cached == null) {
+								quoteCache.put(amount, 36, 1, new QuoteRejection(QuoteOutcome.NOT_FEASIBLE, amount, 0));
+							} else if(cached.getAmountPence() != amount) {
+								return false;
+							}
+						}
+						return true;
+					}
+				
+				}));
+			}
+			for(Future<Boolean> result: results) {
+				assertTrue(result.get());
+			}
+		} finally {
+			workers.shutdownNow();
+		}
+		assertEquals(800000, quoteCache.getHits() + quoteCache.getMisses());
+		assertTrue(quoteCache.getSize() <= 256);
+	}
+
+}
@@ -0,0 +1,172 @@
+package com.zopa.quote.service;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.zopa.quote.config.AppConfig;
+import com.zopa.quote.domain.Lender;
+import com.zopa.quote.domain.Money;
+import com.zopa.quote.domain.Repayment;
+import com.zopa.quote.repository.LenderPoolArrayRepositoryImpl;
+import com.zopa.quote.repository.RateOrderedLenders;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = { AppConfig.class })
+public class QuoteEngineTest {
+	
+	@Autowired private QuoteEngine quoteEngine;
+	
+	@Test
+	public void testCalculate() {
+		List<Lender> lenderPool = Arrays.asList(
+				new Lender(1, "Lender #1", 0.066, 1000.0),
+				new Lender(3, "Lender #3", 0.070, 10000.0));
+		
+		Repayment repayment = quoteEngine.calculate(lenderPool, 5000);
+		assertEquals(5000.0, repayment.getAmountCovered(), 0);
+		assertEquals(2, repayment.getLendersUsed());
+		assertEquals(500000, repayment.getAmountCoveredPence());
+		assertEquals(15420, repayment.getMonthlyRepaymentPence());
+		assertEquals(615000, repayment.getTotalRepaymentPence());
+		assertTrue(154.20 == repayment.getMonthlyRepayment());
+		assertTrue(6150.00 == repayment.getTotalRepayment());
+		assertEquals(0.068, repayment.getRate(), 1e-12);
+		
+		//Lender list is left untouched
+		assertEquals(2, lenderPool.size());
+	}
+	
+	@Test
+	public void testCalculateStopsWhenCovered() {
+		List<Lender> lenderPool = Arrays.asList(
+				new Lender(1, "Lender #1", 0.066, 1000.0),
+				new Lender(2, "Lender #2", 0.070, 1000.0),
+				new Lender(3, "Lender #3", 0.080, 1000.0));
+		
+		Repayment repayment = quoteEngine.calculate(lenderPool, 2000);
+		assertEquals(2, repayment.getLendersUsed());
+		assertEquals(2000.0, repayment.getAmountCovered(), 0);
+		
+		repayment = quoteEngine.calculate(lenderPool, 5000);
+		assertEquals(3, repayment.getLendersUsed());
+		assertEquals(3000.0, repayment.getAmountCovered(), 0);
+	}
+	
+	@Test
+	public void testCalculateTermsMatchesSingleTerm() {
+		Random random = new Random(42);
+		LenderPoolArrayRepositoryImpl lenderPoolRepository = new LenderPoolArrayRepositoryImpl();
+		for(int i = 1; i <= 2000; i++) {
+			lenderPoolRepository.save(new Lender(i, "Lender #" + i, 0.05 + random.nextInt(300) / 10000.0, 0.01 + random.nextInt(100000) / 100.0));
+		}
+		RateOrderedLenders lenderPool = lenderPoolRepository.findAllRateOrdered();
+		int[] terms = { 12, 24, 36, 48, 60 };
+		
+		//Cached and uncached factors give the same pence as one engine per term
+		for(QuoteEngine multiTermEngine: Arrays.asList(new QuoteEngine(36, 4096), new QuoteEngine(36, 0))) {
+			for(long amount = 100000; amount <= 1500000; amount += 10000) {
+				Repayment[] repayments = multiTermEngine.calculate(lenderPool, amount, terms);
+				assertEquals(terms.length, repayments.length);
+				for(int i = 0; i < terms.length; i++) {
+					Repayment expected = new QuoteEngine(terms[i], 4096).calculate(lenderPool, amount);
+					assertEquals(expected.getAmountCoveredPence(), repayments[i].getAmountCoveredPence());
+					assertEquals(expected.getMonthlyRepaymentPence(), repayments[i].getMonthlyRepaymentPence());
+					assertEquals(expected.getTotalRepaymentPence(), repayments[i].getTotalRepaymentPence());
+					assertTrue(expected.getRate() == repayments[i].getRate());
+					assertEquals(expected.getLendersUsed(), repayments[i].getLendersUsed());
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testCalculateOverRateLevels() {
+		Random random = new Random(42);
+		LenderPoolArrayRepositoryImpl lenderPoolRepository = new LenderPoolArrayRepositoryImpl();
+		for(int i = 1; i <= 20000; i++) {
+			lenderPoolRepository.save(new Lender(i, "Lender #" + i, 0.05 + random.nextInt(20) / 1000.0, 0.01 + random.nextInt(5000) / 100.0));
+		}
+		lenderPoolRepository.save(new Lender(20001, "Lender #20001", 0.05, 0));
+		List<Lender> lenders = lenderPoolRepository.findAllSorted();
+		RateOrderedLenders lenderPool = lenderPoolRepository.findAllRateOrdered();
+		assertEquals(20, lenderPool.rateLevels().size());
+		
+		//Pricing per level gives the same repayment as pricing the sorted list lender by lender
+		for(long amount = 100; amount <= 60000000; amount = amount * 3 + 7) {
+			Repayment expected = quoteEngine.calculate(lenders, Money.toPounds(amount));
+			Repayment repayment = quoteEngine.calculate(lenderPool, amount);
+			assertEquals(expected.getAmountCoveredPence(), repayment.getAmountCoveredPence());
+			assertEquals(expected.getMonthlyRepaymentPence(), repayment.getMonthlyRepaymentPence());
+			assertEquals(expected.getTotalRepaymentPence(), repayment.getTotalRepaymentPence());
+			assertEquals(expected.getLendersUsed(), repayment.getLendersUsed());
+			assertEquals(expected.getRate(), repayment.getRate(), 1e-12);
+		}
+	}
+	
+	@Test
+	public void testCalculateFromCursorMatchesRateLevels() {
+		Random random = new Random(42);
+		LenderPoolArrayRepositoryImpl lenderPoolRepository = new LenderPoolArrayRepositoryImpl();
+		for(int i = 1; i <= 5000; i++) {
+			lenderPoolRepository.save(new Lender(i, "Lender #" + i, 0.05 + random.nextInt(20) / 1000.0, 0.01 + random.nextInt(5000) / 100.0));
+		}
+		RateOrderedLenders lenderPool = lenderPoolRepository.findAllRateOrdered();
+		int[] terms = { 12, 36, 60 };
+		
+		//Lenders taken from cursor are priced to the same pence as rate levels of the full view
+		for(long amount = 100; amount <= 20000000; amount = amount * 3 + 7) {
+			Repayment[] expected = quoteEngine.calculate(lenderPool, amount, terms);
+			Repayment[] repayments = quoteEngine.calculate(lenderPoolRepository.sortedSpliterator(), amount, terms, Integer.MAX_VALUE);
+			for(int i = 0; i < terms.length; i++) {
+				assertEquals(expected[i].getAmountCoveredPence(), repayments[i].getAmountCoveredPence());
+				assertEquals(expected[i].getMonthlyRepaymentPence(), repayments[i].getMonthlyRepaymentPence());
+				assertEquals(expected[i].getTotalRepaymentPence(), repayments[i].getTotalRepaymentPence());
+				assertEquals(expected[i].getLendersUsed(), repayments[i].getLendersUsed());
+				assertEquals(expected[i].getRate(), repayments[i].getRate(), 1e-12);
+			}
+		}
+		
+		//Amount needing more lenders than the limit is left to the full view
+		int lendersUsed = quoteEngine.calculate(lenderPool, 500000, terms)[0].getLendersUsed();
+		assertNull(quoteEngine.calculate(lenderPoolRepository.sortedSpliterator(), 500000, terms, lendersUsed - 1));
+		assertNotNull(quoteEngine.calculate(lenderPoolRepository.sortedSpliterator(), 500000, terms, lendersUsed));
+	}
+	
+	@Test
+	public void testParseTerms() {
+		assertArrayEquals(new int[] { 12, 24, 36 }, QuoteEngine.parseTerms("12, 24,36"));
+		assertArrayEquals(new int[] { 12, 24, 36, 48, 60 }, quoteEngine.getTerms());
+		assertEquals(36, quoteEngine.getTerm());
+		for(String termList: Arrays.asList("", "12,x", "12,0", "-12")) {
+			try {
+				QuoteEngine.parseTerms(termList);
+				fail("Terms accepted: " + termList);
+			} catch (IllegalArgumentException e) {
+				//Expected
+			}
+		}
+	}
+	
+	@Test
+	public void testCalculateLargePool() {
+		List<Lender> lenderPool = new ArrayList<Lender>();
+		for(int i = 1; i <= 1000000; i++) {
+			lenderPool.add(new Lender(i, "Lender #" + i, 0.07, 0.01));
+		}
+		
+		Repayment repayment = quoteEngine.calculate(lenderPool, 10000);
+		assertEquals(1000000, repayment.getLendersUsed());
+		assertEquals(10000.0, repayment.getAmountCovered(), 1e-6);
+	}
+
+}